@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+/**
+ * Memory bounded cache of {@link CompilationUnit}s, keyed by handle
+ * identifier and content version (modification stamp).
+ *
+ * Entries are kept in least-recently-used order. Strongly referenced entries
+ * are accounted against a memory budget; when the budget is exceeded, the
+ * least recently used entries are spilled to {@link SoftReference}s, so the
+ * garbage collector can reclaim them under heap pressure.
+ */
+public final class ASTCache {
+
+	/**
+	 * Version to use when the content version of an input is not known. An
+	 * entry cached with this version matches any requested version and vice
+	 * versa.
+	 */
+	public static final long UNKNOWN_VERSION = -1;
+
+	/**
+	 * Estimated weight of a binding resolved AST, relative to the size of its
+	 * tree
+	 */
+	static final int BINDINGS_WEIGHT_FACTOR = 4;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long memoryBudget;
+	private long strongWeight;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong spills = new AtomicLong();
+
+	public ASTCache(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Returns the cached AST for the given key and version, or
+	 * <code>null</code> if there is none. Never blocks on AST creation.
+	 */
+	public CompilationUnit get(String key, long version) {
+		CompilationUnit astRoot = peek(key, version);
+		if (astRoot == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return astRoot;
+	}
+
+	/**
+	 * Same as {@link #get(String, long)}, without updating the hit/miss
+	 * counters.
+	 */
+	public synchronized CompilationUnit peek(String key, long version) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (!entry.matches(version)) {
+			return null;
+		}
+		CompilationUnit astRoot = entry.get();
+		if (astRoot == null) {
+			// reclaimed by the garbage collector
+			entries.remove(key);
+			evictions.incrementAndGet();
+			return null;
+		}
+		if (entry.strong == null) {
+			// recently used again: promote back to a strong reference
+			entry.promote(astRoot);
+			strongWeight += entry.weight;
+			trim();
+		}
+		return astRoot;
+	}
+
+	public synchronized void put(String key, long version, CompilationUnit astRoot) {
+		if (astRoot == null) {
+			return;
+		}
+		remove(key);
+		Entry entry = new Entry(version, astRoot, weigh(astRoot));
+		entries.put(key, entry);
+		strongWeight += entry.weight;
+		trim();
+	}
+
+	public synchronized CompilationUnit remove(String key) {
+		Entry entry = entries.remove(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.strong != null) {
+			strongWeight -= entry.weight;
+		}
+		return entry.get();
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		strongWeight = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+		trim();
+	}
+
+	public synchronized long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * @return the estimated memory used by the strongly referenced entries
+	 */
+	public synchronized long getWeight() {
+		return strongWeight;
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public long getSpillCount() {
+		return spills.get();
+	}
+
+	@Override
+	public String toString() {
+		return "ASTCache[size=" + size() + ", weight=" + getWeight() + "/" + getMemoryBudget() + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", spills=" + spills + "]";
+	}
+
+	/**
+	 * Spills the least recently used entries to soft references, until the
+	 * strongly referenced entries fit in the memory budget. The most recently
+	 * used entry is always kept.
+	 */
+	private void trim() {
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		int remaining = entries.size();
+		while (strongWeight > memoryBudget && remaining > 1 && iterator.hasNext()) {
+			Entry entry = iterator.next().getValue();
+			remaining--;
+			if (entry.strong == null) {
+				if (entry.soft.get() == null) {
+					iterator.remove();
+					evictions.incrementAndGet();
+				}
+				continue;
+			}
+			entry.spill();
+			strongWeight -= entry.weight;
+			spills.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Estimates the memory footprint of an AST. The bindings of a resolved
+	 * AST, and the compiler structures they keep reachable, are not part of
+	 * its subtree: they're accounted for as a multiple of the tree.
+	 */
+	public static long weigh(CompilationUnit astRoot) {
+		long weight = astRoot.subtreeBytes();
+		return astRoot.getAST().hasResolvedBindings() ? weight * BINDINGS_WEIGHT_FACTOR : weight;
+	}
+
+	private static final class Entry {
+		final long version;
+		final long weight;
+		CompilationUnit strong;
+		SoftReference<CompilationUnit> soft;
+
+		Entry(long version, CompilationUnit astRoot, long weight) {
+			this.version = version;
+			this.weight = weight;
+			this.strong = astRoot;
+		}
+
+		boolean matches(long requested) {
+			return version == UNKNOWN_VERSION || requested == UNKNOWN_VERSION || version == requested;
+		}
+
+		CompilationUnit get() {
+			return strong != null ? strong : soft.get();
+		}
+
+		void spill() {
+			soft = new SoftReference<>(strong);
+			strong = null;
+		}
+
+		void promote(CompilationUnit astRoot) {
+			strong = astRoot;
+			soft = null;
+		}
+	}
+}
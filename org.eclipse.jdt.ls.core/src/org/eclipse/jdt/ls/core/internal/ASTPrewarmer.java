@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+/**
+ * Speculatively builds the ASTs of the documents likely to be used next, so
+ * the first request on a document doesn't pay for the AST creation.
+ *
+ * The candidates are the most recently used documents, then the compilation
+ * units of the same package and of the type hierarchy of the most recently
+ * used one. Only working copies have their AST built, as they're the only
+ * units whose ASTs are cached by the {@link SharedASTProvider}; the Java
+ * model of the other candidates is opened instead.
+ *
+ * The work is done by a low priority job, within a budget: a number of ASTs
+ * and a duration per pass, and a share of the AST cache memory budget. Any
+ * foreground activity, signaled by {@link #preempt()}, cancels the current
+ * pass; the job runs again once the server has been idle for a while.
+ */
+public class ASTPrewarmer {
+
+	public static final String PREWARM_JOBS = "ASTPrewarmJobs";
+
+	/**
+	 * Number of most recently used documents kept
+	 */
+	static final int MAX_RECENT_DOCUMENTS = 8;
+	/**
+	 * Maximum number of ASTs built per pass
+	 */
+	static final int MAX_ASTS_PER_PASS = 8;
+	/**
+	 * Maximum number of compilation units opened per pass
+	 */
+	static final int MAX_OPENED_PER_PASS = 16;
+	/**
+	 * Maximum duration of a pass, in milliseconds
+	 */
+	static final long MAX_PASS_DURATION = 2000;
+	/**
+	 * Delay, in milliseconds, without foreground activity before a pass runs
+	 */
+	static final long IDLE_DELAY = 500;
+	/**
+	 * Share of the AST cache memory budget beyond which no AST is pre-warmed,
+	 * so speculative ASTs don't push out the ones in use
+	 */
+	static final double MEMORY_RATIO = 0.75;
+
+	private final SharedASTProvider sharedASTProvider;
+	private final WorkingCopyOwner owner;
+	private final LinkedList<String> recentDocuments = new LinkedList<>();
+	private final AtomicLong foregroundActivity = new AtomicLong();
+	private final AtomicLong prewarmed = new AtomicLong();
+	private final AtomicLong preempted = new AtomicLong();
+	private final Job job;
+	private volatile boolean disposed;
+
+	public ASTPrewarmer(SharedASTProvider sharedASTProvider) {
+		this(sharedASTProvider, null);
+	}
+
+	/**
+	 * @param owner
+	 *            the owner of the working copies of the documents, or
+	 *            <code>null</code> for the primary working copies
+	 */
+	public ASTPrewarmer(SharedASTProvider sharedASTProvider, WorkingCopyOwner owner) {
+		this.sharedASTProvider = sharedASTProvider;
+		this.owner = owner;
+		this.job = new Job("Pre-warm ASTs") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				return prewarm(monitor);
+			}
+
+			/* (non-Javadoc)
+			 * @see org.eclipse.core.runtime.jobs.Job#belongsTo(java.lang.Object)
+			 */
+			@Override
+			public boolean belongsTo(Object family) {
+				return PREWARM_JOBS.equals(family);
+			}
+		};
+		this.job.setSystem(true);
+		this.job.setPriority(Job.DECORATE);
+	}
+
+	/**
+	 * Records the given document as the most recently used one, and schedules
+	 * a pre-warm pass.
+	 *
+	 * @param uri
+	 *            the URI of the opened or navigated document
+	 */
+	public void touch(String uri) {
+		if (uri == null || disposed) {
+			return;
+		}
+		synchronized (recentDocuments) {
+			recentDocuments.remove(uri);
+			recentDocuments.addFirst(uri);
+			while (recentDocuments.size() > MAX_RECENT_DOCUMENTS) {
+				recentDocuments.removeLast();
+			}
+		}
+		job.schedule(IDLE_DELAY);
+	}
+
+	/**
+	 * Forgets the given document, e.g. when it is closed.
+	 */
+	public void forget(String uri) {
+		synchronized (recentDocuments) {
+			recentDocuments.remove(uri);
+		}
+	}
+
+	/**
+	 * Signals foreground activity: cancels the running pass, if any, and
+	 * delays the next one. Cheap enough to be called on every request.
+	 */
+	public void preempt() {
+		foregroundActivity.incrementAndGet();
+		if (job.getState() != Job.NONE && !disposed) {
+			// pushes the pending pass back, or reschedules the cancelled one
+			job.schedule(IDLE_DELAY);
+		}
+	}
+
+	public void dispose() {
+		disposed = true;
+		job.cancel();
+		synchronized (recentDocuments) {
+			recentDocuments.clear();
+		}
+	}
+
+	/**
+	 * @return the number of ASTs built by pre-warm passes
+	 */
+	public long getPrewarmedCount() {
+		return prewarmed.get();
+	}
+
+	/**
+	 * @return the number of passes preempted by foreground activity
+	 */
+	public long getPreemptedCount() {
+		return preempted.get();
+	}
+
+	IStatus prewarm(IProgressMonitor monitor) {
+		if (disposed) {
+			return Status.CANCEL_STATUS;
+		}
+		PreemptibleMonitor preemptible = new PreemptibleMonitor(monitor, foregroundActivity);
+		long deadline = System.currentTimeMillis() + MAX_PASS_DURATION;
+		int built = 0;
+		int opened = 0;
+		try {
+			for (ICompilationUnit unit : getCandidates(preemptible)) {
+				if (preemptible.isCanceled() || System.currentTimeMillis() > deadline) {
+					break;
+				}
+				if (unit.isWorkingCopy()) {
+					if (built >= MAX_ASTS_PER_PASS || isOverMemoryBudget()) {
+						continue;
+					}
+					if (!unit.isConsistent() || isCached(unit)) {
+						// pending changes are taken care of by the validation
+						continue;
+					}
+					CompilationUnit astRoot = sharedASTProvider.getAST(unit, preemptible);
+					if (astRoot != null && !preemptible.isCanceled()) {
+						built++;
+						prewarmed.incrementAndGet();
+					}
+				} else if (opened < MAX_OPENED_PER_PASS && unit.exists() && !unit.isOpen()) {
+					unit.open(preemptible);
+					opened++;
+				}
+			}
+		} catch (JavaModelException e) {
+			JavaLanguageServerPlugin.logException("Error while pre-warming ASTs", e);
+		}
+		if (preemptible.isCanceled() && (monitor == null || !monitor.isCanceled())) {
+			preempted.incrementAndGet();
+			return Status.CANCEL_STATUS;
+		}
+		return Status.OK_STATUS;
+	}
+
+	private boolean isCached(ICompilationUnit unit) {
+		// peek, so pre-warming doesn't count as cache misses
+		return sharedASTProvider.getCache().peek(SharedASTProvider.getCacheKey(unit), SharedASTProvider.getVersion(unit)) != null;
+	}
+
+	private boolean isOverMemoryBudget() {
+		ASTCache cache = sharedASTProvider.getCache();
+		return cache.getWeight() > cache.getMemoryBudget() * MEMORY_RATIO;
+	}
+
+	/**
+	 * Returns the pre-warm candidates, most likely to be used first.
+	 */
+	List<ICompilationUnit> getCandidates(IProgressMonitor monitor) throws JavaModelException {
+		List<String> uris;
+		synchronized (recentDocuments) {
+			uris = new ArrayList<>(recentDocuments);
+		}
+		Set<ICompilationUnit> candidates = new LinkedHashSet<>();
+		ICompilationUnit focus = null;
+		for (String uri : uris) {
+			ICompilationUnit unit = JDTUtils.resolveCompilationUnit(uri, owner);
+			if (unit != null && unit.isWorkingCopy()) {
+				if (focus == null) {
+					focus = unit;
+				}
+				candidates.add(unit);
+			}
+		}
+		if (focus == null || monitor.isCanceled()) {
+			return new ArrayList<>(candidates);
+		}
+		IType[] focusTypes = focus.getTypes();
+		// type hierarchy: super types, then open sub types
+		for (IType type : focusTypes) {
+			addSuperTypes(type, candidates);
+		}
+		for (ICompilationUnit workingCopy : JavaCore.getWorkingCopies(owner)) {
+			if (isSubTypeOf(workingCopy, focusTypes)) {
+				candidates.add(workingCopy);
+			}
+		}
+		// same package
+		IJavaElement parent = focus.getParent();
+		if (parent instanceof IPackageFragment) {
+			IPackageFragment fragment = (IPackageFragment) parent;
+			for (ICompilationUnit unit : owner == null ? fragment.getCompilationUnits() : fragment.getCompilationUnits(owner)) {
+				candidates.add(unit);
+			}
+		}
+		// primary compilation units stand for their working copies
+		List<ICompilationUnit> result = new ArrayList<>(candidates.size());
+		for (ICompilationUnit unit : candidates) {
+			ICompilationUnit workingCopy = unit.findWorkingCopy(null);
+			ICompilationUnit candidate = workingCopy != null ? workingCopy : unit;
+			if (!result.contains(candidate)) {
+				result.add(candidate);
+			}
+		}
+		return result;
+	}
+
+	private static void addSuperTypes(IType type, Set<ICompilationUnit> candidates) throws JavaModelException {
+		List<String> names = new ArrayList<>();
+		if (type.getSuperclassName() != null) {
+			names.add(type.getSuperclassName());
+		}
+		for (String name : type.getSuperInterfaceNames()) {
+			names.add(name);
+		}
+		IJavaProject javaProject = type.getJavaProject();
+		for (String name : names) {
+			String[][] resolved = type.resolveType(name);
+			if (resolved == null || resolved.length != 1) {
+				continue;
+			}
+			String qualifiedName = resolved[0][0].isEmpty() ? resolved[0][1] : resolved[0][0] + "." + resolved[0][1];
+			IType superType = javaProject.findType(qualifiedName);
+			if (superType != null && superType.getCompilationUnit() != null) {
+				candidates.add(superType.getCompilationUnit());
+			}
+		}
+	}
+
+	private static boolean isSubTypeOf(ICompilationUnit unit, IType[] superTypes) throws JavaModelException {
+		if (superTypes.length == 0) {
+			return false;
+		}
+		for (IType type : unit.getTypes()) {
+			List<String> names = new ArrayList<>();
+			if (type.getSuperclassName() != null) {
+				names.add(type.getSuperclassName());
+			}
+			for (String name : type.getSuperInterfaceNames()) {
+				names.add(name);
+			}
+			for (String name : names) {
+				// names are as written in the source: compare simple names, without type arguments
+				int typeArguments = name.indexOf('<');
+				String simpleName = typeArguments < 0 ? name : name.substring(0, typeArguments);
+				simpleName = simpleName.substring(simpleName.lastIndexOf('.') + 1);
+				for (IType superType : superTypes) {
+					if (superType.getElementName().equals(simpleName)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Monitor cancelled as soon as foreground activity is signaled.
+	 */
+	private static final class PreemptibleMonitor extends ProgressMonitorWrapper {
+
+		private final AtomicLong foregroundActivity;
+		private final long activity;
+
+		PreemptibleMonitor(IProgressMonitor monitor, AtomicLong foregroundActivity) {
+			super(monitor == null ? new NullProgressMonitor() : monitor);
+			this.foregroundActivity = foregroundActivity;
+			this.activity = foregroundActivity.get();
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return super.isCanceled() || foregroundActivity.get() != activity;
+		}
+	}
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts, per buffer implementation, how many times a buffer's whole content
+ * was copied into a new String or char[] and how many characters were copied,
+ * so the allocation cost of the buffer implementations can be compared.
+ */
+public final class BufferMetrics {
+
+	private static final Map<String, AtomicLong[]> COUNTERS = new ConcurrentHashMap<>();
+
+	private BufferMetrics() {
+		//no instances allowed
+	}
+
+	/**
+	 * Records that the whole content of a buffer was copied.
+	 *
+	 * @param buffer
+	 *            the buffer implementation
+	 * @param length
+	 *            the number of characters copied
+	 */
+	public static void recordCopy(Class<?> buffer, int length) {
+		AtomicLong[] counters = COUNTERS.computeIfAbsent(buffer.getSimpleName(), k -> new AtomicLong[] { new AtomicLong(), new AtomicLong() });
+		counters[0].incrementAndGet();
+		counters[1].addAndGet(length);
+	}
+
+	public static long getCopyCount(Class<?> buffer) {
+		AtomicLong[] counters = COUNTERS.get(buffer.getSimpleName());
+		return counters == null ? 0 : counters[0].get();
+	}
+
+	public static long getCopiedCharacters(Class<?> buffer) {
+		AtomicLong[] counters = COUNTERS.get(buffer.getSimpleName());
+		return counters == null ? 0 : counters[1].get();
+	}
+
+	public static void reset() {
+		COUNTERS.clear();
+	}
+
+	public static String dump() {
+		StringBuilder builder = new StringBuilder("Buffer content copies:");
+		for (Map.Entry<String, AtomicLong[]> entry : new TreeMap<>(COUNTERS).entrySet()) {
+			builder.append(' ').append(entry.getKey()).append("[copies=").append(entry.getValue()[0]).append(", chars=").append(entry.getValue()[1]).append(']');
+		}
+		return builder.toString();
+	}
+}
@@ -34,6 +34,10 @@ public class CancellableProgressMonitor extends NullProgressMonitor {
 	 */
 	@Override
 	public boolean isCanceled() {
+		// explicitly cancelled, e.g. superseded by a newer request
+		if (super.isCanceled()) {
+			return true;
+		}
 		if(cancelChecker != null ){
 			try {
 				cancelChecker.checkCanceled();
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Buffered input stream reading from a blocking channel.
+ *
+ * Unlike {@link java.nio.channels.Channels#newInputStream(ReadableByteChannel)},
+ * reads don't hold the channel's blocking lock, so a socket channel can be
+ * written to while a read is waiting. The buffer is direct by default, so
+ * reads from the channel don't go through a temporary direct buffer.
+ */
+public class ChannelInputStream extends InputStream {
+
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer;
+
+	/**
+	 * @param channel
+	 *            a blocking channel
+	 * @param bufferSize
+	 *            the size of the buffer, in bytes
+	 * @param direct
+	 *            whether the buffer is allocated outside of the heap
+	 */
+	public ChannelInputStream(ReadableByteChannel channel, int bufferSize, boolean direct) {
+		this.channel = channel;
+		this.buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+		this.buffer.flip();
+	}
+
+	@Override
+	public synchronized int read() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public synchronized int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (!fill()) {
+			return -1;
+		}
+		int n = Math.min(len, buffer.remaining());
+		buffer.get(b, off, n);
+		return n;
+	}
+
+	@Override
+	public synchronized int available() throws IOException {
+		return buffer.remaining();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * @return <code>false</code> if the end of the stream is reached
+	 */
+	private boolean fill() throws IOException {
+		if (buffer.hasRemaining()) {
+			return true;
+		}
+		buffer.clear();
+		int n;
+		do {
+			n = channel.read(buffer);
+		} while (n == 0);
+		buffer.flip();
+		return n > 0;
+	}
+}
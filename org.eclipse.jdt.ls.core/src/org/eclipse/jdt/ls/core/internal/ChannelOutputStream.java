@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Buffered output stream writing to a blocking channel.
+ *
+ * Large arrays are written in buffer-sized chunks: writing a multi-megabyte
+ * array straight to a channel would have the JDK copy it into a temporary
+ * direct buffer of the same size, cached per thread.
+ */
+public class ChannelOutputStream extends OutputStream {
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+
+	/**
+	 * @param channel
+	 *            a blocking channel
+	 * @param bufferSize
+	 *            the size of the buffer, in bytes
+	 * @param direct
+	 *            whether the buffer is allocated outside of the heap
+	 */
+	public ChannelOutputStream(WritableByteChannel channel, int bufferSize, boolean direct) {
+		this.channel = channel;
+		this.buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+	}
+
+	@Override
+	public synchronized void write(int b) throws IOException {
+		if (!buffer.hasRemaining()) {
+			drain();
+		}
+		buffer.put((byte) b);
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		while (len > 0) {
+			if (!buffer.hasRemaining()) {
+				drain();
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.put(b, off, n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		drain();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+
+/**
+ * Writes JSON-RPC messages to an output stream, like lsp4j's
+ * <code>StreamMessageConsumer</code>, without serializing them to a
+ * <code>String</code> first.
+ *
+ * The message is encoded straight into reusable fixed-size chunks, then the
+ * chunks are written out after the <code>Content-Length</code> header. A
+ * multi-megabyte response is thus never held as one large string, nor as one
+ * large array that needs to be grown and copied while encoding.
+ */
+public class ChunkedMessageConsumer implements MessageConsumer {
+
+	private static final int CHUNK_SIZE = 64 * 1024;
+	/** chunks kept between messages, by each thread */
+	private static final int MAX_RETAINED_CHUNKS = 16;
+
+	private final OutputStream output;
+	private final MessageJsonHandler jsonHandler;
+	private final Object outputLock = new Object();
+	private final ThreadLocal<ChunkedBuffer> buffers = ThreadLocal.withInitial(ChunkedBuffer::new);
+
+	public ChunkedMessageConsumer(OutputStream output, MessageJsonHandler jsonHandler) {
+		this.output = output;
+		this.jsonHandler = jsonHandler;
+	}
+
+	@Override
+	public void consume(Message message) {
+		// messages are serialized concurrently, only writing them is exclusive
+		ChunkedBuffer content = buffers.get();
+		try {
+			Writer writer = new OutputStreamWriter(content, StandardCharsets.UTF_8);
+			jsonHandler.serialize(message, writer);
+			writer.flush();
+			byte[] header = ("Content-Length: " + content.size() + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+			synchronized (outputLock) {
+				output.write(header);
+				content.writeTo(output);
+				output.flush();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			content.reset();
+		}
+	}
+
+	/**
+	 * Output stream accumulating bytes in a list of chunks.
+	 */
+	static final class ChunkedBuffer extends OutputStream {
+
+		private final List<byte[]> chunks = new ArrayList<>();
+		private int size;
+
+		@Override
+		public void write(int b) {
+			int offset = size % CHUNK_SIZE;
+			chunk(size / CHUNK_SIZE)[offset] = (byte) b;
+			size++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			while (len > 0) {
+				int offset = size % CHUNK_SIZE;
+				int n = Math.min(len, CHUNK_SIZE - offset);
+				System.arraycopy(b, off, chunk(size / CHUNK_SIZE), offset, n);
+				size += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		int size() {
+			return size;
+		}
+
+		void writeTo(OutputStream out) throws IOException {
+			int remaining = size;
+			for (int i = 0; remaining > 0; i++) {
+				int n = Math.min(remaining, CHUNK_SIZE);
+				out.write(chunks.get(i), 0, n);
+				remaining -= n;
+			}
+		}
+
+		void reset() {
+			size = 0;
+			while (chunks.size() > MAX_RETAINED_CHUNKS) {
+				chunks.remove(chunks.size() - 1);
+			}
+		}
+
+		private byte[] chunk(int index) {
+			if (index == chunks.size()) {
+				chunks.add(new byte[CHUNK_SIZE]);
+			}
+			return chunks.get(index);
+		}
+	}
+}
@@ -15,8 +15,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
 
 import org.eclipse.core.runtime.Platform;
 import org.newsclub.net.unix.AFUNIXSocket;
@@ -30,6 +32,13 @@ import org.newsclub.net.unix.AFUNIXSocketAddress;
  */
 public class ConnectionStreamFactory {
 
+	/**
+	 * Size, in bytes, of the buffers of the socket and named pipe transports.
+	 * 0 disables the buffered NIO transport.
+	 */
+	static final String TRANSPORT_BUFFER_SIZE = "TRANSPORT_BUFFER_SIZE";
+	static final int DEFAULT_TRANSPORT_BUFFER_SIZE = 64 * 1024;
+
 	interface StreamProvider {
 		InputStream getInputStream() throws IOException;
 
@@ -50,25 +59,39 @@ public class ConnectionStreamFactory {
 		@Override
 		public InputStream getInputStream() throws IOException {
 			final File rFile = new File(readFileName);
+			int bufferSize = getTransportBufferSize();
 			if (isWindows()) {
 				RandomAccessFile readFile = new RandomAccessFile(rFile, "rwd");
+				if (bufferSize > 0) {
+					return new ChannelInputStream(readFile.getChannel(), bufferSize, true);
+				}
 				return Channels.newInputStream(readFile.getChannel());
 			} else {
 				AFUNIXSocket readSocket = AFUNIXSocket.newInstance();
 				readSocket.connect(new AFUNIXSocketAddress(rFile));
+				if (bufferSize > 0) {
+					// junixsocket has no channels, the adapter copies through the heap
+					return new ChannelInputStream(Channels.newChannel(readSocket.getInputStream()), bufferSize, false);
+				}
 				return readSocket.getInputStream();
 			}
 		}
 		@Override
 		public OutputStream getOutputStream() throws IOException {
 			final File wFile = new File(writeFileName);
-
+			int bufferSize = getTransportBufferSize();
 			if (isWindows()) {
 				RandomAccessFile writeFile = new RandomAccessFile(wFile, "rwd");
+				if (bufferSize > 0) {
+					return new ChannelOutputStream(writeFile.getChannel(), bufferSize, true);
+				}
 				return Channels.newOutputStream(writeFile.getChannel());
 			} else {
 				AFUNIXSocket writeSocket = AFUNIXSocket.newInstance();
 				writeSocket.connect(new AFUNIXSocketAddress(wFile));
+				if (bufferSize > 0) {
+					return new ChannelOutputStream(Channels.newChannel(writeSocket.getOutputStream()), bufferSize, false);
+				}
 				return writeSocket.getOutputStream();
 			}
 		}
@@ -86,6 +109,13 @@ public class ConnectionStreamFactory {
 		}
 
 		private void initializeConnection() throws IOException {
+			int bufferSize = getTransportBufferSize();
+			if (bufferSize > 0) {
+				SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+				fInputStream = new ChannelInputStream(channel, bufferSize, true);
+				fOutputStream = new ChannelOutputStream(channel, bufferSize, true);
+				return;
+			}
 			Socket socket = new Socket(host, port);
 			fInputStream = socket.getInputStream();
 			fOutputStream = socket.getOutputStream();
@@ -198,6 +228,18 @@ public class ConnectionStreamFactory {
 		return getSelectedStream().getOutputStream();
 	}
 
+	static int getTransportBufferSize() {
+		String value = Environment.get(TRANSPORT_BUFFER_SIZE);
+		if (value != null) {
+			try {
+				return Math.max(0, Integer.parseInt(value.trim()));
+			} catch (NumberFormatException e) {
+				JavaLanguageServerPlugin.logError("Invalid " + TRANSPORT_BUFFER_SIZE + ": " + value);
+			}
+		}
+		return DEFAULT_TRANSPORT_BUFFER_SIZE;
+	}
+
 	protected static boolean isWindows() {
 		return Platform.OS_WIN32.equals(Platform.getOS());
 	}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+
+/**
+ * Publishes diagnostics to the client, skipping the ones it already has.
+ *
+ * The last diagnostics published for each URI are kept: publishing diagnostics
+ * equal to them again is suppressed. Optionally,
+ * publishes for the same URI happening within a short delay are coalesced,
+ * only the last one being sent.
+ */
+public class DiagnosticsPublisher {
+
+	private final Consumer<PublishDiagnosticsParams> sink;
+	private final Map<String, List<Diagnostic>> lastPublished = new ConcurrentHashMap<>();
+	private final Map<String, PublishDiagnosticsParams> pending = new ConcurrentHashMap<>();
+	private volatile long coalescingDelay;
+	private ScheduledExecutorService scheduler;
+
+	private final AtomicLong published = new AtomicLong();
+	private final AtomicLong suppressed = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+
+	public DiagnosticsPublisher(Consumer<PublishDiagnosticsParams> sink) {
+		this.sink = sink;
+	}
+
+	/**
+	 * Sets the delay during which successive publishes for a same URI are
+	 * coalesced. 0 (the default) publishes immediately.
+	 *
+	 * @param delay
+	 *            the delay in milliseconds
+	 */
+	public void setCoalescingDelay(long delay) {
+		this.coalescingDelay = Math.max(0, delay);
+	}
+
+	public void publish(PublishDiagnosticsParams params) {
+		if (coalescingDelay <= 0) {
+			send(params);
+			return;
+		}
+		String uri = params.getUri();
+		if (pending.put(uri, params) != null) {
+			// a publish for that URI is already scheduled, it'll send these diagnostics instead
+			coalesced.incrementAndGet();
+			return;
+		}
+		getScheduler().schedule(() -> flush(uri), coalescingDelay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sends all pending publishes right away.
+	 */
+	public void flush() {
+		for (String uri : pending.keySet()) {
+			flush(uri);
+		}
+	}
+
+	/**
+	 * Sends the pending publish for the given URI, if any, then forgets what
+	 * was published for it: the next publish for it will always be sent. To
+	 * be called when the resource is gone.
+	 */
+	public void reset(String uri) {
+		flush(uri);
+		lastPublished.remove(uri);
+	}
+
+	public void dispose() {
+		flush();
+		synchronized (this) {
+			if (scheduler != null) {
+				scheduler.shutdownNow();
+				scheduler = null;
+			}
+		}
+	}
+
+	private void flush(String uri) {
+		PublishDiagnosticsParams params = pending.remove(uri);
+		if (params != null) {
+			send(params);
+		}
+	}
+
+	private synchronized void send(PublishDiagnosticsParams params) {
+		List<Diagnostic> diagnostics = params.getDiagnostics() == null ? Collections.emptyList() : new ArrayList<>(params.getDiagnostics());
+		List<Diagnostic> previous = lastPublished.put(params.getUri(), diagnostics);
+		if (diagnostics.equals(previous)) {
+			suppressed.incrementAndGet();
+			return;
+		}
+		published.incrementAndGet();
+		sink.accept(params);
+	}
+
+	private synchronized ScheduledExecutorService getScheduler() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "Diagnostics publisher");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return scheduler;
+	}
+
+	/**
+	 * @return the number of publishes sent to the client
+	 */
+	public long getPublishedCount() {
+		return published.get();
+	}
+
+	/**
+	 * @return the number of publishes skipped because the client already had
+	 *         the same diagnostics
+	 */
+	public long getSuppressedCount() {
+		return suppressed.get();
+	}
+
+	/**
+	 * @return the number of publishes superseded by a later publish for the
+	 *         same URI before being sent
+	 */
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+}
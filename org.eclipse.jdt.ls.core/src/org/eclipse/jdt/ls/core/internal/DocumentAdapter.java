@@ -30,10 +30,11 @@ import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.ISynchronizable;
 
-public class DocumentAdapter implements IBuffer, IDocumentListener {
+public class DocumentAdapter implements IVersionedBuffer, IDocumentListener {
 
 	private static class NullBuffer implements IBuffer {
 		@Override
@@ -110,6 +111,15 @@ public class DocumentAdapter implements IBuffer, IDocumentListener {
 		return fDocument;
 	}
 
+	@Override
+	public long getModificationStamp() {
+		IDocument document = fDocument;
+		if (document instanceof IDocumentExtension4) {
+			return ((IDocumentExtension4) document).getModificationStamp();
+		}
+		return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+
 	@Override
 	public void addBufferChangedListener(IBufferChangedListener listener) {
 		synchronized (lock) {
@@ -178,12 +188,21 @@ public class DocumentAdapter implements IBuffer, IDocumentListener {
 	@Override
 	public char[] getCharacters() {
 		String content = getContents();
-		return content != null ? content.toCharArray() : null;
+		if (content == null) {
+			return null;
+		}
+		BufferMetrics.recordCopy(DocumentAdapter.class, content.length());
+		return content.toCharArray();
 	}
 
 	@Override
 	public String getContents() {
-		return fDocument != null ? fDocument.get() : null;
+		IDocument document = fDocument;
+		if (document == null) {
+			return null;
+		}
+		BufferMetrics.recordCopy(DocumentAdapter.class, document.getLength());
+		return document.get();
 	}
 
 	@Override
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.ls.core.internal.MetricsRegistry.Outcome;
+
+/**
+ * Emits Java Flight Recorder events for the requests, validation passes, AST
+ * creations, content loads and project imports, so the CPU and allocation
+ * samples of a recording can be attributed to them.
+ *
+ * The server is compiled for Java 8, which has no public JFR API: the event
+ * types are defined at runtime through <code>jdk.jfr.EventFactory</code>,
+ * when the server runs on Java 11 or later. Otherwise, or when the event type
+ * is not enabled in a running recording, {@link #begin(String)} returns an
+ * inert event and nothing else is done. All event types have the same fields:
+ * URI, method, document version and outcome; the duration is recorded by JFR.
+ */
+public final class FlightRecorderEvents {
+
+	public static final String REQUEST = "Request";
+	public static final String VALIDATION = "Validation";
+	public static final String AST_CREATION = "ASTCreation";
+	public static final String CONTENT_LOAD = "ContentLoad";
+	public static final String PROJECT_IMPORT = "ProjectImport";
+
+	private static final String[] TYPES = { REQUEST, VALIDATION, AST_CREATION, CONTENT_LOAD, PROJECT_IMPORT };
+	private static final String NAME_PREFIX = "org.eclipse.jdt.ls.";
+	private static final String CATEGORY = "Java Language Server";
+
+	private static final int URI = 0;
+	private static final int METHOD = 1;
+	private static final int VERSION = 2;
+	private static final int OUTCOME = 3;
+
+	private static final Event NO_EVENT = new Event(null);
+
+	/** event type name -> jdk.jfr.EventFactory, empty if JFR is not available */
+	private static final Map<String, Object> factories = new HashMap<>();
+	/** event type name -> jdk.jfr.EventType */
+	private static final Map<String, Object> eventTypes = new HashMap<>();
+	private static Method newEvent;
+	private static Method isTypeEnabled;
+	private static Method begin;
+	private static Method end;
+	private static Method set;
+	private static Method commit;
+
+	static {
+		try {
+			// the system class loader sees the jdk.* packages, the bundle's may not
+			ClassLoader loader = ClassLoader.getSystemClassLoader();
+			Class<?> factoryClass = loader.loadClass("jdk.jfr.EventFactory");
+			Class<?> eventClass = loader.loadClass("jdk.jfr.Event");
+			Class<?> eventTypeClass = loader.loadClass("jdk.jfr.EventType");
+			Class<?> annotationElementClass = loader.loadClass("jdk.jfr.AnnotationElement");
+			Class<?> valueDescriptorClass = loader.loadClass("jdk.jfr.ValueDescriptor");
+			Class<?> nameClass = loader.loadClass("jdk.jfr.Name");
+			Class<?> labelClass = loader.loadClass("jdk.jfr.Label");
+			Class<?> categoryClass = loader.loadClass("jdk.jfr.Category");
+			Class<?> stackTraceClass = loader.loadClass("jdk.jfr.StackTrace");
+			Constructor<?> newAnnotation = annotationElementClass.getConstructor(Class.class, Object.class);
+			Constructor<?> newValueDescriptor = valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+			Method create = factoryClass.getMethod("create", List.class, List.class);
+
+			List<Object> fields = Arrays.asList(
+					newValueDescriptor.newInstance(String.class, "uri", Collections.singletonList(newAnnotation.newInstance(labelClass, "URI"))),
+					newValueDescriptor.newInstance(String.class, "method", Collections.singletonList(newAnnotation.newInstance(labelClass, "Method"))),
+					newValueDescriptor.newInstance(long.class, "version", Collections.singletonList(newAnnotation.newInstance(labelClass, "Document Version"))),
+					newValueDescriptor.newInstance(String.class, "outcome", Collections.singletonList(newAnnotation.newInstance(labelClass, "Outcome"))));
+			Map<String, Object> created = new HashMap<>();
+			Map<String, Object> types = new HashMap<>();
+			Method getEventType = factoryClass.getMethod("getEventType");
+			for (String type : TYPES) {
+				List<Object> annotations = Arrays.asList(
+						newAnnotation.newInstance(nameClass, NAME_PREFIX + type),
+						newAnnotation.newInstance(labelClass, type),
+						newAnnotation.newInstance(categoryClass, new String[] { CATEGORY }),
+						// the stack would only show the reflective calls of this class
+						newAnnotation.newInstance(stackTraceClass, Boolean.FALSE));
+				Object factory = create.invoke(null, annotations, fields);
+				created.put(type, factory);
+				types.put(type, getEventType.invoke(factory));
+			}
+			newEvent = factoryClass.getMethod("newEvent");
+			isTypeEnabled = eventTypeClass.getMethod("isEnabled");
+			begin = eventClass.getMethod("begin");
+			end = eventClass.getMethod("end");
+			set = eventClass.getMethod("set", int.class, Object.class);
+			commit = eventClass.getMethod("commit");
+			factories.putAll(created);
+			eventTypes.putAll(types);
+		} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+			// Java 8, or JFR not available: events are disabled
+		}
+	}
+
+	private FlightRecorderEvents() {
+	}
+
+	/**
+	 * @return whether JFR events can be emitted by this runtime
+	 */
+	public static boolean isAvailable() {
+		return !factories.isEmpty();
+	}
+
+	/**
+	 * Begins an event of the given type, on the thread running the operation.
+	 * When the event type is not being recorded, a shared inert event is
+	 * returned.
+	 *
+	 * @param type
+	 *            one of the event type constants of this class
+	 * @return the event, to be committed when the operation completes
+	 */
+	public static Event begin(String type) {
+		Object eventType = eventTypes.get(type);
+		if (eventType == null) {
+			return NO_EVENT;
+		}
+		try {
+			if (!((Boolean) isTypeEnabled.invoke(eventType)).booleanValue()) {
+				return NO_EVENT;
+			}
+			Object event = newEvent.invoke(factories.get(type));
+			begin.invoke(event);
+			return new Event(event);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return NO_EVENT;
+		}
+	}
+
+	/**
+	 * An event in progress. All methods do nothing on an inert event.
+	 */
+	public static final class Event {
+
+		private final Object event;
+
+		private Event(Object event) {
+			this.event = event;
+		}
+
+		/**
+		 * @return whether the event is recorded, so computing its fields is
+		 *         worth it
+		 */
+		public boolean isEnabled() {
+			return event != null;
+		}
+
+		public Event setUri(String uri) {
+			return set(URI, uri);
+		}
+
+		public Event setMethod(String method) {
+			return set(METHOD, method);
+		}
+
+		public Event setVersion(long version) {
+			return set(VERSION, Long.valueOf(version));
+		}
+
+		/**
+		 * Ends and commits the event.
+		 */
+		public void commit(Outcome outcome) {
+			if (event == null) {
+				return;
+			}
+			set(OUTCOME, outcome.name());
+			try {
+				end.invoke(event);
+				commit.invoke(event);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				// ignore, events are best effort
+			}
+		}
+
+		private Event set(int index, Object value) {
+			if (event != null) {
+				try {
+					set.invoke(event, index, value);
+				} catch (ReflectiveOperationException | RuntimeException e) {
+					// ignore, events are best effort
+				}
+			}
+			return this;
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import org.eclipse.jdt.core.IBuffer;
+import org.eclipse.jface.text.IDocumentExtension4;
+
+/**
+ * {@link IBuffer} whose content changes can be tracked with a modification
+ * stamp.
+ */
+public interface IVersionedBuffer extends IBuffer {
+
+	/**
+	 * Returns the modification stamp of the buffer's content, changed on every
+	 * modification of the content.
+	 *
+	 * @return the modification stamp or
+	 *         {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP}
+	 */
+	long getModificationStamp();
+}
@@ -47,15 +47,45 @@ public class JavaClientConnection {
 
 	}
 
+	private static final String STATUS_KEY = "language/status";
+
 	private final LogHandler logHandler;
 	private final JavaLanguageClient client;
+	private final DiagnosticsPublisher diagnosticsPublisher;
+	private volatile OutboundMessageQueue outboundQueue;
 
 	public JavaClientConnection(JavaLanguageClient client) {
 		this.client = client;
+		this.diagnosticsPublisher = new DiagnosticsPublisher(this::sendDiagnostics);
 		logHandler = new LogHandler();
 		logHandler.install(this);
 	}
 
+	/**
+	 * Sends the notifications through a bounded queue, written by a single
+	 * thread, instead of from the calling threads. Diagnostics superseded
+	 * while queued are collapsed, progress statuses are throttled.
+	 *
+	 * @param capacity
+	 *            the capacity of the queue
+	 * @param statusInterval
+	 *            the minimum delay between two progress statuses, in
+	 *            milliseconds
+	 */
+	public void startOutboundQueue(int capacity, long statusInterval) {
+		if (outboundQueue == null) {
+			outboundQueue = new OutboundMessageQueue(capacity, statusInterval);
+		}
+	}
+
+	/**
+	 * @return the outbound queue, or <code>null</code> if notifications are
+	 *         sent directly
+	 */
+	public OutboundMessageQueue getOutboundQueue() {
+		return outboundQueue;
+	}
+
 	/**
 	 * Sends the logMessage message back to the client as a notification
 	 * @param msg The message to send back to the client
@@ -64,7 +94,7 @@ public class JavaClientConnection {
 		MessageParams $= new MessageParams();
 		$.setMessage(msg);
 		$.setType(type);
-		client.logMessage($);
+		send(null, () -> client.logMessage($));
 	}
 
 
@@ -78,7 +108,7 @@ public class JavaClientConnection {
 		MessageParams $ = new MessageParams();
 		$.setMessage(msg);
 		$.setType(type);
-		client.showMessage($);
+		send(null, () -> client.showMessage($));
 	}
 
 	/**
@@ -103,8 +133,17 @@ public class JavaClientConnection {
 	 * @param msg The status to send back to the client
 	 */
 	public void sendStatus(ServiceStatus serverStatus, String status) {
-		StatusReport $ = new StatusReport();
-		client.sendStatusReport( $.withMessage(status).withType(serverStatus.name()));
+		StatusReport $ = new StatusReport().withMessage(status).withType(serverStatus.name());
+		OutboundMessageQueue queue = outboundQueue;
+		if (queue == null) {
+			client.sendStatusReport($);
+		} else if (serverStatus == ServiceStatus.Starting || serverStatus == ServiceStatus.Message) {
+			// progress, only the latest matters
+			queue.enqueueThrottled(STATUS_KEY, () -> client.sendStatusReport($));
+		} else {
+			queue.discardThrottled(STATUS_KEY);
+			queue.enqueue(() -> client.sendStatusReport($));
+		}
 	}
 
 
@@ -120,11 +159,32 @@ public class JavaClientConnection {
 	 * Sends a message to the client to be presented to users, with possible commands to execute
 	 */
 	public void sendActionableNotification(ActionableNotification notification) {
-		client.sendActionableNotification(notification);
+		send(null, () -> client.sendActionableNotification(notification));
 	}
 
+	/**
+	 * Publishes diagnostics to the client. Diagnostics identical to the ones
+	 * last published for the same URI are not sent again.
+	 */
 	public void publishDiagnostics(PublishDiagnosticsParams diagnostics){
-		client.publishDiagnostics(diagnostics);
+		diagnosticsPublisher.publish(diagnostics);
+	}
+
+	public DiagnosticsPublisher getDiagnosticsPublisher() {
+		return diagnosticsPublisher;
+	}
+
+	private void sendDiagnostics(PublishDiagnosticsParams diagnostics) {
+		send("textDocument/publishDiagnostics#" + diagnostics.getUri(), () -> client.publishDiagnostics(diagnostics));
+	}
+
+	private void send(String key, Runnable message) {
+		OutboundMessageQueue queue = outboundQueue;
+		if (queue == null) {
+			message.run();
+		} else {
+			queue.enqueue(key, message);
+		}
 	}
 
 
@@ -157,9 +217,16 @@ public class JavaClientConnection {
 	}
 
 	public void disconnect() {
+		diagnosticsPublisher.dispose();
+		JavaLanguageServerPlugin.logInfo("Diagnostics published: " + diagnosticsPublisher.getPublishedCount() + ", suppressed: " + diagnosticsPublisher.getSuppressedCount() + ", coalesced: " + diagnosticsPublisher.getCoalescedCount());
+		OutboundMessageQueue queue = outboundQueue;
+		if (queue != null) {
+			queue.dispose();
+			JavaLanguageServerPlugin.logInfo("Outbound messages sent: " + queue.getSentCount() + ", collapsed: " + queue.getCollapsedCount() + ", max queue depth: " + queue.getMaxDepth() + ", producers blocked: " + queue.getBlockedCount());
+		}
 		if (logHandler != null) {
 			logHandler.uninstall();
 		}
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
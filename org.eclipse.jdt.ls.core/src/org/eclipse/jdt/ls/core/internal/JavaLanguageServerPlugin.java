@@ -17,14 +17,23 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.net.Authenticator;
 import java.net.PasswordAuthentication;
 import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
@@ -41,12 +50,19 @@ import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.WorkingCopyOwner;
 import org.eclipse.jdt.ls.core.internal.JavaClientConnection.JavaLanguageClient;
 import org.eclipse.jdt.ls.core.internal.handlers.JDTLanguageServer;
+import org.eclipse.jdt.ls.core.internal.handlers.RequestExecutor;
+import org.eclipse.jdt.ls.core.internal.handlers.RequestExecutor.Lane;
 import org.eclipse.jdt.ls.core.internal.managers.ContentProviderManager;
 import org.eclipse.jdt.ls.core.internal.managers.ProjectsManager;
 import org.eclipse.jdt.ls.core.internal.preferences.IPreferencesChangeListener;
 import org.eclipse.jdt.ls.core.internal.preferences.PreferenceManager;
 import org.eclipse.jdt.ls.core.internal.preferences.Preferences;
 import org.eclipse.lsp4j.jsonrpc.Launcher;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.json.JsonRpcMethod;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.json.StreamMessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.services.ServiceEndpoints;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
@@ -73,6 +89,11 @@ public class JavaLanguageServerPlugin implements BundleActivator {
 	public static final String SERVER_SOURCE_ID = "Java";
 
 	public static final String PLUGIN_ID = "org.eclipse.jdt.ls.core";
+	/**
+	 * Name of the file, in the workspace metadata, the server metrics are
+	 * dumped to.
+	 */
+	private static final String METRICS_FILE = "jdt.ls-metrics.json";
 	private static JavaLanguageServerPlugin pluginInstance;
 	private static BundleContext context;
 	private ServiceTracker<IProxyService, IProxyService> proxyServiceTracker = null;
@@ -85,6 +106,8 @@ public class JavaLanguageServerPlugin implements BundleActivator {
 	private ContentProviderManager contentProviderManager;
 
 	private JDTLanguageServer protocol;
+	private LanguageServerDaemon daemon;
+	private final AtomicInteger sessionCount = new AtomicInteger();
 
 	private PreferenceManager preferenceManager;
 
@@ -92,6 +115,21 @@ public class JavaLanguageServerPlugin implements BundleActivator {
 
 		@Override
 		public void preferencesChange(Preferences oldPreferences, Preferences newPreferences) {
+			if (newPreferences != null && (oldPreferences == null || oldPreferences.getAstCacheSize() != newPreferences.getAstCacheSize())) {
+				SharedASTProvider.getInstance().setCacheSize(newPreferences.getAstCacheSize());
+			}
+			if (newPreferences != null && (oldPreferences == null || oldPreferences.getMetricsDumpInterval() != newPreferences.getMetricsDumpInterval())) {
+				File metricsFile = ResourcesPlugin.getWorkspace().getRoot().getLocation().append(".metadata").append(METRICS_FILE).toFile();
+				MetricsRegistry.getInstance().setPeriodicDump(metricsFile, newPreferences.getMetricsDumpInterval());
+			}
+			if (newPreferences != null) {
+				for (JDTLanguageServer session : getSessions()) {
+					RequestExecutor requestExecutor = session.getRequestExecutor();
+					requestExecutor.setLaneSize(Lane.INTERACTIVE, newPreferences.getInteractiveRequestsLaneSize());
+					requestExecutor.setLaneSize(Lane.NAVIGATION, newPreferences.getNavigationRequestsLaneSize());
+					requestExecutor.setLaneSize(Lane.BULK, newPreferences.getBulkRequestsLaneSize());
+				}
+			}
 			if (contentProviderManager == null) {
 				return;
 			}
@@ -235,11 +273,89 @@ public class JavaLanguageServerPlugin implements BundleActivator {
 	}
 
 	private void startConnection() throws IOException {
+		int daemonPort = LanguageServerDaemon.getDaemonPort();
+		if (daemonPort >= 0) {
+			daemon = new LanguageServerDaemon(() -> new JDTLanguageServer(projectsManager, preferenceManager), this::connect, ConnectionStreamFactory.getTransportBufferSize());
+			WorkingCopyOwner.setPrimaryBufferProvider(daemon.getWorkingCopyOwner());
+			File tokenFile = LanguageServerDaemon.getDaemonTokenFile();
+			if (tokenFile == null) {
+				tokenFile = Platform.getStateLocation(context.getBundle()).append("daemon.token").toFile();
+			}
+			daemon.start(daemonPort, tokenFile);
+			logInfo("Java LS daemon listening on port " + daemon.getPort() + ", token written to " + tokenFile);
+			return;
+		}
 		protocol = new JDTLanguageServer(projectsManager, preferenceManager);
 		ConnectionStreamFactory connectionFactory = new ConnectionStreamFactory();
-		Launcher<JavaLanguageClient> launcher = Launcher.createLauncher(protocol, JavaLanguageClient.class, connectionFactory.getInputStream(), connectionFactory.getOutputStream());
-		protocol.connectClient(launcher.getRemoteProxy());
-		launcher.startListening();
+		connect(protocol, connectionFactory.getInputStream(), connectionFactory.getOutputStream());
+	}
+
+	/**
+	 * Connects a server to its client.
+	 *
+	 * @return the future completing when the client is gone
+	 */
+	private Future<?> connect(JDTLanguageServer server, InputStream in, OutputStream out) {
+		// outgoing messages are serialized with the specialized type adapters
+		MessageJsonHandler jsonHandler = createJsonHandler();
+		// buffered transport: messages are written in chunks, without being serialized to a string first
+		MessageConsumer output = out instanceof ChannelOutputStream ? new ChunkedMessageConsumer(out, jsonHandler) : new StreamMessageConsumer(out, jsonHandler);
+		MessageTraceRecorder recorder = openTraceRecorder(jsonHandler);
+		Function<MessageConsumer, MessageConsumer> wrapper = (consumer) -> {
+			// the outgoing messages are consumed by the stream consumer, the incoming ones by the endpoint
+			boolean outgoing = consumer instanceof StreamMessageConsumer;
+			MessageConsumer wrapped = outgoing ? output : consumer;
+			return recorder == null ? wrapped : recorder.record(wrapped, outgoing ? MessageTraceRecorder.TO_CLIENT : MessageTraceRecorder.FROM_CLIENT);
+		};
+		Launcher<JavaLanguageClient> launcher = Launcher.createLauncher(server, JavaLanguageClient.class, in, out, Executors.newCachedThreadPool(), wrapper);
+		server.connectClient(launcher.getRemoteProxy());
+		return launcher.startListening();
+	}
+
+	/**
+	 * @return the servers connected to a client: the sessions of the daemon,
+	 *         in daemon mode
+	 */
+	private Collection<JDTLanguageServer> getSessions() {
+		if (daemon != null) {
+			return daemon.getSessions();
+		}
+		return protocol == null ? Collections.emptyList() : Collections.singletonList(protocol);
+	}
+
+	/**
+	 * @return the daemon serving the clients, or <code>null</code> if the
+	 *         server has a single client
+	 */
+	public static LanguageServerDaemon getDaemon() {
+		return pluginInstance == null ? null : pluginInstance.daemon;
+	}
+
+	/**
+	 * @return the recorder of the messages exchanged with the client, or
+	 *         <code>null</code> if <code>TRACE_FILE</code> isn't set
+	 */
+	private MessageTraceRecorder openTraceRecorder(MessageJsonHandler jsonHandler) {
+		int session = sessionCount.incrementAndGet();
+		File traceFile = MessageTraceRecorder.getTraceFile(daemon == null ? 0 : session);
+		if (traceFile == null) {
+			return null;
+		}
+		try {
+			MessageTraceRecorder recorder = MessageTraceRecorder.open(traceFile, jsonHandler);
+			logInfo("Recording the messages to " + traceFile);
+			return recorder;
+		} catch (IOException e) {
+			logException("Failed to open the trace " + traceFile, e);
+			return null;
+		}
+	}
+
+	private MessageJsonHandler createJsonHandler() {
+		Map<String, JsonRpcMethod> supportedMethods = new LinkedHashMap<>();
+		supportedMethods.putAll(ServiceEndpoints.getSupportedMethods(JavaLanguageClient.class));
+		supportedMethods.putAll(ServiceEndpoints.getSupportedMethods(JDTLanguageServer.class));
+		return new MessageJsonHandler(supportedMethods, LanguageServerTypeAdapters::register);
 	}
 
 	/*
@@ -258,6 +374,10 @@ public class JavaLanguageServerPlugin implements BundleActivator {
 		}
 		contentProviderManager = null;
 		languageServer = null;
+		if (daemon != null) {
+			daemon.stop();
+			daemon = null;
+		}
 	}
 
 	private String getThreadDump() {
@@ -274,7 +394,10 @@ public class JavaLanguageServerPlugin implements BundleActivator {
 	}
 
 	public WorkingCopyOwner getWorkingCopyOwner() {
-		return this.protocol.getWorkingCopyOwner();
+		if (daemon != null) {
+			return daemon.getWorkingCopyOwner();
+		}
+		return protocol == null ? null : protocol.getWorkingCopyOwner();
 	}
 
 	public static JavaLanguageServerPlugin getInstance() {
@@ -310,8 +433,10 @@ public class JavaLanguageServerPlugin implements BundleActivator {
 	}
 
 	public static void sendStatus(ServiceStatus serverStatus, String status) {
-		if (pluginInstance != null && pluginInstance.protocol != null) {
-			pluginInstance.protocol.sendStatus(serverStatus, status);
+		if (pluginInstance != null) {
+			for (JDTLanguageServer session : pluginInstance.getSessions()) {
+				session.sendStatus(serverStatus, status);
+			}
 		}
 	}
 
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.jdt.ls.core.internal;
 
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.lsp4j.TextDocumentIdentifier;
@@ -35,4 +36,11 @@ public interface JavaProtocolExtensions {
 	 */
 	@JsonNotification
 	void projectConfigurationUpdate(TextDocumentIdentifier documentUri);
+
+	/**
+	 * Request the server metrics: the latency histograms and outcome counts
+	 * of the requests, notifications and jobs, and the cache statistics
+	 */
+	@JsonRequest
+	CompletableFuture<Map<String, Object>> serverMetrics();
 }
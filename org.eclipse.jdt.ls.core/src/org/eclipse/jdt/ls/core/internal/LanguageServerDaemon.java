@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.eclipse.jdt.ls.core.internal.handlers.JDTLanguageServer;
+
+/**
+ * Listens on a loopback port and serves each client connecting to it in its
+ * own language server session.
+ *
+ * Any local user can connect to a loopback port: clients must first send the
+ * daemon's token, followed by a line feed. The token is written to a file
+ * only readable by the user running the daemon, and changes each time the
+ * daemon starts. Connections sending another token are closed.
+ *
+ * Sessions have their own {@link JavaClientConnection}, request executor and
+ * document handlers, and share the workspace: the Java model and index, the
+ * imported projects, the preferences and the caches. A root is only imported
+ * by the first session that opens it, until all the sessions using it are
+ * closed. Each session edits its own working copies of the documents, owned
+ * by its {@link LanguageServerWorkingCopyOwner}, and publishes their problems
+ * to its client. Closing a session leaves the daemon, and the workspace,
+ * running for the next ones.
+ *
+ * The notifications of the projects manager are shared as well: they are
+ * sent to the session whose request triggered them.
+ */
+public class LanguageServerDaemon {
+
+	/**
+	 * Environment variable, or system property, enabling the daemon mode: the
+	 * port to listen on, <code>0</code> for any free port.
+	 */
+	static final String DAEMON_PORT = "DAEMON_PORT";
+
+	/**
+	 * Environment variable, or system property, setting the file the token of
+	 * the daemon is written to.
+	 */
+	static final String DAEMON_TOKEN_FILE = "DAEMON_TOKEN_FILE";
+
+	private static final int TOKEN_BYTES = 32;
+
+	/**
+	 * Connects a session to its client.
+	 */
+	@FunctionalInterface
+	public interface SessionLauncher {
+		/**
+		 * @return the future completing when the client is gone
+		 */
+		Future<?> launch(JDTLanguageServer session, InputStream in, OutputStream out) throws IOException;
+	}
+
+	private final Supplier<JDTLanguageServer> sessionFactory;
+	private final SessionLauncher sessionLauncher;
+	private final int bufferSize;
+	/** session -> connection of its client */
+	private final Map<JDTLanguageServer, SocketChannel> sessions = new ConcurrentHashMap<>();
+	/** root -> sessions using it */
+	private final Map<String, Set<JDTLanguageServer>> roots = new HashMap<>();
+	private final AtomicInteger sessionIds = new AtomicInteger();
+	/** provides the buffers of the primary working copies, which no session edits */
+	private final LanguageServerWorkingCopyOwner workingCopyOwner = new LanguageServerWorkingCopyOwner((JavaClientConnection) null);
+	private ServerSocketChannel serverChannel;
+	private byte[] token;
+	private File tokenFile;
+
+	/**
+	 * @param sessionFactory
+	 *            creates the session of a new client
+	 * @param sessionLauncher
+	 *            connects a session to its client
+	 * @param bufferSize
+	 *            the size of the transport buffers, 0 for unbuffered streams
+	 */
+	public LanguageServerDaemon(Supplier<JDTLanguageServer> sessionFactory, SessionLauncher sessionLauncher, int bufferSize) {
+		this.sessionFactory = sessionFactory;
+		this.sessionLauncher = sessionLauncher;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * @return the port set by <code>DAEMON_PORT</code>, or -1 if the daemon
+	 *         mode isn't enabled
+	 */
+	static int getDaemonPort() {
+		String value = Environment.get(DAEMON_PORT);
+		if (value != null) {
+			try {
+				return Math.max(0, Integer.parseInt(value.trim()));
+			} catch (NumberFormatException e) {
+				JavaLanguageServerPlugin.logError("Invalid " + DAEMON_PORT + ": " + value);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the file set by <code>DAEMON_TOKEN_FILE</code>, or
+	 *         <code>null</code>
+	 */
+	static File getDaemonTokenFile() {
+		String value = Environment.get(DAEMON_TOKEN_FILE);
+		return value == null || value.trim().isEmpty() ? null : new File(value.trim());
+	}
+
+	/**
+	 * Starts accepting clients on the given loopback port.
+	 *
+	 * @param port
+	 *            the port, <code>0</code> for any free port
+	 * @param tokenFile
+	 *            the file to write the token of the daemon to, replaced if it
+	 *            exists
+	 */
+	public synchronized void start(int port, File tokenFile) throws IOException {
+		token = createToken();
+		writeToken(tokenFile, token);
+		this.tokenFile = tokenFile;
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		Thread acceptor = new Thread(this::accept, "Java LS daemon");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * @return the port the daemon listens on
+	 */
+	public synchronized int getPort() throws IOException {
+		return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+	}
+
+	/**
+	 * @return the file the token of the daemon is written to
+	 */
+	public synchronized File getTokenFile() {
+		return tokenFile;
+	}
+
+	/**
+	 * Stops accepting clients and closes the connected sessions.
+	 */
+	public void stop() {
+		synchronized (this) {
+			closeQuietly(serverChannel);
+			if (tokenFile != null) {
+				tokenFile.delete();
+			}
+		}
+		for (SocketChannel channel : sessions.values()) {
+			closeQuietly(channel);
+		}
+	}
+
+	/**
+	 * @return the sessions connected to a client
+	 */
+	public Collection<JDTLanguageServer> getSessions() {
+		return Collections.unmodifiableSet(sessions.keySet());
+	}
+
+	/**
+	 * Closes the connection of a session, once its client exited.
+	 */
+	public void close(JDTLanguageServer session) {
+		SocketChannel channel = sessions.get(session);
+		if (channel != null) {
+			closeQuietly(channel);
+		}
+	}
+
+	/**
+	 * Claims the import of a root, for the session initializing it.
+	 *
+	 * @return <code>true</code> if the root isn't used by another session, and
+	 *         must be imported
+	 */
+	public boolean claimRoot(String root, JDTLanguageServer session) {
+		String key = new File(root).getAbsoluteFile().toPath().normalize().toString();
+		synchronized (roots) {
+			Set<JDTLanguageServer> users = roots.computeIfAbsent(key, k -> new HashSet<>());
+			users.add(session);
+			return users.size() == 1;
+		}
+	}
+
+	/**
+	 * Releases the roots used by a closed session: a root no session uses
+	 * anymore is imported again by the next session opening it.
+	 */
+	void releaseRoots(JDTLanguageServer session) {
+		synchronized (roots) {
+			roots.values().removeIf(users -> users.remove(session) && users.isEmpty());
+		}
+	}
+
+	/**
+	 * @return the provider of the primary buffers, the sessions edit working
+	 *         copies of their own owner
+	 */
+	public LanguageServerWorkingCopyOwner getWorkingCopyOwner() {
+		return workingCopyOwner;
+	}
+
+	private void accept() {
+		while (true) {
+			SocketChannel channel;
+			try {
+				channel = serverChannel.accept();
+			} catch (ClosedChannelException e) {
+				return;
+			} catch (IOException e) {
+				JavaLanguageServerPlugin.logException("Failed to accept a client", e);
+				return;
+			}
+			int sessionId = sessionIds.incrementAndGet();
+			Thread session = new Thread(() -> serve(channel, sessionId), "Java LS session " + sessionId);
+			session.setDaemon(true);
+			session.start();
+		}
+	}
+
+	private void serve(SocketChannel channel, int sessionId) {
+		try {
+			if (!authenticate(channel)) {
+				JavaLanguageServerPlugin.logError("Rejected a client from " + channel.getRemoteAddress() + ": invalid token");
+				closeQuietly(channel);
+				return;
+			}
+		} catch (IOException e) {
+			JavaLanguageServerPlugin.logException("Failed to authenticate a client", e);
+			closeQuietly(channel);
+			return;
+		}
+		JDTLanguageServer session = sessionFactory.get();
+		session.setDaemon(this, sessionId);
+		try {
+			InputStream in;
+			OutputStream out;
+			if (bufferSize > 0) {
+				in = new ChannelInputStream(channel, bufferSize, true);
+				out = new ChannelOutputStream(channel, bufferSize, true);
+			} else {
+				in = channel.socket().getInputStream();
+				out = channel.socket().getOutputStream();
+			}
+			Future<?> listening = sessionLauncher.launch(session, in, out);
+			sessions.put(session, channel);
+			JavaLanguageServerPlugin.logInfo("Session connected from " + channel.getRemoteAddress() + ", " + sessions.size() + " active sessions");
+			listening.get();
+		} catch (IOException | ExecutionException e) {
+			JavaLanguageServerPlugin.logException("Session terminated", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			sessions.remove(session);
+			closeQuietly(channel);
+			session.disposeSession();
+			releaseRoots(session);
+			JavaLanguageServerPlugin.logInfo("Session closed, " + sessions.size() + " active sessions");
+		}
+	}
+
+	/**
+	 * Reads the token sent by a client, before any message: nothing past its
+	 * line feed is read from the channel.
+	 *
+	 * @return <code>true</code> if the client sent the daemon's token
+	 */
+	private boolean authenticate(SocketChannel channel) throws IOException {
+		byte[] expected;
+		synchronized (this) {
+			expected = token;
+		}
+		ByteBuffer received = ByteBuffer.allocate(expected.length + 1);
+		while (received.hasRemaining()) {
+			if (channel.read(received) < 0) {
+				return false;
+			}
+		}
+		received.flip();
+		byte[] sent = new byte[expected.length];
+		received.get(sent);
+		return MessageDigest.isEqual(expected, sent) && received.get() == '\n';
+	}
+
+	private static byte[] createToken() {
+		byte[] random = new byte[TOKEN_BYTES];
+		new SecureRandom().nextBytes(random);
+		StringBuilder hex = new StringBuilder(random.length * 2);
+		for (byte b : random) {
+			hex.append(String.format("%02x", b & 0xff));
+		}
+		return hex.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Writes the token to a new file, only readable by the owner where the
+	 * file system supports POSIX permissions.
+	 */
+	private static void writeToken(File file, byte[] token) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			Files.createDirectories(parent.toPath());
+		}
+		Files.deleteIfExists(file.toPath());
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			// created with its permissions: the token is never readable by others
+			Files.createFile(file.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} else {
+			Files.createFile(file.toPath());
+		}
+		Files.write(file.toPath(), token);
+	}
+
+	private static void closeQuietly(Channel channel) {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+}
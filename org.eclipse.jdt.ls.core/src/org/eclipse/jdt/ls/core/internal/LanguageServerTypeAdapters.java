@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.lsp4j.Command;
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.TextEdit;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Hand-written Gson type adapters for the LSP payloads sent in large numbers:
+ * completion items, diagnostics, symbols, locations and text edits.
+ *
+ * They write the fields straight to the {@link JsonWriter}, instead of going
+ * through the reflective adapters, one per nested object, and the adapter
+ * lookups of each field. The output is the same as lsp4j's: enums are written
+ * as their value and null fields are omitted. The adapters follow the fields
+ * of the lsp4j model, so they must be updated with it. Reading is left to the
+ * reflective adapters.
+ */
+public final class LanguageServerTypeAdapters {
+
+	private LanguageServerTypeAdapters() {
+	}
+
+	/**
+	 * Registers the adapters on the given builder.
+	 */
+	public static void register(GsonBuilder builder) {
+		builder.registerTypeAdapterFactory(new Factory());
+	}
+
+	static final class Factory implements TypeAdapterFactory {
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+			Class<? super T> rawType = type.getRawType();
+			if (rawType == CompletionItem.class) {
+				return (TypeAdapter<T>) new WriteAdapter<>(CompletionItem.class, gson, gson.getDelegateAdapter(this, TypeToken.get(CompletionItem.class)), LanguageServerTypeAdapters::writeCompletionItem);
+			}
+			if (rawType == Diagnostic.class) {
+				return (TypeAdapter<T>) new WriteAdapter<>(Diagnostic.class, gson, gson.getDelegateAdapter(this, TypeToken.get(Diagnostic.class)), LanguageServerTypeAdapters::writeDiagnostic);
+			}
+			if (rawType == SymbolInformation.class) {
+				return (TypeAdapter<T>) new WriteAdapter<>(SymbolInformation.class, gson, gson.getDelegateAdapter(this, TypeToken.get(SymbolInformation.class)), LanguageServerTypeAdapters::writeSymbolInformation);
+			}
+			if (rawType == Location.class) {
+				return (TypeAdapter<T>) new WriteAdapter<>(Location.class, gson, gson.getDelegateAdapter(this, TypeToken.get(Location.class)), (out, location, g) -> writeLocation(out, location));
+			}
+			if (rawType == TextEdit.class) {
+				return (TypeAdapter<T>) new WriteAdapter<>(TextEdit.class, gson, gson.getDelegateAdapter(this, TypeToken.get(TextEdit.class)), (out, edit, g) -> writeTextEdit(out, edit));
+			}
+			return null;
+		}
+	}
+
+	@FunctionalInterface
+	private interface Writer<T> {
+		void write(JsonWriter out, T value, Gson gson) throws IOException;
+	}
+
+	private static final class WriteAdapter<T> extends TypeAdapter<T> {
+
+		private final Class<T> type;
+		private final Gson gson;
+		private final TypeAdapter<T> delegate;
+		private final Writer<T> writer;
+
+		private WriteAdapter(Class<T> type, Gson gson, TypeAdapter<T> delegate, Writer<T> writer) {
+			this.type = type;
+			this.gson = gson;
+			this.delegate = delegate;
+			this.writer = writer;
+		}
+
+		@Override
+		public void write(JsonWriter out, T value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+			} else if (value.getClass() != type) {
+				// subclasses may have more fields
+				delegate.write(out, value);
+			} else {
+				writer.write(out, value, gson);
+			}
+		}
+
+		@Override
+		public T read(JsonReader in) throws IOException {
+			return delegate.read(in);
+		}
+	}
+
+	private static void writeCompletionItem(JsonWriter out, CompletionItem item, Gson gson) throws IOException {
+		out.beginObject();
+		writeString(out, "label", item.getLabel());
+		if (item.getKind() != null) {
+			out.name("kind").value(item.getKind().getValue());
+		}
+		writeString(out, "detail", item.getDetail());
+		writeString(out, "documentation", item.getDocumentation());
+		writeString(out, "sortText", item.getSortText());
+		writeString(out, "filterText", item.getFilterText());
+		writeString(out, "insertText", item.getInsertText());
+		if (item.getInsertTextFormat() != null) {
+			out.name("insertTextFormat").value(item.getInsertTextFormat().getValue());
+		}
+		if (item.getTextEdit() != null) {
+			out.name("textEdit");
+			writeTextEdit(out, item.getTextEdit());
+		}
+		if (item.getAdditionalTextEdits() != null) {
+			out.name("additionalTextEdits").beginArray();
+			for (TextEdit edit : item.getAdditionalTextEdits()) {
+				writeTextEdit(out, edit);
+			}
+			out.endArray();
+		}
+		if (item.getCommand() != null) {
+			out.name("command");
+			writeCommand(out, item.getCommand(), gson);
+		}
+		if (item.getData() != null) {
+			out.name("data");
+			writeValue(out, item.getData(), gson);
+		}
+		out.endObject();
+	}
+
+	private static void writeDiagnostic(JsonWriter out, Diagnostic diagnostic, Gson gson) throws IOException {
+		out.beginObject();
+		if (diagnostic.getRange() != null) {
+			out.name("range");
+			writeRange(out, diagnostic.getRange());
+		}
+		if (diagnostic.getSeverity() != null) {
+			out.name("severity").value(diagnostic.getSeverity().getValue());
+		}
+		writeString(out, "code", diagnostic.getCode());
+		writeString(out, "source", diagnostic.getSource());
+		writeString(out, "message", diagnostic.getMessage());
+		out.endObject();
+	}
+
+	private static void writeSymbolInformation(JsonWriter out, SymbolInformation symbol, Gson gson) throws IOException {
+		out.beginObject();
+		writeString(out, "name", symbol.getName());
+		if (symbol.getKind() != null) {
+			out.name("kind").value(symbol.getKind().getValue());
+		}
+		if (symbol.getLocation() != null) {
+			out.name("location");
+			writeLocation(out, symbol.getLocation());
+		}
+		writeString(out, "containerName", symbol.getContainerName());
+		out.endObject();
+	}
+
+	private static void writeLocation(JsonWriter out, Location location) throws IOException {
+		out.beginObject();
+		writeString(out, "uri", location.getUri());
+		if (location.getRange() != null) {
+			out.name("range");
+			writeRange(out, location.getRange());
+		}
+		out.endObject();
+	}
+
+	private static void writeTextEdit(JsonWriter out, TextEdit edit) throws IOException {
+		if (edit == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		if (edit.getRange() != null) {
+			out.name("range");
+			writeRange(out, edit.getRange());
+		}
+		writeString(out, "newText", edit.getNewText());
+		out.endObject();
+	}
+
+	private static void writeCommand(JsonWriter out, Command command, Gson gson) throws IOException {
+		out.beginObject();
+		writeString(out, "title", command.getTitle());
+		writeString(out, "command", command.getCommand());
+		List<Object> arguments = command.getArguments();
+		if (arguments != null) {
+			out.name("arguments").beginArray();
+			for (Object argument : arguments) {
+				writeValue(out, argument, gson);
+			}
+			out.endArray();
+		}
+		out.endObject();
+	}
+
+	private static void writeRange(JsonWriter out, Range range) throws IOException {
+		out.beginObject();
+		if (range.getStart() != null) {
+			out.name("start");
+			writePosition(out, range.getStart());
+		}
+		if (range.getEnd() != null) {
+			out.name("end");
+			writePosition(out, range.getEnd());
+		}
+		out.endObject();
+	}
+
+	private static void writePosition(JsonWriter out, Position position) throws IOException {
+		out.beginObject();
+		out.name("line").value(position.getLine());
+		out.name("character").value(position.getCharacter());
+		out.endObject();
+	}
+
+	private static void writeString(JsonWriter out, String name, String value) throws IOException {
+		if (value != null) {
+			out.name(name).value(value);
+		}
+	}
+
+	/**
+	 * Writes an arbitrary value. The maps of strings used as completion data
+	 * are written directly, other values through their Gson adapter.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void writeValue(JsonWriter out, Object value, Gson gson) throws IOException {
+		if (value == null) {
+			out.nullValue();
+		} else if (value instanceof String) {
+			out.value((String) value);
+		} else if (value instanceof Map && isStringMap((Map<?, ?>) value)) {
+			out.beginObject();
+			for (Map.Entry<String, String> entry : ((Map<String, String>) value).entrySet()) {
+				writeString(out, entry.getKey(), entry.getValue());
+			}
+			out.endObject();
+		} else {
+			((TypeAdapter<Object>) gson.getAdapter(value.getClass())).write(out, value);
+		}
+	}
+
+	private static boolean isStringMap(Map<?, ?> map) {
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			if (!(entry.getKey() instanceof String) || !(entry.getValue() == null || entry.getValue() instanceof String)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
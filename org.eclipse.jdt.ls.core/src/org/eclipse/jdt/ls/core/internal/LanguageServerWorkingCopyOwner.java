@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.jdt.ls.core.internal;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.jdt.core.IBuffer;
@@ -17,6 +19,8 @@ import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IProblemRequestor;
 import org.eclipse.jdt.core.WorkingCopyOwner;
 import org.eclipse.jdt.ls.core.internal.handlers.DiagnosticsHandler;
+import org.eclipse.jdt.ls.core.internal.preferences.PreferenceManager;
+import org.eclipse.jdt.ls.core.internal.preferences.Preferences.DocumentBuffer;
 
 /**
  * {@link WorkingCopyOwner} implementation for LanguageServer
@@ -26,29 +30,53 @@ import org.eclipse.jdt.ls.core.internal.handlers.DiagnosticsHandler;
  */
 public final class LanguageServerWorkingCopyOwner extends WorkingCopyOwner {
 
+	private static final AtomicInteger IDS = new AtomicInteger();
+
 	private final JavaClientConnection connection;
+	private final int id = IDS.incrementAndGet();
 	/**
-	 * @param javaLanguageServerPlugin
+	 * @param connection
+	 *            the connection problems are reported to, <code>null</code> if
+	 *            they aren't reported
 	 */
 	public LanguageServerWorkingCopyOwner(JavaClientConnection connection) {
 		this.connection= connection;
 	}
 
+	/**
+	 * @return the number of this owner, distinguishing the working copies of
+	 *         the same unit owned by different sessions
+	 */
+	public int getId() {
+		return id;
+	}
+
 	@Override
 	public IBuffer createBuffer(ICompilationUnit workingCopy) {
 		ICompilationUnit original= workingCopy.getPrimary();
 		IResource resource= original.getResource();
 		if (resource instanceof IFile) {
+			if (getDocumentBuffer() == DocumentBuffer.pieceTable) {
+				return new PieceTableBuffer(workingCopy, (IFile) resource);
+			}
 			return new DocumentAdapter(workingCopy, (IFile)resource);
 		}
 		return DocumentAdapter.Null;
 	}
 
+	private static DocumentBuffer getDocumentBuffer() {
+		PreferenceManager preferenceManager = JavaLanguageServerPlugin.getPreferencesManager();
+		if (preferenceManager == null || preferenceManager.getPreferences() == null) {
+			return DocumentBuffer.document;
+		}
+		return preferenceManager.getPreferences().getDocumentBuffer();
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.jdt.core.WorkingCopyOwner#getProblemRequestor(org.eclipse.jdt.core.ICompilationUnit)
 	 */
 	@Override
 	public IProblemRequestor getProblemRequestor(ICompilationUnit cu) {
-		return new DiagnosticsHandler(connection, cu);
+		return connection == null ? null : new DiagnosticsHandler(connection, cu);
 	}
 }
\ No newline at end of file
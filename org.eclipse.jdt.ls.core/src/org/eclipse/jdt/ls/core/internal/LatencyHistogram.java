@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations, in microseconds.
+ *
+ * Durations below 16&micro;s have their own bucket; above, each power of two
+ * is split into 8 buckets, so percentiles are reported with a relative error
+ * of at most 12.5%, whatever the magnitude of the durations. Recording only
+ * increments counters and never allocates.
+ */
+public final class LatencyHistogram {
+
+	private static final int LINEAR_BUCKETS = 16;
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_BITS = 4;
+	private static final int BUCKETS = LINEAR_BUCKETS + (Long.SIZE - 1 - LINEAR_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param durationNanos
+	 *            the duration, in nanoseconds
+	 */
+	public void record(long durationNanos) {
+		long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(durationNanos));
+		buckets.incrementAndGet(indexOf(micros));
+		count.increment();
+		sum.add(micros);
+		if (micros > max.get()) {
+			max.accumulateAndGet(micros, Math::max);
+		}
+	}
+
+	static int indexOf(long micros) {
+		if (micros < LINEAR_BUCKETS) {
+			return (int) micros;
+		}
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+		int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR_BUCKETS + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Returns the highest value of the given bucket.
+	 */
+	static long upperBoundOf(int index) {
+		if (index < LINEAR_BUCKETS) {
+			return index;
+		}
+		int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + LINEAR_BITS;
+		int subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+		int shift = exponent - SUB_BUCKET_BITS;
+		long lowerBound = ((long) (SUB_BUCKETS + subBucket)) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the longest recorded duration, in microseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the mean of the recorded durations, in microseconds
+	 */
+	public long getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : sum.sum() / n;
+	}
+
+	/**
+	 * Returns the given percentile of the recorded durations. The counters are
+	 * read without stopping the recording, so the result is approximate while
+	 * durations are being recorded.
+	 *
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 * @return the duration, in microseconds, or 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				// the bucket bound may exceed the actual maximum
+				return Math.min(upperBoundOf(i), max.get());
+			}
+		}
+		return max.get();
+	}
+}
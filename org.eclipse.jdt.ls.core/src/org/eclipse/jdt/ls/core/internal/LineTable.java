@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.util.Arrays;
+
+import org.eclipse.jface.text.BadLocationException;
+
+/**
+ * Maps line/character positions to offsets, and back, for a text that is
+ * modified incrementally.
+ *
+ * Lines are delimited by <code>\n</code>, <code>\r\n</code> or
+ * <code>\r</code>, as in the language server protocol. The table is built
+ * once; afterwards {@link #replace(int, int, String, CharSequence)} only scans
+ * the replaced text. Line offsets following an edit are shifted lazily: the
+ * pending shift is only materialized for the lines between two successive
+ * edits, which keeps consecutive edits in the same area (e.g. typing)
+ * independent of the size of the document.
+ */
+public final class LineTable {
+
+	/**
+	 * Offsets of the line starts. Entries at index <code>shiftFrom</code> and
+	 * above must be added <code>shift</code> to get their actual value.
+	 */
+	private int[] starts = new int[16];
+	private int lineCount;
+	private int shiftFrom;
+	private int shift;
+	private int length;
+	private long stamp = -1;
+
+	public LineTable(CharSequence content) {
+		set(content);
+	}
+
+	private LineTable(LineTable other) {
+		starts = Arrays.copyOf(other.starts, other.lineCount);
+		lineCount = other.lineCount;
+		shiftFrom = other.shiftFrom;
+		shift = other.shift;
+		length = other.length;
+		stamp = other.stamp;
+	}
+
+	/**
+	 * @return a copy of this table, updated independently
+	 */
+	public LineTable copy() {
+		return new LineTable(this);
+	}
+
+	/**
+	 * Rebuilds the table for the given content.
+	 */
+	public void set(CharSequence content) {
+		lineCount = 0;
+		shiftFrom = 0;
+		shift = 0;
+		length = content.length();
+		add(0);
+		for (int i = 1; i <= length; i++) {
+			if (isLineStart(content, i)) {
+				add(i);
+			}
+		}
+		shiftFrom = lineCount;
+	}
+
+	/**
+	 * Updates the table after <code>length</code> characters at
+	 * <code>offset</code> were replaced with <code>text</code>.
+	 *
+	 * @param content
+	 *            the content after the replacement; only the characters
+	 *            surrounding the replaced range are read
+	 */
+	public void replace(int offset, int length, String text, CharSequence content) throws BadLocationException {
+		if (offset < 0 || length < 0 || offset + length > this.length) {
+			throw new BadLocationException("Invalid range " + offset + ":" + length + " for length " + this.length);
+		}
+		int delta = text.length() - length;
+		// line starts depending on the replaced characters: their offset lies within [offset, offset + length]
+		int first = indexOfFirstStartAtOrAfter(Math.max(offset, 1));
+		int last = indexOfFirstStartAtOrAfter(offset + length + 1);
+		moveShift(first);
+		int newLength = this.length + delta;
+		int added = 0;
+		int[] inserted = null;
+		for (int i = Math.max(offset, 1), end = Math.min(offset + text.length(), newLength); i <= end; i++) {
+			if (isLineStart(content, i)) {
+				if (inserted == null) {
+					inserted = new int[Math.max(4, text.length() + 1)];
+				}
+				inserted[added++] = i;
+			}
+		}
+		int removed = last - first;
+		if (added != removed) {
+			ensureCapacity(lineCount - removed + added);
+			System.arraycopy(starts, last, starts, first + added, lineCount - last);
+			lineCount += added - removed;
+		}
+		for (int i = 0; i < added; i++) {
+			starts[first + i] = inserted[i];
+		}
+		// the inserted starts are actual values, the ones after them are still pending the previous shift
+		shiftFrom = first + added;
+		shift += delta;
+		this.length = newLength;
+	}
+
+	/**
+	 * @return the offset of the given position
+	 * @throws BadLocationException
+	 *             if the line does not exist
+	 */
+	public int getOffset(int line, int character) throws BadLocationException {
+		if (line < 0 || line >= lineCount) {
+			throw new BadLocationException("Invalid line " + line + ", the document has " + lineCount + " lines");
+		}
+		return get(line) + character;
+	}
+
+	public int getLineOffset(int line) throws BadLocationException {
+		return getOffset(line, 0);
+	}
+
+	/**
+	 * @return the line containing the given offset
+	 */
+	public int getLineOfOffset(int offset) throws BadLocationException {
+		if (offset < 0 || offset > length) {
+			throw new BadLocationException("Invalid offset " + offset + " for length " + length);
+		}
+		return indexOfFirstStartAtOrAfter(offset + 1) - 1;
+	}
+
+	public int getNumberOfLines() {
+		return lineCount;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the modification stamp of the content this table was last
+	 *         updated for, as set by {@link #setStamp(long)}
+	 */
+	public long getStamp() {
+		return stamp;
+	}
+
+	public void setStamp(long stamp) {
+		this.stamp = stamp;
+	}
+
+	private int get(int index) {
+		return index >= shiftFrom ? starts[index] + shift : starts[index];
+	}
+
+	/**
+	 * @return the index of the first line starting at or after
+	 *         <code>offset</code>, or the number of lines if there is none
+	 */
+	private int indexOfFirstStartAtOrAfter(int offset) {
+		int low = 0;
+		int high = lineCount;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (get(mid) < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Moves the start of the pending shift to the given index, only touching
+	 * the entries in between.
+	 */
+	private void moveShift(int index) {
+		if (shift == 0) {
+			shiftFrom = index;
+			return;
+		}
+		for (int i = shiftFrom; i < index; i++) {
+			starts[i] += shift;
+		}
+		for (int i = index; i < shiftFrom; i++) {
+			starts[i] -= shift;
+		}
+		shiftFrom = index;
+	}
+
+	private void add(int offset) {
+		ensureCapacity(lineCount + 1);
+		starts[lineCount++] = offset;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > starts.length) {
+			starts = Arrays.copyOf(starts, Math.max(capacity, starts.length * 2));
+		}
+	}
+
+	/**
+	 * A line starts at <code>offset</code> when it follows a <code>\n</code>,
+	 * or a <code>\r</code> that is not part of a <code>\r\n</code> delimiter.
+	 */
+	private static boolean isLineStart(CharSequence content, int offset) {
+		char previous = content.charAt(offset - 1);
+		if (previous == '\n') {
+			return true;
+		}
+		return previous == '\r' && (offset == content.length() || content.charAt(offset) != '\n');
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+
+/**
+ * Records the JSON-RPC messages exchanged with the client, for the session to
+ * be replayed later.
+ *
+ * The trace has one message per line: the time it was received or sent, in
+ * microseconds since the start of the recording, its direction,
+ * <code>&gt;</code> from the client or <code>&lt;</code> to the client, and
+ * the message, as single-line JSON. Lines starting with <code>#</code> are
+ * comments. The trace is compressed when the file name ends with
+ * <code>.gz</code>.
+ */
+public class MessageTraceRecorder implements Closeable {
+
+	/**
+	 * Environment variable, or system property, enabling the recording: the
+	 * file the trace is written to.
+	 */
+	public static final String TRACE_FILE = "TRACE_FILE";
+	public static final char FROM_CLIENT = '>';
+	public static final char TO_CLIENT = '<';
+
+	private final Writer writer;
+	private final MessageJsonHandler jsonHandler;
+	private final long start = System.nanoTime();
+	private final Thread shutdownHook = new Thread(this::close, "Java LS trace recorder");
+	private boolean closed;
+
+	public MessageTraceRecorder(Writer writer, MessageJsonHandler jsonHandler) {
+		this.writer = writer;
+		this.jsonHandler = jsonHandler;
+	}
+
+	/**
+	 * Opens a recorder writing to the given file, closed when the client exits
+	 * or, at the latest, with the VM.
+	 */
+	public static MessageTraceRecorder open(File file, MessageJsonHandler jsonHandler) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		if (file.getName().endsWith(".gz")) {
+			// flushed with each message, so a trace survives a crash
+			out = new GZIPOutputStream(out, true);
+		}
+		MessageTraceRecorder recorder = new MessageTraceRecorder(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), jsonHandler);
+		recorder.writer.write("# Java LS " + JavaLanguageServerPlugin.getVersion() + " trace\n");
+		Runtime.getRuntime().addShutdownHook(recorder.shutdownHook);
+		return recorder;
+	}
+
+	/**
+	 * @return the file set by <code>TRACE_FILE</code>, numbered for the given
+	 *         session in daemon mode, or <code>null</code> if the recording
+	 *         isn't enabled
+	 */
+	static File getTraceFile(int session) {
+		String path = Environment.get(TRACE_FILE);
+		if (path == null || path.isEmpty()) {
+			return null;
+		}
+		if (session <= 0) {
+			return new File(path);
+		}
+		File file = new File(path);
+		String name = file.getName();
+		int dot = name.indexOf('.');
+		name = dot < 0 ? name + "-" + session : name.substring(0, dot) + "-" + session + name.substring(dot);
+		return new File(file.getParentFile(), name);
+	}
+
+	/**
+	 * Wraps a consumer to record the messages it consumes.
+	 *
+	 * @param direction
+	 *            {@link #FROM_CLIENT} or {@link #TO_CLIENT}
+	 */
+	public MessageConsumer record(MessageConsumer consumer, char direction) {
+		return (message) -> {
+			write(message, direction);
+			consumer.consume(message);
+		};
+	}
+
+	void write(Message message, char direction) {
+		long micros = (System.nanoTime() - start) / 1000;
+		synchronized (writer) {
+			if (closed) {
+				return;
+			}
+			try {
+				writer.write(Long.toString(micros));
+				writer.write(' ');
+				writer.write(direction);
+				writer.write(' ');
+				jsonHandler.serialize(message, writer);
+				writer.write('\n');
+				writer.flush();
+			} catch (IOException | RuntimeException e) {
+				JavaLanguageServerPlugin.logException("Failed to record a message, stopping the recording", e);
+				closeWriter();
+				return;
+			}
+		}
+		if (direction == FROM_CLIENT && message instanceof NotificationMessage && "exit".equals(((NotificationMessage) message).getMethod())) {
+			close();
+		}
+	}
+
+	@Override
+	public void close() {
+		synchronized (writer) {
+			if (closed) {
+				return;
+			}
+			closeWriter();
+		}
+		if (Thread.currentThread() != shutdownHook) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException e) {
+				// shutting down
+			}
+		}
+	}
+
+	private void closeWriter() {
+		closed = true;
+		try {
+			writer.close();
+		} catch (IOException e) {
+			JavaLanguageServerPlugin.logException("Failed to close the trace", e);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.google.gson.GsonBuilder;
+
+/**
+ * Registry of the server metrics: timers, for the LSP methods, jobs and
+ * expensive operations, and gauges, for the caches and queues.
+ *
+ * A timer counts the operations by outcome, and keeps a
+ * {@link LatencyHistogram} of their durations. Recording is lock-free, so
+ * timers can be used on any path. The metrics are exposed as a
+ * {@link #snapshot()}, which may also be dumped to a file periodically.
+ */
+public final class MetricsRegistry {
+
+	public enum Outcome {
+		SUCCESS, ERROR, CANCELLED
+	}
+
+	private static MetricsRegistry instance = new MetricsRegistry();
+
+	private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+	private Job dumpJob;
+
+	private MetricsRegistry() {
+	}
+
+	public static MetricsRegistry getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the timer of the given name, creating it if needed.
+	 */
+	public Timer timer(String name) {
+		Timer timer = timers.get(name);
+		return timer != null ? timer : timers.computeIfAbsent(name, (n) -> new Timer());
+	}
+
+	/**
+	 * Registers a gauge, replacing any gauge of the same name.
+	 */
+	public void gauge(String name, Supplier<? extends Number> value) {
+		gauges.put(name, value);
+	}
+
+	public void removeGauge(String name) {
+		gauges.remove(name);
+	}
+
+	/**
+	 * Records the duration and outcome of the given asynchronous operation,
+	 * once it completes.
+	 *
+	 * @return the given future
+	 */
+	public <T> CompletableFuture<T> time(String name, CompletableFuture<T> future) {
+		long start = System.nanoTime();
+		Timer timer = timer(name);
+		future.whenComplete((result, error) -> timer.record(System.nanoTime() - start, outcomeOf(error)));
+		return future;
+	}
+
+	public static Outcome outcomeOf(Throwable error) {
+		if (error == null) {
+			return Outcome.SUCCESS;
+		}
+		if (error instanceof CompletionException && error.getCause() != null) {
+			error = error.getCause();
+		}
+		if (error instanceof CancellationException || error instanceof OperationCanceledException) {
+			return Outcome.CANCELLED;
+		}
+		return Outcome.ERROR;
+	}
+
+	public static Outcome outcomeOf(IStatus status) {
+		if (status.matches(IStatus.ERROR)) {
+			return Outcome.ERROR;
+		}
+		return status.matches(IStatus.CANCEL) ? Outcome.CANCELLED : Outcome.SUCCESS;
+	}
+
+	/**
+	 * Returns the current values of the metrics, in a form suitable for JSON
+	 * serialization. Durations are reported in milliseconds.
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> timerValues = new TreeMap<>();
+		timers.forEach((name, timer) -> timerValues.put(name, timer.snapshot()));
+		Map<String, Object> gaugeValues = new TreeMap<>();
+		gauges.forEach((name, gauge) -> {
+			try {
+				gaugeValues.put(name, gauge.get());
+			} catch (RuntimeException e) {
+				// a gauge must not break the snapshot
+				gaugeValues.put(name, null);
+			}
+		});
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("timestamp", System.currentTimeMillis());
+		snapshot.put("timers", timerValues);
+		snapshot.put("gauges", gaugeValues);
+		return snapshot;
+	}
+
+	/**
+	 * Writes a snapshot of the metrics, as JSON, to the given file.
+	 */
+	public void dump(File file) throws IOException {
+		String json = new GsonBuilder().setPrettyPrinting().serializeNulls().create().toJson(snapshot());
+		// written aside then moved, so readers never see a partial file
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		Files.write(temp.toPath(), json.getBytes(StandardCharsets.UTF_8));
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Dumps the metrics to the given file periodically.
+	 *
+	 * @param file
+	 *            the file to write
+	 * @param intervalSeconds
+	 *            the dump interval; periodic dumps are stopped if it's not
+	 *            positive
+	 */
+	public synchronized void setPeriodicDump(File file, long intervalSeconds) {
+		if (dumpJob != null) {
+			dumpJob.cancel();
+			dumpJob = null;
+		}
+		if (file == null || intervalSeconds <= 0) {
+			return;
+		}
+		long interval = TimeUnit.SECONDS.toMillis(intervalSeconds);
+		dumpJob = new Job("Dump server metrics") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					dump(file);
+				} catch (IOException e) {
+					JavaLanguageServerPlugin.logException("Failed to dump the server metrics to " + file, e);
+				}
+				if (!monitor.isCanceled()) {
+					schedule(interval);
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		dumpJob.setSystem(true);
+		dumpJob.schedule(interval);
+	}
+
+	/**
+	 * Forgets all recorded values. For testing purposes.
+	 */
+	public void reset() {
+		timers.clear();
+	}
+
+	/**
+	 * Counts operations by outcome and records their durations.
+	 */
+	public static final class Timer {
+
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder cancellations = new LongAdder();
+
+		public void record(long durationNanos, Outcome outcome) {
+			histogram.record(durationNanos);
+			if (outcome == Outcome.ERROR) {
+				errors.increment();
+			} else if (outcome == Outcome.CANCELLED) {
+				cancellations.increment();
+			}
+		}
+
+		/**
+		 * Records a successful operation that started at the given
+		 * {@link System#nanoTime()}.
+		 */
+		public void recordSince(long startNanos) {
+			record(System.nanoTime() - startNanos, Outcome.SUCCESS);
+		}
+
+		public long getCount() {
+			return histogram.getCount();
+		}
+
+		public long getErrorCount() {
+			return errors.sum();
+		}
+
+		public long getCancelledCount() {
+			return cancellations.sum();
+		}
+
+		public LatencyHistogram getHistogram() {
+			return histogram;
+		}
+
+		Map<String, Object> snapshot() {
+			long count = histogram.getCount();
+			Map<String, Object> values = new LinkedHashMap<>();
+			values.put("count", count);
+			values.put("errors", getErrorCount());
+			values.put("cancelled", getCancelledCount());
+			values.put("errorRate", count == 0 ? 0d : (double) getErrorCount() / count);
+			values.put("cancelRate", count == 0 ? 0d : (double) getCancelledCount() / count);
+			values.put("mean", toMillis(histogram.getMean()));
+			values.put("p50", toMillis(histogram.getPercentile(50)));
+			values.put("p90", toMillis(histogram.getPercentile(90)));
+			values.put("p99", toMillis(histogram.getPercentile(99)));
+			values.put("max", toMillis(histogram.getMax()));
+			return values;
+		}
+
+		private static double toMillis(long micros) {
+			return micros / 1000d;
+		}
+	}
+}
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue of the notifications sent to the client, written by a single
+ * thread, so the threads producing them don't contend on the output stream.
+ *
+ * Messages are sent in order. A message enqueued with a key replaces the
+ * message of the same key still waiting in the queue, e.g. the diagnostics of
+ * a URI superseded by newer ones. Throttled messages, e.g. progress reports,
+ * are sent at most once per interval for a given key, the last one winning.
+ * When the queue is full, producers wait for the writer to catch up; the
+ * writer itself never waits, so messages sent while writing (logs) can't
+ * deadlock.
+ */
+public class OutboundMessageQueue {
+
+	private final int capacity;
+	private final long throttleInterval;
+	private final Object lock = new Object();
+	private final ArrayDeque<Message> queue = new ArrayDeque<>();
+	/** key -> message waiting in the queue */
+	private final Map<String, Message> keyed = new HashMap<>();
+	/** key -> throttled message waiting for its interval to elapse */
+	private final Map<String, Message> throttled = new HashMap<>();
+	/** key -> time the last throttled message was sent */
+	private final Map<String, Long> lastSent = new HashMap<>();
+	private final Thread writer;
+	private boolean disposed;
+
+	private int maxDepth;
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong collapsed = new AtomicLong();
+	private final AtomicLong blocked = new AtomicLong();
+
+	/**
+	 * @param capacity
+	 *            the maximum number of queued messages, before producers wait
+	 * @param throttleInterval
+	 *            the minimum delay between two throttled messages of the same
+	 *            key, in milliseconds
+	 */
+	public OutboundMessageQueue(int capacity, long throttleInterval) {
+		this.capacity = Math.max(1, capacity);
+		this.throttleInterval = Math.max(0, throttleInterval);
+		this.writer = new Thread(this::write, "Java LS outbound messages");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Enqueues a message, waiting for room in the queue if it's full.
+	 */
+	public void enqueue(Runnable message) {
+		enqueue(null, message);
+	}
+
+	/**
+	 * Enqueues a message, replacing the message of the same key if it's still
+	 * waiting in the queue.
+	 *
+	 * @param key
+	 *            the key of the message, or <code>null</code> if it can't be
+	 *            superseded
+	 * @param message
+	 *            sends the message
+	 */
+	public void enqueue(String key, Runnable message) {
+		synchronized (lock) {
+			if (disposed) {
+				message.run();
+				return;
+			}
+			if (key != null) {
+				Message waiting = keyed.get(key);
+				if (waiting != null) {
+					waiting.payload = message;
+					collapsed.incrementAndGet();
+					return;
+				}
+			}
+			if (queue.size() >= capacity && Thread.currentThread() != writer) {
+				blocked.incrementAndGet();
+				while (queue.size() >= capacity && !disposed) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+			Message m = new Message(key, message, 0);
+			queue.add(m);
+			if (key != null) {
+				keyed.put(key, m);
+			}
+			maxDepth = Math.max(maxDepth, queue.size());
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Enqueues a message that is sent at most once per throttle interval for
+	 * its key. A newer message of the same key replaces the one waiting for
+	 * the interval to elapse.
+	 */
+	public void enqueueThrottled(String key, Runnable message) {
+		synchronized (lock) {
+			if (disposed) {
+				message.run();
+				return;
+			}
+			Message waiting = throttled.get(key);
+			if (waiting != null) {
+				waiting.payload = message;
+				collapsed.incrementAndGet();
+				return;
+			}
+			Long last = lastSent.get(key);
+			long notBefore = last == null ? 0 : last.longValue() + throttleInterval;
+			throttled.put(key, new Message(key, message, notBefore));
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Drops the throttled message of the given key, if any is waiting. Used
+	 * when a message makes it obsolete, e.g. a final status.
+	 */
+	public void discardThrottled(String key) {
+		synchronized (lock) {
+			if (throttled.remove(key) != null) {
+				collapsed.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Sends the pending messages, then stops the writer. Messages enqueued
+	 * afterwards are sent by the calling thread.
+	 */
+	public void dispose() {
+		synchronized (lock) {
+			disposed = true;
+			lock.notifyAll();
+		}
+		if (Thread.currentThread() != writer) {
+			try {
+				writer.join(TimeUnit.SECONDS.toMillis(5));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void write() {
+		while (true) {
+			Message next = null;
+			synchronized (lock) {
+				while (next == null) {
+					next = queue.poll();
+					if (next != null) {
+						if (next.key != null) {
+							keyed.remove(next.key);
+						}
+						lock.notifyAll();
+						break;
+					}
+					long now = System.currentTimeMillis();
+					Message due = null;
+					for (Message m : throttled.values()) {
+						if (due == null || m.notBefore < due.notBefore) {
+							due = m;
+						}
+					}
+					if (due != null && (disposed || due.notBefore <= now)) {
+						throttled.remove(due.key);
+						lastSent.put(due.key, now);
+						next = due;
+						break;
+					}
+					if (disposed) {
+						return;
+					}
+					try {
+						lock.wait(due == null ? 0 : due.notBefore - now);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+			try {
+				next.payload.run();
+				sent.incrementAndGet();
+			} catch (RuntimeException e) {
+				JavaLanguageServerPlugin.logException("Failed to send a message to the client", e);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of messages waiting to be sent
+	 */
+	public int getDepth() {
+		synchronized (lock) {
+			return queue.size() + throttled.size();
+		}
+	}
+
+	/**
+	 * @return the highest number of messages that waited in the queue
+	 */
+	public int getMaxDepth() {
+		synchronized (lock) {
+			return maxDepth;
+		}
+	}
+
+	public long getSentCount() {
+		return sent.get();
+	}
+
+	/**
+	 * @return the number of messages replaced by newer ones before being sent
+	 */
+	public long getCollapsedCount() {
+		return collapsed.get();
+	}
+
+	/**
+	 * @return the number of times a producer waited for room in the queue
+	 */
+	public long getBlockedCount() {
+		return blocked.get();
+	}
+
+	private static final class Message {
+
+		private final String key;
+		private final long notBefore;
+		private Runnable payload;
+
+		private Message(String key, Runnable payload, long notBefore) {
+			this.key = key;
+			this.payload = payload;
+			this.notBefore = notBefore;
+		}
+	}
+}
@@ -0,0 +1,555 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourceAttributes;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.BufferChangedEvent;
+import org.eclipse.jdt.core.IBufferChangedListener;
+import org.eclipse.jdt.core.IJavaModelStatusConstants;
+import org.eclipse.jdt.core.IOpenable;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jface.text.BadLocationException;
+
+/**
+ * {@link IVersionedBuffer} backed by a piece table.
+ *
+ * The content is described by a list of pieces, each one a range of either the
+ * original content or of an append-only buffer holding the inserted text.
+ * Edits only add pieces: they never copy the document. The whole content is
+ * only materialized on {@link #getContents()} or {@link #getCharacters()}, and
+ * cached until the next modification. A {@link LineTable} is kept up to date
+ * with the content, and {@link #snapshot()} returns cheap immutable views of
+ * the content.
+ *
+ * Unlike {@link DocumentAdapter}, the buffer is not connected to a file
+ * buffer: its content is written to the file on save.
+ */
+public class PieceTableBuffer implements IVersionedBuffer {
+
+	/**
+	 * Number of pieces above which the table is compacted into a single piece.
+	 */
+	private static final int MAX_PIECES = 1024;
+
+	private static final AtomicLong STAMPS = new AtomicLong();
+
+	private final Object lock = new Object();
+	private final IOpenable owner;
+	private final IFile file;
+	private final List<IBufferChangedListener> listeners = new ArrayList<>(3);
+
+	private String original;
+	private char[] added = new char[0];
+	private int addedLength;
+	private List<Piece> pieces = new ArrayList<>();
+	private int length;
+	private LineTable lines;
+
+	private String cachedContents;
+	private char[] cachedCharacters;
+	private long stamp = STAMPS.incrementAndGet();
+	private boolean dirty;
+	private boolean closed;
+
+	public PieceTableBuffer(IOpenable owner, IFile file) {
+		this.owner = owner;
+		this.file = file;
+	}
+
+	@Override
+	public long getModificationStamp() {
+		synchronized (lock) {
+			return stamp;
+		}
+	}
+
+	/**
+	 * @return the offset of the given line, from the buffer's line index
+	 */
+	public int getLineOffset(int line) throws BadLocationException {
+		synchronized (lock) {
+			if (lines == null) {
+				throw new BadLocationException("No content");
+			}
+			return lines.getLineOffset(line);
+		}
+	}
+
+	/**
+	 * @return the offset of the given position, from the buffer's line index
+	 */
+	public int getOffset(int line, int character) throws BadLocationException {
+		synchronized (lock) {
+			if (lines == null) {
+				throw new BadLocationException("No content");
+			}
+			return lines.getOffset(line, character);
+		}
+	}
+
+	/**
+	 * @return a copy of the buffer's line index, to be updated independently
+	 */
+	public LineTable copyLineTable() {
+		synchronized (lock) {
+			return lines == null ? new LineTable("") : lines.copy();
+		}
+	}
+
+	/**
+	 * @return the line containing the given offset, from the buffer's line
+	 *         index
+	 */
+	public int getLineOfOffset(int offset) throws BadLocationException {
+		synchronized (lock) {
+			if (lines == null) {
+				throw new BadLocationException("No content");
+			}
+			return lines.getLineOfOffset(offset);
+		}
+	}
+
+	/**
+	 * Returns an immutable view of the current content. Creating a snapshot
+	 * does not copy the content.
+	 */
+	public CharSequence snapshot() {
+		synchronized (lock) {
+			if (original == null) {
+				return "";
+			}
+			return new Snapshot(original, added, pieces.toArray(new Piece[pieces.size()]), length);
+		}
+	}
+
+	@Override
+	public void addBufferChangedListener(IBufferChangedListener listener) {
+		synchronized (lock) {
+			if (!listeners.contains(listener)) {
+				listeners.add(listener);
+			}
+		}
+	}
+
+	@Override
+	public void removeBufferChangedListener(IBufferChangedListener listener) {
+		synchronized (lock) {
+			listeners.remove(listener);
+		}
+	}
+
+	@Override
+	public void append(char[] text) {
+		append(new String(text));
+	}
+
+	@Override
+	public void append(String text) {
+		replace(getLength(), 0, text);
+	}
+
+	@Override
+	public void close() {
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		fireBufferChanged(new BufferChangedEvent(this, 0, 0, null));
+		synchronized (lock) {
+			listeners.clear();
+			original = null;
+			added = new char[0];
+			addedLength = 0;
+			pieces = new ArrayList<>();
+			length = 0;
+			lines = null;
+			cachedContents = null;
+			cachedCharacters = null;
+		}
+	}
+
+	@Override
+	public char getChar(int position) {
+		synchronized (lock) {
+			if (position < 0 || position >= length) {
+				throw new IndexOutOfBoundsException(Integer.toString(position));
+			}
+			return charAt(original, added, pieces, position);
+		}
+	}
+
+	@Override
+	public char[] getCharacters() {
+		synchronized (lock) {
+			if (original == null) {
+				return null;
+			}
+			if (cachedCharacters == null) {
+				cachedCharacters = getContents().toCharArray();
+				BufferMetrics.recordCopy(PieceTableBuffer.class, length);
+			}
+			return cachedCharacters;
+		}
+	}
+
+	@Override
+	public String getContents() {
+		synchronized (lock) {
+			if (original == null) {
+				return null;
+			}
+			if (cachedContents == null) {
+				if (pieces.size() == 1 && !pieces.get(0).added && pieces.get(0).length == original.length()) {
+					cachedContents = original;
+				} else {
+					cachedContents = getText(0, length);
+					BufferMetrics.recordCopy(PieceTableBuffer.class, length);
+				}
+			}
+			return cachedContents;
+		}
+	}
+
+	@Override
+	public int getLength() {
+		synchronized (lock) {
+			return length;
+		}
+	}
+
+	@Override
+	public IOpenable getOwner() {
+		return owner;
+	}
+
+	@Override
+	public String getText(int offset, int length) throws IndexOutOfBoundsException {
+		synchronized (lock) {
+			if (offset < 0 || length < 0 || offset + length > this.length) {
+				throw new IndexOutOfBoundsException(offset + ":" + length);
+			}
+			if (cachedContents != null) {
+				return cachedContents.substring(offset, offset + length);
+			}
+			StringBuilder builder = new StringBuilder(length);
+			appendText(builder, original, added, pieces, offset, length);
+			return builder.toString();
+		}
+	}
+
+	@Override
+	public IResource getUnderlyingResource() {
+		return file;
+	}
+
+	@Override
+	public boolean hasUnsavedChanges() {
+		synchronized (lock) {
+			return dirty;
+		}
+	}
+
+	@Override
+	public boolean isClosed() {
+		synchronized (lock) {
+			return closed;
+		}
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		ResourceAttributes attributes = file.getResourceAttributes();
+		return attributes != null ? attributes.isReadOnly() : false;
+	}
+
+	@Override
+	public void replace(int position, int length, char[] text) {
+		replace(position, length, new String(text));
+	}
+
+	@Override
+	public void replace(int position, int length, String text) {
+		if (text == null) {
+			text = "";
+		}
+		synchronized (lock) {
+			if (original == null) {
+				original = "";
+				lines = new LineTable("");
+			}
+			if (position < 0 || length < 0 || position + length > this.length) {
+				throw new IndexOutOfBoundsException(position + ":" + length);
+			}
+			int index = split(position);
+			int end = split(position + length);
+			pieces.subList(index, end).clear();
+			if (!text.isEmpty()) {
+				pieces.add(index, new Piece(true, addedLength, text.length()));
+				appendAdded(text);
+			}
+			this.length += text.length() - length;
+			try {
+				lines.replace(position, length, text, new Snapshot(original, added, pieces.toArray(new Piece[pieces.size()]), this.length));
+			} catch (BadLocationException e) {
+				// can't happen, the range was checked
+				lines = new LineTable(getText(0, this.length));
+			}
+			if (pieces.size() > MAX_PIECES) {
+				compact();
+			}
+			changed();
+		}
+		fireBufferChanged(new BufferChangedEvent(this, position, length, text));
+	}
+
+	@Override
+	public void save(IProgressMonitor progress, boolean force) throws JavaModelException {
+		String contents;
+		synchronized (lock) {
+			if (!dirty || original == null) {
+				return;
+			}
+			contents = getContents();
+		}
+		try {
+			String charset = file.getCharset();
+			ByteArrayInputStream stream = new ByteArrayInputStream(charset == null ? contents.getBytes() : contents.getBytes(charset));
+			if (file.exists()) {
+				file.setContents(stream, force, true, progress);
+			} else {
+				file.create(stream, force, progress);
+			}
+		} catch (CoreException e) {
+			throw new JavaModelException(e);
+		} catch (UnsupportedEncodingException e) {
+			throw new JavaModelException(e, IJavaModelStatusConstants.IO_EXCEPTION);
+		}
+		synchronized (lock) {
+			if (contents.equals(cachedContents)) {
+				dirty = false;
+			}
+		}
+	}
+
+	@Override
+	public void setContents(char[] contents) {
+		setContents(new String(contents));
+	}
+
+	@Override
+	public void setContents(String contents) {
+		int oldLength;
+		synchronized (lock) {
+			boolean initial = original == null;
+			if (!initial && contents.equals(getContents())) {
+				return;
+			}
+			oldLength = length;
+			original = contents;
+			added = new char[0];
+			addedLength = 0;
+			pieces = new ArrayList<>();
+			pieces.add(new Piece(false, 0, contents.length()));
+			length = contents.length();
+			lines = new LineTable(contents);
+			changed();
+			cachedContents = contents;
+			// the initial content is the content of the file
+			dirty = !initial;
+		}
+		fireBufferChanged(new BufferChangedEvent(this, 0, oldLength, contents));
+	}
+
+	private void changed() {
+		cachedContents = null;
+		cachedCharacters = null;
+		stamp = STAMPS.incrementAndGet();
+		dirty = true;
+		if (lines != null) {
+			lines.setStamp(stamp);
+		}
+	}
+
+	/**
+	 * Makes sure a piece starts at the given offset.
+	 *
+	 * @return the index of the piece starting at the offset, or the number of
+	 *         pieces if the offset is the end of the content
+	 */
+	private int split(int offset) {
+		int pieceStart = 0;
+		for (int i = 0; i < pieces.size(); i++) {
+			Piece piece = pieces.get(i);
+			if (offset == pieceStart) {
+				return i;
+			}
+			if (offset < pieceStart + piece.length) {
+				int head = offset - pieceStart;
+				pieces.set(i, new Piece(piece.added, piece.start, head));
+				pieces.add(i + 1, new Piece(piece.added, piece.start + head, piece.length - head));
+				return i + 1;
+			}
+			pieceStart += piece.length;
+		}
+		return pieces.size();
+	}
+
+	private void appendAdded(String text) {
+		if (addedLength + text.length() > added.length) {
+			// a new array is allocated: snapshots keep reading the previous one
+			added = Arrays.copyOf(added, Math.max(addedLength + text.length(), Math.max(256, added.length * 2)));
+		}
+		text.getChars(0, text.length(), added, addedLength);
+		addedLength += text.length();
+	}
+
+	private void compact() {
+		String contents = getText(0, length);
+		BufferMetrics.recordCopy(PieceTableBuffer.class, length);
+		original = contents;
+		added = new char[0];
+		addedLength = 0;
+		pieces = new ArrayList<>();
+		pieces.add(new Piece(false, 0, contents.length()));
+	}
+
+	private void fireBufferChanged(BufferChangedEvent event) {
+		IBufferChangedListener[] toNotify;
+		synchronized (lock) {
+			toNotify = listeners.toArray(new IBufferChangedListener[listeners.size()]);
+		}
+		for (IBufferChangedListener listener : toNotify) {
+			listener.bufferChanged(event);
+		}
+	}
+
+	private static char charAt(String original, char[] added, List<Piece> pieces, int offset) {
+		int pieceStart = 0;
+		for (Piece piece : pieces) {
+			if (offset < pieceStart + piece.length) {
+				int index = piece.start + offset - pieceStart;
+				return piece.added ? added[index] : original.charAt(index);
+			}
+			pieceStart += piece.length;
+		}
+		throw new IndexOutOfBoundsException(Integer.toString(offset));
+	}
+
+	private static void appendText(StringBuilder builder, String original, char[] added, List<Piece> pieces, int offset, int length) {
+		int pieceStart = 0;
+		int end = offset + length;
+		for (Piece piece : pieces) {
+			int pieceEnd = pieceStart + piece.length;
+			if (pieceEnd > offset && pieceStart < end) {
+				int from = Math.max(offset, pieceStart) - pieceStart + piece.start;
+				int to = Math.min(end, pieceEnd) - pieceStart + piece.start;
+				if (piece.added) {
+					builder.append(added, from, to - from);
+				} else {
+					builder.append(original, from, to);
+				}
+			}
+			if (pieceEnd >= end) {
+				break;
+			}
+			pieceStart = pieceEnd;
+		}
+	}
+
+	private static final class Piece {
+		final boolean added;
+		final int start;
+		final int length;
+
+		Piece(boolean added, int start, int length) {
+			this.added = added;
+			this.start = start;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Immutable view of the content at a given time. The original content and
+	 * the part of the append-only buffer it refers to never change.
+	 */
+	private static final class Snapshot implements CharSequence {
+		private final String original;
+		private final char[] added;
+		private final List<Piece> pieces;
+		private final int length;
+		/**
+		 * Index (high bits) and start offset (low bits) of the last piece read,
+		 * to speed up sequential access
+		 */
+		private volatile long cursor;
+
+		Snapshot(String original, char[] added, Piece[] pieces, int length) {
+			this.original = original;
+			this.added = added;
+			this.pieces = Arrays.asList(pieces);
+			this.length = length;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException(Integer.toString(index));
+			}
+			long last = cursor;
+			int i = 0;
+			int pieceStart = 0;
+			if (index >= (int) last) {
+				i = (int) (last >>> 32);
+				pieceStart = (int) last;
+			}
+			for (; i < pieces.size(); i++) {
+				Piece piece = pieces.get(i);
+				if (index < pieceStart + piece.length) {
+					cursor = ((long) i << 32) | pieceStart;
+					int offset = piece.start + index - pieceStart;
+					return piece.added ? added[offset] : original.charAt(offset);
+				}
+				pieceStart += piece.length;
+			}
+			throw new IndexOutOfBoundsException(Integer.toString(index));
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			StringBuilder builder = new StringBuilder(end - start);
+			appendText(builder, original, added, pieces, start, end - start);
+			return builder.toString();
+		}
+
+		@Override
+		public String toString() {
+			return subSequence(0, length).toString();
+		}
+	}
+}
@@ -15,7 +15,9 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.IStatus;
@@ -23,15 +25,18 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.IBuffer;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.ITypeRoot;
 import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.internal.corext.dom.ASTNodes;
 import org.eclipse.jdt.internal.corext.dom.IASTSharedValues;
+import org.eclipse.jdt.ls.core.internal.MetricsRegistry.Outcome;
 
 /**
  * AST provider that caches the AST generated for files that are known to be
@@ -40,14 +45,19 @@ import org.eclipse.jdt.internal.corext.dom.IASTSharedValues;
 @SuppressWarnings("restriction")
 public final class SharedASTProvider {
 
+	/**
+	 * Default memory budget of the AST cache, in megabytes
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 256;
+
 	private static SharedASTProvider instance = new SharedASTProvider();
 
-	private ConcurrentMap<String, CompilationUnit> cache = new ConcurrentHashMap<>();
-	private int astCreationCount; // to testing purposes
+	private final ASTCache cache = new ASTCache(DEFAULT_CACHE_SIZE * 1024L * 1024L);
+	private final ConcurrentMap<String, CreationLock> creationLocks = new ConcurrentHashMap<>();
+	private AtomicInteger astCreationCount = new AtomicInteger(); // to testing purposes
 
 
 	private SharedASTProvider() {
-		astCreationCount = 0;
 	}
 
 	public void dispose() {
@@ -67,15 +77,109 @@ public final class SharedASTProvider {
 			return createAST(input, progressMonitor);
 		}
 
-		final String identifier = input.getHandleIdentifier();
-		return cache.computeIfAbsent(identifier, k -> {
-			JavaLanguageServerPlugin.logInfo("Caching AST for " + input.getPath().toString());
-			CompilationUnit astRoot = createAST(input, progressMonitor);
-			astCreationCount++;
+		final String identifier = getCacheKey(input);
+		final long version = getVersion(input);
+		CompilationUnit astRoot = cache.get(identifier, version);
+		if (astRoot != null) {
 			return astRoot;
+		}
+		// only one thread creates the AST of a given unit, the others wait for it
+		CreationLock lock = acquireCreationLock(identifier);
+		try {
+			synchronized (lock) {
+				astRoot = cache.peek(identifier, version);
+				if (astRoot == null) {
+					JavaLanguageServerPlugin.logInfo("Caching AST for " + input.getPath().toString());
+					astRoot = createAST(input, progressMonitor);
+					if (astRoot != null) {
+						astCreationCount.incrementAndGet();
+						// the content may have changed while parsing
+						if (getVersion(input) == version) {
+							cache.put(identifier, version, astRoot);
+						}
+					}
+				}
+			}
+		} finally {
+			releaseCreationLock(identifier);
+		}
+		return astRoot;
+	}
+
+	/**
+	 * The lock of the AST creation of a unit, held by a count of threads
+	 */
+	private static final class CreationLock {
+		int holders;
+	}
+
+	private CreationLock acquireCreationLock(String identifier) {
+		return creationLocks.compute(identifier, (k, lock) -> {
+			CreationLock acquired = lock == null ? new CreationLock() : lock;
+			acquired.holders++;
+			return acquired;
 		});
 	}
 
+	/**
+	 * Releases the lock, removing it once no thread holds it.
+	 */
+	private void releaseCreationLock(String identifier) {
+		creationLocks.computeIfPresent(identifier, (k, lock) -> --lock.holders == 0 ? null : lock);
+	}
+
+	/**
+	 * Returns the cached AST of the given input, if it was created for the
+	 * given content version. Never creates an AST, nor waits for one to be
+	 * created.
+	 *
+	 * @param input
+	 *            the type root
+	 * @param version
+	 *            the version of the input's content, as returned by
+	 *            {@link #getVersion(ITypeRoot)}
+	 * @return the cached AST or <code>null</code>
+	 */
+	public CompilationUnit getCachedAST(ITypeRoot input, long version) {
+		if (input == null || !shouldCache(input)) {
+			return null;
+		}
+		return cache.get(getCacheKey(input), version);
+	}
+
+	/**
+	 * Returns the version of the input's current content, or
+	 * {@link ASTCache#UNKNOWN_VERSION} if it can't be determined.
+	 */
+	public static long getVersion(ITypeRoot input) {
+		try {
+			IBuffer buffer = input.getBuffer();
+			if (buffer instanceof IVersionedBuffer) {
+				return ((IVersionedBuffer) buffer).getModificationStamp();
+			}
+		} catch (JavaModelException e) {
+			// no version
+		}
+		return ASTCache.UNKNOWN_VERSION;
+	}
+
+	/**
+	 * Sets the memory budget of the AST cache.
+	 *
+	 * @param megabytes
+	 *            the budget, in megabytes
+	 */
+	public void setCacheSize(int megabytes) {
+		cache.setMemoryBudget(Math.max(0, megabytes) * 1024L * 1024L);
+	}
+
+	/**
+	 * @return the AST cache, to access its statistics
+	 */
+	public ASTCache getCache() {
+		return cache;
+	}
+
 	public List<CompilationUnit> getASTs(List<ICompilationUnit> inputs, IProgressMonitor progressMonitor) {
 		if (progressMonitor != null && progressMonitor.isCanceled() || inputs.isEmpty()) {
 			return Collections.emptyList();
@@ -92,25 +196,41 @@ public final class SharedASTProvider {
 	public void setAST(CompilationUnit astRoot) {
 		ITypeRoot typeRoot = astRoot.getTypeRoot();
 		if (shouldCache(typeRoot)) {
-			cache.put(typeRoot.getHandleIdentifier(), astRoot);
+			cache.put(getCacheKey(typeRoot), getVersion(typeRoot), astRoot);
 		}
 	}
 
 	/**
 	 * Only cache ASTs for compilation units in working copy mode (open in a
-	 * buffer)
+	 * buffer), either primary or owned by a session of the daemon
 	 */
 	private boolean shouldCache(ITypeRoot input) {
 		if (input.getElementType() != IJavaElement.COMPILATION_UNIT) {
 			return false;
 		}
 		ICompilationUnit cu = (ICompilationUnit) input;
-		return cu.getOwner() == null && cu.isWorkingCopy();
+		return (cu.getOwner() == null || cu.getOwner() instanceof LanguageServerWorkingCopyOwner) && cu.isWorkingCopy();
+	}
+
+	/**
+	 * Returns the key of the input's AST in the cache. The working copies of a
+	 * unit owned by different sessions share its handle identifier, so the
+	 * owner is part of the key.
+	 */
+	public static String getCacheKey(ITypeRoot input) {
+		String identifier = input.getHandleIdentifier();
+		if (input instanceof ICompilationUnit) {
+			WorkingCopyOwner owner = ((ICompilationUnit) input).getOwner();
+			if (owner instanceof LanguageServerWorkingCopyOwner) {
+				return identifier + '@' + ((LanguageServerWorkingCopyOwner) owner).getId();
+			}
+		}
+		return identifier;
 	}
 
 	public void invalidate(ITypeRoot root){
 		if(root != null){
-			CompilationUnit removed = cache.remove(root.getHandleIdentifier());
+			CompilationUnit removed = cache.remove(getCacheKey(root));
 			if (removed != null) {
 				JavaLanguageServerPlugin.logInfo("Releasing AST for " + root.getPath().toString());
 			}
@@ -140,9 +260,15 @@ public final class SharedASTProvider {
 
 		final ASTParser parser = newASTParser();
 		parser.setSource(input);
+		if (input instanceof ICompilationUnit && ((ICompilationUnit) input).getOwner() != null) {
+			// the bindings are resolved against the other working copies of the session
+			parser.setWorkingCopyOwner(((ICompilationUnit) input).getOwner());
+		}
 
 		final CompilationUnit root[]= new CompilationUnit[1];
 
+		long start = System.nanoTime();
+		FlightRecorderEvents.Event event = FlightRecorderEvents.begin(FlightRecorderEvents.AST_CREATION);
 		SafeRunner.run(new ISafeRunnable() {
 			@Override
 			public void run() {
@@ -164,9 +290,39 @@ public final class SharedASTProvider {
 				JavaLanguageServerPlugin.log(status);
 			}
 		});
+		Outcome outcome = root[0] != null ? Outcome.SUCCESS : (progressMonitor != null && progressMonitor.isCanceled() ? Outcome.CANCELLED : Outcome.ERROR);
+		MetricsRegistry.getInstance().timer("ast/create").record(System.nanoTime() - start, outcome);
+		if (event.isEnabled()) {
+			IResource resource = input.getResource();
+			event.setUri(resource != null ? JDTUtils.getFileURI(resource) : input.getHandleIdentifier()).setVersion(getVersion(input)).commit(outcome);
+		}
 		return root[0];
 	}
 
+	/**
+	 * Creates an uncached AST for the given input, without resolving
+	 * bindings. Much cheaper than {@link #getAST(ITypeRoot, IProgressMonitor)},
+	 * the resulting AST only reports syntax problems.
+	 *
+	 * @param input the Java element for which to create the AST
+	 * @param progressMonitor the progress monitor
+	 * @return AST or <code>null</code> if the element has no source or the monitor was cancelled
+	 */
+	public CompilationUnit createSyntaxAST(final ITypeRoot input, final IProgressMonitor progressMonitor) {
+		if (!hasSource(input) || (progressMonitor != null && progressMonitor.isCanceled())) {
+			return null;
+		}
+		final ASTParser parser = newASTParser();
+		parser.setResolveBindings(false);
+		parser.setBindingsRecovery(false);
+		parser.setSource(input);
+		try {
+			return (CompilationUnit) parser.createAST(progressMonitor);
+		} catch (OperationCanceledException ex) {
+			return null;
+		}
+	}
+
 	public static ASTParser newASTParser() {
 		final ASTParser parser = ASTParser.newParser(IASTSharedValues.SHARED_AST_LEVEL);
 		parser.setResolveBindings(true);
@@ -210,7 +366,7 @@ public final class SharedASTProvider {
 	 * @return the number of ASTs created
 	 */
 	public int getASTCreationCount() {
-		return astCreationCount;
+		return astCreationCount.get();
 	}
 
 	/**
@@ -219,7 +375,7 @@ public final class SharedASTProvider {
 	 * Sets the counter for ASTs created to 0
 	 */
 	public void clearASTCreationCount() {
-		astCreationCount = 0;
+		astCreationCount.set(0);
 	}
 
 }
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.contentassist;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jdt.core.CompletionProposal;
+import org.eclipse.jdt.core.Signature;
+import org.eclipse.jdt.core.compiler.CharOperation;
+
+/**
+ * Ranks completion proposals, best first, the way clients sort their items:
+ * by the relevance of {@link SortTextHelper}, then by how well their name
+ * matches the prefix.
+ */
+public final class CompletionProposalRanking {
+
+	private static final int CASE_PREFIX_MATCH = 2;
+	private static final int PREFIX_MATCH = 1;
+
+	private CompletionProposalRanking() {
+		//No public instantiation
+	}
+
+	/**
+	 * Sorts the proposals, best first. Proposals ranked equally keep their
+	 * order.
+	 *
+	 * @param prefix
+	 *            the prefix being completed, or <code>null</code>
+	 */
+	public static void sort(List<CompletionProposal> proposals, char[] prefix) {
+		int size = proposals.size();
+		Ranked[] ranked = new Ranked[size];
+		for (int i = 0; i < size; i++) {
+			CompletionProposal proposal = proposals.get(i);
+			ranked[i] = new Ranked(proposal, SortTextHelper.computeRelevance(proposal), getMatchQuality(prefix, getMatchedName(proposal)));
+		}
+		Arrays.sort(ranked, (a, b) -> {
+			if (a.relevance != b.relevance) {
+				return a.relevance > b.relevance ? -1 : 1;
+			}
+			return b.matchQuality - a.matchQuality;
+		});
+		for (int i = 0; i < size; i++) {
+			proposals.set(i, ranked[i].proposal);
+		}
+	}
+
+	/**
+	 * Returns the name the completion engine matches against the prefix.
+	 */
+	public static char[] getMatchedName(CompletionProposal proposal) {
+		switch (proposal.getKind()) {
+			case CompletionProposal.TYPE_REF:
+				char[] signature = proposal.getSignature();
+				return signature == null ? null : CharOperation.lastSegment(Signature.toCharArray(Signature.getTypeErasure(signature)), '.');
+			case CompletionProposal.PACKAGE_REF:
+				return proposal.getDeclarationSignature();
+			default:
+				return proposal.getName();
+		}
+	}
+
+	private static int getMatchQuality(char[] prefix, char[] name) {
+		if (prefix == null || prefix.length == 0 || name == null) {
+			return 0;
+		}
+		if (CharOperation.prefixEquals(prefix, name, true)) {
+			return CASE_PREFIX_MATCH;
+		}
+		if (CharOperation.prefixEquals(prefix, name, false)) {
+			return PREFIX_MATCH;
+		}
+		// camel case or substring match
+		return 0;
+	}
+
+	private static final class Ranked {
+		final CompletionProposal proposal;
+		final int relevance;
+		final int matchQuality;
+
+		Ranked(CompletionProposal proposal, int relevance, int matchQuality) {
+			this.proposal = proposal;
+			this.relevance = relevance;
+			this.matchQuality = matchQuality;
+		}
+	}
+}
@@ -79,13 +79,24 @@ public class CompletionProposalReplacementProvider {
 	private final CompletionContext context;
 	private ImportRewrite importRewrite;
 	private final ClientPreferences client;
+	private final CompletionResolveContext resolveContext;
 
 	public CompletionProposalReplacementProvider(ICompilationUnit compilationUnit, CompletionContext context, int offset, ClientPreferences prefs){
+		this(compilationUnit, context, offset, prefs, null);
+	}
+
+	/**
+	 * @param resolveContext
+	 *            the context shared with the other items of the completion list,
+	 *            or <code>null</code>
+	 */
+	public CompletionProposalReplacementProvider(ICompilationUnit compilationUnit, CompletionContext context, int offset, ClientPreferences prefs, CompletionResolveContext resolveContext) {
 		super();
 		this.compilationUnit = compilationUnit;
 		this.context = context;
 		this.offset = offset;
 		this.client = prefs;
+		this.resolveContext = resolveContext;
 	}
 
 	/**
@@ -97,7 +108,7 @@ public class CompletionProposalReplacementProvider {
 	 */
 	public void updateReplacement(CompletionProposal proposal, CompletionItem item, char trigger) {
 		// reset importRewrite
-		this.importRewrite = TypeProposalUtils.createImportRewrite(compilationUnit);
+		this.importRewrite = resolveContext == null ? TypeProposalUtils.createImportRewrite(compilationUnit) : resolveContext.createImportRewrite();
 
 		List<org.eclipse.lsp4j.TextEdit> additionalTextEdits = new ArrayList<>();
 
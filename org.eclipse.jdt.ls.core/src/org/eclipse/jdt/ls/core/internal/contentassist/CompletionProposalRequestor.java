@@ -33,11 +33,15 @@ public final class CompletionProposalRequestor extends CompletionRequestor {
 
 	private List<CompletionProposal> proposals = new ArrayList<>();
 	private final ICompilationUnit unit;
+	private final String uri;
 	private CompletionProposalDescriptionProvider descriptionProvider;
 	private CompletionResponse response;
+	private int maxResults;
+	private boolean incomplete;
 
 	public CompletionProposalRequestor(ICompilationUnit aUnit, int offset) {
 		this.unit = aUnit;
+		this.uri = unit.getResource().getLocationURI().toString();
 		response = new CompletionResponse();
 		response.setOffset(offset);
 		setRequireExtendedContext(true);
@@ -60,21 +64,64 @@ public final class CompletionProposalRequestor extends CompletionRequestor {
 	}
 
 	public List<CompletionItem> getCompletionItems() {
+		int size = proposals.size();
+		incomplete = maxResults > 0 && size > maxResults;
+		if (incomplete) {
+			// only the best proposals are converted, the others can be resolved later
+			CompletionProposalRanking.sort(proposals, response.getPrefix());
+			size = maxResults;
+		}
 		response.setProposals(proposals);
-		CompletionResponses.store(response);
-		List<CompletionItem> completionItems = new ArrayList<>(proposals.size());
-		for (int i = 0; i < proposals.size(); i++) {
+		CompletionResponses.store(uri, response);
+		List<CompletionItem> completionItems = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
 			completionItems.add(toCompletionItem(proposals.get(i), i));
 		}
 		return completionItems;
 	}
 
+	/**
+	 * Limits the number of items of the completion list, the best ranked
+	 * proposals being kept.
+	 *
+	 * @param maxResults
+	 *            the maximum number of items, unlimited if not positive
+	 */
+	public void setMaxResults(int maxResults) {
+		this.maxResults = maxResults;
+	}
+
+	/**
+	 * @return whether proposals were left out of the last completion list
+	 */
+	public boolean isIncomplete() {
+		return incomplete;
+	}
+
+	/**
+	 * Converts the proposals of a response narrowed from a previous request,
+	 * instead of those of the completion engine.
+	 */
+	public List<CompletionItem> getCompletionItems(CompletionResponse narrowed) {
+		acceptContext(narrowed.getContext());
+		response.setPrefix(narrowed.getPrefix());
+		proposals = narrowed.getProposals();
+		return getCompletionItems();
+	}
+
+	/**
+	 * @return the response, with the proposals accepted so far
+	 */
+	public CompletionResponse getResponse() {
+		return response;
+	}
+
 	public CompletionItem toCompletionItem(CompletionProposal proposal, int index) {
 		final CompletionItem $ = new CompletionItem();
 		$.setKind(mapKind(proposal.getKind()));
 		Map<String, String> data = new HashMap<>();
 		// append data field so that resolve request can use it.
-		data.put(CompletionResolveHandler.DATA_FIELD_URI,unit.getResource().getLocationURI().toString());
+		data.put(CompletionResolveHandler.DATA_FIELD_URI,uri);
 		data.put(CompletionResolveHandler.DATA_FIELD_REQUEST_ID,String.valueOf(response.getId()));
 		data.put(CompletionResolveHandler.DATA_FIELD_PROPOSAL_ID,String.valueOf(index));
 		$.setData(data);
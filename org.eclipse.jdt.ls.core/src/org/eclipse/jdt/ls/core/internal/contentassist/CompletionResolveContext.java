@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.contentassist;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.rewrite.ImportRewrite;
+import org.eclipse.jdt.ls.core.internal.ASTCache;
+import org.eclipse.jdt.ls.core.internal.SharedASTProvider;
+
+/**
+ * State shared by the resolves of the items of a completion list.
+ *
+ * The imports of the compilation unit are read from the shared AST when it's
+ * cached for the current content version, without retaining it. Otherwise,
+ * an AST reduced to the imports is parsed once per content version, and kept
+ * until the context is disposed. Each resolve gets its own
+ * {@link ImportRewrite}, initialized from that AST without parsing.
+ */
+public final class CompletionResolveContext {
+
+	private final ICompilationUnit unit;
+	private long version = ASTCache.UNKNOWN_VERSION;
+	private CompilationUnit importsAST;
+
+	public CompletionResolveContext(ICompilationUnit unit) {
+		this.unit = unit;
+	}
+
+	/**
+	 * @return a new import rewrite for the current content of the unit, or
+	 *         <code>null</code> if it can't be created
+	 */
+	public ImportRewrite createImportRewrite() {
+		CompilationUnit root = getAST();
+		if (root == null) {
+			return TypeProposalUtils.createImportRewrite(unit);
+		}
+		return TypeProposalUtils.createImportRewrite(root);
+	}
+
+	private synchronized CompilationUnit getAST() {
+		long currentVersion = SharedASTProvider.getVersion(unit);
+		if (currentVersion == ASTCache.UNKNOWN_VERSION) {
+			return null;
+		}
+		CompilationUnit sharedAST = SharedASTProvider.getInstance().getCachedAST(unit, currentVersion);
+		if (sharedAST != null) {
+			return sharedAST;
+		}
+		if (importsAST == null || currentVersion != version) {
+			version = currentVersion;
+			importsAST = createImportsAST();
+		}
+		return importsAST;
+	}
+
+	/**
+	 * @return the estimated memory retained by this context
+	 */
+	public synchronized long getWeight() {
+		return importsAST == null ? 0 : ASTCache.weigh(importsAST);
+	}
+
+	/**
+	 * Releases the AST retained by this context.
+	 */
+	public synchronized void dispose() {
+		importsAST = null;
+		version = ASTCache.UNKNOWN_VERSION;
+	}
+
+	/**
+	 * Parses the unit, skipping the bodies of its methods.
+	 */
+	private CompilationUnit createImportsAST() {
+		ASTParser parser = SharedASTProvider.newASTParser();
+		parser.setResolveBindings(false);
+		parser.setBindingsRecovery(false);
+		parser.setSource(unit);
+		parser.setFocalPosition(0);
+		try {
+			return (CompilationUnit) parser.createAST(new NullProgressMonitor());
+		} catch (OperationCanceledException e) {
+			return null;
+		}
+	}
+}
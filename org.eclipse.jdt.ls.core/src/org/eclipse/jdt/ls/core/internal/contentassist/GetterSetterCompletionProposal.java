@@ -103,6 +103,24 @@ public class GetterSetterCompletionProposal extends InternalCompletionProposal {
 		fIsGetter = isGetter;
 	}
 
+	/**
+	 * @return a copy of this proposal, which can be modified without changing
+	 *         this one
+	 */
+	public GetterSetterCompletionProposal copy() {
+		GetterSetterCompletionProposal copy = new GetterSetterCompletionProposal(fField, fIsGetter, getCompletionLocation());
+		copy.setName(getName());
+		copy.setSignature(getSignature());
+		copy.setDeclarationSignature(getDeclarationSignature());
+		copy.setParameterNames(findParameterNames(null));
+		copy.setCompletion(getCompletion());
+		copy.setReplaceRange(getReplaceStart(), getReplaceEnd());
+		copy.setTokenRange(getTokenStart(), getTokenEnd());
+		copy.setRelevance(getRelevance());
+		copy.setFlags(getFlags());
+		return copy;
+	}
+
 	/**
 	 * @param document
 	 * @param offset
@@ -34,15 +34,12 @@ import org.eclipse.jdt.internal.corext.template.java.SignatureUtil;
 import org.eclipse.jdt.internal.corext.util.JavaModelUtil;
 import org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin;
 import org.eclipse.jdt.ls.core.internal.handlers.CompletionResponse;
-import org.eclipse.jdt.ls.core.internal.handlers.CompletionResponses;
-import org.eclipse.jdt.ls.core.internal.javadoc.JavadocContentAccess;
+import org.eclipse.jdt.ls.core.internal.javadoc.JavadocCache;
 import org.eclipse.lsp4j.ParameterInformation;
 import org.eclipse.lsp4j.SignatureHelp;
 import org.eclipse.lsp4j.SignatureInformation;
 
 import com.google.common.io.CharStreams;
-import com.google.common.util.concurrent.SimpleTimeLimiter;
-import com.google.common.util.concurrent.UncheckedTimeoutException;
 
 public final class SignatureHelpRequestor extends CompletionRequestor {
 
@@ -61,7 +58,6 @@ public final class SignatureHelpRequestor extends CompletionRequestor {
 	public SignatureHelp getSignatureHelp(IProgressMonitor monitor) {
 		SignatureHelp signatureHelp = new SignatureHelp();
 		response.setProposals(proposals);
-		CompletionResponses.store(response);
 
 		List<SignatureInformation> infos = new ArrayList<>();
 		for (int i = 0; i < proposals.size(); i++) {
@@ -179,17 +175,7 @@ public final class SignatureHelpRequestor extends CompletionRequestor {
 						unit.reconcile(ICompilationUnit.NO_AST, false, null, null);
 					}
 
-					String javadoc = null;
-					try {
-						javadoc = new SimpleTimeLimiter().callWithTimeout(() -> {
-							Reader reader = JavadocContentAccess.getPlainTextContentReader(method);
-							return reader == null? null:CharStreams.toString(reader);
-						}, 500, TimeUnit.MILLISECONDS, true);
-					} catch (UncheckedTimeoutException tooSlow) {
-					} catch (Exception e) {
-						JavaLanguageServerPlugin.logException("Unable to read documentation", e);
-					}
-					return javadoc;
+					return JavadocCache.getInstance().getPlainText(method, 500, TimeUnit.MILLISECONDS);
 				}
 			}
 
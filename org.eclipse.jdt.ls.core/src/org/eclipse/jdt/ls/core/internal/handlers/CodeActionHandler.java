@@ -35,6 +35,7 @@ import org.eclipse.lsp4j.CodeActionParams;
 import org.eclipse.lsp4j.Command;
 import org.eclipse.lsp4j.Diagnostic;
 import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.WorkspaceEdit;
 import org.eclipse.ltk.core.refactoring.TextChange;
 import org.eclipse.text.edits.TextEdit;
@@ -55,15 +56,24 @@ public class CodeActionHandler {
 	 * @return
 	 */
 	public List<Command> getCodeActionCommands(CodeActionParams params, IProgressMonitor monitor) {
-		final ICompilationUnit unit = JDTUtils.resolveCompilationUnit(params.getTextDocument().getUri());
+		return getCodeActionCommands(params, null, monitor);
+	}
+
+	/**
+	 * @param snapshot
+	 *            the snapshot of the document the positions are resolved
+	 *            against, or <code>null</code> to use its current content
+	 */
+	public List<Command> getCodeActionCommands(CodeActionParams params, DocumentSnapshot snapshot, IProgressMonitor monitor) {
+		final ICompilationUnit unit = snapshot == null ? JDTUtils.resolveCompilationUnit(params.getTextDocument().getUri()) : snapshot.getUnit();
 		if (unit == null) {
 			return Collections.emptyList();
 		}
-		int start = DiagnosticsHelper.getStartOffset(unit, params.getRange());
-		int end = DiagnosticsHelper.getEndOffset(unit, params.getRange());
+		int start = getStartOffset(unit, snapshot, params.getRange());
+		int end = getEndOffset(unit, snapshot, params.getRange());
 		InnovationContext context = new InnovationContext(unit, start, end - start);
-		context.setASTRoot(getASTRoot(unit));
-		IProblemLocation[] locations = this.getProblemLocations(unit, params.getContext().getDiagnostics());
+		context.setASTRoot(getASTRoot(unit, snapshot));
+		IProblemLocation[] locations = this.getProblemLocations(unit, snapshot, params.getContext().getDiagnostics());
 
 		List<Command> $ = new ArrayList<>();
 		try {
@@ -98,13 +108,13 @@ public class CodeActionHandler {
 		return textEditToCommand(unit, name, edit);
 	}
 
-	private IProblemLocation[] getProblemLocations(ICompilationUnit unit, List<Diagnostic> diagnostics) {
+	private IProblemLocation[] getProblemLocations(ICompilationUnit unit, DocumentSnapshot snapshot, List<Diagnostic> diagnostics) {
 		IProblemLocation[] locations = new IProblemLocation[diagnostics.size()];
 		for (int i = 0; i < diagnostics.size(); i++) {
 			Diagnostic diagnostic = diagnostics.get(i);
 			int problemId = getProblemId(diagnostic);
-			int start = DiagnosticsHelper.getStartOffset(unit, diagnostic.getRange());
-			int end = DiagnosticsHelper.getEndOffset(unit, diagnostic.getRange());
+			int start = getStartOffset(unit, snapshot, diagnostic.getRange());
+			int end = getEndOffset(unit, snapshot, diagnostic.getRange());
 			boolean isError = diagnostic.getSeverity() == DiagnosticSeverity.Error;
 			locations[i] = new ProblemLocation(start, end - start, problemId, isError);
 		}
@@ -129,7 +139,26 @@ public class CodeActionHandler {
 		return new Command(label, COMMAND_ID_APPLY_EDIT, Arrays.asList($));
 	}
 
-	private static CompilationUnit getASTRoot(ICompilationUnit unit) {
+	private static int getStartOffset(ICompilationUnit unit, DocumentSnapshot snapshot, Range range) {
+		if (snapshot == null) {
+			return DiagnosticsHelper.getStartOffset(unit, range);
+		}
+		return snapshot.getOffset(range.getStart().getLine(), range.getStart().getCharacter());
+	}
+
+	private static int getEndOffset(ICompilationUnit unit, DocumentSnapshot snapshot, Range range) {
+		if (snapshot == null) {
+			return DiagnosticsHelper.getEndOffset(unit, range);
+		}
+		return snapshot.getOffset(range.getEnd().getLine(), range.getEnd().getCharacter());
+	}
+
+	private static CompilationUnit getASTRoot(ICompilationUnit unit, DocumentSnapshot snapshot) {
+		// the AST of the snapshot's version, if the validation already created it
+		CompilationUnit astRoot = snapshot == null ? null : snapshot.getAST();
+		if (astRoot != null) {
+			return astRoot;
+		}
 		return SharedASTProvider.getInstance().getAST(unit, new NullProgressMonitor());
 	}
 
@@ -12,17 +12,21 @@ package org.eclipse.jdt.ls.core.internal.handlers;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.jdt.core.CompletionProposal;
-import org.eclipse.jdt.core.IBuffer;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.ls.core.internal.JDTUtils;
 import org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin;
 import org.eclipse.jdt.ls.core.internal.contentassist.CompletionProposalRequestor;
+import org.eclipse.jdt.ls.core.internal.javadoc.JavadocCache;
+import org.eclipse.jdt.ls.core.internal.preferences.PreferenceManager;
+import org.eclipse.jdt.ls.core.internal.preferences.Preferences;
 import org.eclipse.lsp4j.CompletionItem;
 import org.eclipse.lsp4j.CompletionList;
 import org.eclipse.lsp4j.TextDocumentPositionParams;
@@ -30,34 +34,53 @@ import org.eclipse.lsp4j.jsonrpc.messages.Either;
 
 public class CompletionHandler{
 
-	Either<List<CompletionItem>, CompletionList> completion(TextDocumentPositionParams position,
+	private static final int PREFETCHED_DOCUMENTATION = 5;
+
+	private final PreferenceManager manager;
+
+	public CompletionHandler(PreferenceManager manager) {
+		this.manager = manager;
+	}
+
+	/**
+	 * @param snapshot
+	 *            the snapshot of the document to complete, or <code>null</code>
+	 *            to take one of its current content
+	 */
+	Either<List<CompletionItem>, CompletionList> completion(TextDocumentPositionParams position, DocumentSnapshot snapshot,
 			IProgressMonitor monitor) {
-		List<CompletionItem> completionItems = null;
+		CompletionList $ = new CompletionList();
 		try {
-			ICompilationUnit unit = JDTUtils.resolveCompilationUnit(position.getTextDocument().getUri());
-			completionItems = this.computeContentAssist(unit,
+			if (snapshot == null) {
+				ICompilationUnit unit = JDTUtils.resolveCompilationUnit(position.getTextDocument().getUri());
+				snapshot = unit == null ? null : DocumentSnapshot.create(position.getTextDocument().getUri(), unit, 0);
+			}
+			this.computeContentAssist(snapshot,
 					position.getPosition().getLine(),
-					position.getPosition().getCharacter(), monitor);
+					position.getPosition().getCharacter(), $, monitor);
 		} catch (OperationCanceledException ignorable) {
 			// No need to pollute logs when query is cancelled
 		} catch (Exception e) {
 			JavaLanguageServerPlugin.logException("Problem with codeComplete for " +  position.getTextDocument().getUri(), e);
 		}
-		CompletionList $ = new CompletionList();
-		$.setItems(completionItems == null ? Collections.emptyList() : completionItems);
+		if ($.getItems() == null) {
+			$.setItems(Collections.emptyList());
+		}
 		JavaLanguageServerPlugin.logInfo("Completion request completed");
 		return Either.forRight($);
 	}
 
-	private List<CompletionItem> computeContentAssist(ICompilationUnit unit, int line, int column, IProgressMonitor monitor) throws JavaModelException {
-		CompletionResponses.clear();
-		if (unit == null) {
-			return Collections.emptyList();
+	private void computeContentAssist(DocumentSnapshot snapshot, int line, int column, CompletionList list, IProgressMonitor monitor) throws JavaModelException {
+		if (snapshot == null) {
+			return;
 		}
+		ICompilationUnit unit = snapshot.getUnit();
+		String uri = snapshot.getUri();
 		List<CompletionItem> proposals = new ArrayList<>();
 
-		final int offset = JsonRpcHelpers.toOffset(unit.getBuffer(), line, column);
+		final int offset = snapshot.getOffset(line, column);
 		CompletionProposalRequestor collector = new CompletionProposalRequestor(unit, offset);
+		collector.setMaxResults(getMaxResults());
 		// Allow completions for unresolved types - since 3.3
 		collector.setAllowsRequiredProposals(CompletionProposal.FIELD_REF, CompletionProposal.TYPE_REF, true);
 		collector.setAllowsRequiredProposals(CompletionProposal.FIELD_REF, CompletionProposal.TYPE_IMPORT, true);
@@ -75,13 +98,43 @@ public class CompletionHandler{
 		collector.setAllowsRequiredProposals(CompletionProposal.TYPE_REF, CompletionProposal.TYPE_REF, true);
 
 		if (offset >-1 && !monitor.isCanceled()) {
-			IBuffer buffer = unit.getBuffer();
-			if (buffer != null && buffer.getLength() >= offset) {
-				unit.codeComplete(offset, collector, monitor);
-				proposals.addAll(collector.getCompletionItems());
+			if (snapshot.getText().length() >= offset) {
+				char[] contents = snapshot.getCharacters();
+				// narrowing the previous prefix: the proposals are filtered from the previous response
+				CompletionResponse narrowed = CompletionResponseCache.narrow(uri, contents, offset);
+				if (narrowed != null) {
+					proposals.addAll(collector.getCompletionItems(narrowed));
+				} else {
+					unit.codeComplete(offset, collector, monitor);
+					proposals.addAll(collector.getCompletionItems());
+				}
+				// the engine reads the working copy: its response only matches the snapshot if the document didn't change meanwhile
+				if (!monitor.isCanceled() && (narrowed != null || snapshot.isCurrent())) {
+					CompletionResponseCache.put(uri, collector.getResponse(), contents, offset);
+					prefetchDocumentation(unit, proposals);
+				}
+				list.setIsIncomplete(collector.isIncomplete());
 			}
 		}
+		list.setItems(proposals);
+	}
 
-		return proposals;
+	private int getMaxResults() {
+		Preferences preferences = manager == null ? null : manager.getPreferences();
+		return preferences == null ? 0 : preferences.getCompletionMaxResults();
+	}
+
+	/**
+	 * Computes in the background the Javadoc of the first items, likely to be
+	 * resolved next.
+	 */
+	private static void prefetchDocumentation(ICompilationUnit unit, List<CompletionItem> items) {
+		items.stream().filter(item -> item.getSortText() != null).sorted(Comparator.comparing(CompletionItem::getSortText)).limit(PREFETCHED_DOCUMENTATION).forEach(item -> {
+			@SuppressWarnings("unchecked")
+			Map<String, String> data = (Map<String, String>) item.getData();
+			if (data != null) {
+				JavadocCache.getInstance().prefetch(() -> CompletionResolveHandler.findMember(unit, data));
+			}
+		});
 	}
 }
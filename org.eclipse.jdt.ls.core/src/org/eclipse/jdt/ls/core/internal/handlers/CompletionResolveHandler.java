@@ -14,7 +14,6 @@ import static org.eclipse.jdt.internal.corext.template.java.SignatureUtil.fix836
 import static org.eclipse.jdt.internal.corext.template.java.SignatureUtil.getLowerBound;
 import static org.eclipse.jdt.internal.corext.template.java.SignatureUtil.stripSignatureToFQN;
 
-import java.io.Reader;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -30,14 +29,11 @@ import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.ls.core.internal.JDTUtils;
 import org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin;
 import org.eclipse.jdt.ls.core.internal.contentassist.CompletionProposalReplacementProvider;
-import org.eclipse.jdt.ls.core.internal.javadoc.JavadocContentAccess;
+import org.eclipse.jdt.ls.core.internal.javadoc.JavadocCache;
 import org.eclipse.jdt.ls.core.internal.preferences.PreferenceManager;
 import org.eclipse.lsp4j.CompletionItem;
 import org.eclipse.osgi.util.NLS;
 
-import com.google.common.io.CharStreams;
-import com.google.common.util.concurrent.SimpleTimeLimiter;
-import com.google.common.util.concurrent.UncheckedTimeoutException;
 /**
  * Adds the completion string and documentation.
  * It checks the client capabilities.
@@ -62,6 +58,11 @@ public class CompletionResolveHandler {
 	public static final String DATA_FIELD_REQUEST_ID = "rid";
 	public static final String DATA_FIELD_PROPOSAL_ID = "pid";
 
+	/**
+	 * Time to wait for the Javadoc of a proposal, in milliseconds
+	 */
+	static final long DOCUMENTATION_TIMEOUT = 500;
+
 	public CompletionItem resolve(CompletionItem param, IProgressMonitor monitor) {
 
 		@SuppressWarnings("unchecked")
@@ -74,11 +75,11 @@ public class CompletionResolveHandler {
 		}
 		int proposalId = Integer.parseInt(data.get(DATA_FIELD_PROPOSAL_ID));
 		long requestId = Long.parseLong(data.get(DATA_FIELD_REQUEST_ID));
-		CompletionResponse completionResponse = CompletionResponses.get(requestId);
+		String uri = data.get(DATA_FIELD_URI);
+		CompletionResponse completionResponse = CompletionResponses.get(uri, requestId);
 		if (completionResponse == null || completionResponse.getProposals().size() <= proposalId) {
 			throw new IllegalStateException("Invalid completion proposal");
 		}
-		String uri = data.get(DATA_FIELD_URI);
 		ICompilationUnit unit = JDTUtils.resolveCompilationUnit(uri);
 		if (unit == null) {
 			throw new IllegalStateException(NLS.bind("Unable to match Compilation Unit from {0} ", uri));
@@ -86,54 +87,18 @@ public class CompletionResolveHandler {
 		CompletionProposalReplacementProvider proposalProvider = new CompletionProposalReplacementProvider(unit,
 				completionResponse.getContext(),
 				completionResponse.getOffset(),
-				this.manager.getClientPreferences());
+				this.manager.getClientPreferences(),
+				completionResponse.getResolveContext(unit));
 		proposalProvider.updateReplacement(completionResponse.getProposals().get(proposalId), param, '\0');
+		// the resolve context may now retain an AST
+		CompletionResponses.reweigh(completionResponse);
 
 		if (data.containsKey(DATA_FIELD_DECLARATION_SIGNATURE)) {
-			String typeName = stripSignatureToFQN(String.valueOf(data.get(DATA_FIELD_DECLARATION_SIGNATURE)));
 			try {
-				IMember member = null;
-				IType type = unit.getJavaProject().findType(typeName);
-
-				if (type!=null && data.containsKey(DATA_FIELD_NAME)) {
-					String name = data.get(DATA_FIELD_NAME);
-					String[] paramSigs = CharOperation.NO_STRINGS;
-					if(data.containsKey( DATA_FIELD_SIGNATURE)){
-						String[] parameters= Signature.getParameterTypes(String.valueOf(fix83600(data.get(DATA_FIELD_SIGNATURE).toCharArray())));
-						for (int i= 0; i < parameters.length; i++) {
-							parameters[i]= getLowerBound(parameters[i]);
-						}
-						paramSigs = parameters;
-					}
-					IMethod method = type.getMethod(name, paramSigs);
-					if (method.exists()) {
-						member = method;
-					} else {
-						IField field = type.getField(name);
-						if (field.exists()) {
-							member = field;
-						}
-					}
-				} else {
-					member = type;
-				}
-
+				IMember member = findMember(unit, data);
 				if (member != null && member.exists() && !monitor.isCanceled()) {
-					String javadoc = null;
-					try {
-						final IMember curMember = member;
-						javadoc = new SimpleTimeLimiter().callWithTimeout(() -> {
-							Reader reader = JavadocContentAccess.getPlainTextContentReader(curMember);
-							return reader == null? null:CharStreams.toString(reader);
-						}, 500, TimeUnit.MILLISECONDS, true);
-					} catch (UncheckedTimeoutException tooSlow) {
-						//Ignore error for now as it's spamming clients on content assist.
-						//TODO cache javadoc resolution results?
-						//JavaLanguageServerPlugin.logError("Unable to get documentation under 500ms");
-					} catch (Exception e) {
-						JavaLanguageServerPlugin.logException("Unable to read documentation", e);
-					}
-					param.setDocumentation(javadoc);
+					// computed in the background when too slow, and cached for the next resolve
+					param.setDocumentation(JavadocCache.getInstance().getPlainText(member, DOCUMENTATION_TIMEOUT, TimeUnit.MILLISECONDS));
 				}
 			} catch (JavaModelException e) {
 				JavaLanguageServerPlugin.logException("Unable to resolve compilation", e);
@@ -141,4 +106,37 @@ public class CompletionResolveHandler {
 		}
 		return param;
 	}
+
+	/**
+	 * @return the member documented by the item with the given data, or
+	 *         <code>null</code>
+	 */
+	static IMember findMember(ICompilationUnit unit, Map<String, String> data) throws JavaModelException {
+		if (!data.containsKey(DATA_FIELD_DECLARATION_SIGNATURE)) {
+			return null;
+		}
+		String typeName = stripSignatureToFQN(String.valueOf(data.get(DATA_FIELD_DECLARATION_SIGNATURE)));
+		IType type = unit.getJavaProject().findType(typeName);
+		if (type == null || !data.containsKey(DATA_FIELD_NAME)) {
+			return type;
+		}
+		String name = data.get(DATA_FIELD_NAME);
+		String[] paramSigs = CharOperation.NO_STRINGS;
+		if(data.containsKey( DATA_FIELD_SIGNATURE)){
+			String[] parameters= Signature.getParameterTypes(String.valueOf(fix83600(data.get(DATA_FIELD_SIGNATURE).toCharArray())));
+			for (int i= 0; i < parameters.length; i++) {
+				parameters[i]= getLowerBound(parameters[i]);
+			}
+			paramSigs = parameters;
+		}
+		IMethod method = type.getMethod(name, paramSigs);
+		if (method.exists()) {
+			return method;
+		}
+		IField field = type.getField(name);
+		if (field.exists()) {
+			return field;
+		}
+		return null;
+	}
 }
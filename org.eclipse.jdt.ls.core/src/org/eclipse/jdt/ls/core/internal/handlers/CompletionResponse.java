@@ -15,6 +15,8 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jdt.core.CompletionContext;
 import org.eclipse.jdt.core.CompletionProposal;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.ls.core.internal.contentassist.CompletionResolveContext;
 
 /**
  * Class representing {@link CompletionProposal} responses to for a given {@link CompletionContext}.
@@ -27,7 +29,9 @@ public class CompletionResponse {
 	private Long id;
 	private int offset;
 	private CompletionContext context;
+	private char[] prefix;
 	private List<CompletionProposal> proposals;
+	private CompletionResolveContext resolveContext;
 
 	public CompletionResponse() {
 		id = idSeed.getAndIncrement();
@@ -52,6 +56,22 @@ public class CompletionResponse {
 	public void setContext(CompletionContext context) {
 		this.context = context;
 	}
+	/**
+	 * @return the prefix being completed: the token of the context, unless
+	 *         the proposals were narrowed to a longer prefix
+	 */
+	public char[] getPrefix() {
+		if (prefix != null) {
+			return prefix;
+		}
+		return context == null ? null : context.getToken();
+	}
+	/**
+	 * @param prefix the prefix the proposals were narrowed to
+	 */
+	public void setPrefix(char[] prefix) {
+		this.prefix = prefix;
+	}
 	/**
 	 * @return the proposals
 	 */
@@ -64,6 +84,30 @@ public class CompletionResponse {
 	public void setProposals(List<CompletionProposal> proposals) {
 		this.proposals = proposals;
 	}
+	/**
+	 * @return the context shared by the resolves of the proposals
+	 */
+	public synchronized CompletionResolveContext getResolveContext(ICompilationUnit unit) {
+		if (resolveContext == null) {
+			resolveContext = new CompletionResolveContext(unit);
+		}
+		return resolveContext;
+	}
+	/**
+	 * @return the estimated memory retained to resolve the proposals
+	 */
+	public synchronized long getResolveContextWeight() {
+		return resolveContext == null ? 0 : resolveContext.getWeight();
+	}
+	/**
+	 * Releases the state retained to resolve the proposals.
+	 */
+	public synchronized void dispose() {
+		if (resolveContext != null) {
+			resolveContext.dispose();
+			resolveContext = null;
+		}
+	}
 	/**
 	 * @return the offset
 	 */
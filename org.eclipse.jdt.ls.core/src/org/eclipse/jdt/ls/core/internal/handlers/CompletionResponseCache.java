@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.core.CompletionContext;
+import org.eclipse.jdt.core.CompletionProposal;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.codeassist.RelevanceConstants;
+import org.eclipse.jdt.ls.core.internal.contentassist.CompletionProposalRanking;
+import org.eclipse.jdt.ls.core.internal.contentassist.GetterSetterCompletionProposal;
+
+/**
+ * The last {@link CompletionResponse} of each document, for the requests
+ * narrowing the same identifier to be answered without running the
+ * completion engine again.
+ *
+ * A response is reused when the next request is on the same token, with a
+ * prefix extending the previous one, and the rest of the document is
+ * unchanged: the completion engine would return a subset of the same
+ * proposals. They are filtered with the engine's matching rules, and copied
+ * with the relevance for the new prefix and the ranges extended to the new
+ * offset: the responses of the previous requests keep theirs, to be resolved.
+ * A response can only be reused once, by the next request; the narrowed
+ * response is cached in its place.
+ *
+ * The contents of the document at the time of the request are kept with the
+ * response, to compare the rest of the document exactly.
+ */
+@SuppressWarnings("restriction")
+final class CompletionResponseCache {
+
+	private static final int MAX_DOCUMENTS = 16;
+
+	private static final Map<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(MAX_DOCUMENTS, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			return size() > MAX_DOCUMENTS;
+		}
+	};
+
+	private static final AtomicLong reused = new AtomicLong();
+	private static final AtomicLong computed = new AtomicLong();
+
+	private CompletionResponseCache() {
+		//Don't instantiate
+	}
+
+	private static final class Entry {
+		private final CompletionResponse response;
+		private final int tokenStart;
+		private final char[] prefix;
+		/** the contents of the document, never modified */
+		private final char[] contents;
+		private final int offset;
+
+		private Entry(CompletionResponse response, int tokenStart, char[] prefix, char[] contents, int offset) {
+			this.response = response;
+			this.tokenStart = tokenStart;
+			this.prefix = prefix;
+			this.contents = contents;
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * Caches the response computed by the completion engine at the given
+	 * offset, if its token can be narrowed.
+	 */
+	static void put(String uri, CompletionResponse response, char[] contents, int offset) {
+		CompletionContext context = response.getContext();
+		if (contents == null || context == null || response.getProposals() == null || context.getTokenKind() == CompletionContext.TOKEN_KIND_STRING_LITERAL) {
+			remove(uri);
+			return;
+		}
+		int tokenStart = getTokenStart(contents, offset);
+		char[] prefix = CharOperation.subarray(contents, tokenStart, offset);
+		// the engine only searches the types for a non empty prefix, or after a qualifier
+		boolean complete = prefix.length > 0 || (tokenStart > 0 && contents[tokenStart - 1] == '.');
+		// a narrowed response keeps the context of the engine, with the previous token
+		if (!complete || (response.getPrefix() != null && !CharOperation.equals(response.getPrefix(), prefix))) {
+			remove(uri);
+			return;
+		}
+		Entry entry = new Entry(response, tokenStart, prefix, contents, offset);
+		synchronized (ENTRIES) {
+			ENTRIES.put(uri, entry);
+		}
+	}
+
+	/**
+	 * Takes the response cached for the document and, if the request at the
+	 * given offset narrows its token, returns a response at that offset with
+	 * the proposals matching the new prefix, and the context of the cached
+	 * response.
+	 *
+	 * @return the response, or <code>null</code> if the completion engine must
+	 *         run
+	 */
+	static CompletionResponse narrow(String uri, char[] contents, int offset) {
+		CompletionResponse response = contents == null ? null : narrow(take(uri), contents, offset);
+		(response == null ? computed : reused).incrementAndGet();
+		return response;
+	}
+
+	private static Entry take(String uri) {
+		synchronized (ENTRIES) {
+			return ENTRIES.remove(uri);
+		}
+	}
+
+	private static CompletionResponse narrow(Entry entry, char[] contents, int offset) {
+		if (entry == null) {
+			return null;
+		}
+		int tokenStart = getTokenStart(contents, offset);
+		char[] prefix = CharOperation.subarray(contents, tokenStart, offset);
+		int delta = offset - entry.response.getOffset();
+		if (tokenStart != entry.tokenStart || delta < 0 || !CharOperation.prefixEquals(entry.prefix, prefix) || !regionEquals(contents, 0, entry.contents, 0, tokenStart)
+				|| contents.length - offset != entry.contents.length - entry.offset || !regionEquals(contents, offset, entry.contents, entry.offset, contents.length - offset)) {
+			return null;
+		}
+		List<CompletionProposal> proposals = new ArrayList<>();
+		for (CompletionProposal proposal : entry.response.getProposals()) {
+			char[] name = CompletionProposalRanking.getMatchedName(proposal);
+			if (name != null && name.length > 0 && !matches(prefix, name)) {
+				continue;
+			}
+			CompletionProposal copy = copy(proposal);
+			if (name != null && name.length > 0) {
+				copy.setRelevance(proposal.getRelevance() - computeRelevanceForCaseMatching(entry.prefix, name) + computeRelevanceForCaseMatching(prefix, name));
+			}
+			extendRanges(copy, entry.response.getOffset(), delta);
+			proposals.add(copy);
+		}
+		CompletionResponse response = new CompletionResponse();
+		response.setContext(entry.response.getContext());
+		response.setPrefix(prefix);
+		response.setOffset(offset);
+		response.setProposals(proposals);
+		return response;
+	}
+
+	static void remove(String uri) {
+		synchronized (ENTRIES) {
+			ENTRIES.remove(uri);
+		}
+	}
+
+	/**
+	 * @return the number of requests answered from a cached response
+	 */
+	static long getReusedCount() {
+		return reused.get();
+	}
+
+	/**
+	 * @return the number of requests answered by the completion engine
+	 */
+	static long getComputedCount() {
+		return computed.get();
+	}
+
+	private static int getTokenStart(char[] contents, int offset) {
+		int start = Math.min(offset, contents.length);
+		while (start > 0 && Character.isJavaIdentifierPart(contents[start - 1])) {
+			start--;
+		}
+		return start;
+	}
+
+	private static boolean regionEquals(char[] contents, int start, char[] other, int otherStart, int length) {
+		if (length < 0 || start + length > contents.length || otherStart + length > other.length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (contents[start + i] != other[otherStart + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean matches(char[] prefix, char[] name) {
+		if (CharOperation.prefixEquals(prefix, name, false)) {
+			return true;
+		}
+		if (JavaCore.ENABLED.equals(JavaCore.getOption(JavaCore.CODEASSIST_CAMEL_CASE_MATCH)) && CharOperation.camelCaseMatch(prefix, name)) {
+			return true;
+		}
+		return JavaCore.ENABLED.equals(JavaCore.getOption(JavaCore.CODEASSIST_SUBSTRING_MATCH)) && CharOperation.substringMatch(prefix, name);
+	}
+
+	/**
+	 * The relevance the completion engine gives to the match of a name with
+	 * the prefix.
+	 */
+	private static int computeRelevanceForCaseMatching(char[] prefix, char[] name) {
+		if (CharOperation.equals(prefix, name, true)) {
+			return RelevanceConstants.R_EXACT_NAME + RelevanceConstants.R_CASE;
+		} else if (CharOperation.equals(prefix, name, false)) {
+			return RelevanceConstants.R_EXACT_NAME;
+		} else if (CharOperation.prefixEquals(prefix, name, false)) {
+			return CharOperation.prefixEquals(prefix, name, true) ? RelevanceConstants.R_CASE : 0;
+		} else if (CharOperation.camelCaseMatch(prefix, name)) {
+			return RelevanceConstants.R_CAMEL_CASE;
+		} else if (CharOperation.substringMatch(prefix, name)) {
+			return RelevanceConstants.R_SUBSTRING;
+		}
+		return 0;
+	}
+
+	private static CompletionProposal copy(CompletionProposal proposal) {
+		if (proposal instanceof GetterSetterCompletionProposal) {
+			return ((GetterSetterCompletionProposal) proposal).copy();
+		}
+		return new NarrowedCompletionProposal(proposal);
+	}
+
+	/**
+	 * Extends the ranges of the copy ending at, or after, the previous offset
+	 * to the new one, copying its required proposals.
+	 */
+	private static void extendRanges(CompletionProposal copy, int offset, int delta) {
+		if (delta == 0) {
+			return;
+		}
+		copy.setReplaceRange(shiftStart(copy.getReplaceStart(), offset, delta), shiftEnd(copy.getReplaceEnd(), offset, delta));
+		copy.setTokenRange(shiftStart(copy.getTokenStart(), offset, delta), shiftEnd(copy.getTokenEnd(), offset, delta));
+		CompletionProposal[] requiredProposals = copy.getRequiredProposals();
+		if (requiredProposals != null) {
+			CompletionProposal[] requiredCopies = new CompletionProposal[requiredProposals.length];
+			for (int i = 0; i < requiredProposals.length; i++) {
+				requiredCopies[i] = copy(requiredProposals[i]);
+				extendRanges(requiredCopies[i], offset, delta);
+			}
+			copy.setRequiredProposals(requiredCopies);
+		}
+	}
+
+	private static int shiftStart(int position, int offset, int delta) {
+		return position > offset ? position + delta : position;
+	}
+
+	private static int shiftEnd(int position, int offset, int delta) {
+		return position >= offset ? position + delta : position;
+	}
+}
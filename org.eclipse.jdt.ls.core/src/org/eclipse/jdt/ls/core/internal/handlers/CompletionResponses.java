@@ -10,39 +10,226 @@
  *******************************************************************************/
 package org.eclipse.jdt.ls.core.internal.handlers;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.core.CompletionProposal;
 
 /**
- * Cache of {@link CompletionResponse}s.
+ * Cache of {@link CompletionResponse}s, keyed by document and request id, for
+ * their proposals to be resolved.
+ *
+ * The last responses of each document are kept, so resolving the items of a
+ * list still works while another completion request runs, in the same or in
+ * another document. Responses are evicted, oldest first, when a document has
+ * more than {@value #MAX_RESPONSES_PER_DOCUMENT} of them, and when all the
+ * responses exceed {@value #MAX_RESPONSES} or the memory budget.
  *
  * @author Fred Bricon
  */
 public final class CompletionResponses {
 
+	static final int MAX_RESPONSES_PER_DOCUMENT = 4;
+	static final int MAX_RESPONSES = 32;
+
+	/**
+	 * Estimated footprint of a {@link CompletionProposal}, without its arrays.
+	 */
+	private static final int PROPOSAL_WEIGHT = 150;
+
 	private CompletionResponses(){
 		//Don't instantiate
 	}
 
-	private static Map<Long, CompletionResponse> COMPLETIONS = new ConcurrentHashMap<>();
+	private static final LinkedHashMap<Long, Entry> COMPLETIONS = new LinkedHashMap<>();
+	private static long memoryBudget = 8 * 1024 * 1024;
+	private static long weight;
 
-	public static CompletionResponse get(Long id) {
-		return COMPLETIONS.get(id);
+	private static final AtomicLong misses = new AtomicLong();
+	private static final AtomicLong evictions = new AtomicLong();
+
+	private static final class Entry {
+		final String uri;
+		final CompletionResponse response;
+		final long proposalsWeight;
+		long weight;
+
+		Entry(String uri, CompletionResponse response, long proposalsWeight) {
+			this.uri = uri;
+			this.response = response;
+			this.proposalsWeight = proposalsWeight;
+			this.weight = proposalsWeight + response.getResolveContextWeight();
+		}
 	}
 
-	public static void store(CompletionResponse response) {
-		if (response != null) {
-			COMPLETIONS.put(response.getId(), response);
+	/**
+	 * @return the response with the given id, for the given document, or
+	 *         <code>null</code> if it was evicted
+	 */
+	public static CompletionResponse get(String uri, Long id) {
+		Entry entry;
+		synchronized (COMPLETIONS) {
+			entry = COMPLETIONS.get(id);
+		}
+		if (entry == null || !Objects.equals(entry.uri, uri)) {
+			misses.incrementAndGet();
+			return null;
+		}
+		return entry.response;
+	}
+
+	public static void store(String uri, CompletionResponse response) {
+		if (response == null) {
+			return;
+		}
+		Entry entry = new Entry(uri, response, weigh(response.getProposals()));
+		synchronized (COMPLETIONS) {
+			remove(COMPLETIONS.put(response.getId(), entry));
+			weight += entry.weight;
+			trim(uri);
+		}
+	}
+
+	/**
+	 * Updates the weight of the given response, once the state to resolve its
+	 * proposals is retained.
+	 */
+	public static void reweigh(CompletionResponse response) {
+		if (response == null) {
+			return;
+		}
+		synchronized (COMPLETIONS) {
+			Entry entry = COMPLETIONS.get(response.getId());
+			if (entry != null && entry.response == response) {
+				long entryWeight = entry.proposalsWeight + response.getResolveContextWeight();
+				weight += entryWeight - entry.weight;
+				entry.weight = entryWeight;
+				trim(entry.uri);
+			}
 		}
 	}
 
 	public static void delete(CompletionResponse response) {
 		if (response != null) {
-			COMPLETIONS.remove(response.getId());
+			synchronized (COMPLETIONS) {
+				remove(COMPLETIONS.remove(response.getId()));
+			}
 		}
 	}
 
 	public static void clear() {
-		COMPLETIONS.clear();
+		synchronized (COMPLETIONS) {
+			for (Entry entry : COMPLETIONS.values()) {
+				entry.response.dispose();
+			}
+			COMPLETIONS.clear();
+			weight = 0;
+		}
+	}
+
+	public static int size() {
+		synchronized (COMPLETIONS) {
+			return COMPLETIONS.size();
+		}
+	}
+
+	/**
+	 * @return the estimated memory used by the responses
+	 */
+	public static long getWeight() {
+		synchronized (COMPLETIONS) {
+			return weight;
+		}
+	}
+
+	static void setMemoryBudget(long budget) {
+		synchronized (COMPLETIONS) {
+			memoryBudget = budget;
+		}
+	}
+
+	/**
+	 * @return the number of resolves for an evicted response
+	 */
+	public static long getMissCount() {
+		return misses.get();
+	}
+
+	public static long getEvictionCount() {
+		return evictions.get();
+	}
+
+	private static void remove(Entry entry) {
+		if (entry != null) {
+			weight -= entry.weight;
+			entry.response.dispose();
+		}
+	}
+
+	/**
+	 * Evicts the oldest responses of the given document, then the oldest
+	 * responses overall, until the limits are met. The most recent response is
+	 * always kept.
+	 */
+	private static void trim(String uri) {
+		int count = 0;
+		for (Entry entry : COMPLETIONS.values()) {
+			if (Objects.equals(entry.uri, uri)) {
+				count++;
+			}
+		}
+		Iterator<Entry> iterator = COMPLETIONS.values().iterator();
+		while (count > MAX_RESPONSES_PER_DOCUMENT && iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (Objects.equals(entry.uri, uri)) {
+				evict(iterator, entry);
+				count--;
+			}
+		}
+		iterator = COMPLETIONS.values().iterator();
+		while ((COMPLETIONS.size() > MAX_RESPONSES || weight > memoryBudget) && COMPLETIONS.size() > 1) {
+			evict(iterator, iterator.next());
+		}
+	}
+
+	private static void evict(Iterator<Entry> iterator, Entry entry) {
+		iterator.remove();
+		weight -= entry.weight;
+		entry.response.dispose();
+		evictions.incrementAndGet();
+	}
+
+	/**
+	 * Estimates the memory footprint of the proposals, with their required
+	 * proposals. The Java elements they reference are not accounted for. The
+	 * AST retained to resolve them is weighed separately, once created.
+	 */
+	private static long weigh(List<CompletionProposal> proposals) {
+		long weight = 0;
+		if (proposals != null) {
+			for (CompletionProposal proposal : proposals) {
+				weight += weigh(proposal);
+			}
+		}
+		return weight;
+	}
+
+	private static long weigh(CompletionProposal proposal) {
+		long weight = PROPOSAL_WEIGHT + 2L * (length(proposal.getCompletion()) + length(proposal.getName()) + length(proposal.getSignature()) + length(proposal.getDeclarationSignature()) + length(proposal.getKey())
+				+ length(proposal.getDeclarationKey()));
+		CompletionProposal[] requiredProposals = proposal.getRequiredProposals();
+		if (requiredProposals != null) {
+			for (CompletionProposal requiredProposal : requiredProposals) {
+				weight += weigh(requiredProposal);
+			}
+		}
+		return weight;
+	}
+
+	private static int length(char[] chars) {
+		return chars == null ? 0 : chars.length;
 	}
 }
@@ -12,9 +12,17 @@ package org.eclipse.jdt.ls.core.internal.handlers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.filebuffers.FileBuffers;
 import org.eclipse.core.filebuffers.IFileBuffer;
@@ -29,18 +37,28 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.core.IBuffer;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
 import org.eclipse.jdt.core.compiler.IProblem;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.ls.core.internal.ASTCache;
 import org.eclipse.jdt.ls.core.internal.ActionableNotification;
+import org.eclipse.jdt.ls.core.internal.FlightRecorderEvents;
+import org.eclipse.jdt.ls.core.internal.IVersionedBuffer;
 import org.eclipse.jdt.ls.core.internal.JDTUtils;
 import org.eclipse.jdt.ls.core.internal.JavaClientConnection;
 import org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin;
+import org.eclipse.jdt.ls.core.internal.LineTable;
+import org.eclipse.jdt.ls.core.internal.MetricsRegistry;
+import org.eclipse.jdt.ls.core.internal.MetricsRegistry.Outcome;
+import org.eclipse.jdt.ls.core.internal.PieceTableBuffer;
 import org.eclipse.jdt.ls.core.internal.SharedASTProvider;
 import org.eclipse.jdt.ls.core.internal.managers.ProjectsManager;
 import org.eclipse.jdt.ls.core.internal.managers.ProjectsManager.CHANGE_TYPE;
@@ -48,23 +66,19 @@ import org.eclipse.jdt.ls.core.internal.preferences.PreferenceManager;
 import org.eclipse.jdt.ls.core.internal.preferences.Preferences;
 import org.eclipse.jdt.ls.core.internal.preferences.Preferences.Severity;
 import org.eclipse.jface.text.BadLocationException;
-import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.lsp4j.Command;
 import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidCloseTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.DidSaveTextDocumentParams;
-import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
-import org.eclipse.text.edits.DeleteEdit;
-import org.eclipse.text.edits.InsertEdit;
-import org.eclipse.text.edits.MalformedTreeException;
-import org.eclipse.text.edits.ReplaceEdit;
-import org.eclipse.text.edits.TextEdit;
 
 public class DocumentLifeCycleHandler {
 
 	public static String DOCUMENT_LIFE_CYCLE_JOBS = "DocumentLifeCycleJobs";
+	private static final int SYNTAX_PHASE = 0;
+	private static final int SEMANTIC_PHASE = 1;
 	private JavaClientConnection connection;
 	private PreferenceManager preferenceManager;
 	private ProjectsManager projectsManager;
@@ -72,12 +86,71 @@ public class DocumentLifeCycleHandler {
 	private SharedASTProvider sharedASTProvider;
 	private WorkspaceJob validationTimer;
 	private Set<ICompilationUnit> toReconcile = new HashSet<>();
+	/**
+	 * State carried over from abandoned validation runs: units whose
+	 * diagnostics were not published, types declared by changed units before
+	 * their change, changed units whose dependents' ASTs were not invalidated
+	 * yet and the types they declared, and the content version changed units
+	 * were reconciled at.
+	 */
+	private Set<ICompilationUnit> unpublished = new LinkedHashSet<>();
+	private Set<String> unpublishedDeclarations = new HashSet<>();
+	private Set<ICompilationUnit> uninvalidatedDependents = new LinkedHashSet<>();
+	private Set<String> uninvalidatedDeclarations = new HashSet<>();
+	private Map<String, Long> reconciledVersions = new ConcurrentHashMap<>();
+	/**
+	 * Bumped on every document change: a validation run started for an older
+	 * generation is stale.
+	 */
+	private AtomicLong validationGeneration = new AtomicLong();
+	private ValidationPlanner validationPlanner = new ValidationPlanner();
+	private ValidationScheduler validationScheduler;
+	private Job syntaxValidationJob;
+	private Set<ICompilationUnit> toSyntaxValidate = new HashSet<>();
+	/**
+	 * Content generation of each open unit, bumped on every open or change.
+	 */
+	private Map<String, Long> generations = new ConcurrentHashMap<>();
+	/**
+	 * Stamp of the last diagnostics published for each unit. A stamp combines
+	 * the content generation with the validation phase, so that semantic
+	 * diagnostics supersede syntax diagnostics of the same generation, and
+	 * diagnostics computed for an older generation are never published over
+	 * newer ones.
+	 */
+	private Map<String, Long> publishedStamps = new ConcurrentHashMap<>();
+	/**
+	 * Line tables of the open documents, used to map the positions of
+	 * incremental changes, unless their buffer is a {@link PieceTableBuffer}.
+	 */
+	private Map<String, LineTable> lineTables = new ConcurrentHashMap<>();
+	/**
+	 * Client versions of the open documents, and their latest snapshots.
+	 */
+	private Map<String, Integer> versions = new ConcurrentHashMap<>();
+	private Map<String, DocumentSnapshot> snapshots = new ConcurrentHashMap<>();
+	/**
+	 * Owner of the working copies, <code>null</code> for the primary ones. In
+	 * daemon mode, each session edits its own working copies.
+	 */
+	private final WorkingCopyOwner owner;
 
 	public DocumentLifeCycleHandler(JavaClientConnection connection, PreferenceManager preferenceManager, ProjectsManager projectsManager, boolean delayValidation) {
+		this(connection, preferenceManager, projectsManager, delayValidation, null);
+	}
+
+	/**
+	 * @param owner
+	 *            the owner of the working copies of the documents, or
+	 *            <code>null</code> to edit the primary working copies
+	 */
+	public DocumentLifeCycleHandler(JavaClientConnection connection, PreferenceManager preferenceManager, ProjectsManager projectsManager, boolean delayValidation, WorkingCopyOwner owner) {
 		this.connection = connection;
+		this.owner = owner;
 		this.preferenceManager = preferenceManager;
 		this.projectsManager = projectsManager;
 		this.sharedASTProvider = SharedASTProvider.getInstance();
+		this.validationScheduler = new ValidationScheduler(sharedASTProvider);
 		if (delayValidation) {
 			this.validationTimer = new WorkspaceJob("Validate documents") {
 				@Override
@@ -93,15 +166,39 @@ public class DocumentLifeCycleHandler {
 					return DOCUMENT_LIFE_CYCLE_JOBS.equals(family);
 				}
 			};
-			this.validationTimer.setRule(ResourcesPlugin.getWorkspace().getRoot());
+			// no resource rule: the validation scheduler acquires per-project rules while reconciling
+			this.syntaxValidationJob = new Job("Syntax check documents") {
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
+					return performSyntaxValidation(monitor);
+				}
+
+				/* (non-Javadoc)
+				 * @see org.eclipse.core.runtime.jobs.Job#belongsTo(java.lang.Object)
+				 */
+				@Override
+				public boolean belongsTo(Object family) {
+					return DOCUMENT_LIFE_CYCLE_JOBS.equals(family);
+				}
+			};
+			this.syntaxValidationJob.setSystem(true);
 		}
 	}
 
 	private void triggerValidation(ICompilationUnit cu) throws JavaModelException {
+		generations.merge(cu.getHandleIdentifier(), 1L, Long::sum);
 		synchronized (toReconcile) {
 			toReconcile.add(cu);
+			// explicitly triggered: always reconcile again
+			reconciledVersions.remove(cu.getHandleIdentifier());
 		}
+		validationGeneration.incrementAndGet();
 		if (validationTimer != null) {
+			// fast syntax-only pass, superseded by the semantic pass below
+			synchronized (toSyntaxValidate) {
+				toSyntaxValidate.add(cu);
+			}
+			syntaxValidationJob.schedule();
 			validationTimer.cancel();
 			validationTimer.schedule(400);
 		} else {
@@ -110,37 +207,329 @@ public class DocumentLifeCycleHandler {
 
 	}
 
+	/**
+	 * First validation phase: parses the changed units without resolving
+	 * bindings, and publishes their syntax problems right away.
+	 */
+	private IStatus performSyntaxValidation(IProgressMonitor monitor) {
+		long start = System.nanoTime();
+		FlightRecorderEvents.Event event = FlightRecorderEvents.begin(FlightRecorderEvents.VALIDATION);
+		IStatus status = syntaxValidate(monitor);
+		Outcome outcome = MetricsRegistry.outcomeOf(status);
+		MetricsRegistry.getInstance().timer("job/syntaxValidation").record(System.nanoTime() - start, outcome);
+		event.setMethod("syntaxValidation").setVersion(validationGeneration.get()).commit(outcome);
+		return status;
+	}
+
+	private IStatus syntaxValidate(IProgressMonitor monitor) {
+		List<ICompilationUnit> units;
+		synchronized (toSyntaxValidate) {
+			units = new ArrayList<>(toSyntaxValidate);
+			toSyntaxValidate.clear();
+		}
+		for (ICompilationUnit unit : units) {
+			if (monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
+			}
+			if (!unit.isWorkingCopy()) {
+				continue;
+			}
+			long generation = getGeneration(unit);
+			CompilationUnit astRoot = sharedASTProvider.createSyntaxAST(unit, monitor);
+			if (astRoot != null) {
+				publishDiagnostics(unit, astRoot.getProblems(), generation, SYNTAX_PHASE);
+			}
+		}
+		return Status.OK_STATUS;
+	}
+
 	private IStatus performValidation(IProgressMonitor monitor) throws JavaModelException {
+		if (syntaxValidationJob != null) {
+			// the syntax problems of the changed units are always published first
+			try {
+				syntaxValidationJob.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return Status.CANCEL_STATUS;
+			}
+		}
+		long start = System.nanoTime();
+		FlightRecorderEvents.Event event = FlightRecorderEvents.begin(FlightRecorderEvents.VALIDATION);
+		Outcome outcome = Outcome.ERROR;
+		try {
+			IStatus status = validate(monitor);
+			outcome = MetricsRegistry.outcomeOf(status);
+			return status;
+		} finally {
+			MetricsRegistry.getInstance().timer("job/validation").record(System.nanoTime() - start, outcome);
+			event.setMethod("validation").setVersion(validationGeneration.get()).commit(outcome);
+		}
+	}
+
+	private IStatus validate(IProgressMonitor monitor) throws JavaModelException {
 		long start = System.currentTimeMillis();
 
+		// the run is abandoned as soon as a document changes
+		GenerationMonitor validationMonitor = new GenerationMonitor(monitor, validationGeneration);
 		List<ICompilationUnit> cusToReconcile = new ArrayList<>();
+		Set<ICompilationUnit> carriedOver = new LinkedHashSet<>();
+		Set<String> previouslyDeclared = new HashSet<>();
+		// changed units whose dependents' cached ASTs must be invalidated, and the types they declared
+		Set<ICompilationUnit> invalidationRoots = new LinkedHashSet<>();
+		Set<String> rootsDeclared = new HashSet<>();
 		synchronized (toReconcile) {
 			cusToReconcile.addAll(toReconcile);
 			toReconcile.clear();
+			carriedOver.addAll(unpublished);
+			unpublished.clear();
+			previouslyDeclared.addAll(unpublishedDeclarations);
+			unpublishedDeclarations.clear();
+			invalidationRoots.addAll(uninvalidatedDependents);
+			uninvalidatedDependents.clear();
+			rootsDeclared.addAll(uninvalidatedDeclarations);
+			uninvalidatedDeclarations.clear();
 		}
-		if (cusToReconcile.isEmpty()) {
+		if (cusToReconcile.isEmpty() && carriedOver.isEmpty()) {
 			return Status.OK_STATUS;
 		}
-		// first reconcile all units with content changes
-		SubMonitor progress = SubMonitor.convert(monitor, cusToReconcile.size() + 1);
+		// capture the generations before reconciling: later changes will trigger another validation
+		Map<String, Long> validatedGenerations = new HashMap<>(generations);
+		// first reconcile all units with content changes, skipping the ones an abandoned run already reconciled
+		SubMonitor progress = SubMonitor.convert(validationMonitor, 3);
+		List<ICompilationUnit> toReconcileNow = new ArrayList<>();
+		Map<ICompilationUnit, Long> reconciledAt = new HashMap<>();
 		for (ICompilationUnit cu : cusToReconcile) {
-			cu.reconcile(ICompilationUnit.NO_AST, true, null, progress.newChild(1));
+			previouslyDeclared.addAll(validationPlanner.getDeclaredTypes(cu));
+			long version = SharedASTProvider.getVersion(cu);
+			Long reconciledVersion = reconciledVersions.remove(cu.getHandleIdentifier());
+			if (version != ASTCache.UNKNOWN_VERSION && reconciledVersion != null && reconciledVersion.longValue() == version && cu.isConsistent()) {
+				reconciledAt.put(cu, version);
+			} else {
+				toReconcileNow.add(cu);
+				rootsDeclared.addAll(validationPlanner.getDeclaredTypes(cu));
+			}
+		}
+		Map<ICompilationUnit, Long> versionsBefore = new HashMap<>();
+		for (ICompilationUnit cu : toReconcileNow) {
+			versionsBefore.put(cu, SharedASTProvider.getVersion(cu));
+		}
+		List<ICompilationUnit> reconciled = validationScheduler.reconcile(toReconcileNow, progress.newChild(1));
+		for (ICompilationUnit cu : reconciled) {
+			reconciledAt.put(cu, versionsBefore.get(cu));
+			this.sharedASTProvider.invalidate(cu);
+		}
+		invalidationRoots.addAll(reconciled);
+		if (validationMonitor.isCanceled()) {
+			return abandon(cusToReconcile, reconciledAt, carriedOver, invalidationRoots, rootsDeclared, previouslyDeclared);
+		}
+		// rebuild the changed units first, so the planner knows the types they declare now
+		List<CompilationUnit> changedRoots = validationScheduler.getASTs(cusToReconcile, progress.newChild(1));
+		if (validationMonitor.isCanceled()) {
+			return abandon(cusToReconcile, reconciledAt, carriedOver, invalidationRoots, rootsDeclared, previouslyDeclared);
+		}
+		for (int i = 0; i < cusToReconcile.size(); i++) {
+			validationPlanner.update(cusToReconcile.get(i), changedRoots.get(i));
+		}
+		List<ICompilationUnit> workingCopies = Arrays.asList(JavaCore.getWorkingCopies(owner));
+		List<ICompilationUnit> toValidate = new ArrayList<>(validationPlanner.getAffectedUnits(cusToReconcile, previouslyDeclared, workingCopies));
+		for (ICompilationUnit cu : carriedOver) {
+			if (!toValidate.contains(cu) && cu.isWorkingCopy()) {
+				toValidate.add(cu);
+			}
+		}
+		// the ASTs computed by an abandoned run are still valid, unless they depend on a unit reconciled since:
+		// only the units reconciled by this run, or by an abandoned run before its invalidation, are roots
+		for (ICompilationUnit cu : validationPlanner.getAffectedUnits(invalidationRoots, rootsDeclared, workingCopies)) {
+			if (!reconciled.contains(cu)) {
+				this.sharedASTProvider.invalidate(cu);
+			}
+		}
+		List<CompilationUnit> astRoots = validationScheduler.getASTs(toValidate, progress.newChild(1));
+		if (validationMonitor.isCanceled()) {
+			// keep the computed ASTs, they'll be published by the next run
+			return abandon(cusToReconcile, reconciledAt, toValidate, Collections.emptySet(), Collections.emptySet(), previouslyDeclared);
 		}
-		this.sharedASTProvider.invalidateAll();
-		List<ICompilationUnit> toValidate = Arrays.asList(JavaCore.getWorkingCopies(null));
-		List<CompilationUnit> astRoots = this.sharedASTProvider.getASTs(toValidate, monitor);
 		for (CompilationUnit astRoot : astRoots) {
+			if (astRoot == null) {
+				continue;
+			}
+			ICompilationUnit unit = (ICompilationUnit) astRoot.getTypeRoot();
+			if (!cusToReconcile.contains(unit)) {
+				validationPlanner.update(unit, astRoot);
+			}
 			// report errors, even if there are no problems in the file: The client need to know that they got fixed.
-			DiagnosticsHandler handler = new DiagnosticsHandler(connection, (ICompilationUnit) astRoot.getTypeRoot());
-			handler.beginReporting();
+			Long generation = validatedGenerations.get(unit.getHandleIdentifier());
+			publishDiagnostics(unit, astRoot.getProblems(), generation == null ? 0 : generation.longValue(), SEMANTIC_PHASE);
+		}
+		JavaLanguageServerPlugin.logInfo("Reconciled " + reconciled.size() + ", validated: " + toValidate.size() + " of " + workingCopies.size() + ". Took " + (System.currentTimeMillis() - start) + " ms");
+		return Status.OK_STATUS;
+	}
 
-			for (IProblem problem : astRoot.getProblems()) {
-				handler.acceptProblem(problem);
+	/**
+	 * Abandons a validation run made stale by a document change. What the run
+	 * already computed is carried over to the next run: units it reconciled
+	 * are not reconciled again unless their content changed, and the ASTs it
+	 * built stay cached.
+	 *
+	 * @param changed
+	 *            the changed units, to validate again
+	 * @param reconciledAt
+	 *            the content versions the changed units were reconciled at
+	 * @param validated
+	 *            the units whose diagnostics are still to be published
+	 * @param invalidationRoots
+	 *            the changed units whose dependents' ASTs were not invalidated
+	 * @param rootsDeclared
+	 *            the types declared by the invalidation roots before their
+	 *            change
+	 * @param previouslyDeclared
+	 *            the types declared by the changed units before the change,
+	 *            whose dependents are still to be validated
+	 */
+	private IStatus abandon(Collection<ICompilationUnit> changed, Map<ICompilationUnit, Long> reconciledAt, Collection<ICompilationUnit> validated, Collection<ICompilationUnit> invalidationRoots, Set<String> rootsDeclared,
+			Set<String> previouslyDeclared) {
+		synchronized (toReconcile) {
+			for (Map.Entry<ICompilationUnit, Long> entry : reconciledAt.entrySet()) {
+				if (entry.getValue() != ASTCache.UNKNOWN_VERSION) {
+					reconciledVersions.put(entry.getKey().getHandleIdentifier(), entry.getValue());
+				}
 			}
-			handler.endReporting();
+			toReconcile.addAll(changed);
+			unpublished.addAll(validated);
+			uninvalidatedDependents.addAll(invalidationRoots);
+			uninvalidatedDeclarations.addAll(rootsDeclared);
+			unpublishedDeclarations.addAll(previouslyDeclared);
 		}
-		JavaLanguageServerPlugin.logInfo("Reconciled " + toReconcile.size() + ", validated: " + toValidate.size() + ". Took " + (System.currentTimeMillis() - start) + " ms");
-		return Status.OK_STATUS;
+		JavaLanguageServerPlugin.logInfo("Validation of " + changed.size() + " units abandoned, superseded by a newer change");
+		return Status.CANCEL_STATUS;
+	}
+
+	/**
+	 * Brings the given open document up to date, before it's used by a
+	 * request handler: its Java model structure is made consistent with its
+	 * content. The validation of the other open documents is not waited for.
+	 *
+	 * @param uri
+	 *            the document URI
+	 * @param monitor
+	 *            the progress monitor
+	 */
+	public void prepareDocument(String uri, IProgressMonitor monitor) {
+		ICompilationUnit unit = uri == null ? null : resolveCompilationUnit(uri);
+		if (unit != null && unit.isWorkingCopy()) {
+			prepare(uri, unit, monitor);
+		}
+	}
+
+	/**
+	 * Returns an immutable snapshot of the given open document, ready to be
+	 * read by request handlers. Only the document itself is brought up to
+	 * date, the validation of the other open documents is not waited for. The
+	 * snapshot is shared by the requests made on the same version of the
+	 * document.
+	 *
+	 * @param uri
+	 *            the document URI
+	 * @param monitor
+	 *            the progress monitor
+	 * @return the snapshot, or <code>null</code> if the document is not open
+	 */
+	public DocumentSnapshot getSnapshot(String uri, IProgressMonitor monitor) {
+		ICompilationUnit unit = uri == null ? null : resolveCompilationUnit(uri);
+		if (unit == null || !unit.isWorkingCopy()) {
+			return null;
+		}
+		prepare(uri, unit, monitor);
+		DocumentSnapshot snapshot = snapshots.get(uri);
+		if (snapshot != null && snapshot.isCurrent()) {
+			return snapshot;
+		}
+		try {
+			// a change updates the version before the content: take the snapshot again if the version changed meanwhile
+			Integer version;
+			do {
+				version = versions.get(uri);
+				snapshot = DocumentSnapshot.create(uri, unit, version == null ? 0 : version.intValue());
+			} while (!Objects.equals(version, versions.get(uri)));
+			snapshots.put(uri, snapshot);
+			return snapshot;
+		} catch (JavaModelException e) {
+			JavaLanguageServerPlugin.logException("Error while taking a snapshot of " + uri, e);
+			return null;
+		}
+	}
+
+	private void prepare(String uri, ICompilationUnit unit, IProgressMonitor monitor) {
+		try {
+			if (!unit.isConsistent()) {
+				unit.makeConsistent(monitor);
+			}
+		} catch (JavaModelException e) {
+			JavaLanguageServerPlugin.logException("Error while preparing document " + uri, e);
+		}
+	}
+
+	private ICompilationUnit resolveCompilationUnit(String uri) {
+		return JDTUtils.resolveCompilationUnit(uri, owner);
+	}
+
+	/**
+	 * Turns the given unit into a working copy of this handler's owner.
+	 *
+	 * @return the working copy
+	 */
+	private ICompilationUnit becomeWorkingCopy(ICompilationUnit unit) throws JavaModelException {
+		if (owner == null) {
+			unit.becomeWorkingCopy(new NullProgressMonitor());
+			return unit;
+		}
+		return unit.getPrimary().getWorkingCopy(owner, new NullProgressMonitor());
+	}
+
+	private long getGeneration(ICompilationUnit unit) {
+		Long generation = generations.get(unit.getHandleIdentifier());
+		return generation == null ? 0 : generation.longValue();
+	}
+
+	private void publishDiagnostics(ICompilationUnit unit, IProblem[] problems, long generation, int phase) {
+		long stamp = generation * 2 + phase;
+		boolean[] superseded = new boolean[1];
+		publishedStamps.compute(unit.getHandleIdentifier(), (k, published) -> {
+			if (published != null && published.longValue() > stamp) {
+				superseded[0] = true;
+				return published;
+			}
+			return stamp;
+		});
+		if (superseded[0]) {
+			return;
+		}
+		DiagnosticsHandler handler = new DiagnosticsHandler(connection, unit);
+		handler.beginReporting();
+		for (IProblem problem : problems) {
+			handler.acceptProblem(problem);
+		}
+		handler.endReporting();
+	}
+
+	/**
+	 * Replaces the scheduler reconciling the working copies and building their
+	 * ASTs.
+	 */
+	void setValidationScheduler(ValidationScheduler validationScheduler) {
+		this.validationScheduler.dispose();
+		this.validationScheduler = validationScheduler;
+	}
+
+	/**
+	 * Stops the pending validations and the validation workers.
+	 */
+	public void dispose() {
+		if (validationTimer != null) {
+			validationTimer.cancel();
+			syntaxValidationJob.cancel();
+		}
+		validationScheduler.dispose();
 	}
 
 	public void didClose(DidCloseTextDocumentParams params) {
@@ -169,17 +558,13 @@ public class DocumentLifeCycleHandler {
 		}
 	}
 
+	/**
+	 * Applies the changes to the document's buffer. Unlike the other
+	 * notifications, changes do not need the workspace lock: they only modify
+	 * the working copy's buffer, which is synchronized on its own.
+	 */
 	public void didChange(DidChangeTextDocumentParams params) {
-		try {
-			ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
-				@Override
-				public void run(IProgressMonitor monitor) throws CoreException {
-					handleChanged(params);
-				}
-			}, new NullProgressMonitor());
-		} catch (CoreException e) {
-			JavaLanguageServerPlugin.logException("Handle document change ", e);
-		}
+		handleChanged(params);
 	}
 
 	public void didSave(DidSaveTextDocumentParams params) {
@@ -197,7 +582,7 @@ public class DocumentLifeCycleHandler {
 
 	public void handleOpen(DidOpenTextDocumentParams params) {
 		String uri = params.getTextDocument().getUri();
-		ICompilationUnit unit = JDTUtils.resolveCompilationUnit(uri);
+		ICompilationUnit unit = resolveCompilationUnit(uri);
 		if (unit == null || unit.getResource() == null) {
 			return;
 		}
@@ -231,12 +616,15 @@ public class DocumentLifeCycleHandler {
 			}
 
 			//			DiagnosticsHandler problemRequestor = new DiagnosticsHandler(connection, unit.getResource(), reportOnlySyntaxErrors);
-			unit.becomeWorkingCopy(new NullProgressMonitor());
+			unit = becomeWorkingCopy(unit);
 			IBuffer buffer = unit.getBuffer();
 			String newContent = params.getTextDocument().getText();
 			if (buffer != null && !buffer.getContents().equals(newContent)) {
 				buffer.setContents(newContent);
 			}
+			lineTables.remove(uri);
+			versions.put(uri, params.getTextDocument().getVersion());
+			snapshots.remove(uri);
 			triggerValidation(unit);
 			// see https://github.com/redhat-developer/vscode-java/issues/274
 			checkPackageDeclaration(uri, unit);
@@ -246,56 +634,87 @@ public class DocumentLifeCycleHandler {
 	}
 
 	public void handleChanged(DidChangeTextDocumentParams params) {
-		ICompilationUnit unit = JDTUtils.resolveCompilationUnit(params.getTextDocument().getUri());
+		String uri = params.getTextDocument().getUri();
+		ICompilationUnit unit = resolveCompilationUnit(uri);
 
 		if (unit == null || !unit.isWorkingCopy() || params.getContentChanges().isEmpty()) {
 			return;
 		}
 
 		try {
-			sharedASTProvider.invalidate(unit);
-			List<TextDocumentContentChangeEvent> contentChanges = params.getContentChanges();
-			for (TextDocumentContentChangeEvent changeEvent : contentChanges) {
-
-				Range range = changeEvent.getRange();
-				int length;
-
-				if (range != null) {
-					length = changeEvent.getRangeLength().intValue();
-				} else {
-					// range is optional and if not given, the whole file content is replaced
-					length = unit.getSource().length();
-					range = JDTUtils.toRange(unit, 0, length);
-				}
-
-				int startOffset = JsonRpcHelpers.toOffset(unit.getBuffer(), range.getStart().getLine(), range.getStart().getCharacter());
-
-				TextEdit edit = null;
-				String text = changeEvent.getText();
-				if (length == 0) {
-					edit = new InsertEdit(startOffset, text);
-				} else if (text.isEmpty()){
-					edit = new DeleteEdit(startOffset, length);
-				} else {
-					edit = new ReplaceEdit(startOffset, length, text);
+			IBuffer buffer = unit.getBuffer();
+			LineTable lines = null;
+			TextChangeBatch batch;
+			if (buffer instanceof PieceTableBuffer) {
+				// the piece table keeps its own line index
+				batch = new TextChangeBatch((PieceTableBuffer) buffer);
+			} else {
+				lines = getLineTable(uri, buffer);
+				batch = new TextChangeBatch(buffer, lines);
+			}
+			try {
+				for (TextDocumentContentChangeEvent changeEvent : params.getContentChanges()) {
+					batch.add(changeEvent);
 				}
-				IDocument document = JsonRpcHelpers.toDocument(unit.getBuffer());
-				edit.apply(document, TextEdit.NONE);
+			} catch (BadLocationException e) {
+				// the line table was partially updated
+				lineTables.remove(uri);
+				throw e;
 			}
+			sharedASTProvider.invalidate(unit);
+			if (params.getTextDocument().getVersion() != null) {
+				versions.put(uri, params.getTextDocument().getVersion());
+			}
+			batch.apply();
+			if (lines != null) {
+				lines.setStamp(getModificationStamp(buffer));
+			}
+			snapshots.remove(uri);
 			triggerValidation(unit);
-		} catch (JavaModelException | MalformedTreeException | BadLocationException e) {
+		} catch (JavaModelException | BadLocationException | IndexOutOfBoundsException e) {
 			JavaLanguageServerPlugin.logException("Error while handling document change", e);
 		}
 	}
 
+	/**
+	 * Returns the line table of the given document, rebuilding it when the
+	 * buffer was modified by something else than a <code>didChange</code>
+	 * notification. Only used for the buffers without a line index of their
+	 * own.
+	 */
+	private LineTable getLineTable(String uri, IBuffer buffer) {
+		long stamp = getModificationStamp(buffer);
+		LineTable lines = lineTables.get(uri);
+		if (lines == null || stamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP || lines.getStamp() != stamp || lines.getLength() != buffer.getLength()) {
+			lines = new LineTable(buffer.getContents());
+			lines.setStamp(stamp);
+			lineTables.put(uri, lines);
+		}
+		return lines;
+	}
+
+	private static long getModificationStamp(IBuffer buffer) {
+		if (buffer instanceof IVersionedBuffer) {
+			return ((IVersionedBuffer) buffer).getModificationStamp();
+		}
+		return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+
 	public void handleClosed(DidCloseTextDocumentParams params) {
 		String uri = params.getTextDocument().getUri();
-		ICompilationUnit unit = JDTUtils.resolveCompilationUnit(uri);
+		ICompilationUnit unit = resolveCompilationUnit(uri);
 		if (unit == null) {
 			return;
 		}
 		try {
 			sharedASTProvider.invalidate(unit);
+			validationPlanner.remove(unit);
+			generations.remove(unit.getHandleIdentifier());
+			publishedStamps.remove(unit.getHandleIdentifier());
+			reconciledVersions.remove(unit.getHandleIdentifier());
+			lineTables.remove(uri);
+			versions.remove(uri);
+			snapshots.remove(uri);
 			unit.discardWorkingCopy();
 		} catch (CoreException e) {
 			JavaLanguageServerPlugin.logException("Error while handling document close", e);
@@ -304,7 +723,7 @@ public class DocumentLifeCycleHandler {
 
 	public void handleSaved(DidSaveTextDocumentParams params) {
 		String uri = params.getTextDocument().getUri();
-		ICompilationUnit unit = JDTUtils.resolveCompilationUnit(uri);
+		ICompilationUnit unit = resolveCompilationUnit(uri);
 		// see https://github.com/redhat-developer/vscode-java/issues/274
 		unit = checkPackageDeclaration(uri, unit);
 		IFileBuffer fileBuffer = FileBuffers.getTextFileBufferManager().getFileBuffer(unit.getPath(), LocationKind.IFILE);
@@ -313,7 +732,7 @@ public class DocumentLifeCycleHandler {
 		}
 		if (unit != null && unit.isWorkingCopy()) {
 			try {
-				projectsManager.fileChanged(uri, CHANGE_TYPE.CHANGED);
+				projectsManager.fileChanged(uri, CHANGE_TYPE.CHANGED, connection);
 				unit.getBuffer().close();
 			} catch (Exception e) {
 				JavaLanguageServerPlugin.logException("Error while handling document save", e);
@@ -347,9 +766,9 @@ public class DocumentLifeCycleHandler {
 						if (toRemove) {
 							file.delete(true, new NullProgressMonitor());
 							sharedASTProvider.invalidate(unit);
+							validationPlanner.remove(unit);
 							unit.discardWorkingCopy();
-							unit = JDTUtils.resolveCompilationUnit(uri);
-							unit.becomeWorkingCopy(new NullProgressMonitor());
+							unit = becomeWorkingCopy(resolveCompilationUnit(uri));
 							triggerValidation(unit);
 						}
 						break;
@@ -363,4 +782,24 @@ public class DocumentLifeCycleHandler {
 		return unit;
 	}
 
+	/**
+	 * Monitor of a validation run, cancelled as soon as the validation
+	 * generation it was created for is superseded by a document change.
+	 */
+	private static final class GenerationMonitor extends ProgressMonitorWrapper {
+
+		private final AtomicLong currentGeneration;
+		private final long generation;
+
+		GenerationMonitor(IProgressMonitor monitor, AtomicLong currentGeneration) {
+			super(monitor == null ? new NullProgressMonitor() : monitor);
+			this.currentGeneration = currentGeneration;
+			this.generation = currentGeneration.get();
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return super.isCanceled() || currentGeneration.get() != generation;
+		}
+	}
 }
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import org.eclipse.jdt.core.IBuffer;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.ls.core.internal.ASTCache;
+import org.eclipse.jdt.ls.core.internal.LineTable;
+import org.eclipse.jdt.ls.core.internal.PieceTableBuffer;
+import org.eclipse.jdt.ls.core.internal.SharedASTProvider;
+import org.eclipse.jface.text.BadLocationException;
+
+/**
+ * Immutable view of an open document, at a given version: its text, the
+ * index of its lines and, once it's been created, its AST.
+ *
+ * Request handlers read a snapshot without waiting for the validation of the
+ * workspace's other open documents, and without seeing the changes received
+ * while they run.
+ */
+public final class DocumentSnapshot {
+
+	private final String uri;
+	private final ICompilationUnit unit;
+	private final int version;
+	private final long modificationStamp;
+	private final CharSequence text;
+	private final LineTable lines;
+	private volatile char[] characters;
+
+	private DocumentSnapshot(String uri, ICompilationUnit unit, int version, long modificationStamp, CharSequence text, LineTable lines) {
+		this.uri = uri;
+		this.unit = unit;
+		this.version = version;
+		this.modificationStamp = modificationStamp;
+		this.text = text;
+		this.lines = lines;
+	}
+
+	/**
+	 * Takes a snapshot of the current content of the given unit. The content
+	 * of a {@link PieceTableBuffer} is not copied.
+	 *
+	 * @param uri
+	 *            the document URI
+	 * @param unit
+	 *            the working copy of the document
+	 * @param version
+	 *            the document version, as sent by the client
+	 */
+	public static DocumentSnapshot create(String uri, ICompilationUnit unit, int version) throws JavaModelException {
+		IBuffer buffer = unit.getBuffer();
+		if (buffer instanceof PieceTableBuffer) {
+			PieceTableBuffer pieceTable = (PieceTableBuffer) buffer;
+			long stamp;
+			CharSequence text;
+			LineTable lines;
+			// the content and its line index are read separately: read them again if the buffer changed in between
+			do {
+				stamp = pieceTable.getModificationStamp();
+				text = pieceTable.snapshot();
+				lines = pieceTable.copyLineTable();
+			} while (stamp != pieceTable.getModificationStamp());
+			return new DocumentSnapshot(uri, unit, version, stamp, text, lines);
+		}
+		long stamp;
+		String text;
+		do {
+			stamp = SharedASTProvider.getVersion(unit);
+			text = buffer == null ? "" : buffer.getContents();
+		} while (stamp != SharedASTProvider.getVersion(unit));
+		return new DocumentSnapshot(uri, unit, version, stamp, text, new LineTable(text));
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	public ICompilationUnit getUnit() {
+		return unit;
+	}
+
+	/**
+	 * @return the document version, as sent by the client
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the modification stamp of the buffer this snapshot was taken
+	 *         from
+	 */
+	public long getModificationStamp() {
+		return modificationStamp;
+	}
+
+	/**
+	 * @return <code>true</code> if the buffer of the unit still has the content
+	 *         of this snapshot
+	 */
+	public boolean isCurrent() {
+		return modificationStamp != ASTCache.UNKNOWN_VERSION && modificationStamp == SharedASTProvider.getVersion(unit);
+	}
+
+	public CharSequence getText() {
+		return text;
+	}
+
+	/**
+	 * Returns the characters of this snapshot, copied on the first call.
+	 * The returned array must not be modified.
+	 */
+	public char[] getCharacters() {
+		char[] result = characters;
+		if (result == null) {
+			result = text.toString().toCharArray();
+			characters = result;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the offset of the given position in this snapshot, or
+	 *         <code>-1</code> if the line does not exist
+	 */
+	public int getOffset(int line, int character) {
+		try {
+			return lines.getOffset(line, character);
+		} catch (BadLocationException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the AST of this snapshot, if it's already been created. Never
+	 * blocks on AST creation.
+	 *
+	 * @return the AST of this version of the document or <code>null</code>
+	 */
+	public CompilationUnit getAST() {
+		if (modificationStamp == ASTCache.UNKNOWN_VERSION) {
+			// any cached AST would match an unknown version
+			return null;
+		}
+		return SharedASTProvider.getInstance().getCachedAST(unit, modificationStamp);
+	}
+}
@@ -17,20 +17,24 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 
 import org.eclipse.core.resources.IResourceChangeEvent;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.ls.core.internal.JavaClientConnection;
 import org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin;
+import org.eclipse.jdt.ls.core.internal.LanguageServerDaemon;
 import org.eclipse.jdt.ls.core.internal.ServiceStatus;
 import org.eclipse.jdt.ls.core.internal.managers.ProjectsManager;
 import org.eclipse.jdt.ls.core.internal.preferences.PreferenceManager;
@@ -56,11 +60,35 @@ final public class InitHandler {
 	private ProjectsManager projectsManager;
 	private JavaClientConnection connection;
 	private PreferenceManager preferenceManager;
+	private LanguageServerDaemon daemon;
+	private JDTLanguageServer session;
+	private WorkspaceDiagnosticsHandler workspaceDiagnosticsHandler;
 
 	public InitHandler(ProjectsManager manager, PreferenceManager preferenceManager, JavaClientConnection connection) {
+		this(manager, preferenceManager, connection, null, null);
+	}
+
+	/**
+	 * @param daemon
+	 *            the daemon the session belongs to, or <code>null</code> if
+	 *            the server has a single client
+	 * @param session
+	 *            the session being initialized, in daemon mode
+	 */
+	public InitHandler(ProjectsManager manager, PreferenceManager preferenceManager, JavaClientConnection connection, LanguageServerDaemon daemon, JDTLanguageServer session) {
 		this.projectsManager = manager;
 		this.connection = connection;
 		this.preferenceManager = preferenceManager;
+		this.daemon = daemon;
+		this.session = session;
+	}
+
+	/**
+	 * @return the listener publishing the workspace diagnostics to this
+	 *         client, once initialized
+	 */
+	WorkspaceDiagnosticsHandler getWorkspaceDiagnosticsHandler() {
+		return workspaceDiagnosticsHandler;
 	}
 
 
@@ -88,10 +116,18 @@ final public class InitHandler {
 			rootPath = ResourcesPlugin.getWorkspace().getRoot().getLocation().toOSString();
 			logInfo("No root uri was defined. Falling back on "+rootPath);
 		}
-		triggerInitialization(rootPath);
-		ResourcesPlugin.getWorkspace().addResourceChangeListener(new WorkspaceDiagnosticsHandler(connection, projectsManager), IResourceChangeEvent.POST_BUILD | IResourceChangeEvent.POST_CHANGE);
+		if (daemon == null || daemon.claimRoot(rootPath, session)) {
+			triggerInitialization(rootPath);
+		} else {
+			joinInitialization(rootPath);
+		}
+		// in daemon mode, the workspace also holds the projects of the other sessions' roots
+		Collection<IPath> roots = daemon == null ? null : Collections.singleton(Path.fromOSString(rootPath));
+		workspaceDiagnosticsHandler = new WorkspaceDiagnosticsHandler(connection, projectsManager, roots);
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(workspaceDiagnosticsHandler, IResourceChangeEvent.POST_BUILD | IResourceChangeEvent.POST_CHANGE);
 		Integer processId = param.getProcessId();
-		if (processId != null) {
+		// the daemon outlives its clients
+		if (processId != null && daemon == null) {
 			JavaLanguageServerPlugin.getLanguageServer().setParentProcessId(processId.longValue());
 		}
 		try {
@@ -170,6 +206,24 @@ final public class InitHandler {
 
 	}
 
+	/**
+	 * Reports the server ready once the root, imported by another session of
+	 * the daemon, is: the import holds the workspace rule until it's done.
+	 */
+	private void joinInitialization(String root) {
+		logInfo(root + " is imported by another session");
+		Job job = new Job("Join Workspace Initialization") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				connection.sendStatus(ServiceStatus.Started, "Ready");
+				return Status.OK_STATUS;
+			}
+		};
+		job.setPriority(Job.BUILD);
+		job.setRule(ResourcesPlugin.getWorkspace().getRoot());
+		job.schedule();
+	}
+
 	private Collection<String> getBundleList(Object initializationOptions) {
 		if (!(initializationOptions instanceof Map<?, ?>)) {
 			return null;
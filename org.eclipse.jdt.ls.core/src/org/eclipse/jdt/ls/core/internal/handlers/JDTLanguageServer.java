@@ -11,30 +11,48 @@
 package org.eclipse.jdt.ls.core.internal.handlers;
 
 import static org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin.logInfo;
-import static org.eclipse.lsp4j.jsonrpc.CompletableFutures.computeAsync;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.OperationCanceledException;
-import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.WorkingCopyOwner;
+import org.eclipse.jdt.ls.core.internal.ASTCache;
+import org.eclipse.jdt.ls.core.internal.ASTPrewarmer;
+import org.eclipse.jdt.ls.core.internal.BufferMetrics;
 import org.eclipse.jdt.ls.core.internal.CancellableProgressMonitor;
+import org.eclipse.jdt.ls.core.internal.DiagnosticsPublisher;
+import org.eclipse.jdt.ls.core.internal.FlightRecorderEvents;
 import org.eclipse.jdt.ls.core.internal.JDTUtils;
 import org.eclipse.jdt.ls.core.internal.JavaClientConnection;
 import org.eclipse.jdt.ls.core.internal.JavaClientConnection.JavaLanguageClient;
 import org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin;
 import org.eclipse.jdt.ls.core.internal.JavaProtocolExtensions;
+import org.eclipse.jdt.ls.core.internal.LanguageServerDaemon;
 import org.eclipse.jdt.ls.core.internal.LanguageServerWorkingCopyOwner;
+import org.eclipse.jdt.ls.core.internal.MetricsRegistry;
+import org.eclipse.jdt.ls.core.internal.MetricsRegistry.Outcome;
+import org.eclipse.jdt.ls.core.internal.OutboundMessageQueue;
 import org.eclipse.jdt.ls.core.internal.ServiceStatus;
+import org.eclipse.jdt.ls.core.internal.SharedASTProvider;
+import org.eclipse.jdt.ls.core.internal.handlers.RequestExecutor.Lane;
+import org.eclipse.jdt.ls.core.internal.javadoc.JavadocCache;
 import org.eclipse.jdt.ls.core.internal.managers.ContentProviderManager;
 import org.eclipse.jdt.ls.core.internal.managers.ProjectsManager;
 import org.eclipse.jdt.ls.core.internal.preferences.PreferenceManager;
@@ -62,6 +80,7 @@ import org.eclipse.lsp4j.Hover;
 import org.eclipse.lsp4j.InitializeParams;
 import org.eclipse.lsp4j.InitializeResult;
 import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.ReferenceParams;
 import org.eclipse.lsp4j.Registration;
 import org.eclipse.lsp4j.RegistrationParams;
@@ -91,11 +110,36 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	 * Exit code returned when JDTLanguageServer is forced to exit.
 	 */
 	private static final int FORCED_EXIT_CODE = 1;
+	/**
+	 * Delay, in milliseconds, during which diagnostics published for the same
+	 * document are coalesced.
+	 */
+	private static final long DIAGNOSTICS_COALESCING_DELAY = 50;
+	/**
+	 * Number of notifications queued for the client before their producers
+	 * wait.
+	 */
+	private static final int OUTBOUND_QUEUE_CAPACITY = 1000;
+	/**
+	 * Minimum delay, in milliseconds, between two progress statuses.
+	 */
+	private static final long STATUS_INTERVAL = 100;
 	private JavaClientConnection client;
 	private ProjectsManager pm;
 	private LanguageServerWorkingCopyOwner workingCopyOwner;
 	private PreferenceManager preferenceManager;
 	private DocumentLifeCycleHandler documentLifeCycleHandler;
+	private ASTPrewarmer astPrewarmer;
+	private RequestExecutor requestExecutor = new RequestExecutor();
+	private final RequestSupersession requestSupersession = new RequestSupersession();
+	private final RequestCoalescer requestCoalescer = new RequestCoalescer();
+	private LanguageServerDaemon daemon;
+	private int sessionId;
+	/** names of the gauges of this session, removed with it */
+	private final List<String> sessionGauges = new ArrayList<>();
+	private WorkspaceDiagnosticsHandler workspaceDiagnosticsHandler;
+	/** documents opened by the client, closed with the session in daemon mode */
+	private final Set<String> openDocuments = ConcurrentHashMap.newKeySet();
 
 	private Set<String> registeredCapabilities = new HashSet<>(3);
 
@@ -103,17 +147,111 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 		return workingCopyOwner;
 	}
 
+	/**
+	 * @return the owner of the working copies of this session in daemon mode,
+	 *         or <code>null</code> if the session edits the primary working
+	 *         copies
+	 */
+	private WorkingCopyOwner getSessionOwner() {
+		return daemon == null ? null : workingCopyOwner;
+	}
+
+	public JavaClientConnection getClientConnection() {
+		return client;
+	}
+
+	public RequestExecutor getRequestExecutor() {
+		return requestExecutor;
+	}
+
+	/**
+	 * Replaces the executor running the requests.
+	 */
+	public void setRequestExecutor(RequestExecutor requestExecutor) {
+		this.requestExecutor = requestExecutor;
+	}
+
 	public JDTLanguageServer(ProjectsManager projects, PreferenceManager preferenceManager) {
 		this.pm = projects;
 		this.preferenceManager = preferenceManager;
 	}
 
+	/**
+	 * Makes this server a session of the given daemon: shutting it down, or
+	 * exiting, only closes the session.
+	 *
+	 * @param sessionId
+	 *            the number of the session, prefixing the names of its gauges
+	 */
+	public void setDaemon(LanguageServerDaemon daemon, int sessionId) {
+		this.daemon = daemon;
+		this.sessionId = sessionId;
+	}
+
 	public void connectClient(JavaLanguageClient client) {
 		this.client = new JavaClientConnection(client);
+		this.client.getDiagnosticsPublisher().setCoalescingDelay(DIAGNOSTICS_COALESCING_DELAY);
+		this.client.startOutboundQueue(OUTBOUND_QUEUE_CAPACITY, STATUS_INTERVAL);
 		this.workingCopyOwner = new LanguageServerWorkingCopyOwner(this.client);
-		pm.setConnection(client);
-		WorkingCopyOwner.setPrimaryBufferProvider(this.workingCopyOwner);
-		this.documentLifeCycleHandler = new DocumentLifeCycleHandler(this.client, preferenceManager, pm, true);
+		if (daemon == null) {
+			pm.setConnection(client);
+			WorkingCopyOwner.setPrimaryBufferProvider(this.workingCopyOwner);
+		}
+		// in daemon mode, the projects manager and the primary buffer provider are shared by the sessions, which edit their own working copies
+		this.documentLifeCycleHandler = new DocumentLifeCycleHandler(this.client, preferenceManager, pm, true, getSessionOwner());
+		this.astPrewarmer = new ASTPrewarmer(SharedASTProvider.getInstance(), getSessionOwner());
+		registerGauges();
+	}
+
+	private void registerGauges() {
+		MetricsRegistry metrics = MetricsRegistry.getInstance();
+		ASTCache astCache = SharedASTProvider.getInstance().getCache();
+		metrics.gauge("astCache.hits", astCache::getHitCount);
+		metrics.gauge("astCache.misses", astCache::getMissCount);
+		metrics.gauge("astCache.evictions", astCache::getEvictionCount);
+		metrics.gauge("astCache.spills", astCache::getSpillCount);
+		metrics.gauge("astCache.size", astCache::size);
+		metrics.gauge("astCache.weight", astCache::getWeight);
+		DiagnosticsPublisher diagnosticsPublisher = client.getDiagnosticsPublisher();
+		sessionGauge("diagnostics.published", diagnosticsPublisher::getPublishedCount);
+		sessionGauge("diagnostics.suppressed", diagnosticsPublisher::getSuppressedCount);
+		sessionGauge("diagnostics.coalesced", diagnosticsPublisher::getCoalescedCount);
+		OutboundMessageQueue outboundQueue = client.getOutboundQueue();
+		sessionGauge("outbound.depth", outboundQueue::getDepth);
+		sessionGauge("outbound.maxDepth", outboundQueue::getMaxDepth);
+		sessionGauge("outbound.sent", outboundQueue::getSentCount);
+		sessionGauge("outbound.collapsed", outboundQueue::getCollapsedCount);
+		sessionGauge("outbound.blocked", outboundQueue::getBlockedCount);
+		sessionGauge("astPrewarmer.prewarmed", astPrewarmer::getPrewarmedCount);
+		sessionGauge("astPrewarmer.preempted", astPrewarmer::getPreemptedCount);
+		sessionGauge("requests.coalesced", requestCoalescer::getCoalescedCount);
+		sessionGauge("requests.memoHits", requestCoalescer::getMemoHitCount);
+		metrics.gauge("completion.reused", CompletionResponseCache::getReusedCount);
+		metrics.gauge("completion.computed", CompletionResponseCache::getComputedCount);
+		metrics.gauge("completionResponses.size", CompletionResponses::size);
+		metrics.gauge("completionResponses.weight", CompletionResponses::getWeight);
+		metrics.gauge("completionResponses.evictions", CompletionResponses::getEvictionCount);
+		metrics.gauge("completionResponses.misses", CompletionResponses::getMissCount);
+		JavadocCache javadocCache = JavadocCache.getInstance();
+		metrics.gauge("javadoc.hits", javadocCache::getHitCount);
+		metrics.gauge("javadoc.misses", javadocCache::getMissCount);
+		metrics.gauge("javadoc.timeouts", javadocCache::getTimeoutCount);
+		metrics.gauge("javadoc.size", javadocCache::size);
+		for (Lane lane : Lane.values()) {
+			String prefix = "requests." + lane.name().toLowerCase();
+			sessionGauge(prefix + ".queued", () -> requestExecutor.getQueueLength(lane));
+			sessionGauge(prefix + ".maxQueued", () -> requestExecutor.getMaxQueueLength(lane));
+		}
+	}
+
+	/**
+	 * Registers a gauge of this session, named after the session in daemon
+	 * mode.
+	 */
+	private void sessionGauge(String name, Supplier<? extends Number> value) {
+		String sessionName = daemon == null ? name : "session" + sessionId + "." + name;
+		MetricsRegistry.getInstance().gauge(sessionName, value);
+		sessionGauges.add(sessionName);
 	}
 
 	//For testing purposes
@@ -121,14 +259,48 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 		this.client.disconnect();
 	}
 
+	/**
+	 * Releases the resources of this session once its client is gone, in
+	 * daemon mode, where the workspace outlives the sessions: the documents
+	 * left open are closed, the executors and listeners stopped, and the
+	 * gauges removed.
+	 */
+	public void disposeSession() {
+		if (client == null) {
+			return;
+		}
+		for (String uri : openDocuments) {
+			DidCloseTextDocumentParams params = new DidCloseTextDocumentParams();
+			params.setTextDocument(new TextDocumentIdentifier(uri));
+			documentLifeCycleHandler.didClose(params);
+		}
+		openDocuments.clear();
+		documentLifeCycleHandler.dispose();
+		if (workspaceDiagnosticsHandler != null) {
+			ResourcesPlugin.getWorkspace().removeResourceChangeListener(workspaceDiagnosticsHandler);
+		}
+		if (astPrewarmer != null) {
+			astPrewarmer.dispose();
+		}
+		requestExecutor.dispose();
+		MetricsRegistry metrics = MetricsRegistry.getInstance();
+		for (String gauge : sessionGauges) {
+			metrics.removeGauge(gauge);
+		}
+		sessionGauges.clear();
+		client.disconnect();
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.lsp4j.services.LanguageServer#initialize(org.eclipse.lsp4j.InitializeParams)
 	 */
 	@Override
 	public CompletableFuture<InitializeResult> initialize(InitializeParams params) {
 		logInfo(">> initialize");
-		InitHandler handler = new InitHandler(pm, preferenceManager, client);
-		return CompletableFuture.completedFuture(handler.initialize(params));
+		InitHandler handler = new InitHandler(pm, preferenceManager, client, daemon, this);
+		InitializeResult result = handler.initialize(params);
+		workspaceDiagnosticsHandler = handler.getWorkspaceDiagnosticsHandler();
+		return CompletableFuture.completedFuture(result);
 	}
 
 	/* (non-Javadoc)
@@ -137,7 +309,17 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	@Override
 	public CompletableFuture<Object> shutdown() {
 		logInfo(">> shutdown");
-		JavaLanguageServerPlugin.getLanguageServer().shutdown();
+		logInfo(BufferMetrics.dump());
+		logInfo(requestExecutor.dump());
+		logInfo("Superseded requests: " + requestSupersession.getSupersededCounts());
+		logInfo("Coalesced requests: " + requestCoalescer.getCoalescedCount() + ", memoized results served: " + requestCoalescer.getMemoHitCount());
+		if (astPrewarmer != null) {
+			logInfo("Pre-warmed ASTs: " + astPrewarmer.getPrewarmedCount() + ", preempted passes: " + astPrewarmer.getPreemptedCount());
+			astPrewarmer.dispose();
+		}
+		if (daemon == null) {
+			JavaLanguageServerPlugin.getLanguageServer().shutdown();
+		}
 		return CompletableFuture.completedFuture(new Object());
 	}
 
@@ -147,6 +329,10 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	@Override
 	public void exit() {
 		logInfo(">> exit");
+		if (daemon != null) {
+			daemon.close(this);
+			return;
+		}
 		Executors.newSingleThreadScheduledExecutor().schedule(() -> {
 			logInfo("Forcing exit after 1 min.");
 			System.exit(FORCED_EXIT_CODE);
@@ -181,7 +367,7 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<List<? extends SymbolInformation>> symbol(WorkspaceSymbolParams params) {
 		logInfo(">> workspace/symbol");
 		WorkspaceSymbolHandler handler = new WorkspaceSymbolHandler();
-		return computeAsync((cc) -> {
+		return computeAsync(Lane.BULK, "workspace/symbol", null, (cc) -> {
 			return handler.search(params.getQuery(), toMonitor(cc));
 		});
 	}
@@ -245,6 +431,7 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 		logInfo(">> workspace/didChangeWatchedFiles");
 		WorkspaceEventsHandler handler = new WorkspaceEventsHandler(pm, client);
 		handler.didChangeWatchedFiles(params);
+		requestCoalescer.invalidate();
 	}
 
 	/* (non-Javadoc)
@@ -254,7 +441,7 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<Object> executeCommand(ExecuteCommandParams params) {
 		logInfo(">> workspace/executeCommand");
 		WorkspaceExecuteCommandHandler handler = new WorkspaceExecuteCommandHandler();
-		return computeAsync((cc) -> {
+		return computeAsync(Lane.BULK, "workspace/executeCommand", null, (cc) -> {
 			return handler.executeCommand(params, toMonitor(cc));
 		});
 	}
@@ -265,17 +452,10 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	@Override
 	public CompletableFuture<Either<List<CompletionItem>, CompletionList>> completion(TextDocumentPositionParams position) {
 		logInfo(">> document/completion");
-		CompletionHandler handler = new CompletionHandler();
-		return computeAsync((cc) -> {
-			IProgressMonitor monitor = toMonitor(cc);
-			try {
-				Job.getJobManager().join(DocumentLifeCycleHandler.DOCUMENT_LIFE_CYCLE_JOBS, monitor);
-			} catch (OperationCanceledException ignorable) {
-				// No need to pollute logs when query is cancelled
-			} catch (InterruptedException e) {
-				JavaLanguageServerPlugin.logException(e.getMessage(), e);
-			}
-			return handler.completion(position, monitor);
+		CompletionHandler handler = new CompletionHandler(preferenceManager);
+		String uri = position.getTextDocument().getUri();
+		return computeLatest(Lane.INTERACTIVE, "textDocument/completion", uri, (monitor) -> {
+			return handler.completion(position, getSnapshot(uri, monitor), monitor);
 		});
 	}
 
@@ -286,15 +466,9 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<CompletionItem> resolveCompletionItem(CompletionItem unresolved) {
 		logInfo(">> document/resolveCompletionItem");
 		CompletionResolveHandler handler = new CompletionResolveHandler(preferenceManager);
-		return computeAsync((cc) -> {
+		return computeAsync(Lane.INTERACTIVE, "completionItem/resolve", getUri(unresolved), (cc) -> {
 			IProgressMonitor monitor = toMonitor(cc);
-			try {
-				Job.getJobManager().join(DocumentLifeCycleHandler.DOCUMENT_LIFE_CYCLE_JOBS, monitor);
-			} catch (OperationCanceledException ignorable) {
-				// No need to pollute logs when query is cancelled
-			} catch (InterruptedException e) {
-				JavaLanguageServerPlugin.logException(e.getMessage(), e);
-			}
+			waitForDocument(getUri(unresolved), monitor);
 			return handler.resolve(unresolved, monitor);
 		});
 	}
@@ -306,7 +480,8 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<Hover> hover(TextDocumentPositionParams position) {
 		logInfo(">> document/hover");
 		HoverHandler handler = new HoverHandler(this.preferenceManager);
-		return computeAsync((cc) -> handler.hover(position, toMonitor(cc)));
+		String uri = position.getTextDocument().getUri();
+		return coalesce("textDocument/hover", uri, position.getPosition(), () -> computeAsync(Lane.INTERACTIVE, "textDocument/hover", uri, (cc) -> handler.hover(position, toMonitor(cc))));
 	}
 
 	/* (non-Javadoc)
@@ -316,7 +491,7 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<SignatureHelp> signatureHelp(TextDocumentPositionParams position) {
 		logInfo(">> document/signatureHelp");
 		SignatureHelpHandler handler = new SignatureHelpHandler(preferenceManager);
-		return computeAsync((cc) -> handler.signatureHelp(position, toMonitor(cc)));
+		return computeLatest(Lane.INTERACTIVE, "textDocument/signatureHelp", position.getTextDocument().getUri(), (monitor) -> handler.signatureHelp(position, monitor));
 	}
 
 	/* (non-Javadoc)
@@ -326,7 +501,9 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<List<? extends Location>> definition(TextDocumentPositionParams position) {
 		logInfo(">> document/definition");
 		NavigateToDefinitionHandler handler = new NavigateToDefinitionHandler(this.preferenceManager);
-		return computeAsync((cc) -> handler.definition(position, toMonitor(cc)));
+		String uri = position.getTextDocument().getUri();
+		touch(uri);
+		return coalesce("textDocument/definition", uri, position.getPosition(), () -> computeAsync(Lane.NAVIGATION, "textDocument/definition", uri, (cc) -> handler.definition(position, toMonitor(cc))));
 	}
 
 	/* (non-Javadoc)
@@ -336,7 +513,7 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<List<? extends Location>> references(ReferenceParams params) {
 		logInfo(">> document/references");
 		ReferencesHandler handler = new ReferencesHandler(this.preferenceManager);
-		return computeAsync((cc) -> handler.findReferences(params, toMonitor(cc)));
+		return computeAsync(Lane.BULK, "textDocument/references", params.getTextDocument().getUri(), (cc) -> handler.findReferences(params, toMonitor(cc)));
 	}
 
 	/* (non-Javadoc)
@@ -346,7 +523,7 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<List<? extends DocumentHighlight>> documentHighlight(TextDocumentPositionParams position) {
 		logInfo(">> document/documentHighlight");
 		DocumentHighlightHandler handler = new DocumentHighlightHandler();
-		return computeAsync((cc) -> handler.documentHighlight(position, toMonitor(cc)));
+		return computeLatest(Lane.NAVIGATION, "textDocument/documentHighlight", position.getTextDocument().getUri(), (monitor) -> handler.documentHighlight(position, monitor));
 	}
 
 	/* (non-Javadoc)
@@ -356,7 +533,8 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<List<? extends SymbolInformation>> documentSymbol(DocumentSymbolParams params) {
 		logInfo(">> document/documentSymbol");
 		DocumentSymbolHandler handler = new DocumentSymbolHandler();
-		return computeAsync((cc) -> handler.documentSymbol(params, toMonitor(cc)));
+		String uri = params.getTextDocument().getUri();
+		return coalesce("textDocument/documentSymbol", uri, null, () -> computeAsync(Lane.NAVIGATION, "textDocument/documentSymbol", uri, (cc) -> handler.documentSymbol(params, toMonitor(cc))));
 	}
 
 	/* (non-Javadoc)
@@ -366,16 +544,9 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<List<? extends Command>> codeAction(CodeActionParams params) {
 		logInfo(">> document/codeAction");
 		CodeActionHandler handler = new CodeActionHandler();
-		return computeAsync((cc) -> {
+		return computeAsync(Lane.NAVIGATION, "textDocument/codeAction", params.getTextDocument().getUri(), (cc) -> {
 			IProgressMonitor monitor = toMonitor(cc);
-			try {
-				Job.getJobManager().join(DocumentLifeCycleHandler.DOCUMENT_LIFE_CYCLE_JOBS, monitor);
-			} catch (OperationCanceledException ignorable) {
-				// No need to pollute logs when query is cancelled
-			} catch (InterruptedException e) {
-				JavaLanguageServerPlugin.logException(e.getMessage(), e);
-			}
-			return handler.getCodeActionCommands(params, toMonitor(cc));
+			return handler.getCodeActionCommands(params, getSnapshot(params.getTextDocument().getUri(), monitor), monitor);
 		});
 	}
 
@@ -386,17 +557,11 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<List<? extends CodeLens>> codeLens(CodeLensParams params) {
 		logInfo(">> document/codeLens");
 		CodeLensHandler handler = new CodeLensHandler(preferenceManager);
-		return computeAsync((cc) -> {
-			IProgressMonitor monitor = toMonitor(cc);
-			try {
-				Job.getJobManager().join(DocumentLifeCycleHandler.DOCUMENT_LIFE_CYCLE_JOBS, monitor);
-			} catch (OperationCanceledException ignorable) {
-				// No need to pollute logs when query is cancelled
-			} catch (InterruptedException e) {
-				JavaLanguageServerPlugin.logException(e.getMessage(), e);
-			}
-			return handler.getCodeLensSymbols(params.getTextDocument().getUri(), monitor);
-		});
+		String uri = params.getTextDocument().getUri();
+		return coalesce("textDocument/codeLens", uri, null, () -> computeLatest(Lane.NAVIGATION, "textDocument/codeLens", uri, (monitor) -> {
+			waitForDocument(uri, monitor);
+			return handler.getCodeLensSymbols(uri, monitor);
+		}));
 	}
 
 	/* (non-Javadoc)
@@ -406,15 +571,9 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<CodeLens> resolveCodeLens(CodeLens unresolved) {
 		logInfo(">> codeLens/resolve");
 		CodeLensHandler handler = new CodeLensHandler(preferenceManager);
-		return computeAsync((cc) -> {
+		return computeAsync(Lane.BULK, "codeLens/resolve", getUri(unresolved), (cc) -> {
 			IProgressMonitor monitor = toMonitor(cc);
-			try {
-				Job.getJobManager().join(DocumentLifeCycleHandler.DOCUMENT_LIFE_CYCLE_JOBS, monitor);
-			} catch (OperationCanceledException ignorable) {
-				// No need to pollute logs when query is cancelled
-			} catch (InterruptedException e) {
-				JavaLanguageServerPlugin.logException(e.getMessage(), e);
-			}
+			waitForDocument(getUri(unresolved), monitor);
 			return handler.resolve(unresolved, monitor);
 		});
 	}
@@ -426,7 +585,7 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<List<? extends TextEdit>> formatting(DocumentFormattingParams params) {
 		logInfo(">> document/formatting");
 		FormatterHandler handler = new FormatterHandler(preferenceManager);
-		return computeAsync((cc) -> handler.formatting(params, toMonitor(cc)));
+		return computeAsync(Lane.NAVIGATION, "textDocument/formatting", params.getTextDocument().getUri(), (cc) -> handler.formatting(params, toMonitor(cc)));
 	}
 
 	/* (non-Javadoc)
@@ -436,7 +595,7 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<List<? extends TextEdit>> rangeFormatting(DocumentRangeFormattingParams params) {
 		logInfo(">> document/rangeFormatting");
 		FormatterHandler handler = new FormatterHandler(preferenceManager);
-		return computeAsync((cc) -> handler.rangeFormatting(params, toMonitor(cc)));
+		return computeAsync(Lane.NAVIGATION, "textDocument/rangeFormatting", params.getTextDocument().getUri(), (cc) -> handler.rangeFormatting(params, toMonitor(cc)));
 	}
 
 	/* (non-Javadoc)
@@ -456,7 +615,7 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	public CompletableFuture<WorkspaceEdit> rename(RenameParams params) {
 		logInfo(">> document/rename");
 		RenameHandler handler = new RenameHandler(preferenceManager);
-		return computeAsync((cc) -> handler.rename(params, toMonitor(cc)));
+		return computeAsync(Lane.BULK, "textDocument/rename", params.getTextDocument().getUri(), (cc) -> handler.rename(params, toMonitor(cc)));
 	}
 
 	/* (non-Javadoc)
@@ -465,7 +624,12 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	@Override
 	public void didOpen(DidOpenTextDocumentParams params) {
 		logInfo(">> document/didOpen");
+		long start = System.nanoTime();
 		documentLifeCycleHandler.didOpen(params);
+		requestCoalescer.invalidate();
+		openDocuments.add(params.getTextDocument().getUri());
+		touch(params.getTextDocument().getUri());
+		MetricsRegistry.getInstance().timer("textDocument/didOpen").recordSince(start);
 	}
 
 	/* (non-Javadoc)
@@ -474,7 +638,10 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	@Override
 	public void didChange(DidChangeTextDocumentParams params) {
 		logInfo(">> document/didChange");
+		long start = System.nanoTime();
 		documentLifeCycleHandler.didChange(params);
+		requestCoalescer.invalidate();
+		MetricsRegistry.getInstance().timer("textDocument/didChange").recordSince(start);
 	}
 
 	/* (non-Javadoc)
@@ -483,7 +650,15 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	@Override
 	public void didClose(DidCloseTextDocumentParams params) {
 		logInfo(">> document/didClose");
+		long start = System.nanoTime();
 		documentLifeCycleHandler.didClose(params);
+		requestCoalescer.invalidate();
+		openDocuments.remove(params.getTextDocument().getUri());
+		CompletionResponseCache.remove(params.getTextDocument().getUri());
+		if (astPrewarmer != null) {
+			astPrewarmer.forget(params.getTextDocument().getUri());
+		}
+		MetricsRegistry.getInstance().timer("textDocument/didClose").recordSince(start);
 	}
 
 	/* (non-Javadoc)
@@ -492,7 +667,9 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 	@Override
 	public void didSave(DidSaveTextDocumentParams params) {
 		logInfo(">> document/didSave");
+		long start = System.nanoTime();
 		documentLifeCycleHandler.didSave(params);
+		MetricsRegistry.getInstance().timer("textDocument/didSave").recordSince(start);
 	}
 
 	/* (non-Javadoc)
@@ -503,7 +680,16 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 		logInfo(">> java/classFileContents");
 		ContentProviderManager handler = JavaLanguageServerPlugin.getContentProviderManager();
 		URI uri = JDTUtils.toURI(param.getUri());
-		return computeAsync((cc) -> handler.getContent(uri, toMonitor(cc)));
+		return computeAsync(Lane.NAVIGATION, "java/classFileContents", param.getUri(), (cc) -> handler.getContent(uri, toMonitor(cc)));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jdt.ls.core.internal.JavaProtocolExtensions#serverMetrics()
+	 */
+	@Override
+	public CompletableFuture<Map<String, Object>> serverMetrics() {
+		logInfo(">> java/serverMetrics");
+		return CompletableFuture.completedFuture(MetricsRegistry.getInstance().snapshot());
 	}
 
 	/* (non-Javadoc)
@@ -522,7 +708,128 @@ public class JDTLanguageServer implements LanguageServer, TextDocumentService, W
 		}
 	}
 
+	/**
+	 * Brings the given document up to date before serving a request on it.
+	 * Only the document's own pending changes are applied: the validation of
+	 * other documents is not waited for.
+	 */
+	private void waitForDocument(String uri, IProgressMonitor monitor) {
+		if (documentLifeCycleHandler != null) {
+			documentLifeCycleHandler.prepareDocument(uri, monitor);
+		}
+	}
+
+	/**
+	 * Returns the snapshot of the given document the request is served from.
+	 * Like {@link #waitForDocument(String, IProgressMonitor)}, the validation
+	 * of other documents is not waited for.
+	 */
+	private DocumentSnapshot getSnapshot(String uri, IProgressMonitor monitor) {
+		return documentLifeCycleHandler == null ? null : documentLifeCycleHandler.getSnapshot(uri, monitor);
+	}
+
+	private static String getUri(CompletionItem item) {
+		Object data = item.getData();
+		if (data instanceof Map) {
+			Object uri = ((Map<?, ?>) data).get(CompletionResolveHandler.DATA_FIELD_URI);
+			return uri instanceof String ? (String) uri : null;
+		}
+		return null;
+	}
+
+	private static String getUri(CodeLens lens) {
+		Object data = lens.getData();
+		if (data instanceof List && !((List<?>) data).isEmpty()) {
+			Object uri = ((List<?>) data).get(0);
+			return uri instanceof String ? (String) uri : null;
+		}
+		return null;
+	}
+
+	/**
+	 * Records a document as opened or navigated, for its neighbourhood to be
+	 * pre-warmed.
+	 */
+	private void touch(String uri) {
+		if (astPrewarmer != null) {
+			astPrewarmer.touch(uri);
+		}
+	}
+
+	/**
+	 * Runs a request on the given lane, recording its duration and outcome,
+	 * and emitting a JFR event when requests are being recorded. The event
+	 * only spans the run of the request on the lane's thread, not its wait in
+	 * the queue.
+	 */
+	private <R> CompletableFuture<R> computeAsync(Lane lane, String method, String uri, Function<CancelChecker, R> code) {
+		return MetricsRegistry.getInstance().time(method, requestExecutor.computeAsync(lane, (cc) -> {
+			// the handlers resolve the documents to the working copies of this session
+			WorkingCopyOwner previousOwner = JDTUtils.setSessionOwner(getSessionOwner());
+			FlightRecorderEvents.Event event = FlightRecorderEvents.begin(FlightRecorderEvents.REQUEST);
+			Outcome outcome = Outcome.SUCCESS;
+			try {
+				return code.apply(cc);
+			} catch (Throwable e) {
+				outcome = MetricsRegistry.outcomeOf(e);
+				throw e;
+			} finally {
+				if (event.isEnabled()) {
+					event.setUri(uri).setMethod(method).setVersion(getVersion(uri)).commit(outcome);
+				}
+				JDTUtils.setSessionOwner(previousOwner);
+			}
+		}));
+	}
+
+	/**
+	 * Returns the version of the given document, if it's open.
+	 */
+	private long getVersion(String uri) {
+		IFile file = uri == null ? null : JDTUtils.findFile(uri);
+		IJavaElement element = file == null ? null : JavaCore.create(file);
+		if (element instanceof ICompilationUnit) {
+			ICompilationUnit unit = JDTUtils.findWorkingCopy((ICompilationUnit) element, getSessionOwner());
+			if (unit.isWorkingCopy()) {
+				return SharedASTProvider.getVersion(unit);
+			}
+		}
+		return ASTCache.UNKNOWN_VERSION;
+	}
+
+	/**
+	 * Runs a request which is superseded, and cancelled, by the next request
+	 * of the same method on the same document.
+	 */
+	private <R> CompletableFuture<R> computeLatest(Lane lane, String method, String uri, Function<IProgressMonitor, R> code) {
+		RequestSupersession.Request request = requestSupersession.start(method, uri);
+		return computeAsync(lane, method, uri, (cc) -> {
+			try {
+				return code.apply(request.attach(toMonitor(cc)));
+			} finally {
+				requestSupersession.finish(request);
+			}
+		});
+	}
+
+	/**
+	 * Shares the computation, or the recent result, of identical requests.
+	 * Identical requests are made on the same document and position, with no
+	 * document change in between.
+	 */
+	private <R> CompletableFuture<R> coalesce(String method, String uri, Position position, Supplier<CompletableFuture<R>> computation) {
+		String key = method + '#' + uri;
+		if (position != null) {
+			key += "#" + position.getLine() + ':' + position.getCharacter();
+		}
+		return requestCoalescer.compute(key, computation);
+	}
+
 	private IProgressMonitor toMonitor(CancelChecker checker) {
+		// foreground request: background pre-warming yields
+		if (astPrewarmer != null) {
+			astPrewarmer.preempt();
+		}
 		return new CancellableProgressMonitor(checker);
 	}
 
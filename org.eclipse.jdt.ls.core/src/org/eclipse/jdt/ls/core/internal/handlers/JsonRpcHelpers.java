@@ -20,6 +20,7 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.core.IBuffer;
 import org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin;
+import org.eclipse.jdt.ls.core.internal.PieceTableBuffer;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 
@@ -35,6 +36,9 @@ final public class JsonRpcHelpers {
 	public static int toOffset(IBuffer buffer, int line, int column){
 		try {
 			if (buffer != null) {
+				if (buffer instanceof PieceTableBuffer) {
+					return ((PieceTableBuffer) buffer).getLineOffset(line) + column;
+				}
 				return toDocument(buffer).getLineOffset(line) + column;
 			}
 		} catch (BadLocationException e) {
@@ -52,6 +56,17 @@ final public class JsonRpcHelpers {
 	 * @return
 	 */
 	public static int[] toLine(IBuffer buffer, int offset){
+		if (buffer instanceof PieceTableBuffer) {
+			// use the line index maintained by the buffer, instead of copying it into a document
+			PieceTableBuffer pieceTable = (PieceTableBuffer) buffer;
+			try {
+				int line = pieceTable.getLineOfOffset(offset);
+				return new int[] { line, offset - pieceTable.getLineOffset(line) };
+			} catch (BadLocationException e) {
+				JavaLanguageServerPlugin.logException(e.getMessage(), e);
+				return null;
+			}
+		}
 		IDocument document = toDocument(buffer);
 		try {
 			int line = document.getLineOfOffset(offset);
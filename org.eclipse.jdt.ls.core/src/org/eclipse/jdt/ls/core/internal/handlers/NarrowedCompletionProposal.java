@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.CompletionContext;
+import org.eclipse.jdt.core.CompletionProposal;
+
+/**
+ * A proposal of the completion engine, with the relevance and the ranges it
+ * has for a narrowed prefix.
+ *
+ * The proposal of the engine is shared with the responses of the previous
+ * requests, which must still be resolved with their own ranges: it's never
+ * modified, all the other attributes are read from it.
+ */
+final class NarrowedCompletionProposal extends CompletionProposal {
+
+	private final CompletionProposal proposal;
+	private int relevance;
+	private int replaceStart;
+	private int replaceEnd;
+	private int tokenStart;
+	private int tokenEnd;
+	private CompletionProposal[] requiredProposals;
+
+	NarrowedCompletionProposal(CompletionProposal proposal) {
+		this.proposal = proposal instanceof NarrowedCompletionProposal ? ((NarrowedCompletionProposal) proposal).proposal : proposal;
+		this.relevance = proposal.getRelevance();
+		this.replaceStart = proposal.getReplaceStart();
+		this.replaceEnd = proposal.getReplaceEnd();
+		this.tokenStart = proposal.getTokenStart();
+		this.tokenEnd = proposal.getTokenEnd();
+		this.requiredProposals = proposal.getRequiredProposals();
+	}
+
+	@Override
+	public int getRelevance() {
+		return relevance;
+	}
+
+	@Override
+	public void setRelevance(int rating) {
+		this.relevance = rating;
+	}
+
+	@Override
+	public int getReplaceStart() {
+		return replaceStart;
+	}
+
+	@Override
+	public int getReplaceEnd() {
+		return replaceEnd;
+	}
+
+	@Override
+	public void setReplaceRange(int startIndex, int endIndex) {
+		this.replaceStart = startIndex;
+		this.replaceEnd = endIndex;
+	}
+
+	@Override
+	public int getTokenStart() {
+		return tokenStart;
+	}
+
+	@Override
+	public int getTokenEnd() {
+		return tokenEnd;
+	}
+
+	@Override
+	public void setTokenRange(int startIndex, int endIndex) {
+		this.tokenStart = startIndex;
+		this.tokenEnd = endIndex;
+	}
+
+	@Override
+	public CompletionProposal[] getRequiredProposals() {
+		return requiredProposals;
+	}
+
+	@Override
+	public void setRequiredProposals(CompletionProposal[] proposals) {
+		this.requiredProposals = proposals;
+	}
+
+	@Override
+	public int getKind() {
+		return proposal.getKind();
+	}
+
+	@Override
+	public int getCompletionLocation() {
+		return proposal.getCompletionLocation();
+	}
+
+	@Override
+	public char[] getCompletion() {
+		return proposal.getCompletion();
+	}
+
+	@Override
+	public int getReceiverStart() {
+		return proposal.getReceiverStart();
+	}
+
+	@Override
+	public int getReceiverEnd() {
+		return proposal.getReceiverEnd();
+	}
+
+	@Override
+	public char[] getReceiverSignature() {
+		return proposal.getReceiverSignature();
+	}
+
+	@Override
+	public char[] getDeclarationSignature() {
+		return proposal.getDeclarationSignature();
+	}
+
+	@Override
+	public char[] getDeclarationKey() {
+		return proposal.getDeclarationKey();
+	}
+
+	@Override
+	public char[] getName() {
+		return proposal.getName();
+	}
+
+	@Override
+	public char[] getSignature() {
+		return proposal.getSignature();
+	}
+
+	@Override
+	public char[] getKey() {
+		return proposal.getKey();
+	}
+
+	@Override
+	public int getFlags() {
+		return proposal.getFlags();
+	}
+
+	@Override
+	public int getAdditionalFlags() {
+		return proposal.getAdditionalFlags();
+	}
+
+	@Override
+	public char[][] findParameterNames(IProgressMonitor monitor) {
+		return proposal.findParameterNames(monitor);
+	}
+
+	@Override
+	public int getAccessibility() {
+		return proposal.getAccessibility();
+	}
+
+	@Override
+	public boolean isConstructor() {
+		return proposal.isConstructor();
+	}
+
+	@Override
+	public boolean canUseDiamond(CompletionContext coreContext) {
+		return proposal.canUseDiamond(coreContext);
+	}
+
+	@Override
+	public String toString() {
+		return proposal.toString();
+	}
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Shares the computation of identical concurrent requests, and memoizes their
+ * results for a short while.
+ *
+ * A request identical to one in flight gets the result of the pending
+ * computation instead of starting its own; the computation is cancelled only
+ * once all its callers have cancelled. Results are then remembered for
+ * {@link #MEMO_DURATION} milliseconds. As results depend on the content of
+ * any document, both the in-flight computations and the memo are dropped by
+ * {@link #invalidate()} whenever a document changes: later requests never get
+ * a result computed against older contents.
+ */
+public class RequestCoalescer {
+
+	/**
+	 * Duration, in milliseconds, results are remembered
+	 */
+	static final long MEMO_DURATION = 2000;
+	/**
+	 * Maximum number of remembered results
+	 */
+	static final int MAX_MEMO_SIZE = 64;
+
+	private final Map<String, Flight<?>> inFlight = new HashMap<>();
+	private final LinkedHashMap<String, Memo> memo = new LinkedHashMap<String, Memo>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Memo> eldest) {
+			return size() > MAX_MEMO_SIZE;
+		}
+	};
+	private long epoch;
+	private long coalescedCount;
+	private long memoHitCount;
+
+	/**
+	 * Returns the result of the request identified by the given key, sharing
+	 * the pending or remembered result of an identical request if any.
+	 *
+	 * @param key
+	 *            identifies the request: method, document and parameters
+	 * @param computation
+	 *            starts the computation of the request
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <R> CompletableFuture<R> compute(String key, Supplier<CompletableFuture<R>> computation) {
+		Memo remembered = memo.get(key);
+		if (remembered != null) {
+			if (System.currentTimeMillis() - remembered.time < MEMO_DURATION) {
+				memoHitCount++;
+				return CompletableFuture.completedFuture((R) remembered.value);
+			}
+			memo.remove(key);
+		}
+		Flight<R> flight = (Flight<R>) inFlight.get(key);
+		if (flight == null) {
+			flight = new Flight<>(key, computation.get(), epoch);
+			inFlight.put(key, flight);
+			Flight<R> started = flight;
+			flight.source.whenComplete((result, error) -> completed(started, result, error));
+		} else {
+			coalescedCount++;
+		}
+		return flight.join();
+	}
+
+	/**
+	 * Drops the pending computations and the remembered results, as they may
+	 * be out of date.
+	 */
+	public synchronized void invalidate() {
+		epoch++;
+		inFlight.clear();
+		memo.clear();
+	}
+
+	/**
+	 * @return the number of requests which shared the computation of an
+	 *         identical request in flight
+	 */
+	public synchronized long getCoalescedCount() {
+		return coalescedCount;
+	}
+
+	/**
+	 * @return the number of requests served with a remembered result
+	 */
+	public synchronized long getMemoHitCount() {
+		return memoHitCount;
+	}
+
+	private synchronized void completed(Flight<?> flight, Object result, Throwable error) {
+		inFlight.remove(flight.key, flight);
+		if (error == null && flight.epoch == epoch) {
+			memo.put(flight.key, new Memo(result, System.currentTimeMillis()));
+		}
+	}
+
+	private synchronized void cancelled(Flight<?> flight) {
+		if (--flight.callers == 0 && !flight.source.isDone()) {
+			inFlight.remove(flight.key, flight);
+			flight.source.cancel(true);
+		}
+	}
+
+	private final class Flight<R> {
+
+		private final String key;
+		private final CompletableFuture<R> source;
+		private final long epoch;
+		/** number of callers still waiting for the result */
+		private int callers;
+
+		Flight(String key, CompletableFuture<R> source, long epoch) {
+			this.key = key;
+			this.source = source;
+			this.epoch = epoch;
+		}
+
+		/**
+		 * Returns a new future for the result, which may be cancelled without
+		 * affecting the other callers.
+		 */
+		CompletableFuture<R> join() {
+			callers++;
+			CompletableFuture<R> result = new CompletableFuture<>();
+			source.whenComplete((value, error) -> {
+				if (error != null) {
+					result.completeExceptionally(error);
+				} else {
+					result.complete(value);
+				}
+			});
+			result.whenComplete((value, error) -> {
+				if (result.isCancelled()) {
+					cancelled(this);
+				}
+			});
+			return result;
+		}
+	}
+
+	private static final class Memo {
+
+		private final Object value;
+		private final long time;
+
+		Memo(Object value, long time) {
+			this.value = value;
+			this.time = time;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.eclipse.lsp4j.jsonrpc.CancelChecker;
+import org.eclipse.lsp4j.jsonrpc.CompletableFutures;
+
+/**
+ * Runs the requests of the language server on separate priority lanes, so
+ * slow bulk requests can't starve the interactive ones.
+ *
+ * Each lane is a bounded thread pool with its own FIFO queue and concurrency
+ * limit, and keeps metrics about its queue. Subclasses may run requests
+ * differently by overriding {@link #computeAsync(Lane, Function)}.
+ */
+public class RequestExecutor {
+
+	public enum Lane {
+		/**
+		 * Requests on the typing path: completion, signature help, hover
+		 */
+		INTERACTIVE,
+		/**
+		 * Requests following the cursor or the editor: definition, highlights,
+		 * symbols
+		 */
+		NAVIGATION,
+		/**
+		 * Requests that may search the whole workspace: references, rename,
+		 * code lens resolution, commands
+		 */
+		BULK;
+
+		public int getDefaultSize() {
+			int processors = Runtime.getRuntime().availableProcessors();
+			switch (this) {
+				case INTERACTIVE:
+					return Math.max(2, processors / 2);
+				case NAVIGATION:
+					return Math.max(1, processors / 2);
+				default:
+					return Math.max(1, processors / 4);
+			}
+		}
+	}
+
+	private final Map<Lane, LaneExecutor> lanes = new EnumMap<>(Lane.class);
+
+	public RequestExecutor() {
+		for (Lane lane : Lane.values()) {
+			lanes.put(lane, new LaneExecutor(lane, lane.getDefaultSize()));
+		}
+	}
+
+	/**
+	 * Runs the given code on the given lane.
+	 *
+	 * @see CompletableFutures#computeAsync(java.util.concurrent.Executor,
+	 *      Function)
+	 */
+	public <R> CompletableFuture<R> computeAsync(Lane lane, Function<CancelChecker, R> code) {
+		return CompletableFutures.computeAsync(lanes.get(lane), code);
+	}
+
+	/**
+	 * Sets the maximum number of requests the given lane runs concurrently.
+	 *
+	 * @param size
+	 *            the concurrency limit; the lane's default size is used if
+	 *            it's not positive
+	 */
+	public void setLaneSize(Lane lane, int size) {
+		lanes.get(lane).setSize(size > 0 ? size : lane.getDefaultSize());
+	}
+
+	public int getLaneSize(Lane lane) {
+		return lanes.get(lane).getMaximumPoolSize();
+	}
+
+	/**
+	 * @return the number of requests waiting on the given lane
+	 */
+	public int getQueueLength(Lane lane) {
+		return lanes.get(lane).getQueue().size();
+	}
+
+	/**
+	 * @return the highest number of requests that waited on the given lane
+	 */
+	public int getMaxQueueLength(Lane lane) {
+		return lanes.get(lane).maxQueueLength.get();
+	}
+
+	/**
+	 * @return the number of requests the given lane has run
+	 */
+	public long getCompletedCount(Lane lane) {
+		return lanes.get(lane).getCompletedTaskCount();
+	}
+
+	/**
+	 * @return the average time, in milliseconds, requests waited on the given
+	 *         lane before starting
+	 */
+	public long getAverageWaitTime(Lane lane) {
+		LaneExecutor executor = lanes.get(lane);
+		long started = executor.started.get();
+		return started == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(executor.waitTime.get() / started);
+	}
+
+	public String dump() {
+		StringBuilder builder = new StringBuilder("Request lanes:");
+		for (Lane lane : Lane.values()) {
+			builder.append(' ').append(lane.name().toLowerCase()).append("[size=").append(getLaneSize(lane));
+			builder.append(", completed=").append(getCompletedCount(lane));
+			builder.append(", queued=").append(getQueueLength(lane));
+			builder.append(", maxQueued=").append(getMaxQueueLength(lane));
+			builder.append(", avgWait=").append(getAverageWaitTime(lane)).append("ms]");
+		}
+		return builder.toString();
+	}
+
+	public void dispose() {
+		for (LaneExecutor executor : lanes.values()) {
+			executor.shutdownNow();
+		}
+	}
+
+	private static final class LaneExecutor extends ThreadPoolExecutor {
+
+		private final AtomicInteger maxQueueLength = new AtomicInteger();
+		private final AtomicLong waitTime = new AtomicLong();
+		private final AtomicLong started = new AtomicLong();
+
+		LaneExecutor(Lane lane, int size) {
+			super(size, size, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), newThreadFactory(lane));
+			allowCoreThreadTimeOut(true);
+		}
+
+		private static ThreadFactory newThreadFactory(Lane lane) {
+			AtomicInteger threadCount = new AtomicInteger();
+			String name = lane.name().charAt(0) + lane.name().substring(1).toLowerCase() + " request-";
+			return r -> {
+				Thread thread = new Thread(r, name + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			};
+		}
+
+		synchronized void setSize(int size) {
+			if (size > getMaximumPoolSize()) {
+				setMaximumPoolSize(size);
+				setCorePoolSize(size);
+			} else {
+				setCorePoolSize(size);
+				setMaximumPoolSize(size);
+			}
+		}
+
+		@Override
+		public void execute(Runnable command) {
+			long submitted = System.nanoTime();
+			super.execute(() -> {
+				waitTime.addAndGet(System.nanoTime() - submitted);
+				started.incrementAndGet();
+				command.run();
+			});
+			maxQueueLength.accumulateAndGet(getQueue().size(), Math::max);
+		}
+	}
+}
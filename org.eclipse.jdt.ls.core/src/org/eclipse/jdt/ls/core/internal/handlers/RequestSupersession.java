@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Cancels the requests made obsolete by a newer request of the same method on
+ * the same document.
+ *
+ * LSP requests don't carry the version of their document, but the document
+ * changes and the requests are received in order: a request is always made
+ * against a version at least as recent as the previous requests' one. So
+ * when a request is received for a method and a document, any request of
+ * the same method and document received before is superseded: its progress
+ * monitor is cancelled, or will be as soon as it starts if it is still
+ * queued.
+ */
+public class RequestSupersession {
+
+	private final ConcurrentMap<String, Request> latest = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, AtomicLong> superseded = new ConcurrentHashMap<>();
+
+	/**
+	 * Registers a new request, superseding the pending request of the same
+	 * method on the same document, if any. Must be called in the order the
+	 * requests are received.
+	 *
+	 * @return the request, to be attached to its progress monitor when it
+	 *         starts and finished when it completes
+	 */
+	public Request start(String method, String uri) {
+		Request request = new Request(method, method + '#' + uri);
+		if (uri == null) {
+			// can't be superseded
+			return request;
+		}
+		Request previous = latest.put(request.key, request);
+		if (previous != null && !previous.finished) {
+			previous.supersede();
+			superseded.computeIfAbsent(method, (m) -> new AtomicLong()).incrementAndGet();
+		}
+		return request;
+	}
+
+	public void finish(Request request) {
+		request.finished = true;
+		latest.remove(request.key, request);
+	}
+
+	/**
+	 * @return the number of superseded requests of the given method
+	 */
+	public long getSupersededCount(String method) {
+		AtomicLong count = superseded.get(method);
+		return count == null ? 0 : count.get();
+	}
+
+	/**
+	 * @return the number of superseded requests, per method
+	 */
+	public Map<String, Long> getSupersededCounts() {
+		Map<String, Long> counts = new TreeMap<>();
+		superseded.forEach((method, count) -> counts.put(method, count.get()));
+		return counts;
+	}
+
+	public static final class Request {
+
+		private final String method;
+		private final String key;
+		private volatile boolean superseded;
+		private volatile boolean finished;
+		private volatile IProgressMonitor monitor;
+
+		private Request(String method, String key) {
+			this.method = method;
+			this.key = key;
+		}
+
+		/**
+		 * Attaches the monitor of the request, once it starts. The monitor is
+		 * cancelled right away if the request has been superseded meanwhile.
+		 *
+		 * @return the given monitor
+		 */
+		public IProgressMonitor attach(IProgressMonitor monitor) {
+			this.monitor = monitor;
+			if (superseded) {
+				monitor.setCanceled(true);
+			}
+			return monitor;
+		}
+
+		private void supersede() {
+			superseded = true;
+			IProgressMonitor current = monitor;
+			if (current != null) {
+				current.setCanceled(true);
+			}
+		}
+
+		public String getMethod() {
+			return method;
+		}
+
+		public boolean isSuperseded() {
+			return superseded;
+		}
+	}
+}
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import org.eclipse.jdt.core.IBuffer;
+import org.eclipse.jdt.ls.core.internal.LineTable;
+import org.eclipse.jdt.ls.core.internal.PieceTableBuffer;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+
+/**
+ * Merges the content changes of a <code>didChange</code> notification into a
+ * single replacement of the buffer.
+ *
+ * The changes of a notification are sequential: each one is expressed against
+ * the content resulting from the previous ones. The batch keeps track of the
+ * smallest region of the original content touched by the changes, and of the
+ * new text of that region, without modifying the buffer. Positions are mapped
+ * through a {@link LineTable} updated after each change, so a change costs
+ * time proportional to its size, not to the size of the document. The line
+ * index of a {@link PieceTableBuffer} maps the positions of the first change;
+ * it's only copied when the notification has more changes.
+ *
+ * The virtual content of the document (original content with the pending
+ * changes applied) is exposed as a {@link CharSequence}.
+ */
+public class TextChangeBatch implements CharSequence {
+
+	private final IBuffer buffer;
+	/** the buffer whose line index maps the positions until a second change */
+	private final PieceTableBuffer lineIndex;
+	private LineTable lines;
+	private final int originalLength;
+	/** the last change, not applied to a line table yet */
+	private String pendingText;
+	private int pendingOffset;
+	private int pendingLength;
+
+	/** start of the changed region, in the original content */
+	private int start = -1;
+	/** end of the changed region, in the original content */
+	private int end;
+	/** new text of the changed region */
+	private StringBuilder region;
+	private int changeCount;
+
+	/**
+	 * @param buffer
+	 *            the buffer the changes are applied to
+	 * @param lines
+	 *            a line table up to date with the buffer's content, updated
+	 *            as changes are added
+	 */
+	public TextChangeBatch(IBuffer buffer, LineTable lines) {
+		this.buffer = buffer;
+		this.lineIndex = null;
+		this.lines = lines;
+		this.originalLength = buffer.getLength();
+	}
+
+	/**
+	 * @param buffer
+	 *            the buffer the changes are applied to, whose line index maps
+	 *            the positions
+	 */
+	public TextChangeBatch(PieceTableBuffer buffer) {
+		this.buffer = buffer;
+		this.lineIndex = buffer;
+		this.originalLength = buffer.getLength();
+	}
+
+	public void add(TextDocumentContentChangeEvent changeEvent) throws BadLocationException {
+		String text = changeEvent.getText() == null ? "" : changeEvent.getText();
+		Range range = changeEvent.getRange();
+		changeCount++;
+		if (pendingText != null) {
+			// the positions of this change depend on the previous one
+			if (pendingOffset < 0) {
+				lines = new LineTable(pendingText);
+			} else {
+				lines = lineIndex.copyLineTable();
+				lines.replace(pendingOffset, pendingLength, pendingText, this);
+			}
+			pendingText = null;
+		}
+		if (range == null) {
+			// range is optional and if not given, the whole file content is replaced
+			start = 0;
+			end = originalLength;
+			region = new StringBuilder(text);
+			updateLines(-1, 0, text);
+			return;
+		}
+		Position position = range.getStart();
+		int offset = getOffset(position);
+		int length;
+		if (changeEvent.getRangeLength() != null) {
+			length = changeEvent.getRangeLength().intValue();
+		} else {
+			length = getOffset(range.getEnd()) - offset;
+		}
+		replace(offset, length, text);
+		updateLines(offset, length, text);
+	}
+
+	private int getOffset(Position position) throws BadLocationException {
+		if (lines == null) {
+			return lineIndex.getOffset(position.getLine(), position.getCharacter());
+		}
+		return lines.getOffset(position.getLine(), position.getCharacter());
+	}
+
+	/**
+	 * Updates the line table after a change, or keeps the change for the next
+	 * one while the positions are mapped by the line index of the buffer.
+	 *
+	 * @param offset
+	 *            the offset of the change, -1 if it replaces the whole content
+	 */
+	private void updateLines(int offset, int length, String text) throws BadLocationException {
+		if (lines == null) {
+			pendingText = text;
+			pendingOffset = offset;
+			pendingLength = length;
+		} else if (offset < 0) {
+			lines.set(text);
+		} else {
+			lines.replace(offset, length, text, this);
+		}
+	}
+
+	private void replace(int offset, int length, String text) throws BadLocationException {
+		if (offset < 0 || length < 0 || offset + length > length()) {
+			throw new BadLocationException("Invalid change " + offset + ":" + length + " for length " + length());
+		}
+		if (region == null) {
+			start = offset;
+			end = offset + length;
+			region = new StringBuilder(text);
+			return;
+		}
+		// grow the region so it covers the replaced range
+		if (offset < start) {
+			region.insert(0, buffer.getText(offset, start - offset));
+			start = offset;
+		}
+		int regionEnd = start + region.length();
+		if (offset + length > regionEnd) {
+			int grow = offset + length - regionEnd;
+			region.append(buffer.getText(end, grow));
+			end += grow;
+		}
+		region.replace(offset - start, offset - start + length, text);
+	}
+
+	/**
+	 * Applies the pending changes to the buffer, as a single replacement.
+	 *
+	 * @return <code>false</code> if there was nothing to apply
+	 */
+	public boolean apply() {
+		if (region == null) {
+			return false;
+		}
+		if (start == 0 && end == originalLength) {
+			buffer.setContents(region.toString());
+		} else {
+			buffer.replace(start, end - start, region.toString());
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of changes added to this batch
+	 */
+	public int getChangeCount() {
+		return changeCount;
+	}
+
+	@Override
+	public int length() {
+		if (region == null) {
+			return originalLength;
+		}
+		return originalLength - (end - start) + region.length();
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (region == null || index < start) {
+			return buffer.getChar(index);
+		}
+		int regionEnd = start + region.length();
+		if (index < regionEnd) {
+			return region.charAt(index - start);
+		}
+		return buffer.getChar(end + index - regionEnd);
+	}
+
+	@Override
+	public CharSequence subSequence(int from, int to) {
+		StringBuilder builder = new StringBuilder(to - from);
+		for (int i = from; i < to; i++) {
+			builder.append(charAt(i));
+		}
+		return builder;
+	}
+
+	@Override
+	public String toString() {
+		return subSequence(0, length()).toString();
+	}
+}
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.compiler.IProblem;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+
+/**
+ * Computes which working copies need to be re-validated after a set of
+ * working copies changed.
+ *
+ * For every validated working copy, the planner remembers the names of the
+ * types it declares, the identifiers used in its supertype clauses, and the
+ * names it references: its identifiers, and the types of the members they
+ * resolve to (declaring types, field types, return and parameter types), so
+ * that <code>a.b().m()</code> depends on the type returned by
+ * <code>b()</code>. A working copy is considered affected by a change when it
+ * references one of the types declared (before or after the change) by a
+ * changed unit. Units extending an affected type propagate the change to their
+ * own dependents, so inherited members are accounted for.
+ *
+ * Simple names are compared, so a unit may be re-validated without need.
+ * When the references of a unit can't be resolved, because its AST has no
+ * bindings or has errors, the unit is re-validated on every change.
+ */
+public class ValidationPlanner {
+
+	private final Map<String, Dependencies> dependencies = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the working copies, among <code>workingCopies</code>, that must
+	 * be re-validated because of changes to <code>changed</code>. The result
+	 * preserves the order of <code>workingCopies</code> and always contains
+	 * the changed units themselves, as well as units the planner has no
+	 * dependency information for.
+	 *
+	 * @param changed
+	 *            the units whose content changed
+	 * @param previouslyDeclared
+	 *            the type names declared by the changed units before the
+	 *            change
+	 * @param workingCopies
+	 *            all the working copies currently open
+	 * @return the ordered list of units to validate
+	 */
+	public List<ICompilationUnit> getAffectedUnits(Collection<ICompilationUnit> changed, Set<String> previouslyDeclared, List<ICompilationUnit> workingCopies) {
+		Set<String> changedTypes = new HashSet<>(previouslyDeclared);
+		Set<ICompilationUnit> affected = new LinkedHashSet<>(changed);
+		for (ICompilationUnit unit : changed) {
+			Dependencies deps = dependencies.get(unit.getHandleIdentifier());
+			if (deps != null) {
+				changedTypes.addAll(deps.declaredTypes);
+			}
+		}
+		for (ICompilationUnit unit : workingCopies) {
+			if (!dependencies.containsKey(unit.getHandleIdentifier())) {
+				affected.add(unit);
+			}
+		}
+		boolean grown = true;
+		while (grown) {
+			grown = false;
+			for (ICompilationUnit unit : workingCopies) {
+				Dependencies deps = dependencies.get(unit.getHandleIdentifier());
+				if (deps == null) {
+					continue;
+				}
+				if (!affected.contains(unit) && (deps.unresolved || !Collections.disjoint(deps.references, changedTypes))) {
+					affected.add(unit);
+				}
+				if (affected.contains(unit) && !Collections.disjoint(deps.supertypes, changedTypes) && changedTypes.addAll(deps.declaredTypes)) {
+					// subtypes of a changed type inherit its changes: re-scan for their dependents
+					grown = true;
+				}
+			}
+		}
+		List<ICompilationUnit> result = new ArrayList<>(affected.size());
+		for (ICompilationUnit unit : workingCopies) {
+			if (affected.contains(unit)) {
+				result.add(unit);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the type names declared by the given unit, as recorded by the
+	 * last call to {@link #update(ICompilationUnit, CompilationUnit)}.
+	 */
+	public Set<String> getDeclaredTypes(ICompilationUnit unit) {
+		Dependencies deps = dependencies.get(unit.getHandleIdentifier());
+		return deps == null ? Collections.emptySet() : deps.declaredTypes;
+	}
+
+	/**
+	 * Records the dependencies of the given unit from its freshly built AST.
+	 */
+	public void update(ICompilationUnit unit, CompilationUnit astRoot) {
+		if (unit == null) {
+			return;
+		}
+		if (astRoot == null) {
+			remove(unit);
+			return;
+		}
+		Dependencies deps = new Dependencies();
+		deps.unresolved = !astRoot.getAST().hasResolvedBindings() || hasErrors(astRoot);
+		astRoot.accept(new DependencyCollector(deps));
+		dependencies.put(unit.getHandleIdentifier(), deps);
+	}
+
+	private static boolean hasErrors(CompilationUnit astRoot) {
+		for (IProblem problem : astRoot.getProblems()) {
+			if (problem.isError()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void remove(ICompilationUnit unit) {
+		if (unit != null) {
+			dependencies.remove(unit.getHandleIdentifier());
+		}
+	}
+
+	public void clear() {
+		dependencies.clear();
+	}
+
+	private static class Dependencies {
+		final Set<String> declaredTypes = new HashSet<>();
+		final Set<String> references = new HashSet<>();
+		final Set<String> supertypes = new HashSet<>();
+		/**
+		 * Whether the references could not all be resolved
+		 */
+		boolean unresolved;
+	}
+
+	private static class DependencyCollector extends ASTVisitor {
+
+		private final Dependencies deps;
+
+		DependencyCollector(Dependencies deps) {
+			this.deps = deps;
+		}
+
+		@Override
+		public boolean visit(TypeDeclaration node) {
+			addDeclaration(node);
+			addSupertype(node.getSuperclassType());
+			for (Object type : node.superInterfaceTypes()) {
+				addSupertype((Type) type);
+			}
+			return true;
+		}
+
+		@Override
+		public boolean visit(EnumDeclaration node) {
+			addDeclaration(node);
+			for (Object type : node.superInterfaceTypes()) {
+				addSupertype((Type) type);
+			}
+			return true;
+		}
+
+		@Override
+		public boolean visit(AnnotationTypeDeclaration node) {
+			addDeclaration(node);
+			return true;
+		}
+
+		@Override
+		public boolean visit(SimpleName node) {
+			deps.references.add(node.getIdentifier());
+			addReferencedTypes(node.resolveBinding());
+			return false;
+		}
+
+		private void addReferencedTypes(IBinding binding) {
+			if (binding == null) {
+				return;
+			}
+			switch (binding.getKind()) {
+				case IBinding.METHOD:
+					IMethodBinding method = (IMethodBinding) binding;
+					addReferencedType(method.getDeclaringClass());
+					addReferencedType(method.getReturnType());
+					for (ITypeBinding parameterType : method.getParameterTypes()) {
+						addReferencedType(parameterType);
+					}
+					break;
+				case IBinding.VARIABLE:
+					IVariableBinding variable = (IVariableBinding) binding;
+					addReferencedType(variable.getDeclaringClass());
+					addReferencedType(variable.getType());
+					break;
+				case IBinding.TYPE:
+					addReferencedType((ITypeBinding) binding);
+					break;
+				default:
+					break;
+			}
+		}
+
+		private void addReferencedType(ITypeBinding type) {
+			if (type == null || type.isPrimitive() || type.isNullType() || type.isTypeVariable() || type.isCapture()) {
+				return;
+			}
+			if (type.isArray()) {
+				addReferencedType(type.getElementType());
+				return;
+			}
+			if (type.isWildcardType()) {
+				addReferencedType(type.getBound());
+				return;
+			}
+			for (ITypeBinding typeArgument : type.getTypeArguments()) {
+				addReferencedType(typeArgument);
+			}
+			deps.references.add(type.getErasure().getName());
+		}
+
+		private void addDeclaration(AbstractTypeDeclaration node) {
+			deps.declaredTypes.add(node.getName().getIdentifier());
+		}
+
+		private void addSupertype(Type type) {
+			if (type == null) {
+				return;
+			}
+			type.accept(new ASTVisitor() {
+				@Override
+				public boolean visit(SimpleName node) {
+					deps.supertypes.add(node.getIdentifier());
+					return false;
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin;
+import org.eclipse.jdt.ls.core.internal.SharedASTProvider;
+
+/**
+ * Reconciles working copies and builds their ASTs in parallel, on a bounded
+ * thread pool.
+ *
+ * Units are reconciled project by project, each project under its own
+ * scheduling rule, so unrelated projects are processed concurrently and other
+ * workspace jobs are only blocked for the projects being reconciled. AST
+ * creation is read-only and does not acquire any resource rule.
+ */
+public class ValidationScheduler {
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private final ThreadPoolExecutor executor;
+	private final SharedASTProvider sharedASTProvider;
+
+	public ValidationScheduler(SharedASTProvider sharedASTProvider) {
+		this(sharedASTProvider, Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8)));
+	}
+
+	public ValidationScheduler(SharedASTProvider sharedASTProvider, int parallelism) {
+		this.sharedASTProvider = sharedASTProvider;
+		ThreadFactory threadFactory = r -> {
+			Thread thread = new Thread(r, "Validation worker-" + THREAD_COUNT.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.executor = new ThreadPoolExecutor(parallelism, parallelism, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Reconciles the given units. Units belonging to the same project are
+	 * reconciled serially under the project's scheduling rule, different
+	 * projects are reconciled in parallel. The monitor is checked between
+	 * units: when it gets cancelled, the remaining units are skipped.
+	 *
+	 * @return the units that were reconciled
+	 */
+	public List<ICompilationUnit> reconcile(Collection<ICompilationUnit> units, IProgressMonitor monitor) throws JavaModelException {
+		List<ICompilationUnit> reconciled = Collections.synchronizedList(new ArrayList<>(units.size()));
+		if (units.isEmpty()) {
+			return reconciled;
+		}
+		long start = System.currentTimeMillis();
+		Map<IProject, List<ICompilationUnit>> byProject = new LinkedHashMap<>();
+		for (ICompilationUnit unit : units) {
+			IProject project = unit.getJavaProject() == null ? null : unit.getJavaProject().getProject();
+			byProject.computeIfAbsent(project, p -> new ArrayList<>()).add(unit);
+		}
+		if (isInline()) {
+			for (List<ICompilationUnit> projectUnits : byProject.values()) {
+				reconcile(null, projectUnits, reconciled, monitor);
+			}
+		} else {
+			List<Future<Void>> futures = new ArrayList<>(byProject.size());
+			for (Map.Entry<IProject, List<ICompilationUnit>> entry : byProject.entrySet()) {
+				futures.add(executor.submit(() -> {
+					reconcile(entry.getKey(), entry.getValue(), reconciled, monitor);
+					return null;
+				}));
+			}
+			for (Future<Void> future : futures) {
+				waitFor(future);
+			}
+		}
+		JavaLanguageServerPlugin.logInfo("Reconciled " + reconciled.size() + " of " + units.size() + " units in " + byProject.size() + " projects. Took " + (System.currentTimeMillis() - start) + " ms");
+		return reconciled;
+	}
+
+	private void reconcile(ISchedulingRule rule, List<ICompilationUnit> units, List<ICompilationUnit> reconciled, IProgressMonitor monitor) throws JavaModelException {
+		IProgressMonitor workerMonitor = new WorkerMonitor(monitor);
+		try {
+			// endRule must be called even if beginRule is cancelled
+			if (rule != null) {
+				Job.getJobManager().beginRule(rule, workerMonitor);
+			}
+			for (ICompilationUnit unit : units) {
+				if (workerMonitor.isCanceled()) {
+					return;
+				}
+				// the other units are resolved against the working copies of the same owner
+				unit.reconcile(ICompilationUnit.NO_AST, true, unit.getOwner(), workerMonitor);
+				reconciled.add(unit);
+			}
+		} catch (OperationCanceledException e) {
+			// cancelled while waiting for the rule, or reconciling a unit
+		} finally {
+			if (rule != null) {
+				Job.getJobManager().endRule(rule);
+			}
+		}
+	}
+
+	/**
+	 * Returns the ASTs of the given units, in the same order, building the
+	 * missing ones in parallel. Entries are <code>null</code> for units whose
+	 * AST could not be created or when the monitor got cancelled. The monitor
+	 * is checked before and during the creation of each AST.
+	 */
+	public List<CompilationUnit> getASTs(List<ICompilationUnit> units, IProgressMonitor monitor) throws JavaModelException {
+		if (units.isEmpty()) {
+			return new ArrayList<>();
+		}
+		long start = System.currentTimeMillis();
+		if (isInline()) {
+			List<CompilationUnit> result = new ArrayList<>(units.size());
+			for (ICompilationUnit unit : units) {
+				result.add(getAST(unit, monitor));
+			}
+			return result;
+		}
+		List<Future<CompilationUnit>> futures = new ArrayList<>(units.size());
+		for (ICompilationUnit unit : units) {
+			futures.add(executor.submit(() -> getAST(unit, new WorkerMonitor(monitor))));
+		}
+		List<CompilationUnit> result = new ArrayList<>(units.size());
+		for (Future<CompilationUnit> future : futures) {
+			result.add(waitFor(future));
+		}
+		JavaLanguageServerPlugin.logInfo("Built ASTs for " + units.size() + " units using " + Math.min(units.size(), executor.getMaximumPoolSize()) + " threads. Took " + (System.currentTimeMillis() - start) + " ms");
+		return result;
+	}
+
+	private CompilationUnit getAST(ICompilationUnit unit, IProgressMonitor monitor) {
+		if (monitor != null && monitor.isCanceled()) {
+			return null;
+		}
+		return sharedASTProvider.getAST(unit, monitor);
+	}
+
+	/**
+	 * When the calling thread already owns a scheduling rule (e.g. it runs
+	 * inside a workspace operation), workers could not acquire their own
+	 * rules without deadlocking, so the work is done in the calling thread.
+	 */
+	private static boolean isInline() {
+		return Job.getJobManager().currentRule() != null;
+	}
+
+	public void dispose() {
+		executor.shutdownNow();
+	}
+
+	private static <T> T waitFor(Future<T> future) throws JavaModelException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (CancellationException e) {
+			return null;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof OperationCanceledException) {
+				return null;
+			}
+			if (e.getCause() instanceof JavaModelException) {
+				throw (JavaModelException) e.getCause();
+			}
+			JavaLanguageServerPlugin.logException("Error during validation", e.getCause());
+			return null;
+		}
+	}
+
+	/**
+	 * Monitor handed to worker threads: only forwards cancellation, since the
+	 * parent monitor is not meant to report progress from several threads.
+	 */
+	private static final class WorkerMonitor extends NullProgressMonitor {
+
+		private final IProgressMonitor parent;
+
+		WorkerMonitor(IProgressMonitor parent) {
+			this.parent = parent;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return super.isCanceled() || (parent != null && parent.isCanceled());
+		}
+	}
+}
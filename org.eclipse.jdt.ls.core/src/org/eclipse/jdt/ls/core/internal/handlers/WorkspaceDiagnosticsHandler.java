@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.jdt.ls.core.internal.handlers;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -22,6 +23,7 @@ import org.eclipse.core.resources.IResourceChangeListener;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaModelMarker;
 import org.eclipse.jdt.core.JavaCore;
@@ -49,10 +51,22 @@ import org.eclipse.m2e.core.internal.IMavenConstants;
 public final class WorkspaceDiagnosticsHandler implements IResourceChangeListener, IResourceDeltaVisitor {
 	private final JavaClientConnection connection;
 	private final ProjectsManager projectsManager;
+	private final Collection<IPath> roots;
 
 	public WorkspaceDiagnosticsHandler(JavaClientConnection connection, ProjectsManager projectsManager) {
+		this(connection, projectsManager, null);
+	}
+
+	/**
+	 * @param roots
+	 *            the locations of the client's roots, only the diagnostics of
+	 *            the resources they contain are published; <code>null</code>
+	 *            to publish the diagnostics of the whole workspace
+	 */
+	public WorkspaceDiagnosticsHandler(JavaClientConnection connection, ProjectsManager projectsManager, Collection<IPath> roots) {
 		this.connection = connection;
 		this.projectsManager = projectsManager;
+		this.roots = roots;
 	}
 
 	@Override
@@ -84,6 +98,11 @@ public final class WorkspaceDiagnosticsHandler implements IResourceChangeListene
 				|| JavaLanguageServerPlugin.getProjectsManager().getDefaultProject().equals(resource.getProject())) {
 			return false;
 		}
+		if (roots != null && resource.getType() != IResource.ROOT && !isInRoots(resource)) {
+			// only visit the resources containing one of the roots
+			IPath location = resource.getLocation();
+			return location != null && roots.stream().anyMatch(location::isPrefixOf);
+		}
 
 		// No marker changes continue to visit
 		if ((delta.getFlags() & IResourceDelta.MARKERS) == 0) {
@@ -117,6 +136,11 @@ public final class WorkspaceDiagnosticsHandler implements IResourceChangeListene
 		return true;
 	}
 
+	private boolean isInRoots(IResource resource) {
+		IPath location = resource.getLocation();
+		return location != null && roots.stream().anyMatch(root -> root.isPrefixOf(location));
+	}
+
 	/**
 	 * Transforms {@link IMarker}s of a {@link IDocument} into a list of {@link Diagnostic}s.
 	 *
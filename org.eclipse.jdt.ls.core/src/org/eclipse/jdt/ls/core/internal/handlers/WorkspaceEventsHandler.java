@@ -62,12 +62,15 @@ public class WorkspaceEventsHandler {
 			if(changeType == CHANGE_TYPE.DELETED || changeType == CHANGE_TYPE.CHANGED){
 				SharedASTProvider.getInstance().invalidate(unit);
 			}
-			pm.fileChanged(fileEvent.getUri(), changeType);
+			pm.fileChanged(fileEvent.getUri(), changeType, connection);
 		}
 	}
 
 	private void cleanUpDiagnostics(String uri){
-		this.connection.publishDiagnostics(new PublishDiagnosticsParams(ResourceUtils.toClientUri(uri), Collections.emptyList()));
+		String clientUri = ResourceUtils.toClientUri(uri);
+		this.connection.publishDiagnostics(new PublishDiagnosticsParams(clientUri, Collections.emptyList()));
+		// the file is gone, its diagnostics needn't be remembered
+		this.connection.getDiagnosticsPublisher().reset(clientUri);
 	}
 
 }
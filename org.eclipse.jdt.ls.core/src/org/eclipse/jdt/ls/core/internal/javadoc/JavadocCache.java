@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.javadoc;
+
+import java.io.File;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.ls.core.internal.ASTCache;
+import org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin;
+import org.eclipse.jdt.ls.core.internal.SharedASTProvider;
+
+import com.google.common.io.CharStreams;
+
+/**
+ * Plain text Javadoc of members, computed on a shared executor and cached by
+ * member handle and source version.
+ *
+ * A request waiting longer than its timeout gets no documentation, but the
+ * computation goes on and caches its result, for the next request of the same
+ * member to succeed. Documentation can also be prefetched, for the members
+ * likely to be requested next.
+ */
+public final class JavadocCache {
+
+	private static final int MAX_ENTRIES = 512;
+	private static final int MAX_PREFETCHES = 32;
+	private static final String NO_JAVADOC = new String();
+
+	private static final JavadocCache instance = new JavadocCache();
+
+	private final Map<String, String> entries = new LinkedHashMap<String, String>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	private final Map<String, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+
+	private JavadocCache() {
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+			Thread thread = new Thread(r, "Javadoc-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	public static JavadocCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the plain text Javadoc of the given member, waiting at most the
+	 * given time for it to be computed.
+	 *
+	 * @return the Javadoc, or <code>null</code> if the member has none, or if
+	 *         it's not computed in time
+	 */
+	public String getPlainText(IMember member, long timeout, TimeUnit unit) {
+		String key = getKey(member);
+		String javadoc;
+		synchronized (entries) {
+			javadoc = entries.get(key);
+		}
+		if (javadoc != null) {
+			hits.incrementAndGet();
+			return toJavadoc(javadoc);
+		}
+		misses.incrementAndGet();
+		try {
+			return toJavadoc(compute(key, member).get(timeout, unit));
+		} catch (TimeoutException e) {
+			timeouts.incrementAndGet();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			JavaLanguageServerPlugin.logException("Unable to read documentation", e.getCause());
+		}
+		return null;
+	}
+
+	/**
+	 * Computes in the background the Javadoc of the member found by the given
+	 * lookup, unless too many are already waiting.
+	 */
+	public void prefetch(Callable<IMember> lookup) {
+		if (executor.getQueue().size() >= MAX_PREFETCHES) {
+			return;
+		}
+		execute(() -> {
+			try {
+				IMember member = lookup.call();
+				if (member != null && member.exists()) {
+					String key = getKey(member);
+					boolean cached;
+					synchronized (entries) {
+						cached = entries.containsKey(key);
+					}
+					if (!cached) {
+						compute(key, member);
+					}
+				}
+			} catch (Exception e) {
+				// only a prefetch
+			}
+		});
+	}
+
+	private void execute(Runnable task) {
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			// shutting down
+		}
+	}
+
+	/**
+	 * @return the computation of the Javadoc of the member, shared by the
+	 *         concurrent requests
+	 */
+	private CompletableFuture<String> compute(String key, IMember member) {
+		CompletableFuture<String> created = new CompletableFuture<>();
+		CompletableFuture<String> future = pending.putIfAbsent(key, created);
+		if (future != null) {
+			return future;
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					String javadoc = readPlainText(member);
+					synchronized (entries) {
+						entries.put(key, javadoc);
+					}
+					created.complete(javadoc);
+				} catch (Throwable e) {
+					created.completeExceptionally(e);
+				} finally {
+					pending.remove(key, created);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			pending.remove(key, created);
+			created.completeExceptionally(e);
+		}
+		return created;
+	}
+
+	private static String readPlainText(IMember member) throws Exception {
+		Reader reader = JavadocContentAccess.getPlainTextContentReader(member);
+		return reader == null ? NO_JAVADOC : CharStreams.toString(reader);
+	}
+
+	private static String toJavadoc(String javadoc) {
+		return javadoc == NO_JAVADOC ? null : javadoc;
+	}
+
+	/**
+	 * @return the handle of the member, and the version of its source: the
+	 *         content version of a compilation unit, or the modification time
+	 *         of a library
+	 */
+	private static String getKey(IMember member) {
+		ITypeRoot typeRoot = member.getTypeRoot();
+		long version;
+		if (typeRoot instanceof ICompilationUnit) {
+			version = SharedASTProvider.getVersion(typeRoot);
+			if (version == ASTCache.UNKNOWN_VERSION && typeRoot.getResource() != null) {
+				version = typeRoot.getResource().getModificationStamp();
+			}
+		} else {
+			IJavaElement root = member.getAncestor(IJavaElement.PACKAGE_FRAGMENT_ROOT);
+			IPath path = root == null ? null : root.getPath();
+			version = path == null ? 0 : new File(path.toOSString()).lastModified();
+		}
+		return member.getHandleIdentifier() + '@' + version;
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of requests which didn't get the Javadoc in time
+	 */
+	public long getTimeoutCount() {
+		return timeouts.get();
+	}
+}
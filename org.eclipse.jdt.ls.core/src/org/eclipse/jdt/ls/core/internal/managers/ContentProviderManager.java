@@ -23,9 +23,12 @@ import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.jdt.core.IClassFile;
+import org.eclipse.jdt.ls.core.internal.FlightRecorderEvents;
 import org.eclipse.jdt.ls.core.internal.IContentProvider;
 import org.eclipse.jdt.ls.core.internal.IDecompiler;
 import org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin;
+import org.eclipse.jdt.ls.core.internal.MetricsRegistry;
+import org.eclipse.jdt.ls.core.internal.MetricsRegistry.Outcome;
 import org.eclipse.jdt.ls.core.internal.preferences.PreferenceManager;
 
 import com.google.common.cache.Cache;
@@ -46,11 +49,14 @@ public class ContentProviderManager {
 
 	private final PreferenceManager preferenceManager;
 
-	private Cache<String, String> cachedContent = CacheBuilder.newBuilder().maximumSize(MAX_CACHE_SIZE).build();
+	private Cache<String, String> cachedContent = CacheBuilder.newBuilder().maximumSize(MAX_CACHE_SIZE).recordStats().build();
 	private Set<ContentProviderDescriptor> descriptors;
 
 	public ContentProviderManager(PreferenceManager preferenceManager) {
 		this.preferenceManager = preferenceManager;
+		MetricsRegistry metrics = MetricsRegistry.getInstance();
+		metrics.gauge("contentProvider.cache.hits", () -> cachedContent.stats().hitCount());
+		metrics.gauge("contentProvider.cache.misses", () -> cachedContent.stats().missCount());
 	}
 
 	/**
@@ -118,6 +124,8 @@ public class ContentProviderManager {
 				requestPreferredProvider(match.priority, matches);
 			}
 
+			long start = System.nanoTime();
+			FlightRecorderEvents.Event event = FlightRecorderEvents.begin(FlightRecorderEvents.CONTENT_LOAD).setUri(cacheKey).setMethod(match.id);
 			try {
 				contentProvider.setPreferences(preferenceManager.getPreferences());
 				if (uri != null) {
@@ -126,6 +134,10 @@ public class ContentProviderManager {
 					content = ((IDecompiler) contentProvider).getSource((IClassFile) source, monitor);
 				}
 
+				Outcome outcome = monitor.isCanceled() ? Outcome.CANCELLED : Outcome.SUCCESS;
+				MetricsRegistry.getInstance().timer("contentProvider/load").record(System.nanoTime() - start, outcome);
+				event.commit(outcome);
+
 				if (content != null && match.cacheable) {
 					cachedContent.put(cacheKey, content);
 				}
@@ -136,6 +148,8 @@ public class ContentProviderManager {
 					return content;
 				}
 			} catch (Exception e) {
+				MetricsRegistry.getInstance().timer("contentProvider/load").record(System.nanoTime() - start, Outcome.ERROR);
+				event.commit(Outcome.ERROR);
 				JavaLanguageServerPlugin.logException("Error getting content via " + match.id, e);
 			}
 
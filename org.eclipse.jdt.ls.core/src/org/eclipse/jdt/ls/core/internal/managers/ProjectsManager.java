@@ -16,6 +16,7 @@ import java.io.File;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import org.eclipse.core.resources.IFolder;
@@ -38,9 +39,13 @@ import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.launching.JavaRuntime;
 import org.eclipse.jdt.ls.core.internal.ActionableNotification;
+import org.eclipse.jdt.ls.core.internal.FlightRecorderEvents;
 import org.eclipse.jdt.ls.core.internal.JDTUtils;
+import org.eclipse.jdt.ls.core.internal.JavaClientConnection;
 import org.eclipse.jdt.ls.core.internal.JavaClientConnection.JavaLanguageClient;
 import org.eclipse.jdt.ls.core.internal.JavaLanguageServerPlugin;
+import org.eclipse.jdt.ls.core.internal.MetricsRegistry;
+import org.eclipse.jdt.ls.core.internal.MetricsRegistry.Outcome;
 import org.eclipse.jdt.ls.core.internal.ProjectUtils;
 import org.eclipse.jdt.ls.core.internal.ServiceStatus;
 import org.eclipse.jdt.ls.core.internal.StatusFactory;
@@ -64,6 +69,16 @@ public class ProjectsManager {
 	}
 
 	public IStatus initializeProjects(final String projectPath, IProgressMonitor monitor) {
+		long start = System.nanoTime();
+		FlightRecorderEvents.Event event = FlightRecorderEvents.begin(FlightRecorderEvents.PROJECT_IMPORT);
+		IStatus status = importProjects(projectPath, monitor);
+		Outcome outcome = MetricsRegistry.outcomeOf(status);
+		MetricsRegistry.getInstance().timer("job/importProjects").record(System.nanoTime() - start, outcome);
+		event.setUri(projectPath).setMethod("importProjects").commit(outcome);
+		return status;
+	}
+
+	private IStatus importProjects(final String projectPath, IProgressMonitor monitor) {
 		SubMonitor subMonitor = SubMonitor.convert(monitor, 100);
 		try {
 			deleteInvalidProjects(subMonitor.split(5));
@@ -109,6 +124,16 @@ public class ProjectsManager {
 	}
 
 	public void fileChanged(String uriString, CHANGE_TYPE changeType) {
+		fileChanged(uriString, changeType, null);
+	}
+
+	/**
+	 * @param requestor
+	 *            the connection of the client reporting the change, asked to
+	 *            update the project configuration, or <code>null</code> for
+	 *            the connected client
+	 */
+	public void fileChanged(String uriString, CHANGE_TYPE changeType, JavaClientConnection requestor) {
 		if (uriString == null) {
 			return;
 		}
@@ -132,7 +157,7 @@ public class ProjectsManager {
 				case disabled:
 					break;
 				default:
-					if (client != null) {
+					if (requestor != null || client != null) {
 						String cmd = "java.projectConfiguration.status";
 						TextDocumentIdentifier uri = new TextDocumentIdentifier(uriString);
 						ActionableNotification updateProjectConfigurationNotification = new ActionableNotification()
@@ -143,7 +168,11 @@ public class ProjectsManager {
 										new Command("Now", cmd, asList(uri, FeatureStatus.interactive)),
 										new Command("Always", cmd, asList(uri, FeatureStatus.automatic))
 										));
-						client.sendActionableNotification(updateProjectConfigurationNotification);
+						if (requestor != null) {
+							requestor.sendActionableNotification(updateProjectConfigurationNotification);
+						} else {
+							client.sendActionableNotification(updateProjectConfigurationNotification);
+						}
 					}
 				}
 			}
@@ -227,12 +256,15 @@ public class ProjectsManager {
 				IStatus status = Status.OK_STATUS;
 				String projectName = project.getName();
 				try {
-					long start = System.currentTimeMillis();
+					long start = System.nanoTime();
+					FlightRecorderEvents.Event event = FlightRecorderEvents.begin(FlightRecorderEvents.PROJECT_IMPORT).setUri(projectName).setMethod("updateProject");
 					Optional<IBuildSupport> buildSupport = getBuildSupport(project);
 					if (buildSupport.isPresent()) {
 						buildSupport.get().update(project, monitor);
 					}
-					long elapsed = System.currentTimeMillis() - start;
+					MetricsRegistry.getInstance().timer("job/updateProject").recordSince(start);
+					event.commit(Outcome.SUCCESS);
+					long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
 					JavaLanguageServerPlugin.logInfo("Updated "+projectName + " in "+ elapsed +" ms");
 				} catch (CoreException e) {
 					String msg = "Error updating "+projectName;
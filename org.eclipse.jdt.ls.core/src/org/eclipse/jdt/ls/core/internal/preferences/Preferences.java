@@ -11,6 +11,7 @@
 package org.eclipse.jdt.ls.core.internal.preferences;
 
 import static org.eclipse.jdt.ls.core.internal.handlers.MapFlattener.getBoolean;
+import static org.eclipse.jdt.ls.core.internal.handlers.MapFlattener.getInt;
 import static org.eclipse.jdt.ls.core.internal.handlers.MapFlattener.getList;
 import static org.eclipse.jdt.ls.core.internal.handlers.MapFlattener.getString;
 
@@ -20,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import org.eclipse.jdt.ls.core.internal.SharedASTProvider;
 import org.eclipse.lsp4j.MessageType;
 
 /**
@@ -111,6 +113,38 @@ public class Preferences {
 	 */
 	public static final String PREFERRED_CONTENT_PROVIDER_KEY = "java.contentProvider.preferred";
 
+	/**
+	 * Preference key for the memory budget of the AST cache, in megabytes.
+	 */
+	public static final String AST_CACHE_SIZE_KEY = "java.astCache.maxSize";
+
+	/**
+	 * Preference key for the implementation of the buffers of the open
+	 * documents.
+	 */
+	public static final String DOCUMENT_BUFFER_KEY = "java.documentBuffer";
+
+	/**
+	 * Preference keys for the maximum number of requests run concurrently on
+	 * each request lane. The lane's default is used if not positive.
+	 */
+	public static final String INTERACTIVE_REQUESTS_LANE_SIZE_KEY = "java.requests.interactive.maxConcurrency";
+	public static final String NAVIGATION_REQUESTS_LANE_SIZE_KEY = "java.requests.navigation.maxConcurrency";
+	public static final String BULK_REQUESTS_LANE_SIZE_KEY = "java.requests.bulk.maxConcurrency";
+
+	/**
+	 * Preference key for the interval, in seconds, of the dumps of the server
+	 * metrics to the workspace metadata. Disabled if not positive.
+	 */
+	public static final String METRICS_DUMP_INTERVAL_KEY = "java.metrics.dumpInterval";
+
+	/**
+	 * Preference key for the maximum number of items of a completion list.
+	 * The best ranked proposals are returned, in a list marked as incomplete.
+	 * Unlimited if not positive.
+	 */
+	public static final String COMPLETION_MAX_RESULTS_KEY = "java.completion.maxResults";
+
 	public static final String TEXT_DOCUMENT_FORMATTING = "textDocument/formatting";
 	public static final String TEXT_DOCUMENT_RANGE_FORMATTING = "textDocument/rangeFormatting";
 	public static final String TEXT_DOCUMENT_CODE_LENS = "textDocument/codeLens";
@@ -133,6 +167,13 @@ public class Preferences {
 	private boolean renameEnabled;
 	private MemberSortOrder memberOrders;
 	private List<String> preferredContentProviderIds;
+	private int astCacheSize;
+	private DocumentBuffer documentBuffer;
+	private int interactiveRequestsLaneSize;
+	private int navigationRequestsLaneSize;
+	private int bulkRequestsLaneSize;
+	private int metricsDumpInterval;
+	private int completionMaxResults;
 
 	private String mavenUserSettings;
 
@@ -187,6 +228,28 @@ public class Preferences {
 		}
 	}
 
+	public static enum DocumentBuffer {
+		/**
+		 * Buffers backed by a file buffer document
+		 */
+		document,
+		/**
+		 * Buffers backed by a piece table
+		 */
+		pieceTable;
+
+		static DocumentBuffer fromString(String value, DocumentBuffer defaultBuffer) {
+			if (value != null) {
+				for (DocumentBuffer buffer : values()) {
+					if (buffer.name().equalsIgnoreCase(value)) {
+						return buffer;
+					}
+				}
+			}
+			return defaultBuffer;
+		}
+	}
+
 	public Preferences() {
 		configuration = null;
 		incompleteClasspathSeverity = Severity.warning;
@@ -200,6 +263,13 @@ public class Preferences {
 		preferredContentProviderIds = null;
 		favoriteStaticMembers = "";
 		javaImportExclusions = JAVA_IMPORT_EXCLUSIONS_DEFAULT;
+		astCacheSize = SharedASTProvider.DEFAULT_CACHE_SIZE;
+		documentBuffer = DocumentBuffer.document;
+		interactiveRequestsLaneSize = 0;
+		navigationRequestsLaneSize = 0;
+		bulkRequestsLaneSize = 0;
+		metricsDumpInterval = 0;
+		completionMaxResults = 0;
 	}
 
 	/**
@@ -248,6 +318,25 @@ public class Preferences {
 		List<String> preferredContentProviders = getList(configuration, PREFERRED_CONTENT_PROVIDER_KEY);
 		prefs.setPreferredContentProviderIds(preferredContentProviders);
 
+		int astCacheSize = getInt(configuration, AST_CACHE_SIZE_KEY, SharedASTProvider.DEFAULT_CACHE_SIZE);
+		prefs.setAstCacheSize(astCacheSize);
+
+		String documentBuffer = getString(configuration, DOCUMENT_BUFFER_KEY, null);
+		prefs.setDocumentBuffer(DocumentBuffer.fromString(documentBuffer, DocumentBuffer.document));
+
+		int interactiveRequestsLaneSize = getInt(configuration, INTERACTIVE_REQUESTS_LANE_SIZE_KEY, 0);
+		prefs.setInteractiveRequestsLaneSize(interactiveRequestsLaneSize);
+		int navigationRequestsLaneSize = getInt(configuration, NAVIGATION_REQUESTS_LANE_SIZE_KEY, 0);
+		prefs.setNavigationRequestsLaneSize(navigationRequestsLaneSize);
+		int bulkRequestsLaneSize = getInt(configuration, BULK_REQUESTS_LANE_SIZE_KEY, 0);
+		prefs.setBulkRequestsLaneSize(bulkRequestsLaneSize);
+
+		int metricsDumpInterval = getInt(configuration, METRICS_DUMP_INTERVAL_KEY, 0);
+		prefs.setMetricsDumpInterval(metricsDumpInterval);
+
+		int completionMaxResults = getInt(configuration, COMPLETION_MAX_RESULTS_KEY, 0);
+		prefs.setCompletionMaxResults(completionMaxResults);
+
 		return prefs;
 	}
 
@@ -301,6 +390,41 @@ public class Preferences {
 		return this;
 	}
 
+	public Preferences setAstCacheSize(int astCacheSize) {
+		this.astCacheSize = astCacheSize;
+		return this;
+	}
+
+	public Preferences setDocumentBuffer(DocumentBuffer documentBuffer) {
+		this.documentBuffer = documentBuffer;
+		return this;
+	}
+
+	public Preferences setInteractiveRequestsLaneSize(int interactiveRequestsLaneSize) {
+		this.interactiveRequestsLaneSize = interactiveRequestsLaneSize;
+		return this;
+	}
+
+	public Preferences setNavigationRequestsLaneSize(int navigationRequestsLaneSize) {
+		this.navigationRequestsLaneSize = navigationRequestsLaneSize;
+		return this;
+	}
+
+	public Preferences setBulkRequestsLaneSize(int bulkRequestsLaneSize) {
+		this.bulkRequestsLaneSize = bulkRequestsLaneSize;
+		return this;
+	}
+
+	public Preferences setMetricsDumpInterval(int metricsDumpInterval) {
+		this.metricsDumpInterval = metricsDumpInterval;
+		return this;
+	}
+
+	public Preferences setCompletionMaxResults(int completionMaxResults) {
+		this.completionMaxResults = completionMaxResults;
+		return this;
+	}
+
 	public Preferences setFavoriteStaticMembers(String favoriteStaticMembers) {
 		this.favoriteStaticMembers = favoriteStaticMembers;
 		return this;
@@ -359,6 +483,56 @@ public class Preferences {
 		return mavenUserSettings;
 	}
 
+	/**
+	 * @return the memory budget of the AST cache, in megabytes
+	 */
+	public int getAstCacheSize() {
+		return astCacheSize;
+	}
+
+	public DocumentBuffer getDocumentBuffer() {
+		return documentBuffer;
+	}
+
+	/**
+	 * @return the maximum number of interactive requests run concurrently, 0
+	 *         for the default
+	 */
+	public int getInteractiveRequestsLaneSize() {
+		return interactiveRequestsLaneSize;
+	}
+
+	/**
+	 * @return the maximum number of navigation requests run concurrently, 0
+	 *         for the default
+	 */
+	public int getNavigationRequestsLaneSize() {
+		return navigationRequestsLaneSize;
+	}
+
+	/**
+	 * @return the maximum number of bulk requests run concurrently, 0 for the
+	 *         default
+	 */
+	public int getBulkRequestsLaneSize() {
+		return bulkRequestsLaneSize;
+	}
+
+	/**
+	 * @return the interval, in seconds, of the server metrics dumps, 0 if
+	 *         disabled
+	 */
+	public int getMetricsDumpInterval() {
+		return metricsDumpInterval;
+	}
+
+	/**
+	 * @return the maximum number of items of a completion list, 0 if unlimited
+	 */
+	public int getCompletionMaxResults() {
+		return completionMaxResults;
+	}
+
 	public String getFavoriteStaticMembers() {
 		return this.favoriteStaticMembers;
 	}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.junit.Test;
+
+public class ASTCacheTest {
+
+	@Test
+	public void testVersionedLookup() {
+		ASTCache cache = new ASTCache(Long.MAX_VALUE);
+		CompilationUnit astRoot = parse("class A {}");
+		cache.put("A", 1, astRoot);
+
+		assertSame(astRoot, cache.get("A", 1));
+		assertNull(cache.get("A", 2));
+		assertSame(astRoot, cache.get("A", ASTCache.UNKNOWN_VERSION));
+		assertNull(cache.get("B", 1));
+
+		assertEquals(2, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testSpillsLeastRecentlyUsed() {
+		CompilationUnit a = parse("class A { int a; }");
+		CompilationUnit b = parse("class B { int b; }");
+		CompilationUnit c = parse("class C { int c; }");
+		long budget = a.subtreeBytes() + b.subtreeBytes() + c.subtreeBytes() - 1;
+		ASTCache cache = new ASTCache(budget);
+		cache.put("A", 1, a);
+		cache.put("B", 1, b);
+		// A becomes the most recently used entry
+		cache.get("A", 1);
+		cache.put("C", 1, c);
+
+		assertEquals(1, cache.getSpillCount());
+		assertTrue(cache.getWeight() <= budget);
+		assertEquals(3, cache.size());
+		// spilled entries are still available as long as they're not garbage collected
+		assertSame(b, cache.get("B", 1));
+	}
+
+	@Test
+	public void testRemove() {
+		ASTCache cache = new ASTCache(Long.MAX_VALUE);
+		CompilationUnit astRoot = parse("class A {}");
+		cache.put("A", 1, astRoot);
+		assertSame(astRoot, cache.remove("A"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+	}
+
+	private static CompilationUnit parse(String source) {
+		ASTParser parser = ASTParser.newParser(AST.JLS8);
+		parser.setSource(source.toCharArray());
+		return (CompilationUnit) parser.createAST(null);
+	}
+}
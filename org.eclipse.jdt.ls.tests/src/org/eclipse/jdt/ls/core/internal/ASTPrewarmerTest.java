@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.ls.core.internal.managers.AbstractProjectsManagerBasedTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ASTPrewarmerTest extends AbstractProjectsManagerBasedTest {
+
+	private SharedASTProvider sharedASTProvider;
+	private ASTPrewarmer prewarmer;
+	private ICompilationUnit cu1;
+	private ICompilationUnit cu2;
+	private ICompilationUnit cu3;
+
+	@Before
+	public void setup() throws Exception {
+		sharedASTProvider = SharedASTProvider.getInstance();
+		sharedASTProvider.invalidateAll();
+		prewarmer = new ASTPrewarmer(sharedASTProvider);
+
+		IJavaProject javaProject = newEmptyProject();
+		IPackageFragmentRoot sourceFolder = javaProject.getPackageFragmentRoot(javaProject.getProject().getFolder("src"));
+		IPackageFragment pack1 = sourceFolder.createPackageFragment("test1", false, null);
+		IPackageFragment pack2 = sourceFolder.createPackageFragment("test2", false, null);
+		cu1 = pack1.createCompilationUnit("P1.java", "package test1;\npublic class P1 extends test2.P3 {}\n", false, null);
+		cu2 = pack1.createCompilationUnit("P2.java", "package test1;\npublic class P2 {}\n", false, null);
+		cu3 = pack2.createCompilationUnit("P3.java", "package test2;\npublic class P3 {}\n", false, null);
+		cu1.becomeWorkingCopy(null);
+		cu2.becomeWorkingCopy(null);
+		cu3.becomeWorkingCopy(null);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		prewarmer.dispose();
+		for (ICompilationUnit cu : JavaCore.getWorkingCopies(null)) {
+			cu.discardWorkingCopy();
+		}
+	}
+
+	@Test
+	public void testCandidates() throws Exception {
+		touch(cu1);
+		List<ICompilationUnit> candidates = prewarmer.getCandidates(new NullProgressMonitor());
+		assertEquals(cu1, candidates.get(0));
+		assertTrue(candidates.contains(cu2));
+		assertTrue(candidates.contains(cu3));
+	}
+
+	@Test
+	public void testPrewarm() throws Exception {
+		touch(cu1);
+		prewarmer.prewarm(new NullProgressMonitor());
+		assertEquals(3, prewarmer.getPrewarmedCount());
+		assertNotNull(sharedASTProvider.getCachedAST(cu1, SharedASTProvider.getVersion(cu1)));
+		assertNotNull(sharedASTProvider.getCachedAST(cu3, SharedASTProvider.getVersion(cu3)));
+
+		// already cached
+		prewarmer.prewarm(new NullProgressMonitor());
+		assertEquals(3, prewarmer.getPrewarmedCount());
+	}
+
+	@Test
+	public void testPreemptedByForegroundActivity() throws Exception {
+		touch(cu1);
+		prewarmer.prewarm(new NullProgressMonitor() {
+			@Override
+			public boolean isCanceled() {
+				// a foreground request comes in as soon as the pass starts
+				prewarmer.preempt();
+				return false;
+			}
+		});
+		assertEquals(1, prewarmer.getPreemptedCount());
+		assertEquals(0, prewarmer.getPrewarmedCount());
+		assertNull(sharedASTProvider.getCachedAST(cu1, SharedASTProvider.getVersion(cu1)));
+	}
+
+	private void touch(ICompilationUnit cu) {
+		prewarmer.touch(JDTUtils.getFileURI(cu));
+		// passes are run explicitly by the tests
+		Job.getJobManager().cancel(ASTPrewarmer.PREWARM_JOBS);
+	}
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.json.StreamMessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+import org.junit.Test;
+
+/**
+ * Tests {@link ChannelInputStream}, {@link ChannelOutputStream} and
+ * {@link ChunkedMessageConsumer}.
+ */
+public class ChannelStreamsTest {
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		byte[] data = new byte[1024 * 1024 + 17];
+		new Random(42).nextBytes(data);
+		Pipe pipe = Pipe.open();
+		CompletableFuture<Void> writing = CompletableFuture.runAsync(() -> {
+			try (OutputStream out = new ChannelOutputStream(pipe.sink(), 8192, true)) {
+				out.write(data[0]);
+				out.write(data, 1, data.length - 1);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		ByteArrayOutputStream received = new ByteArrayOutputStream();
+		try (InputStream in = new ChannelInputStream(pipe.source(), 4096, true)) {
+			received.write(in.read());
+			byte[] buffer = new byte[10000];
+			int n;
+			while ((n = in.read(buffer, 0, buffer.length)) != -1) {
+				received.write(buffer, 0, n);
+			}
+		}
+		writing.get();
+		assertArrayEquals(data, received.toByteArray());
+	}
+
+	@Test
+	public void testSameOutputAsStreamMessageConsumer() throws Exception {
+		MessageJsonHandler jsonHandler = new MessageJsonHandler(Collections.emptyMap());
+		ResponseMessage message = new ResponseMessage();
+		message.setJsonrpc("2.0");
+		message.setId("1");
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			result.add("item\u00e9" + i);
+		}
+		message.setResult(result);
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		new StreamMessageConsumer(expected, jsonHandler).consume(message);
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		ChunkedMessageConsumer consumer = new ChunkedMessageConsumer(actual, jsonHandler);
+		consumer.consume(message);
+		assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+
+		// buffers are reused
+		actual.reset();
+		consumer.consume(message);
+		assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+	}
+}
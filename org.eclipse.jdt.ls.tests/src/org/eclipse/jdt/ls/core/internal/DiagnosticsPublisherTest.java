@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
+import org.junit.Test;
+
+public class DiagnosticsPublisherTest {
+
+	private List<PublishDiagnosticsParams> sent = new ArrayList<>();
+
+	@Test
+	public void testSuppressesUnchangedDiagnostics() {
+		DiagnosticsPublisher publisher = new DiagnosticsPublisher(sent::add);
+		publisher.publish(params("file:///A.java", diagnostic("error", 1)));
+		publisher.publish(params("file:///A.java", diagnostic("error", 1)));
+		publisher.publish(params("file:///B.java", diagnostic("error", 1)));
+		publisher.publish(params("file:///A.java", diagnostic("error", 2)));
+		publisher.publish(params("file:///A.java"));
+		publisher.publish(params("file:///A.java"));
+
+		assertEquals(4, sent.size());
+		assertEquals(4, publisher.getPublishedCount());
+		assertEquals(2, publisher.getSuppressedCount());
+
+		publisher.reset("file:///A.java");
+		publisher.publish(params("file:///A.java"));
+		assertEquals(5, sent.size());
+	}
+
+	@Test
+	public void testPublishesMovedDiagnostics() {
+		DiagnosticsPublisher publisher = new DiagnosticsPublisher(sent::add);
+		publisher.publish(params("file:///A.java", diagnostic("error", 1, 40)));
+		// same 31-based hash as the previous position
+		publisher.publish(params("file:///A.java", diagnostic("error", 2, 9)));
+		publisher.publish(params("file:///A.java", diagnostic("other error", 2, 9)));
+
+		assertEquals(3, sent.size());
+		assertEquals(0, publisher.getSuppressedCount());
+	}
+
+	@Test
+	public void testCoalescesPublishes() {
+		DiagnosticsPublisher publisher = new DiagnosticsPublisher(sent::add);
+		publisher.setCoalescingDelay(60000);
+		publisher.publish(params("file:///A.java", diagnostic("error", 1)));
+		PublishDiagnosticsParams last = params("file:///A.java", diagnostic("error", 2));
+		publisher.publish(last);
+		assertEquals(0, sent.size());
+
+		publisher.flush();
+		assertEquals(1, sent.size());
+		assertSame(last, sent.get(0));
+		assertEquals(1, publisher.getCoalescedCount());
+
+		// a reset sends the pending publish
+		PublishDiagnosticsParams cleared = params("file:///A.java");
+		publisher.publish(cleared);
+		publisher.reset("file:///A.java");
+		assertEquals(2, sent.size());
+		assertSame(cleared, sent.get(1));
+		publisher.dispose();
+	}
+
+	private static PublishDiagnosticsParams params(String uri, Diagnostic... diagnostics) {
+		return new PublishDiagnosticsParams(uri, diagnostics.length == 0 ? Collections.emptyList() : Arrays.asList(diagnostics));
+	}
+
+	private static Diagnostic diagnostic(String message, int line) {
+		return diagnostic(message, line, 0);
+	}
+
+	private static Diagnostic diagnostic(String message, int line, int character) {
+		Diagnostic diagnostic = new Diagnostic();
+		diagnostic.setMessage(message);
+		diagnostic.setSeverity(DiagnosticSeverity.Error);
+		diagnostic.setRange(new Range(new Position(line, character), new Position(line, character + 5)));
+		return diagnostic;
+	}
+}
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import org.eclipse.jdt.ls.core.internal.MetricsRegistry.Outcome;
+import org.junit.Test;
+
+public class FlightRecorderEventsTest {
+
+	@Test
+	public void testInertWithoutRecording() {
+		FlightRecorderEvents.Event event = FlightRecorderEvents.begin(FlightRecorderEvents.REQUEST);
+		assertFalse(event.isEnabled());
+		assertSame(event, event.setUri("file:///A.java").setMethod("textDocument/hover").setVersion(1));
+		event.commit(Outcome.SUCCESS);
+	}
+
+	@Test
+	public void testUnknownType() {
+		assertFalse(FlightRecorderEvents.begin("Unknown").isEnabled());
+	}
+}
@@ -35,12 +35,19 @@ public final class JsonMessageHelper {
 		//no instantiation
 	}
 
+	/**
+	 * Returns the deserialized JSON message payload
+	 */
+	public static Message parseMessage(CharSequence jsonPayload) {
+		return handler.parseMessage(jsonPayload);
+	}
+
 	/**
 	 * Returns the deserialized params attribute of a JSON message payload
 	 */
 	@SuppressWarnings("unchecked")
 	public static <T> T getParams(CharSequence jsonPayload) {
-		Message message = handler.parseMessage(jsonPayload);
+		Message message = parseMessage(jsonPayload);
 		Method getParam = null;
 		try {
 			getParam = message.getClass().getMethod("getParams");
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+import org.eclipse.jdt.ls.core.internal.handlers.JDTLanguageServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link LanguageServerDaemon}, with sessions echoing what their client
+ * sends.
+ */
+public class LanguageServerDaemonTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private LanguageServerDaemon daemon;
+
+	@Before
+	public void setUp() throws Exception {
+		daemon = new LanguageServerDaemon(() -> new JDTLanguageServer(null, null), LanguageServerDaemonTest::echo, 1024);
+		daemon.start(0, new File(folder.getRoot(), "daemon/daemon.token"));
+	}
+
+	@After
+	public void tearDown() {
+		daemon.stop();
+	}
+
+	@Test
+	public void testSessions() throws Exception {
+		try (Socket first = connect(); Socket second = connect()) {
+			waitFor(() -> daemon.getSessions().size() == 2);
+			assertEquals("first", exchange(first, "first"));
+			assertEquals("second", exchange(second, "second"));
+
+			first.close();
+			waitFor(() -> daemon.getSessions().size() == 1);
+			assertEquals("still there", exchange(second, "still there"));
+
+			daemon.close(daemon.getSessions().iterator().next());
+			waitFor(() -> daemon.getSessions().isEmpty());
+			assertEquals(-1, second.getInputStream().read());
+		}
+	}
+
+	@Test
+	public void testToken() throws Exception {
+		File tokenFile = daemon.getTokenFile();
+		assertTrue(tokenFile.isFile());
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile.toPath())));
+		}
+		String token = new String(Files.readAllBytes(tokenFile.toPath()), "UTF-8");
+		try (Socket wrongToken = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort()); Socket noToken = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+			wrongToken.getOutputStream().write((token.substring(1) + "x\n").getBytes("UTF-8"));
+			wrongToken.getOutputStream().flush();
+			assertEquals(-1, wrongToken.getInputStream().read());
+			noToken.shutdownOutput();
+			assertEquals(-1, noToken.getInputStream().read());
+			assertTrue(daemon.getSessions().isEmpty());
+		}
+		daemon.stop();
+		assertFalse(tokenFile.exists());
+	}
+
+	@Test
+	public void testClaimRoot() throws Exception {
+		JDTLanguageServer first = new JDTLanguageServer(null, null);
+		JDTLanguageServer second = new JDTLanguageServer(null, null);
+		File root = new File(System.getProperty("java.io.tmpdir"), "project");
+		assertTrue(daemon.claimRoot(root.getPath(), first));
+		assertFalse(daemon.claimRoot(root.getPath(), second));
+		assertFalse(daemon.claimRoot(new File(root, "../project").getPath(), second));
+		assertTrue(daemon.claimRoot(new File(root, "other").getPath(), second));
+
+		// the root is imported again once the sessions using it are closed
+		daemon.releaseRoots(first);
+		assertFalse(daemon.claimRoot(root.getPath(), first));
+		daemon.releaseRoots(first);
+		daemon.releaseRoots(second);
+		assertTrue(daemon.claimRoot(root.getPath(), second));
+	}
+
+	private Socket connect() throws Exception {
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort());
+		socket.getOutputStream().write(Files.readAllBytes(daemon.getTokenFile().toPath()));
+		socket.getOutputStream().write('\n');
+		socket.getOutputStream().flush();
+		return socket;
+	}
+
+	private static String exchange(Socket socket, String message) throws Exception {
+		socket.getOutputStream().write(message.getBytes("UTF-8"));
+		socket.getOutputStream().flush();
+		byte[] received = new byte[message.length()];
+		int n = 0;
+		while (n < received.length) {
+			n += socket.getInputStream().read(received, n, received.length - n);
+		}
+		return new String(received, "UTF-8");
+	}
+
+	private static CompletableFuture<Void> echo(JDTLanguageServer session, InputStream in, OutputStream out) {
+		CompletableFuture<Void> listening = new CompletableFuture<>();
+		new Thread(() -> {
+			try {
+				byte[] buffer = new byte[1024];
+				int n;
+				while ((n = in.read(buffer, 0, buffer.length)) != -1) {
+					out.write(buffer, 0, n);
+					out.flush();
+				}
+			} catch (Exception e) {
+				// closed by the daemon
+			}
+			listening.complete(null);
+		}).start();
+		return listening;
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean()) {
+			assertTrue("Timed out", System.currentTimeMillis() < timeout);
+			Thread.sleep(10);
+		}
+	}
+}
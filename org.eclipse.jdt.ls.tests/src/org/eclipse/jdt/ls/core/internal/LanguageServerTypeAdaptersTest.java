@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.lsp4j.Command;
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionItemKind;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.lsp4j.InsertTextFormat;
+import org.eclipse.lsp4j.Location;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.SymbolInformation;
+import org.eclipse.lsp4j.SymbolKind;
+import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+import org.junit.Test;
+
+import com.google.gson.JsonParser;
+
+/**
+ * The specialized adapters must write the same JSON as lsp4j's reflective
+ * adapters.
+ */
+public class LanguageServerTypeAdaptersTest {
+
+	private MessageJsonHandler reflective = new MessageJsonHandler(Collections.emptyMap());
+	private MessageJsonHandler specialized = new MessageJsonHandler(Collections.emptyMap(), LanguageServerTypeAdapters::register);
+
+	@Test
+	public void testCompletionItems() {
+		CompletionItem item = new CompletionItem("toString() : String");
+		item.setKind(CompletionItemKind.Method);
+		item.setDetail("java.lang.Object");
+		item.setDocumentation("Returns a \"string\" <representation> of the object.");
+		item.setSortText("999999");
+		item.setFilterText("toString");
+		item.setInsertText("toString()");
+		item.setInsertTextFormat(InsertTextFormat.Snippet);
+		item.setTextEdit(new TextEdit(range(1, 2, 1, 5), "toString()"));
+		item.setAdditionalTextEdits(Arrays.asList(new TextEdit(range(0, 0, 0, 0), "import java.util.List;\n")));
+		item.setCommand(new Command("Trigger", "editor.action.triggerParameterHints", Arrays.asList("a", 1, null)));
+		Map<String, String> data = new HashMap<>();
+		data.put("uri", "file:///Foo.java");
+		data.put("rid", "12");
+		item.setData(data);
+		CompletionItem minimal = new CompletionItem("minimal");
+		minimal.setData(Collections.singletonMap("pid", 1));
+
+		assertSameJson(response(new CompletionList(true, Arrays.asList(item, minimal))));
+	}
+
+	@Test
+	public void testDiagnostics() {
+		Diagnostic diagnostic = new Diagnostic(range(3, 4, 3, 10), "Unused import", DiagnosticSeverity.Warning, "Java", "268435844");
+		Diagnostic minimal = new Diagnostic();
+		minimal.setMessage("message");
+		NotificationMessage message = new NotificationMessage();
+		message.setJsonrpc("2.0");
+		message.setMethod("textDocument/publishDiagnostics");
+		message.setParams(new PublishDiagnosticsParams("file:///Foo.java", Arrays.asList(diagnostic, minimal)));
+		assertSameJson(message);
+	}
+
+	@Test
+	public void testSymbolsAndLocations() {
+		SymbolInformation symbol = new SymbolInformation("foo()", SymbolKind.Method, new Location("file:///Foo.java", range(1, 0, 2, 1)), "Foo");
+		assertSameJson(response(Arrays.asList(symbol, new SymbolInformation())));
+		assertSameJson(response(Arrays.asList(new Location("file:///Foo.java", range(0, 1, 0, 2)))));
+	}
+
+	private void assertSameJson(Message message) {
+		JsonParser parser = new JsonParser();
+		assertEquals(parser.parse(reflective.serialize(message)), parser.parse(specialized.serialize(message)));
+	}
+
+	private static ResponseMessage response(Object result) {
+		ResponseMessage message = new ResponseMessage();
+		message.setJsonrpc("2.0");
+		message.setId("1");
+		message.setResult(result);
+		return message;
+	}
+
+	private static Range range(int startLine, int startCharacter, int endLine, int endCharacter) {
+		return new Range(new Position(startLine, startCharacter), new Position(endLine, endCharacter));
+	}
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.junit.Test;
+
+public class LineTableTest {
+
+	@Test
+	public void testLineDelimiters() throws Exception {
+		LineTable lines = new LineTable("a\nb\r\nc\rd");
+		assertEquals(4, lines.getNumberOfLines());
+		assertEquals(0, lines.getLineOffset(0));
+		assertEquals(2, lines.getLineOffset(1));
+		assertEquals(5, lines.getLineOffset(2));
+		assertEquals(7, lines.getLineOffset(3));
+		assertEquals(2, lines.getLineOfOffset(6));
+	}
+
+	@Test
+	public void testSplitAndJoinCRLF() throws Exception {
+		StringBuilder content = new StringBuilder("a\r\nb");
+		LineTable lines = new LineTable(content);
+
+		// "a\rx\nb"
+		content.insert(2, "x");
+		lines.replace(2, 0, "x", content);
+		assertEquals(3, lines.getNumberOfLines());
+		assertEquals(2, lines.getLineOffset(1));
+		assertEquals(4, lines.getLineOffset(2));
+
+		// back to "a\r\nb"
+		content.delete(2, 3);
+		lines.replace(2, 1, "", content);
+		assertEquals(2, lines.getNumberOfLines());
+		assertEquals(3, lines.getLineOffset(1));
+	}
+
+	@Test
+	public void testRandomEdits() throws Exception {
+		String[] fragments = { "", "a", "bc", "\n", "\r", "\r\n", "x\ny", "\n\n", "foo\r\nbar\r" };
+		Random random = new Random(42);
+		StringBuilder content = new StringBuilder("class A {\n\tint a;\r\n}\r");
+		Document document = new Document(content.toString());
+		LineTable lines = new LineTable(content);
+		for (int i = 0; i < 2000; i++) {
+			int offset = random.nextInt(content.length() + 1);
+			int length = random.nextInt(Math.min(5, content.length() - offset) + 1);
+			String text = fragments[random.nextInt(fragments.length)];
+			content.replace(offset, offset + length, text);
+			document.replace(offset, length, text);
+			lines.replace(offset, length, text, content);
+			assertSameLines(document, lines);
+		}
+	}
+
+	private static void assertSameLines(Document document, LineTable lines) throws BadLocationException {
+		assertEquals(document.getNumberOfLines(), lines.getNumberOfLines());
+		assertEquals(document.getLength(), lines.getLength());
+		for (int line = 0; line < document.getNumberOfLines(); line++) {
+			assertEquals(document.getLineOffset(line), lines.getLineOffset(line));
+		}
+		for (int offset = 0; offset <= document.getLength(); offset++) {
+			assertEquals(document.getLineOfOffset(offset), lines.getLineOfOffset(offset));
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.ls.core.internal.MetricsRegistry.Outcome;
+import org.eclipse.jdt.ls.core.internal.MetricsRegistry.Timer;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+	private MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+	@Before
+	public void setup() {
+		metrics.reset();
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000000, histogram.getMax());
+		assertEquals(500500, histogram.getMean());
+		assertWithin(500000, histogram.getPercentile(50));
+		assertWithin(900000, histogram.getPercentile(90));
+		assertWithin(990000, histogram.getPercentile(99));
+		assertEquals(1000000, histogram.getPercentile(100));
+	}
+
+	@Test
+	public void testBuckets() {
+		for (long micros : new long[] { 0, 1, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE }) {
+			int index = LatencyHistogram.indexOf(micros);
+			assertTrue(micros <= LatencyHistogram.upperBoundOf(index));
+			assertTrue(index == 0 || micros > LatencyHistogram.upperBoundOf(index - 1));
+		}
+	}
+
+	@Test
+	public void testOutcomes() {
+		CompletableFuture<String> success = metrics.time("textDocument/hover", new CompletableFuture<>());
+		CompletableFuture<String> failure = metrics.time("textDocument/hover", new CompletableFuture<>());
+		CompletableFuture<String> cancelled = metrics.time("textDocument/hover", new CompletableFuture<>());
+		success.complete("hover");
+		failure.completeExceptionally(new IllegalStateException());
+		cancelled.completeExceptionally(new CancellationException());
+
+		Timer timer = metrics.timer("textDocument/hover");
+		assertEquals(3, timer.getCount());
+		assertEquals(1, timer.getErrorCount());
+		assertEquals(1, timer.getCancelledCount());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSnapshot() {
+		metrics.timer("job/validation").record(TimeUnit.MILLISECONDS.toNanos(20), Outcome.SUCCESS);
+		metrics.gauge("test.gauge", () -> 42);
+		try {
+			Map<String, Object> snapshot = metrics.snapshot();
+			Map<String, Object> timers = (Map<String, Object>) snapshot.get("timers");
+			Map<String, Object> validation = (Map<String, Object>) timers.get("job/validation");
+			assertEquals(1L, validation.get("count"));
+			assertEquals(20d, (double) validation.get("max"), 0.001);
+			Map<String, Object> gauges = (Map<String, Object>) snapshot.get("gauges");
+			assertEquals(42, gauges.get("test.gauge"));
+		} finally {
+			metrics.removeGauge("test.gauge");
+		}
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		// buckets guarantee a relative error of at most 12.5%
+		assertTrue(actual + " not within range of " + expected, actual >= expected && actual <= expected * 1.125);
+	}
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class OutboundMessageQueueTest {
+
+	private OutboundMessageQueue queue;
+	private List<String> sent = new CopyOnWriteArrayList<>();
+
+	@After
+	public void tearDown() {
+		if (queue != null) {
+			queue.dispose();
+		}
+	}
+
+	@Test
+	public void testCollapseByKey() throws Exception {
+		queue = new OutboundMessageQueue(100, 0);
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		queue.enqueue(() -> {
+			writing.countDown();
+			await(release);
+		});
+		assertTrue(writing.await(5, TimeUnit.SECONDS));
+		queue.enqueue("A.java", send("A1"));
+		queue.enqueue("B.java", send("B1"));
+		queue.enqueue("A.java", send("A2"));
+		queue.enqueue(send("log"));
+		assertEquals(3, queue.getDepth());
+		assertEquals(1, queue.getCollapsedCount());
+
+		release.countDown();
+		queue.dispose();
+		assertEquals("[A2, B1, log]", sent.toString());
+	}
+
+	@Test
+	public void testThrottle() throws Exception {
+		queue = new OutboundMessageQueue(100, TimeUnit.MINUTES.toMillis(1));
+		CountDownLatch first = new CountDownLatch(1);
+		queue.enqueueThrottled("status", () -> {
+			sent.add("10%");
+			first.countDown();
+		});
+		assertTrue(first.await(5, TimeUnit.SECONDS));
+		queue.enqueueThrottled("status", send("20%"));
+		queue.enqueueThrottled("status", send("30%"));
+		Thread.sleep(100);
+		assertEquals("[10%]", sent.toString());
+
+		queue.discardThrottled("status");
+		queue.enqueue(send("Started"));
+		queue.dispose();
+		assertEquals("[10%, Started]", sent.toString());
+		assertEquals(2, queue.getCollapsedCount());
+	}
+
+	@Test
+	public void testBackpressure() throws Exception {
+		queue = new OutboundMessageQueue(1, 0);
+		CountDownLatch release = new CountDownLatch(1);
+		queue.enqueue(() -> await(release));
+		queue.enqueue(send("1"));
+		Thread producer = new Thread(() -> queue.enqueue(send("2")));
+		producer.start();
+		producer.join(200);
+		assertTrue(producer.isAlive());
+
+		release.countDown();
+		producer.join(5000);
+		queue.dispose();
+		assertEquals("[1, 2]", sent.toString());
+		assertEquals(1, queue.getBlockedCount());
+	}
+
+	private Runnable send(String message) {
+		return () -> sent.add(message);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.eclipse.jdt.ls.core.internal.handlers.TextChangeBatch;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PieceTableBufferTest {
+
+	private PieceTableBuffer buffer;
+
+	@Before
+	public void setup() {
+		BufferMetrics.reset();
+		buffer = new PieceTableBuffer(null, null);
+	}
+
+	@Test
+	public void testInitialContents() {
+		assertNull(buffer.getContents());
+		assertNull(buffer.getCharacters());
+		buffer.setContents("class A {\n}\n");
+		assertEquals("class A {\n}\n", buffer.getContents());
+		assertFalse(buffer.hasUnsavedChanges());
+	}
+
+	@Test
+	public void testRandomEdits() throws Exception {
+		String[] fragments = { "", "a", "bc\n", "\r\n", "xyz" };
+		Random random = new Random(42);
+		StringBuilder expected = new StringBuilder("class A {\n\tint a;\n}\n");
+		buffer.setContents(expected.toString());
+		for (int i = 0; i < 2000; i++) {
+			int offset = random.nextInt(expected.length() + 1);
+			int length = random.nextInt(Math.min(5, expected.length() - offset) + 1);
+			String text = fragments[random.nextInt(fragments.length)];
+			buffer.replace(offset, length, text);
+			expected.replace(offset, offset + length, text);
+			assertEquals(expected.length(), buffer.getLength());
+			if (expected.length() > 0) {
+				int position = random.nextInt(expected.length());
+				assertEquals(expected.charAt(position), buffer.getChar(position));
+				assertEquals(new LineTable(expected).getLineOfOffset(position), buffer.getLineOfOffset(position));
+			}
+		}
+		assertEquals(expected.toString(), buffer.getContents());
+		assertTrue(buffer.hasUnsavedChanges());
+	}
+
+	@Test
+	public void testTextChangeBatch() throws Exception {
+		buffer.setContents("class A {\n}\n");
+		TextChangeBatch batch = new TextChangeBatch(buffer);
+		batch.add(change(new Range(new Position(1, 0), new Position(1, 0)), "\tint a;\n"));
+		batch.add(change(new Range(new Position(2, 0), new Position(2, 0)), "\tint b;\n"));
+		batch.add(change(new Range(new Position(1, 5), new Position(1, 6)), "c"));
+		batch.apply();
+
+		// the positions are mapped with the line index of the buffer, without materializing it
+		assertEquals(0, BufferMetrics.getCopyCount(PieceTableBuffer.class));
+		assertEquals("class A {\n\tint c;\n\tint b;\n}\n", buffer.getContents());
+		assertEquals(2, buffer.getLineOfOffset(buffer.getContents().indexOf("int b")));
+	}
+
+	private static TextDocumentContentChangeEvent change(Range range, String text) {
+		TextDocumentContentChangeEvent event = new TextDocumentContentChangeEvent();
+		event.setRange(range);
+		event.setText(text);
+		return event;
+	}
+
+	@Test
+	public void testSnapshotsAreImmutable() {
+		buffer.setContents("class A {\n}\n");
+		long stamp = buffer.getModificationStamp();
+		CharSequence snapshot = buffer.snapshot();
+		buffer.replace(9, 0, " int a; ");
+		buffer.replace(0, 5, "interface");
+
+		assertTrue(stamp != buffer.getModificationStamp());
+		assertEquals("class A {\n}\n", snapshot.toString());
+		assertEquals('A', snapshot.charAt(6));
+		assertEquals("interface A { int a; \n}\n", buffer.getContents());
+	}
+
+	@Test
+	public void testContentsCopiedOncePerModification() {
+		buffer.setContents("class A {\n}\n");
+		buffer.replace(9, 0, " int a; ");
+		String contents = buffer.getContents();
+		char[] characters = buffer.getCharacters();
+		for (int i = 0; i < 10; i++) {
+			assertSame(contents, buffer.getContents());
+			assertSame(characters, buffer.getCharacters());
+		}
+		assertEquals(2, BufferMetrics.getCopyCount(PieceTableBuffer.class));
+
+		buffer.replace(0, 0, "public ");
+		buffer.getContents();
+		assertEquals(3, BufferMetrics.getCopyCount(PieceTableBuffer.class));
+	}
+}
@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.eclipse.jdt.ls.core.internal.JavaClientConnection.JavaLanguageClient;
+import org.eclipse.jdt.ls.core.internal.handlers.JDTLanguageServer;
+import org.eclipse.lsp4j.InitializeParams;
+import org.eclipse.lsp4j.jsonrpc.Endpoint;
+import org.eclipse.lsp4j.jsonrpc.messages.CancelParams;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.RequestMessage;
+import org.eclipse.lsp4j.jsonrpc.services.ServiceEndpoints;
+
+/**
+ * Replays the client messages of a trace recorded by
+ * {@link MessageTraceRecorder} against a server, and reports the latency of
+ * each method.
+ *
+ * The messages are sent in the recorded order, either as fast as possible or
+ * at their recorded times. The URIs and paths of the recorded root are
+ * relocated to the given workspace, and the replay waits for the workspace to
+ * be imported after <code>initialize</code>, so a recorded session becomes a
+ * repeatable benchmark. Requests from the server get an empty response;
+ * <code>shutdown</code> and <code>exit</code> are not replayed.
+ */
+public class TraceReplay {
+
+	private static final String CANCEL_METHOD = "$/cancelRequest";
+	private static final String INITIALIZE_METHOD = "initialize";
+
+	/**
+	 * Message of a trace.
+	 */
+	public static final class Entry {
+
+		/** in microseconds since the start of the recording */
+		final long timestamp;
+		final char direction;
+		final String json;
+
+		Entry(long timestamp, char direction, String json) {
+			this.timestamp = timestamp;
+			this.direction = direction;
+			this.json = json;
+		}
+	}
+
+	/**
+	 * Client answering the requests of the server with an empty response.
+	 */
+	private static final Endpoint NO_OP_CLIENT = new Endpoint() {
+
+		@Override
+		public CompletableFuture<?> request(String method, Object parameter) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		@Override
+		public void notify(String method, Object parameter) {
+		}
+	};
+
+	private final List<Entry> entries;
+	private boolean timed;
+	private long timeout = TimeUnit.MINUTES.toMillis(5);
+
+	public TraceReplay(List<Entry> entries) {
+		this.entries = entries;
+	}
+
+	/**
+	 * Reads a trace file, compressed if its name ends with <code>.gz</code>.
+	 */
+	public static List<Entry> read(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		if (file.getName().endsWith(".gz")) {
+			in = new GZIPInputStream(in);
+		}
+		try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+			return read(reader);
+		}
+	}
+
+	public static List<Entry> read(Reader reader) throws IOException {
+		List<Entry> entries = new ArrayList<>();
+		BufferedReader lines = new BufferedReader(reader);
+		String line;
+		while ((line = lines.readLine()) != null) {
+			if (line.isEmpty() || line.charAt(0) == '#') {
+				continue;
+			}
+			int space = line.indexOf(' ');
+			entries.add(new Entry(Long.parseLong(line.substring(0, space)), line.charAt(space + 1), line.substring(space + 3)));
+		}
+		return entries;
+	}
+
+	/**
+	 * Sends the messages at their recorded times, instead of as fast as
+	 * possible.
+	 */
+	public void setTimed(boolean timed) {
+		this.timed = timed;
+	}
+
+	/**
+	 * Sets the time to wait for the initialization, and for the last
+	 * responses, in milliseconds.
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Connects the server to a client answering its requests with empty
+	 * responses, then replays the client messages.
+	 *
+	 * @param workspace
+	 *            the root the recorded root is relocated to, or
+	 *            <code>null</code> to keep the recorded URIs
+	 * @return method -> latencies
+	 */
+	public Map<String, LatencyHistogram> replay(JDTLanguageServer server, File workspace) throws Exception {
+		server.connectClient(ServiceEndpoints.toServiceObject(NO_OP_CLIENT, JavaLanguageClient.class));
+		Endpoint endpoint = ServiceEndpoints.toEndpoint(server);
+		Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+		Map<String, CompletableFuture<?>> pending = new ConcurrentHashMap<>();
+		long origin = -1;
+		long originNanos = 0;
+		for (Entry entry : relocate(entries, workspace)) {
+			if (entry.direction != MessageTraceRecorder.FROM_CLIENT) {
+				continue;
+			}
+			if (timed) {
+				if (origin < 0) {
+					origin = entry.timestamp;
+					originNanos = System.nanoTime();
+				}
+				long delay = TimeUnit.MICROSECONDS.toNanos(entry.timestamp - origin) - (System.nanoTime() - originNanos);
+				if (delay > 0) {
+					TimeUnit.NANOSECONDS.sleep(delay);
+				}
+			}
+			Message message = JsonMessageHelper.parseMessage(entry.json);
+			if (message instanceof RequestMessage) {
+				RequestMessage request = (RequestMessage) message;
+				String method = request.getMethod();
+				if ("shutdown".equals(method)) {
+					continue;
+				}
+				if (request.getParams() instanceof InitializeParams) {
+					// the parent process is the recorded client's
+					((InitializeParams) request.getParams()).setProcessId(null);
+				}
+				long start = System.nanoTime();
+				CompletableFuture<?> result = endpoint.request(method, request.getParams());
+				pending.put(request.getId(), result);
+				result.whenComplete((r, e) -> {
+					latencies.computeIfAbsent(method, (m) -> new LatencyHistogram()).record(System.nanoTime() - start);
+					pending.remove(request.getId());
+				});
+				if (INITIALIZE_METHOD.equals(method)) {
+					result.get(timeout, TimeUnit.MILLISECONDS);
+					JobHelpers.waitForJobsToComplete();
+					// the recorded times are relative to the initialized workspace
+					origin = -1;
+				}
+			} else if (message instanceof NotificationMessage) {
+				NotificationMessage notification = (NotificationMessage) message;
+				String method = notification.getMethod();
+				if (CANCEL_METHOD.equals(method)) {
+					CompletableFuture<?> result = pending.get(getCancelledId(notification.getParams()));
+					if (result != null) {
+						result.cancel(true);
+					}
+				} else if (!"exit".equals(method)) {
+					long start = System.nanoTime();
+					endpoint.notify(method, notification.getParams());
+					latencies.computeIfAbsent(method, (m) -> new LatencyHistogram()).record(System.nanoTime() - start);
+				}
+			}
+		}
+		CompletableFuture.allOf(pending.values().toArray(new CompletableFuture<?>[0])).handle((r, e) -> null).get(timeout, TimeUnit.MILLISECONDS);
+		return new TreeMap<>(latencies);
+	}
+
+	private static String getCancelledId(Object params) {
+		if (params instanceof CancelParams) {
+			return ((CancelParams) params).getId();
+		}
+		return null;
+	}
+
+	/**
+	 * Replaces the URIs and paths of the root of the recorded
+	 * <code>initialize</code> request by the given workspace's.
+	 */
+	static List<Entry> relocate(List<Entry> entries, File workspace) {
+		if (workspace == null) {
+			return entries;
+		}
+		String recordedUri = null;
+		String recordedPath = null;
+		for (Entry entry : entries) {
+			if (entry.direction == MessageTraceRecorder.FROM_CLIENT && entry.json.contains("\"" + INITIALIZE_METHOD + "\"")) {
+				Message message = JsonMessageHelper.parseMessage(entry.json);
+				if (message instanceof RequestMessage && ((RequestMessage) message).getParams() instanceof InitializeParams) {
+					InitializeParams params = (InitializeParams) ((RequestMessage) message).getParams();
+					recordedUri = params.getRootUri();
+					recordedPath = params.getRootPath();
+					break;
+				}
+			}
+		}
+		String uri = trimSeparator(ResourceUtils.fixURI(workspace.getAbsoluteFile().toURI()));
+		String path = escape(workspace.getAbsolutePath());
+		List<Entry> relocated = new ArrayList<>(entries.size());
+		for (Entry entry : entries) {
+			String json = entry.json;
+			if (recordedUri != null) {
+				json = json.replace(trimSeparator(recordedUri), uri);
+			}
+			if (recordedPath != null) {
+				json = json.replace(escape(trimSeparator(recordedPath)), path);
+			}
+			relocated.add(new Entry(entry.timestamp, entry.direction, json));
+		}
+		return relocated;
+	}
+
+	private static String trimSeparator(String path) {
+		return path.endsWith("/") || path.endsWith("\\") ? path.substring(0, path.length() - 1) : path;
+	}
+
+	/**
+	 * @return the path, as written in JSON
+	 */
+	private static String escape(String path) {
+		return path.replace("\\", "\\\\");
+	}
+
+	/**
+	 * Formats the latencies, in milliseconds.
+	 */
+	public static String report(Map<String, LatencyHistogram> latencies) {
+		StringBuilder report = new StringBuilder(String.format("%-40s %8s %10s %10s %10s %10s %10s%n", "method", "count", "mean", "p50", "p90", "p99", "max"));
+		for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+			LatencyHistogram histogram = entry.getValue();
+			report.append(String.format("%-40s %8d %10.2f %10.2f %10.2f %10.2f %10.2f%n", entry.getKey(), histogram.getCount(), histogram.getMean() / 1000d, histogram.getPercentile(50) / 1000d, histogram.getPercentile(90) / 1000d,
+					histogram.getPercentile(99) / 1000d, histogram.getMax() / 1000d));
+		}
+		return report.toString();
+	}
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.ls.core.internal.handlers.JDTLanguageServer;
+import org.eclipse.lsp4j.DidOpenTextDocumentParams;
+import org.eclipse.lsp4j.TextDocumentItem;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+import org.eclipse.lsp4j.jsonrpc.services.ServiceEndpoints;
+import org.junit.Test;
+
+/**
+ * Tests {@link MessageTraceRecorder} and {@link TraceReplay}.
+ *
+ * <code>testReplay</code> replays the trace set by the
+ * <code>REPLAY_TRACE</code> environment variable, or system property,
+ * relocated to the <code>REPLAY_WORKSPACE</code> directory, and prints the
+ * latencies of each method. It's skipped when no trace is set.
+ */
+public class TraceReplayTest {
+
+	private static final String URI = "file:///home/user/project/src/Foo.java";
+
+	@Test
+	public void testRecord() throws Exception {
+		StringWriter trace = new StringWriter();
+		MessageTraceRecorder recorder = new MessageTraceRecorder(trace, new MessageJsonHandler(ServiceEndpoints.getSupportedMethods(JDTLanguageServer.class)));
+		DidOpenTextDocumentParams openParams = new DidOpenTextDocumentParams();
+		TextDocumentItem textDocument = new TextDocumentItem();
+		textDocument.setUri(URI);
+		textDocument.setLanguageId("java");
+		textDocument.setVersion(1);
+		textDocument.setText("class Foo {\n}");
+		openParams.setTextDocument(textDocument);
+		recorder.write(notification("textDocument/didOpen", openParams), MessageTraceRecorder.FROM_CLIENT);
+		ResponseMessage response = new ResponseMessage();
+		response.setJsonrpc("2.0");
+		response.setId("1");
+		response.setResult("result");
+		recorder.write(response, MessageTraceRecorder.TO_CLIENT);
+		recorder.write(notification("exit", null), MessageTraceRecorder.FROM_CLIENT);
+		// closed on exit
+		recorder.write(response, MessageTraceRecorder.TO_CLIENT);
+
+		List<TraceReplay.Entry> entries = TraceReplay.read(new StringReader(trace.toString()));
+		assertEquals(3, entries.size());
+		assertEquals(MessageTraceRecorder.FROM_CLIENT, entries.get(0).direction);
+		assertEquals(MessageTraceRecorder.TO_CLIENT, entries.get(1).direction);
+		assertTrue(entries.get(0).timestamp <= entries.get(1).timestamp);
+		DidOpenTextDocumentParams params = JsonMessageHelper.getParams(entries.get(0).json);
+		assertEquals(URI, params.getTextDocument().getUri());
+		assertEquals("class Foo {\n}", params.getTextDocument().getText());
+	}
+
+	@Test
+	public void testRelocate() throws Exception {
+		List<TraceReplay.Entry> entries = Arrays.asList(
+				new TraceReplay.Entry(0, MessageTraceRecorder.FROM_CLIENT, "{\"jsonrpc\":\"2.0\",\"id\":\"1\",\"method\":\"initialize\",\"params\":{\"rootUri\":\"file:///home/user/project/\",\"rootPath\":\"/home/user/project\"}}"),
+				new TraceReplay.Entry(10, MessageTraceRecorder.FROM_CLIENT, "{\"jsonrpc\":\"2.0\",\"method\":\"textDocument/didOpen\",\"params\":{\"textDocument\":{\"uri\":\"" + URI + "\",\"languageId\":\"java\",\"version\":1,\"text\":\"\"}}}"));
+		File workspace = new File(System.getProperty("java.io.tmpdir"), "workspace");
+		List<TraceReplay.Entry> relocated = TraceReplay.relocate(entries, workspace);
+		DidOpenTextDocumentParams params = JsonMessageHelper.getParams(relocated.get(1).json);
+		assertEquals(ResourceUtils.fixURI(new File(workspace, "src/Foo.java").toURI()), params.getTextDocument().getUri());
+		assertEquals(10, relocated.get(1).timestamp);
+	}
+
+	@Test
+	public void testReplay() throws Exception {
+		String trace = Environment.get("REPLAY_TRACE");
+		assumeNotNull(trace);
+		String workspace = Environment.get("REPLAY_WORKSPACE");
+		TraceReplay replay = new TraceReplay(TraceReplay.read(new File(trace)));
+		replay.setTimed(Boolean.parseBoolean(Environment.get("REPLAY_TIMED")));
+		JDTLanguageServer server = new JDTLanguageServer(JavaLanguageServerPlugin.getProjectsManager(), JavaLanguageServerPlugin.getPreferencesManager());
+		try {
+			Map<String, LatencyHistogram> latencies = replay.replay(server, workspace == null ? null : new File(workspace));
+			System.out.println(TraceReplay.report(latencies));
+		} finally {
+			server.disconnectClient();
+		}
+	}
+
+	private static NotificationMessage notification(String method, Object params) {
+		NotificationMessage message = new NotificationMessage();
+		message.setJsonrpc("2.0");
+		message.setMethod(method);
+		message.setParams(params);
+		return message;
+	}
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionItemKind;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.json.StreamMessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+
+/**
+ * Throughput benchmark of the transports created by
+ * {@link ConnectionStreamFactory}: the unbuffered socket streams with lsp4j's
+ * <code>StreamMessageConsumer</code>, used when
+ * <code>TRANSPORT_BUFFER_SIZE</code> is 0, against the buffered transport with
+ * the {@link ChunkedMessageConsumer}. Large completion responses are sent over
+ * TCP and, except on Windows, Unix sockets.
+ *
+ * Not a test: run it as a Java application, with the classpath of the test
+ * bundle.
+ */
+public class TransportBenchmark {
+
+	private static final int WARMUP_MESSAGES = 10;
+	private static final int MESSAGES = 50;
+	/** about 4 MB of JSON */
+	private static final int COMPLETION_ITEMS = 20000;
+
+	private interface Connection {
+		/**
+		 * Connects the server side, the client side draining what it
+		 * receives.
+		 */
+		OutputStream connect(int bufferSize, CompletableFuture<Long> received) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		ResponseMessage message = createCompletionResponse();
+		MessageJsonHandler jsonHandler = new MessageJsonHandler(Collections.emptyMap());
+		run("tcp", TransportBenchmark::connectTcp, message, jsonHandler);
+		if (!ConnectionStreamFactory.isWindows()) {
+			run("unix", TransportBenchmark::connectUnix, message, jsonHandler);
+		}
+	}
+
+	private static void run(String name, Connection connection, ResponseMessage message, MessageJsonHandler jsonHandler) throws Exception {
+		for (int bufferSize : new int[] { 0, ConnectionStreamFactory.DEFAULT_TRANSPORT_BUFFER_SIZE }) {
+			send(connection, bufferSize, message, jsonHandler, WARMUP_MESSAGES);
+			long start = System.nanoTime();
+			long bytes = send(connection, bufferSize, message, jsonHandler, MESSAGES);
+			long elapsed = System.nanoTime() - start;
+			double seconds = elapsed / 1e9;
+			System.out.println(String.format("%-5s %-9s %8.1f MB/s %8.2f ms/message", name, bufferSize == 0 ? "streams" : "buffered", bytes / seconds / (1024 * 1024), TimeUnit.NANOSECONDS.toMicros(elapsed) / 1000d / MESSAGES));
+		}
+	}
+
+	private static long send(Connection connection, int bufferSize, ResponseMessage message, MessageJsonHandler jsonHandler, int count) throws Exception {
+		CompletableFuture<Long> received = new CompletableFuture<>();
+		try (OutputStream out = connection.connect(bufferSize, received)) {
+			MessageConsumer consumer = bufferSize == 0 ? new StreamMessageConsumer(out, jsonHandler) : new ChunkedMessageConsumer(out, jsonHandler);
+			for (int i = 0; i < count; i++) {
+				consumer.consume(message);
+			}
+		}
+		return received.get(5, TimeUnit.MINUTES);
+	}
+
+	private static OutputStream connectTcp(int bufferSize, CompletableFuture<Long> received) throws Exception {
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		ServerSocket server = new ServerSocket(0, 1, loopback);
+		drain(server, received);
+		if (bufferSize > 0) {
+			SocketChannel channel = SocketChannel.open(new InetSocketAddress(loopback, server.getLocalPort()));
+			return new ChannelOutputStream(channel, bufferSize, true);
+		}
+		return new Socket(loopback, server.getLocalPort()).getOutputStream();
+	}
+
+	private static OutputStream connectUnix(int bufferSize, CompletableFuture<Long> received) throws Exception {
+		// junixsocket is private to the core bundle
+		ClassLoader loader = ConnectionStreamFactory.class.getClassLoader();
+		File file = File.createTempFile("jdtls-benchmark", ".sock");
+		file.delete();
+		file.deleteOnExit();
+		SocketAddress address = (SocketAddress) loader.loadClass("org.newsclub.net.unix.AFUNIXSocketAddress").getConstructor(File.class).newInstance(file);
+		ServerSocket server = (ServerSocket) loader.loadClass("org.newsclub.net.unix.AFUNIXServerSocket").getMethod("newInstance").invoke(null);
+		server.bind(address);
+		drain(server, received);
+		Socket socket = (Socket) loader.loadClass("org.newsclub.net.unix.AFUNIXSocket").getMethod("newInstance").invoke(null);
+		socket.connect(address);
+		if (bufferSize > 0) {
+			return new ChannelOutputStream(Channels.newChannel(socket.getOutputStream()), bufferSize, false);
+		}
+		return socket.getOutputStream();
+	}
+
+	private static void drain(ServerSocket server, CompletableFuture<Long> received) {
+		CompletableFuture.runAsync(() -> {
+			try (ServerSocket s = server; Socket client = s.accept(); InputStream in = client.getInputStream()) {
+				byte[] buffer = new byte[64 * 1024];
+				long total = 0;
+				int n;
+				while ((n = in.read(buffer)) != -1) {
+					total += n;
+				}
+				received.complete(total);
+			} catch (IOException e) {
+				received.completeExceptionally(new UncheckedIOException(e));
+			}
+		});
+	}
+
+	private static ResponseMessage createCompletionResponse() {
+		List<CompletionItem> items = new ArrayList<>(COMPLETION_ITEMS);
+		for (int i = 0; i < COMPLETION_ITEMS; i++) {
+			CompletionItem item = new CompletionItem("method" + i + "(String arg0, int arg1) : void");
+			item.setKind(CompletionItemKind.Method);
+			item.setDetail("org.example.SomeType" + (i % 100));
+			item.setSortText(String.format("%08d", i));
+			item.setFilterText("method" + i);
+			item.setInsertText("method" + i + "(${1:arg0}, ${2:arg1})");
+			item.setData(Collections.singletonMap("uri", "file:///workspace/src/org/example/Example.java"));
+			items.add(item);
+		}
+		ResponseMessage message = new ResponseMessage();
+		message.setJsonrpc("2.0");
+		message.setId("1");
+		message.setResult(new CompletionList(false, items));
+		return message;
+	}
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.lsp4j.CompletionItem;
+import org.eclipse.lsp4j.CompletionItemKind;
+import org.eclipse.lsp4j.CompletionList;
+import org.eclipse.lsp4j.Diagnostic;
+import org.eclipse.lsp4j.DiagnosticSeverity;
+import org.eclipse.lsp4j.InsertTextFormat;
+import org.eclipse.lsp4j.Position;
+import org.eclipse.lsp4j.PublishDiagnosticsParams;
+import org.eclipse.lsp4j.Range;
+import org.eclipse.lsp4j.TextEdit;
+import org.eclipse.lsp4j.jsonrpc.MessageConsumer;
+import org.eclipse.lsp4j.jsonrpc.json.MessageJsonHandler;
+import org.eclipse.lsp4j.jsonrpc.messages.Message;
+import org.eclipse.lsp4j.jsonrpc.messages.NotificationMessage;
+import org.eclipse.lsp4j.jsonrpc.messages.ResponseMessage;
+
+/**
+ * Benchmark of the serialization of large completion responses and
+ * diagnostics, with lsp4j's reflective adapters and with
+ * {@link LanguageServerTypeAdapters}: throughput, and bytes allocated per
+ * message, as reported by the JVM for the benchmark thread.
+ *
+ * Not a test: run it as a Java application, with the classpath of the test
+ * bundle, on a HotSpot JVM.
+ */
+public class TypeAdaptersBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 200;
+	private static final int ITERATIONS = 500;
+	private static final int COMPLETION_ITEMS = 5000;
+	private static final int DIAGNOSTICS = 1000;
+
+	private static final OutputStream NULL_OUTPUT = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	public static void main(String[] args) {
+		MessageJsonHandler reflective = new MessageJsonHandler(Collections.emptyMap());
+		MessageJsonHandler specialized = new MessageJsonHandler(Collections.emptyMap(), LanguageServerTypeAdapters::register);
+		Message completion = createCompletionResponse();
+		Message diagnostics = createDiagnostics();
+		run("completion", "reflective", reflective, completion);
+		run("completion", "specialized", specialized, completion);
+		run("diagnostics", "reflective", reflective, diagnostics);
+		run("diagnostics", "specialized", specialized, diagnostics);
+	}
+
+	private static void run(String payload, String adapters, MessageJsonHandler jsonHandler, Message message) {
+		MessageConsumer consumer = new ChunkedMessageConsumer(NULL_OUTPUT, jsonHandler);
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			consumer.consume(message);
+		}
+		long allocatedBefore = getAllocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			consumer.consume(message);
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = getAllocatedBytes() - allocatedBefore;
+		System.out.println(String.format("%-12s %-12s %10.1f messages/s %12d bytes allocated/message", payload, adapters, ITERATIONS / (elapsed / 1e9), allocated / ITERATIONS));
+	}
+
+	private static long getAllocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	private static Message createCompletionResponse() {
+		List<CompletionItem> items = new ArrayList<>(COMPLETION_ITEMS);
+		for (int i = 0; i < COMPLETION_ITEMS; i++) {
+			CompletionItem item = new CompletionItem("method" + i + "(String arg0, int arg1) : void");
+			item.setKind(CompletionItemKind.Method);
+			item.setDetail("org.example.SomeType" + (i % 100));
+			item.setSortText(String.format("%08d", i));
+			item.setFilterText("method" + i);
+			item.setInsertTextFormat(InsertTextFormat.Snippet);
+			item.setTextEdit(new TextEdit(range(10, 4, 10, 7), "method" + i + "(${1:arg0}, ${2:arg1})"));
+			Map<String, String> data = new HashMap<>();
+			data.put("uri", "file:///workspace/src/org/example/Example.java");
+			data.put("rid", "42");
+			data.put("pid", String.valueOf(i));
+			item.setData(data);
+			items.add(item);
+		}
+		ResponseMessage message = new ResponseMessage();
+		message.setJsonrpc("2.0");
+		message.setId("1");
+		message.setResult(new CompletionList(false, items));
+		return message;
+	}
+
+	private static Message createDiagnostics() {
+		Diagnostic[] diagnostics = new Diagnostic[DIAGNOSTICS];
+		for (int i = 0; i < DIAGNOSTICS; i++) {
+			diagnostics[i] = new Diagnostic(range(i, 4, i, 20), "The value of the local variable x" + i + " is not used", DiagnosticSeverity.Warning, "Java", "536870973");
+		}
+		NotificationMessage message = new NotificationMessage();
+		message.setJsonrpc("2.0");
+		message.setMethod("textDocument/publishDiagnostics");
+		message.setParams(new PublishDiagnosticsParams("file:///workspace/src/org/example/Example.java", Arrays.asList(diagnostics)));
+		return message;
+	}
+
+	private static Range range(int startLine, int startCharacter, int endLine, int endCharacter) {
+		return new Range(new Position(startLine, startCharacter), new Position(endLine, endCharacter));
+	}
+}
@@ -25,6 +25,7 @@ import static org.mockito.Mockito.when;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -35,6 +36,7 @@ import org.eclipse.jdt.ls.core.internal.JDTUtils;
 import org.eclipse.jdt.ls.core.internal.JsonMessageHelper;
 import org.eclipse.jdt.ls.core.internal.WorkspaceHelper;
 import org.eclipse.jdt.ls.core.internal.preferences.ClientPreferences;
+import org.eclipse.jdt.ls.core.internal.preferences.Preferences;
 import org.eclipse.lsp4j.CompletionItem;
 import org.eclipse.lsp4j.CompletionItemKind;
 import org.eclipse.lsp4j.CompletionList;
@@ -150,6 +152,105 @@ public class CompletionHandlerTest extends AbstractCompilationUnitBasedTest {
 		assertEquals(18, range.getEnd().getCharacter());
 	}
 
+	@Test
+	public void testCompletion_narrowed() throws Exception{
+		ICompilationUnit unit = getWorkingCopy(
+				"src/java/Foo.java",
+				"public class Foo {\n"+
+						"	void foo() {\n"+
+						"		Object o = new Ob\n"+
+						"	}\n"+
+				"}\n");
+		int[] loc = findCompletionLocation(unit, "new Ob");
+		CompletionList list = server.completion(JsonMessageHelper.getParams(createCompletionRequest(unit, loc[0], loc[1]))).join().getRight();
+		assertFalse("No proposals were found",list.getItems().isEmpty());
+		CompletionItem firstCtor = getFirstItem(list);
+		assertEquals("Object()", firstCtor.getLabel());
+
+		// typing more characters narrows the previous proposals
+		long reused = CompletionResponseCache.getReusedCount();
+		int end = unit.getSource().indexOf("new Ob") + "new Ob".length();
+		unit.getBuffer().replace(end, 0, "j");
+		list = server.completion(JsonMessageHelper.getParams(createCompletionRequest(unit, loc[0], loc[1] + 1))).join().getRight();
+		assertEquals(reused + 1, CompletionResponseCache.getReusedCount());
+		unit.getBuffer().replace(end + 1, 0, "e");
+		list = server.completion(JsonMessageHelper.getParams(createCompletionRequest(unit, loc[0], loc[1] + 2))).join().getRight();
+		assertEquals(reused + 2, CompletionResponseCache.getReusedCount());
+		assertFalse("No proposals were found",list.getItems().isEmpty());
+		for (CompletionItem item : list.getItems()) {
+			assertTrue(item.getLabel(), item.getFilterText().toLowerCase().contains("obje"));
+		}
+
+		CompletionItem ctor = getFirstItem(list);
+		assertEquals("Object()", ctor.getLabel());
+		assertCtorRange(server.resolveCompletionItem(ctor).join(), 21);
+		// the items of the first list keep their ranges
+		assertCtorRange(server.resolveCompletionItem(firstCtor).join(), 19);
+	}
+
+	@Test
+	public void testCompletion_notNarrowedAfterEdit() throws Exception{
+		ICompilationUnit unit = getWorkingCopy(
+				"src/java/Foo.java",
+				"public class Foo {\n"+
+						"	void foo() {\n"+
+						"		Object o = new Ob\n"+
+						"	}\n"+
+				"}\n");
+		int[] loc = findCompletionLocation(unit, "new Ob");
+		server.completion(JsonMessageHelper.getParams(createCompletionRequest(unit, loc[0], loc[1]))).join().getRight();
+
+		// the rest of the document changed: the engine runs again
+		long reused = CompletionResponseCache.getReusedCount();
+		int end = unit.getSource().indexOf("new Ob") + "new Ob".length();
+		unit.getBuffer().replace(end, 0, "j");
+		unit.getBuffer().replace(unit.getSource().indexOf("void foo"), 0, "int i;\n");
+		server.completion(JsonMessageHelper.getParams(createCompletionRequest(unit, loc[0] + 1, loc[1] + 1))).join().getRight();
+		assertEquals(reused, CompletionResponseCache.getReusedCount());
+	}
+
+	private static CompletionItem getFirstItem(CompletionList list) {
+		List<CompletionItem> items = new ArrayList<>(list.getItems());
+		Collections.sort(items, (CompletionItem a, CompletionItem b) -> a.getSortText().compareTo(b.getSortText()));
+		return items.get(0);
+	}
+
+	private static void assertCtorRange(CompletionItem resolvedItem, int end) {
+		TextEdit te = resolvedItem.getTextEdit();
+		assertNotNull(te);
+		assertEquals("Object()",te.getNewText());
+		Range range = te.getRange();
+		assertEquals(2, range.getStart().getLine());
+		assertEquals(17, range.getStart().getCharacter());
+		assertEquals(2, range.getEnd().getLine());
+		assertEquals(end, range.getEnd().getCharacter());
+	}
+
+	@Test
+	public void testCompletion_maxResults() throws Exception{
+		when(preferenceManager.getPreferences()).thenReturn(new Preferences().setCompletionMaxResults(5));
+		ICompilationUnit unit = getWorkingCopy(
+				"src/java/Foo.java",
+				"public class Foo {\n"+
+						"	void foo() {\n"+
+						"		Obj\n"+
+						"	}\n"+
+				"}\n");
+		int[] loc = findCompletionLocation(unit, "Obj");
+		CompletionList list = server.completion(JsonMessageHelper.getParams(createCompletionRequest(unit, loc[0], loc[1]))).join().getRight();
+		assertNotNull(list);
+		assertEquals(5, list.getItems().size());
+		assertTrue(list.isIncomplete());
+
+		// the best ranked proposals are kept, and resolve
+		List<CompletionItem> items = new ArrayList<>(list.getItems());
+		Collections.sort(items, (CompletionItem a, CompletionItem b) -> a.getSortText().compareTo(b.getSortText()));
+		CompletionItem object = items.get(0);
+		assertTrue(object.getLabel(), object.getLabel().startsWith("Object"));
+		CompletionItem resolvedItem = server.resolveCompletionItem(object).join();
+		assertNotNull(resolvedItem.getTextEdit());
+		assertEquals("Object", resolvedItem.getTextEdit().getNewText());
+	}
 
 	@Test
 	public void testCompletion_import_package() throws JavaModelException{
@@ -284,6 +385,40 @@ public class CompletionHandlerTest extends AbstractCompilationUnitBasedTest {
 		assertEquals(3, edits.size());
 	}
 
+	@Test
+	public void testCompletion_resolveSharedImports() throws JavaModelException{
+		ICompilationUnit unit = getWorkingCopy(
+				"src/java/Foo.java",
+				"public class Foo {\n"+
+						"	void foo() {\n"+
+						"HashMap<String, String> map = new HashMap<>();\n"+
+						"map.pu\n" +
+						"	}\n"+
+				"}\n");
+
+		int[] loc = findCompletionLocation(unit, "map.pu");
+
+		CompletionList list = server.completion(JsonMessageHelper.getParams(createCompletionRequest(unit, loc[0], loc[1]))).join().getRight();
+		assertNotNull(list);
+		CompletionItem ci = list.getItems().stream()
+				.filter( item->  item.getLabel().matches("put\\(String \\w+, String \\w+\\) : String"))
+				.findFirst().orElse(null);
+		assertNotNull(ci);
+		@SuppressWarnings("unchecked")
+		Map<String, String> data = (Map<String, String>) ci.getData();
+		CompletionItem copy = new CompletionItem(ci.getLabel());
+		copy.setKind(ci.getKind());
+		copy.setInsertText(ci.getInsertText());
+		copy.setData(new HashMap<>(data));
+
+		// each resolve of the list gets its own imports, from the same parsed state
+		List<TextEdit> first = server.resolveCompletionItem(ci).join().getAdditionalTextEdits();
+		List<TextEdit> second = server.resolveCompletionItem(copy).join().getAdditionalTextEdits();
+		assertNotNull(first);
+		assertEquals(3, first.size());
+		assertEquals(first, second);
+	}
+
 	@Test
 	public void testCompletion_method_withLSPV3() throws JavaModelException{
 		ICompilationUnit unit = getWorkingCopy(
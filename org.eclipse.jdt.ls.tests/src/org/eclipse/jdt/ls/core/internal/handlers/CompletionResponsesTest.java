@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.core.CompletionProposal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompletionResponsesTest {
+
+	private static final String FOO = "file:///project/src/Foo.java";
+	private static final String BAR = "file:///project/src/Bar.java";
+
+	@Before
+	public void setUp() {
+		CompletionResponses.clear();
+	}
+
+	@After
+	public void tearDown() {
+		CompletionResponses.setMemoryBudget(8 * 1024 * 1024);
+		CompletionResponses.clear();
+	}
+
+	@Test
+	public void testKeyedByDocument() {
+		CompletionResponse response = response(1);
+		CompletionResponses.store(FOO, response);
+
+		assertSame(response, CompletionResponses.get(FOO, response.getId()));
+		assertNull(CompletionResponses.get(BAR, response.getId()));
+		assertNull(CompletionResponses.get(FOO, response.getId() + 1));
+	}
+
+	@Test
+	public void testEvictsOldestOfDocument() {
+		CompletionResponse bar = response(1);
+		CompletionResponses.store(BAR, bar);
+		List<CompletionResponse> responses = new ArrayList<>();
+		for (int i = 0; i <= CompletionResponses.MAX_RESPONSES_PER_DOCUMENT; i++) {
+			CompletionResponse response = response(1);
+			CompletionResponses.store(FOO, response);
+			responses.add(response);
+		}
+
+		// a newer request doesn't invalidate the previous lists
+		assertNull(CompletionResponses.get(FOO, responses.get(0).getId()));
+		for (CompletionResponse response : responses.subList(1, responses.size())) {
+			assertSame(response, CompletionResponses.get(FOO, response.getId()));
+		}
+		assertSame(bar, CompletionResponses.get(BAR, bar.getId()));
+		assertEquals(CompletionResponses.MAX_RESPONSES_PER_DOCUMENT + 1, CompletionResponses.size());
+	}
+
+	@Test
+	public void testEvictsOverBudget() {
+		CompletionResponse first = response(10);
+		CompletionResponses.store(FOO, first);
+		long weight = CompletionResponses.getWeight();
+		assertTrue(weight > 0);
+		CompletionResponses.setMemoryBudget(2 * weight);
+		CompletionResponse second = response(10);
+		CompletionResponses.store(BAR, second);
+		long evictions = CompletionResponses.getEvictionCount();
+		CompletionResponse third = response(10);
+		CompletionResponses.store(BAR, third);
+
+		assertEquals(evictions + 1, CompletionResponses.getEvictionCount());
+		assertNull(CompletionResponses.get(FOO, first.getId()));
+		assertSame(second, CompletionResponses.get(BAR, second.getId()));
+		assertSame(third, CompletionResponses.get(BAR, third.getId()));
+		assertEquals(2 * weight, CompletionResponses.getWeight());
+
+		// the last response is kept, whatever its weight
+		CompletionResponse large = response(100);
+		CompletionResponses.store(FOO, large);
+		assertEquals(1, CompletionResponses.size());
+		assertSame(large, CompletionResponses.get(FOO, large.getId()));
+	}
+
+	private static CompletionResponse response(int proposalCount) {
+		CompletionResponse response = new CompletionResponse();
+		List<CompletionProposal> proposals = new ArrayList<>();
+		for (int i = 0; i < proposalCount; i++) {
+			CompletionProposal proposal = CompletionProposal.create(CompletionProposal.TYPE_REF, 0);
+			proposal.setCompletion("java.lang.Object".toCharArray());
+			proposals.add(proposal);
+		}
+		response.setProposals(proposals);
+		return response;
+	}
+}
@@ -12,6 +12,12 @@ package org.eclipse.jdt.ls.core.internal.handlers;
 
 import static org.eclipse.jdt.ls.core.internal.Lsp4jAssertions.assertRange;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
@@ -19,21 +25,28 @@ import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.BufferChangedEvent;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
 import org.eclipse.jdt.core.compiler.IProblem;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.ls.core.internal.JDTUtils;
 import org.eclipse.jdt.ls.core.internal.JavaClientConnection;
+import org.eclipse.jdt.ls.core.internal.LanguageServerWorkingCopyOwner;
 import org.eclipse.jdt.ls.core.internal.SharedASTProvider;
 import org.eclipse.jdt.ls.core.internal.managers.AbstractProjectsManagerBasedTest;
 import org.eclipse.jdt.ls.core.internal.preferences.Preferences;
@@ -43,6 +56,7 @@ import org.eclipse.lsp4j.DidChangeTextDocumentParams;
 import org.eclipse.lsp4j.DidCloseTextDocumentParams;
 import org.eclipse.lsp4j.DidOpenTextDocumentParams;
 import org.eclipse.lsp4j.DidSaveTextDocumentParams;
+import org.eclipse.lsp4j.Position;
 import org.eclipse.lsp4j.PublishDiagnosticsParams;
 import org.eclipse.lsp4j.Range;
 import org.eclipse.lsp4j.TextDocumentContentChangeEvent;
@@ -209,6 +223,50 @@ public class DocumentLifeCycleHandlerTest extends AbstractProjectsManagerBasedTe
 		assertNewASTsCreated(0);
 	}
 
+	@Test
+	public void testMultipleChangesAppliedAtOnce() throws Exception {
+		IJavaProject javaProject = newEmptyProject();
+		IPackageFragmentRoot sourceFolder = javaProject.getPackageFragmentRoot(javaProject.getProject().getFolder("src"));
+		IPackageFragment pack1 = sourceFolder.createPackageFragment("test1", false, null);
+
+		StringBuilder buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class E123 {\n");
+		buf.append("}\n");
+		ICompilationUnit cu1 = pack1.createCompilationUnit("E123.java", buf.toString(), false, null);
+
+		openDocument(cu1, cu1.getSource(), 1);
+		assertNewProblemReported(new ExpectedProblemReport(cu1, 0));
+		assertNewASTsCreated(1);
+
+		List<BufferChangedEvent> bufferChanges = new ArrayList<>();
+		cu1.getBuffer().addBufferChangedListener(bufferChanges::add);
+
+		// each change is expressed against the content resulting from the previous ones
+		List<TextDocumentContentChangeEvent> contentChanges = new ArrayList<>();
+		contentChanges.add(newChangeEvent(new Range(new Position(2, 0), new Position(2, 0)), "  int a;\n"));
+		contentChanges.add(newChangeEvent(new Range(new Position(3, 0), new Position(3, 0)), "  int b;\n"));
+		contentChanges.add(newChangeEvent(new Range(new Position(2, 6), new Position(2, 7)), "c"));
+		DidChangeTextDocumentParams changeParams = new DidChangeTextDocumentParams();
+		VersionedTextDocumentIdentifier textDocument = new VersionedTextDocumentIdentifier();
+		textDocument.setUri(JDTUtils.getFileURI(cu1));
+		textDocument.setVersion(2);
+		changeParams.setTextDocument(textDocument);
+		changeParams.setContentChanges(contentChanges);
+		lifeCycleHandler.didChange(changeParams);
+
+		buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class E123 {\n");
+		buf.append("  int c;\n");
+		buf.append("  int b;\n");
+		buf.append("}\n");
+		assertEquals(buf.toString(), cu1.getSource());
+		assertEquals(1, bufferChanges.size());
+		assertNewProblemReported(new ExpectedProblemReport(cu1, 0));
+		assertNewASTsCreated(1);
+	}
+
 	@Test
 	public void testFixInDependencyScenario() throws Exception {
 		IJavaProject javaProject = newEmptyProject();
@@ -252,7 +310,8 @@ public class DocumentLifeCycleHandlerTest extends AbstractProjectsManagerBasedTe
 		assertEquals(false, cu1.hasUnsavedChanges());
 		assertEquals(true, cu2.isWorkingCopy());
 		assertEquals(false, cu2.hasUnsavedChanges());
-		assertNewProblemReported(new ExpectedProblemReport(cu2, 1), new ExpectedProblemReport(cu1, 0));
+		// cu2 is re-validated, but its unchanged diagnostics are not re-published
+		assertNewProblemReported(new ExpectedProblemReport(cu1, 0));
 		assertEquals(2, sharedASTProvider.getCacheSize());
 		assertNewASTsCreated(2);
 
@@ -268,7 +327,7 @@ public class DocumentLifeCycleHandlerTest extends AbstractProjectsManagerBasedTe
 		assertEquals(true, cu1.hasUnsavedChanges());
 		assertEquals(true, cu2.isWorkingCopy());
 		assertEquals(false, cu2.hasUnsavedChanges());
-		assertNewProblemReported(new ExpectedProblemReport(cu2, 0), new ExpectedProblemReport(cu1, 0));
+		assertNewProblemReported(new ExpectedProblemReport(cu2, 0));
 		assertEquals(2, sharedASTProvider.getCacheSize());
 		assertNewASTsCreated(2);
 
@@ -303,6 +362,284 @@ public class DocumentLifeCycleHandlerTest extends AbstractProjectsManagerBasedTe
 		assertNewASTsCreated(0);
 	}
 
+	@Test
+	public void testChangeDoesNotRevalidateUnrelatedUnits() throws Exception {
+		IJavaProject javaProject = newEmptyProject();
+		IPackageFragmentRoot sourceFolder = javaProject.getPackageFragmentRoot(javaProject.getProject().getFolder("src"));
+		IPackageFragment pack1 = sourceFolder.createPackageFragment("test1", false, null);
+
+		StringBuilder buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class G123 {\n");
+		buf.append("}\n");
+		ICompilationUnit cu1 = pack1.createCompilationUnit("G123.java", buf.toString(), false, null);
+
+		buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class G456 {\n");
+		buf.append("}\n");
+		ICompilationUnit cu2 = pack1.createCompilationUnit("G456.java", buf.toString(), false, null);
+
+		buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class G789 extends G123 {\n");
+		buf.append("}\n");
+		ICompilationUnit cu3 = pack1.createCompilationUnit("G789.java", buf.toString(), false, null);
+
+		openDocument(cu1, cu1.getSource(), 1);
+		openDocument(cu2, cu2.getSource(), 1);
+		openDocument(cu3, cu3.getSource(), 1);
+		getClientRequests("publishDiagnostics").clear();
+		sharedASTProvider.clearASTCreationCount();
+
+		buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class G123 {\n");
+		buf.append("  X x;\n");
+		buf.append("}\n");
+		changeDocumentFull(cu1, buf.toString(), 2);
+
+		// G789 is re-validated, but its unchanged diagnostics are not re-published;
+		// G456 does not reference G123, its cached AST is reused
+		assertNewProblemReported(new ExpectedProblemReport(cu1, 1));
+		assertEquals(3, sharedASTProvider.getCacheSize());
+		assertNewASTsCreated(2);
+	}
+
+	@Test
+	public void testAbandonedRunIsCarriedOver() throws Exception {
+		IJavaProject javaProject = newEmptyProject();
+		IPackageFragmentRoot sourceFolder = javaProject.getPackageFragmentRoot(javaProject.getProject().getFolder("src"));
+		IPackageFragment pack1 = sourceFolder.createPackageFragment("test1", false, null);
+
+		StringBuilder buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class H123 {\n");
+		buf.append("  int f;\n");
+		buf.append("}\n");
+		ICompilationUnit cu1 = pack1.createCompilationUnit("H123.java", buf.toString(), false, null);
+
+		buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class H456 {\n");
+		buf.append("  int g(H123 h) { return h.f; }\n");
+		buf.append("}\n");
+		ICompilationUnit cu2 = pack1.createCompilationUnit("H456.java", buf.toString(), false, null);
+
+		buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class H789 {\n");
+		buf.append("}\n");
+		ICompilationUnit cu3 = pack1.createCompilationUnit("H789.java", buf.toString(), false, null);
+
+		openDocument(cu1, cu1.getSource(), 1);
+		openDocument(cu2, cu2.getSource(), 1);
+		openDocument(cu3, cu3.getSource(), 1);
+		getClientRequests("publishDiagnostics").clear();
+		sharedASTProvider.clearASTCreationCount();
+
+		// the run is abandoned once the ASTs of the dependents are built, before publishing
+		CancellingScheduler scheduler = new CancellingScheduler(sharedASTProvider);
+		scheduler.cancelAfter = cu2;
+		lifeCycleHandler.setValidationScheduler(scheduler);
+		buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class H123 {\n");
+		buf.append("  X x;\n");
+		buf.append("}\n");
+		changeDocumentFull(cu1, buf.toString(), 2);
+
+		assertNewProblemReported();
+		assertNewASTsCreated(2);
+
+		// the next run publishes the diagnostics of the dependent, from the AST the abandoned run built
+		buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class H789 {\n");
+		buf.append("  Y y;\n");
+		buf.append("}\n");
+		changeDocumentFull(cu3, buf.toString(), 2);
+
+		Set<String> published = new HashSet<>();
+		for (PublishDiagnosticsParams diagnostics : getClientRequests("publishDiagnostics")) {
+			assertEquals(diagnostics.getUri(), 1, diagnostics.getDiagnostics().size());
+			published.add(diagnostics.getUri());
+		}
+		assertEquals(new HashSet<>(Arrays.asList(JDTUtils.getFileURI(cu1), JDTUtils.getFileURI(cu2), JDTUtils.getFileURI(cu3))), published);
+		assertNewASTsCreated(1);
+	}
+
+	/**
+	 * Cancels the validation run once the AST of a given unit is built.
+	 */
+	private static final class CancellingScheduler extends ValidationScheduler {
+
+		private ICompilationUnit cancelAfter;
+
+		CancellingScheduler(SharedASTProvider sharedASTProvider) {
+			super(sharedASTProvider, 1);
+		}
+
+		@Override
+		public List<CompilationUnit> getASTs(List<ICompilationUnit> units, IProgressMonitor monitor) throws JavaModelException {
+			List<CompilationUnit> astRoots = super.getASTs(units, monitor);
+			if (cancelAfter != null && units.contains(cancelAfter)) {
+				cancelAfter = null;
+				monitor.setCanceled(true);
+			}
+			return astRoots;
+		}
+	}
+
+	@Test
+	public void testSemanticDiagnosticsSupersedeSyntaxDiagnostics() throws Exception {
+		lifeCycleHandler = new DocumentLifeCycleHandler(javaClient, preferenceManager, projectsManager, true);
+		IJavaProject javaProject = newEmptyProject();
+		IPackageFragmentRoot sourceFolder = javaProject.getPackageFragmentRoot(javaProject.getProject().getFolder("src"));
+		IPackageFragment pack1 = sourceFolder.createPackageFragment("test1", false, null);
+
+		StringBuilder buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class H123 {\n");
+		buf.append("  X x\n");
+		buf.append("}\n");
+		ICompilationUnit cu1 = pack1.createCompilationUnit("H123.java", buf.toString(), false, null);
+
+		openDocument(cu1, cu1.getSource(), 1);
+		waitForBackgroundJobs();
+
+		List<PublishDiagnosticsParams> diagnosticReports = getClientRequests("publishDiagnostics");
+		assertEquals(2, diagnosticReports.size());
+		// the syntax pass only knows about the missing ';', the semantic pass also reports the unknown type
+		PublishDiagnosticsParams syntax = diagnosticReports.get(0);
+		assertEquals(JDTUtils.getFileURI(cu1), syntax.getUri());
+		assertEquals(1, syntax.getDiagnostics().size());
+		PublishDiagnosticsParams semantic = diagnosticReports.get(1);
+		assertEquals(JDTUtils.getFileURI(cu1), semantic.getUri());
+		assertEquals(2, semantic.getDiagnostics().size());
+	}
+
+	@Test
+	public void testPrepareDocument() throws Exception {
+		lifeCycleHandler = new DocumentLifeCycleHandler(javaClient, preferenceManager, projectsManager, true);
+		IJavaProject javaProject = newEmptyProject();
+		IPackageFragmentRoot sourceFolder = javaProject.getPackageFragmentRoot(javaProject.getProject().getFolder("src"));
+		IPackageFragment pack1 = sourceFolder.createPackageFragment("test1", false, null);
+
+		StringBuilder buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class I123 {\n");
+		buf.append("}\n");
+		ICompilationUnit cu1 = pack1.createCompilationUnit("I123.java", buf.toString(), false, null);
+		openDocument(cu1, cu1.getSource(), 1);
+
+		buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class I123 {\n");
+		buf.append("  void foo() {}\n");
+		buf.append("}\n");
+		changeDocumentFull(cu1, buf.toString(), 2);
+
+		// the document is up to date without waiting for the (delayed) validation
+		lifeCycleHandler.prepareDocument(JDTUtils.getFileURI(cu1), new NullProgressMonitor());
+		assertTrue(cu1.isConsistent());
+		assertTrue(cu1.getType("I123").getMethod("foo", new String[0]).exists());
+		waitForBackgroundJobs();
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		lifeCycleHandler = new DocumentLifeCycleHandler(javaClient, preferenceManager, projectsManager, true);
+		IJavaProject javaProject = newEmptyProject();
+		IPackageFragmentRoot sourceFolder = javaProject.getPackageFragmentRoot(javaProject.getProject().getFolder("src"));
+		IPackageFragment pack1 = sourceFolder.createPackageFragment("test1", false, null);
+
+		StringBuilder buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class I123 {\n");
+		buf.append("}\n");
+		ICompilationUnit cu1 = pack1.createCompilationUnit("I123.java", buf.toString(), false, null);
+		openDocument(cu1, cu1.getSource(), 1);
+
+		buf = new StringBuilder();
+		buf.append("package test1;\n");
+		buf.append("public class I123 {\n");
+		buf.append("  void foo() {}\n");
+		buf.append("}\n");
+		String content = buf.toString();
+		changeDocumentFull(cu1, content, 2);
+
+		// the snapshot is available without waiting for the (delayed) validation
+		String uri = JDTUtils.getFileURI(cu1);
+		DocumentSnapshot snapshot = lifeCycleHandler.getSnapshot(uri, new NullProgressMonitor());
+		assertEquals(2, snapshot.getVersion());
+		assertEquals(content, snapshot.getText().toString());
+		assertEquals(content.indexOf("void"), snapshot.getOffset(2, 2));
+		assertTrue(cu1.getType("I123").getMethod("foo", new String[0]).exists());
+		// the requests made on the same version share the snapshot
+		assertSame(snapshot, lifeCycleHandler.getSnapshot(uri, new NullProgressMonitor()));
+
+		changeDocumentIncrementally(cu1, "int", 3, content.indexOf("void"), "void".length());
+
+		// a later change doesn't affect the snapshot
+		assertEquals(content, snapshot.getText().toString());
+		assertEquals(content, new String(snapshot.getCharacters()));
+		assertFalse(snapshot.isCurrent());
+		DocumentSnapshot changed = lifeCycleHandler.getSnapshot(uri, new NullProgressMonitor());
+		assertNotSame(snapshot, changed);
+		assertEquals(3, changed.getVersion());
+		assertEquals(content.replace("void", "int"), changed.getText().toString());
+		waitForBackgroundJobs();
+	}
+
+	@Test
+	public void testSessionWorkingCopies() throws Exception {
+		IJavaProject javaProject = newEmptyProject();
+		IPackageFragmentRoot sourceFolder = javaProject.getPackageFragmentRoot(javaProject.getProject().getFolder("src"));
+		IPackageFragment pack1 = sourceFolder.createPackageFragment("test1", false, null);
+		ICompilationUnit cu1 = pack1.createCompilationUnit("E.java", "package test1;\npublic class E {\n}\n", false, null);
+		String uri = JDTUtils.getFileURI(cu1);
+		String firstContent = "package test1;\npublic class E {\n  void first() {}\n}\n";
+		String secondContent = "package test1;\npublic class E {\n  void second() {}\n}\n";
+
+		// each session of the daemon edits its own working copy of the document
+		LanguageServerWorkingCopyOwner firstOwner = new LanguageServerWorkingCopyOwner(javaClient);
+		LanguageServerWorkingCopyOwner secondOwner = new LanguageServerWorkingCopyOwner(javaClient);
+		DocumentLifeCycleHandler first = new DocumentLifeCycleHandler(javaClient, preferenceManager, projectsManager, false, firstOwner);
+		DocumentLifeCycleHandler second = new DocumentLifeCycleHandler(javaClient, preferenceManager, projectsManager, false, secondOwner);
+		lifeCycleHandler = first;
+		openDocument(cu1, firstContent, 1);
+		lifeCycleHandler = second;
+		openDocument(cu1, secondContent, 1);
+
+		ICompilationUnit firstCopy = JDTUtils.resolveCompilationUnit(uri, firstOwner);
+		ICompilationUnit secondCopy = JDTUtils.resolveCompilationUnit(uri, secondOwner);
+		assertSame(firstOwner, firstCopy.getOwner());
+		assertSame(secondOwner, secondCopy.getOwner());
+		assertEquals(firstContent, firstCopy.getSource());
+		assertEquals(secondContent, secondCopy.getSource());
+		assertFalse(cu1.isWorkingCopy());
+		assertNotEquals(SharedASTProvider.getCacheKey(firstCopy), SharedASTProvider.getCacheKey(secondCopy));
+
+		// the requests of a session resolve its working copies
+		WorkingCopyOwner previous = JDTUtils.setSessionOwner(firstOwner);
+		try {
+			assertEquals(firstContent, JDTUtils.resolveCompilationUnit(uri).getSource());
+		} finally {
+			JDTUtils.setSessionOwner(previous);
+		}
+
+		// closing the document in a session leaves it open in the other
+		closeDocument(cu1);
+		assertNull(cu1.findWorkingCopy(secondOwner));
+		assertEquals(firstContent, JDTUtils.resolveCompilationUnit(uri, firstOwner).getSource());
+		lifeCycleHandler = first;
+		closeDocument(cu1);
+		assertNull(cu1.findWorkingCopy(firstOwner));
+		first.dispose();
+		second.dispose();
+	}
+
 	@Test
 	public void testDidOpenStandaloneFile() throws Exception {
 		IJavaProject javaProject = newDefaultProject();
@@ -532,6 +869,13 @@ public class DocumentLifeCycleHandlerTest extends AbstractProjectsManagerBasedTe
 		lifeCycleHandler.didChange(changeParms);
 	}
 
+	private TextDocumentContentChangeEvent newChangeEvent(Range range, String text) {
+		TextDocumentContentChangeEvent event = new TextDocumentContentChangeEvent();
+		event.setRange(range);
+		event.setText(text);
+		return event;
+	}
+
 	private void saveDocument(ICompilationUnit cu) throws Exception {
 		DidSaveTextDocumentParams saveParms = new DidSaveTextDocumentParams();
 		TextDocumentIdentifier textDocument = new TextDocumentIdentifier();
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RequestCoalescerTest {
+
+	private RequestCoalescer coalescer = new RequestCoalescer();
+	private AtomicInteger computations = new AtomicInteger();
+
+	@Test
+	public void testIdenticalRequestsShareComputation() throws Exception {
+		CompletableFuture<String> source = new CompletableFuture<>();
+		CompletableFuture<String> first = coalescer.compute("hover#A:1", () -> start(source));
+		CompletableFuture<String> second = coalescer.compute("hover#A:1", () -> start(new CompletableFuture<>()));
+		CompletableFuture<String> other = coalescer.compute("hover#A:2", () -> start(new CompletableFuture<>()));
+		assertEquals(2, computations.get());
+		assertEquals(1, coalescer.getCoalescedCount());
+
+		source.complete("result");
+		assertEquals("result", first.get());
+		assertEquals("result", second.get());
+		assertFalse(other.isDone());
+
+		// remembered
+		assertEquals("result", coalescer.compute("hover#A:1", () -> start(new CompletableFuture<>())).get());
+		assertEquals(2, computations.get());
+		assertEquals(1, coalescer.getMemoHitCount());
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		CompletableFuture<String> stale = new CompletableFuture<>();
+		coalescer.compute("hover#A:1", () -> start(stale));
+		coalescer.invalidate();
+		CompletableFuture<String> fresh = new CompletableFuture<>();
+		CompletableFuture<String> result = coalescer.compute("hover#A:1", () -> start(fresh));
+		assertEquals(2, computations.get());
+
+		stale.complete("stale");
+		fresh.complete("fresh");
+		assertEquals("fresh", result.get());
+		coalescer.invalidate();
+		coalescer.compute("hover#A:1", () -> start(new CompletableFuture<>()));
+		assertEquals(3, computations.get());
+		assertEquals(0, coalescer.getMemoHitCount());
+	}
+
+	@Test
+	public void testCancelledWhenAllCallersCancel() throws Exception {
+		CompletableFuture<String> source = new CompletableFuture<>();
+		CompletableFuture<String> first = coalescer.compute("hover#A:1", () -> start(source));
+		CompletableFuture<String> second = coalescer.compute("hover#A:1", () -> start(new CompletableFuture<>()));
+
+		first.cancel(true);
+		assertFalse(source.isCancelled());
+		assertFalse(second.isDone());
+		second.cancel(true);
+		assertTrue(source.isCancelled());
+	}
+
+	private CompletableFuture<String> start(CompletableFuture<String> future) {
+		computations.incrementAndGet();
+		return future;
+	}
+}
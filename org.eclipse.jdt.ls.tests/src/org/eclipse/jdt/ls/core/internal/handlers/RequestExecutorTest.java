@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.ls.core.internal.handlers.RequestExecutor.Lane;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequestExecutorTest {
+
+	private RequestExecutor executor;
+
+	@Before
+	public void setup() {
+		executor = new RequestExecutor();
+	}
+
+	@After
+	public void tearDown() {
+		executor.dispose();
+	}
+
+	@Test
+	public void testBulkRequestsDontBlockInteractiveOnes() throws Exception {
+		executor.setLaneSize(Lane.BULK, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<String> bulk1 = executor.computeAsync(Lane.BULK, (cc) -> await(release));
+		CompletableFuture<String> bulk2 = executor.computeAsync(Lane.BULK, (cc) -> await(release));
+
+		CompletableFuture<String> interactive = executor.computeAsync(Lane.INTERACTIVE, (cc) -> "hover");
+		assertEquals("hover", interactive.get(5, TimeUnit.SECONDS));
+		assertFalse(bulk1.isDone());
+		assertFalse(bulk2.isDone());
+		assertEquals(1, executor.getQueueLength(Lane.BULK));
+		assertEquals(1, executor.getMaxQueueLength(Lane.BULK));
+
+		release.countDown();
+		assertEquals("done", bulk1.get(5, TimeUnit.SECONDS));
+		assertEquals("done", bulk2.get(5, TimeUnit.SECONDS));
+		assertEquals(0, executor.getQueueLength(Lane.BULK));
+	}
+
+	@Test
+	public void testLaneSize() throws Exception {
+		executor.setLaneSize(Lane.NAVIGATION, 3);
+		assertEquals(3, executor.getLaneSize(Lane.NAVIGATION));
+		executor.setLaneSize(Lane.NAVIGATION, 1);
+		assertEquals(1, executor.getLaneSize(Lane.NAVIGATION));
+		executor.setLaneSize(Lane.NAVIGATION, 0);
+		assertEquals(Lane.NAVIGATION.getDefaultSize(), executor.getLaneSize(Lane.NAVIGATION));
+	}
+
+	private static String await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return "done";
+	}
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.ls.core.internal.CancellableProgressMonitor;
+import org.eclipse.jdt.ls.core.internal.handlers.RequestSupersession.Request;
+import org.junit.Test;
+
+public class RequestSupersessionTest {
+
+	private static final String COMPLETION = "textDocument/completion";
+	private static final String CODE_LENS = "textDocument/codeLens";
+
+	private RequestSupersession supersession = new RequestSupersession();
+
+	@Test
+	public void testRunningRequestSuperseded() {
+		Request first = supersession.start(COMPLETION, "file:///A.java");
+		IProgressMonitor monitor = first.attach(new CancellableProgressMonitor(null));
+		assertFalse(monitor.isCanceled());
+
+		Request second = supersession.start(COMPLETION, "file:///A.java");
+		assertTrue(monitor.isCanceled());
+		assertFalse(second.attach(new CancellableProgressMonitor(null)).isCanceled());
+		assertEquals(1, supersession.getSupersededCount(COMPLETION));
+	}
+
+	@Test
+	public void testQueuedRequestSuperseded() {
+		Request first = supersession.start(COMPLETION, "file:///A.java");
+		supersession.start(COMPLETION, "file:///A.java");
+		assertTrue(first.isSuperseded());
+		assertTrue(first.attach(new CancellableProgressMonitor(null)).isCanceled());
+	}
+
+	@Test
+	public void testOtherRequestsNotSuperseded() {
+		Request first = supersession.start(COMPLETION, "file:///A.java");
+		supersession.start(COMPLETION, "file:///B.java");
+		supersession.start(CODE_LENS, "file:///A.java");
+		assertFalse(first.isSuperseded());
+
+		supersession.finish(first);
+		supersession.start(COMPLETION, "file:///A.java");
+		assertFalse(first.isSuperseded());
+		assertEquals(0, supersession.getSupersededCount(COMPLETION));
+		assertEquals(0, supersession.getSupersededCount(CODE_LENS));
+	}
+}
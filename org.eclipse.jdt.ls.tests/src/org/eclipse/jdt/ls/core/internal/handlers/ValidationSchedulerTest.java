@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.handlers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.ls.core.internal.SharedASTProvider;
+import org.eclipse.jdt.ls.core.internal.managers.AbstractProjectsManagerBasedTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ValidationSchedulerTest extends AbstractProjectsManagerBasedTest {
+
+	private SharedASTProvider sharedASTProvider;
+	private ValidationScheduler scheduler;
+	private IPackageFragment pack1;
+	private ICompilationUnit cu1;
+	private ICompilationUnit cu2;
+
+	@Before
+	public void setup() throws Exception {
+		sharedASTProvider = SharedASTProvider.getInstance();
+		sharedASTProvider.invalidateAll();
+		scheduler = new ValidationScheduler(sharedASTProvider, 2);
+
+		IJavaProject javaProject = newEmptyProject();
+		IPackageFragmentRoot sourceFolder = javaProject.getPackageFragmentRoot(javaProject.getProject().getFolder("src"));
+		pack1 = sourceFolder.createPackageFragment("test1", false, null);
+		cu1 = pack1.createCompilationUnit("V1.java", "package test1;\npublic class V1 {}\n", false, null);
+		cu2 = pack1.createCompilationUnit("V2.java", "package test1;\npublic class V2 extends V1 {}\n", false, null);
+		cu1.becomeWorkingCopy(null);
+		cu2.becomeWorkingCopy(null);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		scheduler.dispose();
+		for (ICompilationUnit cu : JavaCore.getWorkingCopies(null)) {
+			cu.discardWorkingCopy();
+		}
+	}
+
+	@Test
+	public void testReconcileAndBuildASTs() throws Exception {
+		List<ICompilationUnit> units = Arrays.asList(cu1, cu2);
+		assertEquals(units, scheduler.reconcile(units, new NullProgressMonitor()));
+
+		List<CompilationUnit> astRoots = scheduler.getASTs(units, new NullProgressMonitor());
+		assertEquals(2, astRoots.size());
+		assertNotNull(astRoots.get(0));
+		assertNotNull(astRoots.get(1));
+	}
+
+	@Test
+	public void testCancelledMonitorSkipsRemainingUnits() throws Exception {
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		List<ICompilationUnit> units = Arrays.asList(cu1, cu2);
+		assertEquals(0, scheduler.reconcile(units, monitor).size());
+
+		List<CompilationUnit> astRoots = scheduler.getASTs(units, monitor);
+		assertEquals(2, astRoots.size());
+		assertNull(astRoots.get(0));
+		assertNull(astRoots.get(1));
+		assertEquals(0, sharedASTProvider.getCacheSize());
+	}
+
+	@Test
+	public void testASTsKeepTheOrderOfTheUnits() throws Exception {
+		List<ICompilationUnit> units = new ArrayList<>(Arrays.asList(cu1, cu2));
+		for (int i = 3; i <= 8; i++) {
+			ICompilationUnit unit = pack1.createCompilationUnit("V" + i + ".java", "package test1;\npublic class V" + i + " extends V" + (i - 1) + " {}\n", false, null);
+			unit.becomeWorkingCopy(null);
+			units.add(unit);
+		}
+		// the units of a project are reconciled in order
+		assertEquals(units, scheduler.reconcile(units, new NullProgressMonitor()));
+
+		List<CompilationUnit> astRoots = scheduler.getASTs(units, new NullProgressMonitor());
+		assertEquals(units.size(), astRoots.size());
+		for (int i = 0; i < units.size(); i++) {
+			assertEquals(units.get(i), astRoots.get(i).getJavaElement());
+		}
+	}
+
+	@Test
+	public void testCancellationSkipsRemainingUnits() throws Exception {
+		cu1.getBuffer().setContents("package test1;\npublic class V1 { int a; }\n");
+		cu2.getBuffer().setContents("package test1;\npublic class V2 extends V1 { int b; }\n");
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		// the run is cancelled once the first unit is reconciled
+		IElementChangedListener listener = event -> monitor.setCanceled(true);
+		JavaCore.addElementChangedListener(listener, ElementChangedEvent.POST_RECONCILE);
+		try {
+			assertEquals(Arrays.asList(cu1), scheduler.reconcile(Arrays.asList(cu1, cu2), monitor));
+		} finally {
+			JavaCore.removeElementChangedListener(listener);
+		}
+	}
+
+	@Test
+	public void testInlineUnderSchedulingRule() throws Exception {
+		IProject project = cu1.getJavaProject().getProject();
+		List<ICompilationUnit> units = Arrays.asList(cu1, cu2);
+		// the workers could not acquire the project's rule held by the caller
+		Job.getJobManager().beginRule(project, null);
+		try {
+			assertEquals(units, scheduler.reconcile(units, new NullProgressMonitor()));
+			List<CompilationUnit> astRoots = scheduler.getASTs(units, new NullProgressMonitor());
+			assertEquals(cu1, astRoots.get(0).getJavaElement());
+			assertEquals(cu2, astRoots.get(1).getJavaElement());
+		} finally {
+			Job.getJobManager().endRule(project);
+		}
+	}
+}
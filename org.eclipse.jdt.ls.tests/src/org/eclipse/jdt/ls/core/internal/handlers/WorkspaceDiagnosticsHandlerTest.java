@@ -12,8 +12,10 @@ package org.eclipse.jdt.ls.core.internal.handlers;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -25,6 +27,7 @@ import java.util.Optional;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResourceChangeEvent;
 import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.jdt.ls.core.internal.JavaClientConnection;
 import org.eclipse.jdt.ls.core.internal.managers.AbstractProjectsManagerBasedTest;
 import org.eclipse.jface.text.IDocument;
@@ -164,6 +167,18 @@ public class WorkspaceDiagnosticsHandlerTest extends AbstractProjectsManagerBase
 		assertEquals("Project build error: 'dependencies.dependency.version' for org.apache.commons:commons-lang3:jar is missing.", diags.get(2).getMessage());
 	}
 
+	@Test
+	public void testMarkerListeningOutsideRoots() throws Exception {
+		// a session of the daemon only gets the diagnostics of its roots
+		IPath root = ResourcesPlugin.getWorkspace().getRoot().getLocation().append("other-root");
+		handler = new WorkspaceDiagnosticsHandler(connection, projectsManager, Collections.singleton(root));
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(handler, IResourceChangeEvent.POST_BUILD | IResourceChangeEvent.POST_CHANGE);
+
+		importProjects("maven/broken");
+
+		verify(connection, never()).publishDiagnostics(any(PublishDiagnosticsParams.class));
+	}
+
 	private IMarker createMarker(int severity, String msg, int line, int start, int end) {
 		IMarker m = mock(IMarker.class);
 		when(m.exists()).thenReturn(true);
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Red Hat Inc. and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat Inc. - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ls.core.internal.javadoc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.ls.core.internal.WorkspaceHelper;
+import org.eclipse.jdt.ls.core.internal.managers.AbstractProjectsManagerBasedTest;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JavadocCacheTest extends AbstractProjectsManagerBasedTest {
+
+	private IPackageFragment pack;
+
+	@Before
+	public void setup() throws Exception {
+		importProjects("eclipse/hello");
+		IJavaProject javaProject = JavaCore.create(WorkspaceHelper.getProject("hello"));
+		IPackageFragmentRoot sourceFolder = javaProject.getPackageFragmentRoot(javaProject.getProject().getFolder("src"));
+		pack = sourceFolder.createPackageFragment("test1", false, null);
+		JavadocCache.getInstance().clear();
+	}
+
+	@Test
+	public void testCachedBySourceVersion() throws Exception {
+		IMethod method = createMethod("Documented");
+		JavadocCache cache = JavadocCache.getInstance();
+		long hits = cache.getHitCount();
+
+		assertEquals("Documented", cache.getPlainText(method, 10, TimeUnit.SECONDS).trim());
+		assertEquals("Documented", cache.getPlainText(method, 10, TimeUnit.SECONDS).trim());
+		assertEquals(hits + 1, cache.getHitCount());
+
+		method = createMethod("Changed");
+		assertEquals("Changed", cache.getPlainText(method, 10, TimeUnit.SECONDS).trim());
+	}
+
+	@Test
+	public void testPrefetch() throws Exception {
+		IMethod method = createMethod("Prefetched");
+		JavadocCache cache = JavadocCache.getInstance();
+		cache.prefetch(() -> method);
+		long timeout = System.currentTimeMillis() + 10000;
+		while (cache.size() == 0) {
+			assertTrue("Timed out", System.currentTimeMillis() < timeout);
+			Thread.sleep(10);
+		}
+		long hits = cache.getHitCount();
+
+		assertEquals("Prefetched", cache.getPlainText(method, 0, TimeUnit.MILLISECONDS).trim());
+		assertEquals(hits + 1, cache.getHitCount());
+	}
+
+	private IMethod createMethod(String javadoc) throws Exception {
+		ICompilationUnit cu = pack.createCompilationUnit("E.java",
+				"package test1;\n" +
+				"public class E {\n" +
+				"	/** " + javadoc + " */\n" +
+				"	public void foo() {\n" +
+				"	}\n" +
+				"}\n", true, null);
+		return cu.getType("E").getMethod("foo", new String[0]);
+	}
+}